@@ -1,33 +1,90 @@
 package com.clinicavillegas.app.appointment.controllers;
 
+import com.clinicavillegas.app.appointment.dto.request.BloqueoHorarioRequest;
 import com.clinicavillegas.app.appointment.dto.request.CancelacionCitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.CancelacionMasivaRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaReprogramarRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.ReprogramacionMasivaRequest;
+import com.clinicavillegas.app.appointment.dto.request.SerieCitasRequest;
 import com.clinicavillegas.app.appointment.dto.request.ValidacionCitaRequest;
+import com.clinicavillegas.app.appointment.dto.response.BloqueoHorarioResponse;
 import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.dto.response.DisponibilidadMensualResponse;
+import com.clinicavillegas.app.appointment.dto.response.HuecoDisponibleResponse;
+import com.clinicavillegas.app.appointment.dto.response.OperacionMasivaResponse;
+import com.clinicavillegas.app.appointment.dto.response.SerieCitasResponse;
+import com.clinicavillegas.app.appointment.services.AgendaService;
 import com.clinicavillegas.app.appointment.services.CitaService;
+import com.clinicavillegas.app.appointment.services.OcupacionService;
 import com.clinicavillegas.app.common.EndpointPaths;
+import com.clinicavillegas.app.user.models.Rol;
+import com.clinicavillegas.app.user.models.Usuario;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 @RestController
 @RequestMapping(EndpointPaths.CITA_BASE)
 public class CitaController {
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final CitaService citaService;
+    private final OcupacionService ocupacionService;
+    private final AgendaService agendaService;
+    private final ObjectMapper objectMapper;
 
-    public CitaController(CitaService citaService) {
+    public CitaController(CitaService citaService, OcupacionService ocupacionService, AgendaService agendaService, ObjectMapper objectMapper) {
         this.citaService = citaService;
+        this.ocupacionService = ocupacionService;
+        this.agendaService = agendaService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Exportación de todas las citas filtradas como NDJSON (una cita por línea), se pide con Accept: application/x-ndjson.
+    // Se escribe a medida que llegan las filas, así que la memoria no crece con el tamaño del resultado
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportarCitas(
+            @RequestParam(required = false) Long usuarioId,
+            @RequestParam(required = false) Long dentistaId,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) Long tratamientoId,
+            @RequestParam(required = false) String sexo) {
+
+        StreamingResponseBody cuerpo = salida -> citaService.recorrerCitas(
+                usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo, cita -> {
+                    try {
+                        salida.write(objectMapper.writeValueAsBytes(cita));
+                        salida.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(cuerpo);
     }
 
     @GetMapping
@@ -40,8 +97,16 @@ public class CitaController {
             @RequestParam(required = false) Long tratamientoId,
             @RequestParam(required = false) String sexo,
             @RequestParam(required = false, defaultValue = "false") boolean all,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "10") int tamanio,
+            @RequestParam(required = false, defaultValue = "false") boolean conTotal,
             @PageableDefault(page = 0, size = 10, sort = "fecha", direction = Sort.Direction.DESC) Pageable pageable) {
 
+        // Con el parámetro cursor (vacío para la primera página) se usa paginación por cursor en lugar de page/size
+        if (cursor != null) {
+            return ResponseEntity.ok(citaService.obtenerCitasPorCursor(usuarioId, dentistaId, estado, fechaInicio, fechaFin,
+                    tratamientoId, sexo, cursor, tamanio, conTotal));
+        }
         if (all) {
             List<CitaResponse> citas = citaService.obtenerCitas(usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo);
             return ResponseEntity.ok(citas);
@@ -57,6 +122,11 @@ public class CitaController {
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
 
+    @PostMapping("/series")
+    public ResponseEntity<SerieCitasResponse> agregarSerie(@Valid @RequestBody SerieCitasRequest request) {
+        return new ResponseEntity<>(citaService.agregarSerie(request), HttpStatus.CREATED);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Void> actualizarCita(@PathVariable Long id, @Valid @RequestBody CitaRequest citaRequest) {
         citaService.actualizarCita(id, citaRequest);
@@ -82,9 +152,75 @@ public class CitaController {
         return ResponseEntity.ok(disponible);
     }
 
+    @GetMapping("/proximo-disponible")
+    public ResponseEntity<HuecoDisponibleResponse> buscarProximoDisponible(
+            @RequestParam Long tratamientoId,
+            @RequestParam(required = false) Long dentistaId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        return ocupacionService.buscarProximoHueco(tratamientoId, dentistaId, fechaInicio, fechaFin)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    // Vista mensual del calendario en una sola llamada. Con If-None-Match se responde 304 sin armar la matriz
+    @GetMapping("/disponibilidad-mensual")
+    public ResponseEntity<DisponibilidadMensualResponse> obtenerDisponibilidadMensual(
+            @RequestParam Long tratamientoId,
+            @RequestParam(required = false) Long dentistaId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth mes,
+            WebRequest request) {
+        String sello = ocupacionService.selloDisponibilidadMensual(tratamientoId, dentistaId, mes);
+        if (request.checkNotModified(sello)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(sello)
+                .cacheControl(CacheControl.noCache())
+                .body(ocupacionService.obtenerDisponibilidadMensual(tratamientoId, dentistaId, mes));
+    }
+
+    // Cambios de la agenda de un dentista (o de toda la clínica sin dentistaId) a medida que ocurren.
+    // Al reconectar, el navegador envía Last-Event-ID y se reenvía lo que se perdió
+    @GetMapping(value = "/agenda/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirAgenda(@RequestParam(required = false) Long dentistaId,
+                                      @RequestHeader(value = "Last-Event-ID", required = false) String ultimoEventoId) {
+        return agendaService.suscribir(dentistaId, ultimoEventoId);
+    }
+
     @PatchMapping("/{id}/reprogramar")
     public ResponseEntity<Void> reprogramarCita(@PathVariable Long id, @Valid @RequestBody CitaReprogramarRequest request) {
         citaService.reprogramarCita(id, request);
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+
+    // Aparta el horario unos minutos mientras el paciente llena el formulario; el id se envía luego como bloqueoId.
+    // Un paciente solo bloquea para sí mismo, así no puede saltarse el máximo de bloqueos cambiando el usuarioId
+    @PostMapping("/bloqueos")
+    public ResponseEntity<BloqueoHorarioResponse> bloquearHorario(@Valid @RequestBody BloqueoHorarioRequest request,
+                                                                  @AuthenticationPrincipal Usuario usuario) {
+        if (usuario != null && usuario.getRol() == Rol.PACIENTE) {
+            request.setUsuarioId(usuario.getId());
+        }
+        return new ResponseEntity<>(citaService.bloquearHorario(request), HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/bloqueos/{id}")
+    public ResponseEntity<Void> liberarBloqueo(@PathVariable String id) {
+        citaService.liberarBloqueo(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Cuando un dentista no puede atender: una sola operación para todas sus citas pendientes del rango
+    @PatchMapping("/dentista/{dentistaId}/cancelar")
+    public ResponseEntity<OperacionMasivaResponse> cancelarCitasDeDentista(@PathVariable Long dentistaId,
+                                                                           @Valid @RequestBody CancelacionMasivaRequest request) {
+        return ResponseEntity.ok(citaService.cancelarCitasDeDentista(dentistaId, request));
+    }
+
+    @PatchMapping("/dentista/{dentistaId}/reprogramar")
+    public ResponseEntity<OperacionMasivaResponse> reprogramarCitasDeDentista(@PathVariable Long dentistaId,
+                                                                              @Valid @RequestBody ReprogramacionMasivaRequest request) {
+        return ResponseEntity.ok(citaService.reprogramarCitasDeDentista(dentistaId, request));
+    }
+}
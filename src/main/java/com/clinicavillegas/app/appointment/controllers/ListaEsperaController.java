@@ -0,0 +1,40 @@
+package com.clinicavillegas.app.appointment.controllers;
+
+import com.clinicavillegas.app.appointment.dto.request.ListaEsperaRequest;
+import com.clinicavillegas.app.appointment.dto.response.ListaEsperaResponse;
+import com.clinicavillegas.app.appointment.services.ListaEsperaService;
+import com.clinicavillegas.app.common.EndpointPaths;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping(EndpointPaths.LISTA_ESPERA_BASE)
+public class ListaEsperaController {
+
+    private final ListaEsperaService listaEsperaService;
+
+    public ListaEsperaController(ListaEsperaService listaEsperaService) {
+        this.listaEsperaService = listaEsperaService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ListaEsperaResponse> registrar(@Valid @RequestBody ListaEsperaRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(listaEsperaService.registrar(request));
+    }
+
+    @GetMapping("/usuario/{usuarioId}")
+    public ResponseEntity<List<ListaEsperaResponse>> obtenerPorUsuario(@PathVariable Long usuarioId) {
+        return ResponseEntity.ok(listaEsperaService.obtenerPorUsuario(usuarioId));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancelar(@PathVariable Long id) {
+        listaEsperaService.cancelar(id);
+        return ResponseEntity.ok(Map.of("mensaje", "Solicitud retirada de la lista de espera"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.clinicavillegas.app.appointment.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BloqueoHorarioRequest {
+
+    @NotNull(message = "El ID del dentista es un campo obligatorio.")
+    private Long dentistaId;
+
+    @NotNull(message = "El ID del paciente es un campo obligatorio.")
+    private Long usuarioId;
+
+    // La duración del bloqueo en la agenda es la del tratamiento
+    @NotNull(message = "El ID del tratamiento es un campo obligatorio.")
+    private Long tratamientoId;
+
+    @NotNull(message = "La fecha es un campo obligatorio.")
+    private LocalDate fecha;
+
+    @NotNull(message = "La hora es un campo obligatorio.")
+    private LocalTime hora;
+}
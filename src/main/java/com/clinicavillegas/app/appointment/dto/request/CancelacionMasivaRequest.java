@@ -0,0 +1,38 @@
+package com.clinicavillegas.app.appointment.dto.request;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CancelacionMasivaRequest {
+
+    public static final int DIAS_MAXIMOS = 31;
+
+    @NotNull(message = "La fecha de inicio es un campo obligatorio.")
+    private LocalDate fechaInicio;
+
+    @NotNull(message = "La fecha de fin es un campo obligatorio.")
+    private LocalDate fechaFin;
+
+    @NotBlank(message = "Las observaciones para la cancelación son obligatorias y no pueden estar vacías.")
+    @Size(max = 500, message = "Las observaciones no pueden superar los 500 caracteres.")
+    private String observaciones;
+
+    @AssertTrue(message = "El rango de fechas debe ser válido y no superar los " + DIAS_MAXIMOS + " días.")
+    public boolean isRangoValido() {
+        return fechaInicio == null || fechaFin == null
+                || (!fechaFin.isBefore(fechaInicio) && ChronoUnit.DAYS.between(fechaInicio, fechaFin) < DIAS_MAXIMOS);
+    }
+}
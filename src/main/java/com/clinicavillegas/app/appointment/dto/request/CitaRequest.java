@@ -62,4 +62,7 @@ public class CitaRequest {
 
     @Size(max = 500, message = "Las observaciones no pueden superar los 500 caracteres")
     private String observaciones;
+
+    // Opcional: bloqueo tomado con POST /api/citas/bloqueos para este mismo horario
+    private String bloqueoId;
 }
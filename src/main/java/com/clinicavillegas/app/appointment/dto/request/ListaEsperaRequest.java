@@ -0,0 +1,51 @@
+package com.clinicavillegas.app.appointment.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ListaEsperaRequest {
+
+    public static final int DIAS_MAXIMOS = 31;
+
+    @NotNull(message = "El ID del paciente es un campo obligatorio.")
+    private Long usuarioId;
+
+    @NotNull(message = "El ID del tratamiento es un campo obligatorio.")
+    private Long tratamientoId;
+
+    // Uno de los dos: un dentista concreto o cualquiera de la especialización
+    private Long dentistaId;
+
+    private String especializacion;
+
+    @NotNull(message = "La fecha de inicio es un campo obligatorio.")
+    private LocalDate fechaDesde;
+
+    @NotNull(message = "La fecha de fin es un campo obligatorio.")
+    private LocalDate fechaHasta;
+
+    @JsonIgnore
+    @AssertTrue(message = "Debe indicar un dentista o una especialización.")
+    public boolean isDentistaOEspecializacion() {
+        return dentistaId != null || (especializacion != null && !especializacion.isBlank());
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "El rango de fechas debe ser válido y no superar los " + DIAS_MAXIMOS + " días.")
+    public boolean isRangoValido() {
+        return fechaDesde == null || fechaHasta == null
+                || (!fechaHasta.isBefore(fechaDesde) && ChronoUnit.DAYS.between(fechaDesde, fechaHasta) < DIAS_MAXIMOS);
+    }
+}
@@ -0,0 +1,41 @@
+package com.clinicavillegas.app.appointment.dto.request;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import static com.clinicavillegas.app.appointment.dto.request.CancelacionMasivaRequest.DIAS_MAXIMOS;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReprogramacionMasivaRequest {
+
+    @NotNull(message = "La fecha de inicio es un campo obligatorio.")
+    private LocalDate fechaInicio;
+
+    @NotNull(message = "La fecha de fin es un campo obligatorio.")
+    private LocalDate fechaFin;
+
+    // Las citas conservan la hora y se mueven esta cantidad de días (negativo para adelantarlas)
+    @NotNull(message = "Los días de desplazamiento son un campo obligatorio.")
+    private Integer dias;
+
+    @AssertTrue(message = "El rango de fechas debe ser válido y no superar los " + DIAS_MAXIMOS + " días.")
+    public boolean isRangoValido() {
+        return fechaInicio == null || fechaFin == null
+                || (!fechaFin.isBefore(fechaInicio) && ChronoUnit.DAYS.between(fechaInicio, fechaFin) < DIAS_MAXIMOS);
+    }
+
+    @AssertTrue(message = "El desplazamiento debe ser distinto de cero y no superar un año.")
+    public boolean isDiasValido() {
+        return dias == null || (dias != 0 && Math.abs(dias) <= 366);
+    }
+}
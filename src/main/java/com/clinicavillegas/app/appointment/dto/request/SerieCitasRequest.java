@@ -0,0 +1,43 @@
+package com.clinicavillegas.app.appointment.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SerieCitasRequest {
+
+    public static final int OCURRENCIAS_MAXIMAS = 52;
+    public static final int SEMANAS_MAXIMAS = 104;
+
+    // La primera cita de la serie; las demás repiten dentista, tratamiento y hora cada intervaloSemanas
+    @NotNull(message = "La primera cita de la serie es un campo obligatorio.")
+    @Valid
+    private CitaRequest cita;
+
+    @NotNull(message = "El intervalo en semanas es un campo obligatorio.")
+    @Min(value = 1, message = "El intervalo debe ser de al menos una semana.")
+    private Integer intervaloSemanas;
+
+    @NotNull(message = "La cantidad de citas es un campo obligatorio.")
+    @Min(value = 2, message = "Una serie debe tener al menos dos citas.")
+    @Max(value = OCURRENCIAS_MAXIMAS, message = "Una serie no puede superar las " + OCURRENCIAS_MAXIMAS + " citas.")
+    private Integer ocurrencias;
+
+    @JsonIgnore
+    @AssertTrue(message = "La serie no puede extenderse más de " + SEMANAS_MAXIMAS + " semanas.")
+    public boolean isDuracionValida() {
+        return intervaloSemanas == null || ocurrencias == null
+                || (long) intervaloSemanas * (ocurrencias - 1) <= SEMANAS_MAXIMAS;
+    }
+}
@@ -23,4 +23,9 @@ public class ValidacionCitaRequest {
 
     @NotBlank(message = "El ID del dentista asignado al horario es un campo obligatorio y no puede estar vacío")
     Long dentistaId;
+
+    // Opcionales: con el bloqueo del propio paciente, su horario apartado aparece disponible para él
+    Long usuarioId;
+
+    String bloqueoId;
 }
@@ -0,0 +1,24 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BloqueoHorarioResponse {
+    // Se envía como bloqueoId en CitaRequest para convertir el bloqueo en la cita
+    String id;
+    Long dentistaId;
+    LocalDate fecha;
+    LocalTime hora;
+    LocalTime horaFin;
+    LocalDateTime expira;
+}
@@ -0,0 +1,24 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CambioAgendaResponse {
+    Long citaId;
+    String estado;
+    Long dentistaId;
+    LocalDate fecha;
+    LocalTime hora;
+    LocalTime horaFin;
+    Long dentistaIdAnterior;
+    LocalDate fechaAnterior;
+}
@@ -0,0 +1,24 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// Matriz dentistas × días: huecos[i][d] es cuántas citas del tratamiento caben aún con dentistas[i] el día d + 1 del mes
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DisponibilidadMensualResponse {
+    @JsonFormat(pattern = "yyyy-MM")
+    YearMonth mes;
+    Long tratamientoId;
+    long duracionMinutos;
+    List<Long> dentistas;
+    int[][] huecos;
+}
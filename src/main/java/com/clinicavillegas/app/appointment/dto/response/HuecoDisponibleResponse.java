@@ -0,0 +1,20 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class HuecoDisponibleResponse {
+    Long dentistaId;
+    LocalDate fecha;
+    LocalTime hora;
+    LocalTime horaFin;
+}
@@ -0,0 +1,32 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ListaEsperaResponse {
+    Long id;
+    Long usuarioId;
+    Long tratamientoId;
+    String tratamiento;
+    Long dentistaId;
+    String especializacion;
+    LocalDate fechaDesde;
+    LocalDate fechaHasta;
+    String estado;
+    // Solo cuando se le ofreció un hueco: se reserva enviando bloqueoId en CitaRequest antes de ofertaVence
+    Long dentistaOfrecidoId;
+    LocalDate fechaOfrecida;
+    LocalTime horaOfrecida;
+    String bloqueoId;
+    LocalDateTime ofertaVence;
+}
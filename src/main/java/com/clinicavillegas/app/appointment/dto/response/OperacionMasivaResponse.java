@@ -0,0 +1,15 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OperacionMasivaResponse {
+    int citasAfectadas;
+    int pacientesNotificados;
+}
@@ -0,0 +1,21 @@
+package com.clinicavillegas.app.appointment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaCitasResponse {
+    List<CitaResponse> contenido;
+    // Se envía tal cual en el parámetro cursor para pedir la página siguiente; null si no hay más citas
+    String siguienteCursor;
+    boolean hayMas;
+    // Solo se calcula si se pide con conTotal=true
+    Long total;
+}
@@ -0,0 +1,60 @@
+package com.clinicavillegas.app.appointment.events;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Se publica cada vez que una cita se registra o cambia de horario o de estado.
+ * Guarda el dentista y la fecha anteriores para que los oyentes puedan liberar el día previo
+ * (y el paciente anterior cuando una actualización cambia de paciente).
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@ToString
+public class CitaModificadaEvent {
+    private final Long citaId;
+    private final EstadoCita estado;
+    private final Long usuarioId;
+    private final Long dentistaId;
+    private final LocalDate fecha;
+    private final LocalTime hora;
+    private final LocalTime horaFin;
+    private final Long usuarioIdAnterior;
+    private final Long dentistaIdAnterior;
+    private final LocalDate fechaAnterior;
+
+    public static CitaModificadaEvent de(Cita cita) {
+        return de(cita, null, null);
+    }
+
+    public static CitaModificadaEvent de(Cita cita, Dentista dentistaAnterior, LocalDate fechaAnterior) {
+        LocalTime horaFin = null;
+        if (cita.getHora() != null && cita.getTratamiento() != null && cita.getTratamiento().getDuracion() != null) {
+            horaFin = cita.getHora().plus(cita.getTratamiento().getDuracion());
+        }
+        return CitaModificadaEvent.builder()
+                .citaId(cita.getId())
+                .estado(cita.getEstado())
+                .usuarioId(cita.getUsuario() != null ? cita.getUsuario().getId() : null)
+                .dentistaId(cita.getDentista() != null ? cita.getDentista().getId() : null)
+                .fecha(cita.getFecha())
+                .hora(cita.getHora())
+                .horaFin(horaFin)
+                .dentistaIdAnterior(dentistaAnterior != null ? dentistaAnterior.getId() : null)
+                .fechaAnterior(fechaAnterior)
+                .build();
+    }
+
+    public boolean isPendiente() {
+        return estado == EstadoCita.PENDIENTE;
+    }
+}
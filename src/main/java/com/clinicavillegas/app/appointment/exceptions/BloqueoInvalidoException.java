@@ -0,0 +1,8 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+public class BloqueoInvalidoException extends RuntimeException {
+
+    public BloqueoInvalidoException(String bloqueoId) {
+        super(String.format("El bloqueo '%s' no corresponde al paciente, dentista y horario de la reserva", bloqueoId));
+    }
+}
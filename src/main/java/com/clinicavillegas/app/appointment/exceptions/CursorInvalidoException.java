@@ -0,0 +1,8 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+public class CursorInvalidoException extends RuntimeException {
+
+    public CursorInvalidoException(String cursor) {
+        super(String.format("El cursor '%s' no es válido", cursor));
+    }
+}
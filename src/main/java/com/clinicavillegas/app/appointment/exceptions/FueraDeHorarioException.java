@@ -0,0 +1,11 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+public class FueraDeHorarioException extends RuntimeException {
+
+    public FueraDeHorarioException(Long dentistaId, LocalDate fecha, LocalTime hora) {
+        super(String.format("El dentista con ID '%s' no atiende el %s a las %s", dentistaId, fecha, hora));
+    }
+}
@@ -0,0 +1,13 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+public class HorarioNoDisponibleException extends RuntimeException {
+
+    public static final String MENSAJE_GENERICO = "El horario seleccionado ya no está disponible";
+
+    public HorarioNoDisponibleException(Long dentistaId, LocalDate fecha, LocalTime hora) {
+        super(String.format("El dentista con ID '%s' ya tiene una cita el %s a las %s", dentistaId, fecha, hora));
+    }
+}
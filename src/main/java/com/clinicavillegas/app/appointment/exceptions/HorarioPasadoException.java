@@ -0,0 +1,11 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+public class HorarioPasadoException extends RuntimeException {
+
+    public HorarioPasadoException(LocalDate fecha, LocalTime hora) {
+        super(String.format("El horario del %s a las %s ya pasó", fecha, hora));
+    }
+}
@@ -0,0 +1,11 @@
+package com.clinicavillegas.app.appointment.exceptions;
+
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+
+public class TransicionEstadoInvalidaException extends RuntimeException {
+
+    public TransicionEstadoInvalidaException(Long citaId, EstadoCita actual, EstadoCita destino) {
+        super(String.format("La cita con ID '%s' está %s y no puede pasar a %s",
+                citaId, actual.getNombre().toLowerCase(), destino.getNombre().toLowerCase()));
+    }
+}
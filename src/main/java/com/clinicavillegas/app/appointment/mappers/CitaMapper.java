@@ -10,9 +10,12 @@ import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
 import com.clinicavillegas.app.user.models.Sexo;
 import com.clinicavillegas.app.user.models.TipoDocumento;
 import com.clinicavillegas.app.user.models.Usuario;
+import org.hibernate.Hibernate;
 
 public class CitaMapper {
 
+    // Las entidades que van dentro de la respuesta se desenvuelven para que Jackson no serialice proxies de Hibernate
+
     public static CitaResponse toDto(Cita cita){
         return CitaResponse.builder()
                 .id(cita.getId())
@@ -22,11 +25,11 @@ public class CitaMapper {
                 .nombres(cita.getNombres())
                 .apellidoPaterno(cita.getApellidoPaterno())
                 .apellidoMaterno(cita.getApellidoMaterno())
-                .tipoDocumento(cita.getTipoDocumento())
+                .tipoDocumento(Hibernate.unproxy(cita.getTipoDocumento(), TipoDocumento.class))
                 .numeroIdentidad(cita.getNumeroIdentidad())
                 .telefono(cita.getUsuario().getTelefono())
                 .sexo(cita.getSexo().toString())
-                .estado(cita.getEstado())
+                .estado(cita.getEstado().getNombre())
                 .observaciones(cita.getObservaciones())
                 .fechaNacimiento(cita.getFechaNacimiento())
                 .dentista(DentistaResponse.builder()
@@ -37,14 +40,14 @@ public class CitaMapper {
                         .especializacion(cita.getDentista().getEspecializacion())
                         .nColegiatura(cita.getDentista().getNColegiatura())
                         .estado(cita.getDentista().isEstado())
-                        .tipoDocumento(cita.getDentista().getUsuario().getTipoDocumento())
+                        .tipoDocumento(Hibernate.unproxy(cita.getDentista().getUsuario().getTipoDocumento(), TipoDocumento.class))
                         .numeroIdentidad(cita.getDentista().getUsuario().getNumeroIdentidad())
                         .sexo(cita.getDentista().getUsuario().getSexo().toString())
                         .fechaNacimiento(cita.getDentista().getUsuario().getFechaNacimiento().toString())
                         .telefono(cita.getDentista().getUsuario().getTelefono())
                         .build())
                 .usuarioId(cita.getUsuario().getId())
-                .tratamiento(cita.getTratamiento())
+                .tratamiento(Hibernate.unproxy(cita.getTratamiento(), Tratamiento.class))
                 .build();
     }
 }
@@ -2,6 +2,8 @@ package com.clinicavillegas.app.appointment.mappers;
 
 import com.clinicavillegas.app.appointment.dto.response.DentistaResponse;
 import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import org.hibernate.Hibernate;
 
 public class DentistaMapper {
     public static DentistaResponse toDto(Dentista dentista){
@@ -15,7 +17,7 @@ public class DentistaMapper {
                 .estado(dentista.isEstado())
                 .apellidoPaterno(dentista.getUsuario().getApellidoPaterno())
                 .apellidoMaterno(dentista.getUsuario().getApellidoMaterno())
-                .tipoDocumento(dentista.getUsuario().getTipoDocumento())
+                .tipoDocumento(Hibernate.unproxy(dentista.getUsuario().getTipoDocumento(), TipoDocumento.class))
                 .numeroIdentidad(dentista.getUsuario().getNumeroIdentidad())
                 .sexo(dentista.getUsuario().getSexo().toString())
                 .telefono(dentista.getUsuario().getTelefono())
@@ -18,14 +18,61 @@ import java.time.LocalTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity(name = "citas")
+@NamedEntityGraph(
+        name = Cita.GRAFO_LISTADO,
+        attributeNodes = {
+                @NamedAttributeNode("tipoDocumento"),
+                @NamedAttributeNode("usuario"),
+                @NamedAttributeNode(value = "tratamiento", subgraph = "tratamiento"),
+                @NamedAttributeNode(value = "dentista", subgraph = "dentista")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "tratamiento", attributeNodes = @NamedAttributeNode("tipoTratamiento")),
+                @NamedSubgraph(name = "dentista", attributeNodes = @NamedAttributeNode(value = "usuario", subgraph = "usuarioDentista")),
+                @NamedSubgraph(name = "usuarioDentista", attributeNodes = @NamedAttributeNode("tipoDocumento"))
+        }
+)
+@NamedEntityGraph(
+        name = Cita.GRAFO_NOTIFICACION,
+        attributeNodes = {
+                @NamedAttributeNode("tipoDocumento"),
+                @NamedAttributeNode("usuario"),
+                @NamedAttributeNode("tratamiento"),
+                @NamedAttributeNode(value = "dentista", subgraph = "dentista")
+        },
+        subgraphs = @NamedSubgraph(name = "dentista", attributeNodes = @NamedAttributeNode("usuario"))
+)
+@NamedEntityGraph(
+        name = Cita.GRAFO_REPORTE,
+        attributeNodes = {
+                @NamedAttributeNode("tipoDocumento"),
+                @NamedAttributeNode(value = "usuario", subgraph = "usuario"),
+                @NamedAttributeNode(value = "tratamiento", subgraph = "tratamiento"),
+                @NamedAttributeNode(value = "dentista", subgraph = "dentista")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "usuario", attributeNodes = @NamedAttributeNode("tipoDocumento")),
+                @NamedSubgraph(name = "tratamiento", attributeNodes = @NamedAttributeNode("tipoTratamiento")),
+                @NamedSubgraph(name = "dentista", attributeNodes = @NamedAttributeNode("usuario"))
+        }
+)
+@Table(name = "citas")
 public class Cita extends AudityEntity {
 
+    // Planes de carga por caso de uso; las asociaciones son LAZY y cada consulta pide solo lo que va a leer
+    // Listado y detalle: todo lo que usa CitaMapper
+    public static final String GRAFO_LISTADO = "Cita.listado";
+    // Correos de reserva, cancelación y recordatorio
+    public static final String GRAFO_NOTIFICACION = "Cita.notificacion";
+    // Reportes en Excel y PDF
+    public static final String GRAFO_REPORTE = "Cita.reporte";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(length = 10, nullable = false)
-    private String estado;
+    @Column(nullable = false)
+    private EstadoCita estado;
 
     @Column(length = 500, nullable = true)
     private String observaciones;
@@ -39,6 +86,10 @@ public class Cita extends AudityEntity {
     @Column(nullable = false)
     private LocalTime hora;
 
+    // Hora de término (hora + duración del tratamiento), se guarda para resolver solapamientos en la base de datos
+    @Column(name = "hora_fin")
+    private LocalTime horaFin;
+
     @Column(length = 40, nullable = false)
     private String nombres;
 
@@ -48,7 +99,7 @@ public class Cita extends AudityEntity {
     @Column(length = 35, nullable = false)
     private String apellidoMaterno;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "tipo_documento_id")
     private TipoDocumento tipoDocumento;
 
@@ -63,16 +114,23 @@ public class Cita extends AudityEntity {
     private LocalDate fechaNacimiento;
 
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id")
     private Usuario usuario;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "tratamiento_id")
     private Tratamiento tratamiento;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "dentista_id")
     private Dentista dentista;
 
-}
\ No newline at end of file
+    @PrePersist
+    @PreUpdate
+    private void calcularHoraFin() {
+        if (hora != null && tratamiento != null && tratamiento.getDuracion() != null) {
+            horaFin = hora.plus(tratamiento.getDuracion());
+        }
+    }
+}
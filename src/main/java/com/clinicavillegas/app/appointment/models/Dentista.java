@@ -26,7 +26,7 @@ public class Dentista extends AudityEntity {
     @Column(length = 25, nullable = false)
     private String especializacion;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id")
     private Usuario usuario;
 }
@@ -1,5 +1,12 @@
 package com.clinicavillegas.app.appointment.models;
 
+import java.time.DayOfWeek;
+
 public enum Dia {
-    LUNES, MARTES, MIERCOLES, JUEVES, VIERNES, SABADO, DOMINGO
+    LUNES, MARTES, MIERCOLES, JUEVES, VIERNES, SABADO, DOMINGO;
+
+    // Ambos enums empiezan en lunes, por lo que el ordinal coincide
+    public static Dia de(DayOfWeek dayOfWeek) {
+        return values()[dayOfWeek.ordinal()];
+    }
 }
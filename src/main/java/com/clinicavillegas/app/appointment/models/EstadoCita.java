@@ -0,0 +1,38 @@
+package com.clinicavillegas.app.appointment.models;
+
+import java.util.Arrays;
+
+/**
+ * Estados de una cita. Se guarda el ordinal en una columna smallint y los índices parciales de V3 filtran
+ * por {@code estado = 0}, así que el orden de las constantes no debe cambiar.
+ * Solo una cita pendiente puede atenderse, cancelarse o reprogramarse (reprogramada sigue pendiente);
+ * atendida y cancelada son estados finales.
+ */
+public enum EstadoCita {
+    PENDIENTE("Pendiente"),
+    ATENDIDA("Atendida"),
+    CANCELADA("Cancelada");
+
+    private final String nombre;
+
+    EstadoCita(String nombre) {
+        this.nombre = nombre;
+    }
+
+    // Nombre que se muestra en las respuestas y reportes
+    public String getNombre() {
+        return nombre;
+    }
+
+    public boolean puedeCambiarA(EstadoCita destino) {
+        return this == PENDIENTE && destino != null;
+    }
+
+    // Acepta el nombre visible ("Pendiente") o el de la constante ("PENDIENTE")
+    public static EstadoCita de(String valor) {
+        return Arrays.stream(values())
+                .filter(estado -> estado.nombre.equalsIgnoreCase(valor) || estado.name().equalsIgnoreCase(valor))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Estado de cita desconocido: " + valor));
+    }
+}
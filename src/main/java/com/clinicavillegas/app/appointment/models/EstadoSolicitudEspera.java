@@ -0,0 +1,9 @@
+package com.clinicavillegas.app.appointment.models;
+
+/**
+ * Una solicitud espera hasta que se le ofrece un hueco liberado o el paciente la retira.
+ * Una oferta que vence sin reserva devuelve la solicitud a la espera; aceptada y cancelada son finales.
+ */
+public enum EstadoSolicitudEspera {
+    ESPERANDO, OFRECIDA, ACEPTADA, CANCELADA
+}
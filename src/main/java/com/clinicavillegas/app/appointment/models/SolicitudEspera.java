@@ -0,0 +1,75 @@
+package com.clinicavillegas.app.appointment.models;
+
+import com.clinicavillegas.app.audit.AudityEntity;
+import com.clinicavillegas.app.user.models.Usuario;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Paciente anotado en la lista de espera para un tratamiento, con un dentista concreto o con cualquiera
+ * de una especialización, entre dos fechas. Cuando se le ofrece un hueco se guardan aquí el horario y el bloqueo.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "lista_espera")
+@Table(name = "lista_espera")
+public class SolicitudEspera extends AudityEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "usuario_id")
+    private Usuario usuario;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tratamiento_id")
+    private Tratamiento tratamiento;
+
+    // Nulo cuando el paciente acepta a cualquier dentista de la especialización
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "dentista_id")
+    private Dentista dentista;
+
+    @Column(length = 25)
+    private String especializacion;
+
+    @Column(name = "fecha_desde", nullable = false)
+    private LocalDate fechaDesde;
+
+    @Column(name = "fecha_hasta", nullable = false)
+    private LocalDate fechaHasta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10, nullable = false)
+    private EstadoSolicitudEspera estado;
+
+    // Hueco ofrecido: el paciente lo reserva con el bloqueo antes de que venza
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "dentista_ofrecido_id")
+    private Dentista dentistaOfrecido;
+
+    @Column(name = "fecha_ofrecida")
+    private LocalDate fechaOfrecida;
+
+    @Column(name = "hora_ofrecida")
+    private LocalTime horaOfrecida;
+
+    @Column(name = "bloqueo_id", length = 36)
+    private String bloqueoId;
+
+    @Column(name = "oferta_vence")
+    private LocalDateTime ofertaVence;
+
+    // Cita cuya cancelación liberó el hueco; la oferta se vuelve a enviar con ella si el paciente no la aprovecha
+    @Column(name = "cita_liberada_id")
+    private Long citaLiberadaId;
+}
@@ -3,6 +3,7 @@ package com.clinicavillegas.app.appointment.repositories;
 import com.clinicavillegas.app.appointment.models.Cita;
 import com.clinicavillegas.app.appointment.models.Dentista;
 import com.clinicavillegas.app.user.models.Usuario;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -10,22 +11,146 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificationExecutor<Cita> {
+public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificationExecutor<Cita>, CitaRepositoryCustom {
 
+    @EntityGraph(Cita.GRAFO_LISTADO)
     List<Cita> findByUsuario(Usuario usuario);
 
+    @EntityGraph(Cita.GRAFO_LISTADO)
     List<Cita> findByDentista(Dentista dentista);
 
+    // Para enviar correos fuera de una transacción: trae al paciente, al dentista y el tratamiento en la misma consulta
+    @EntityGraph(Cita.GRAFO_NOTIFICACION)
+    Optional<Cita> findParaNotificacionById(Long id);
+
+    // Correos consolidados de operaciones masivas: todas las citas del paciente en una consulta
+    @EntityGraph(Cita.GRAFO_NOTIFICACION)
+    List<Cita> findParaNotificacionByIdInOrderByFechaAscHoraAsc(Collection<Long> ids);
+
     List<Cita> findByFecha(LocalDate fecha);
 
+    // Recordatorios: citas pendientes de un rango de días, solo lo necesario para programarlas (índice parcial (fecha, hora, id))
+    @Query("SELECT c.id AS id, c.fecha AS fecha, c.hora AS hora FROM citas c " +
+            "WHERE c.fecha BETWEEN :desde AND :hasta " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE")
+    List<CitaProgramable> findProgramablesEntre(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    interface CitaProgramable {
+        Long getId();
+
+        LocalDate getFecha();
+
+        LocalTime getHora();
+    }
+
+    // Agendas del día: una fila por dentista con citas pendientes
+    @Query("SELECT c.dentista.id AS dentistaId, MIN(c.id) AS primeraCitaId, COUNT(c) AS citas FROM citas c " +
+            "WHERE c.fecha = :fecha " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE " +
+            "GROUP BY c.dentista.id")
+    List<AgendaDelDia> findAgendasDelDia(@Param("fecha") LocalDate fecha);
+
+    interface AgendaDelDia {
+        Long getDentistaId();
+
+        Long getPrimeraCitaId();
+
+        Long getCitas();
+    }
+
+    // Contenido de la agenda de un dentista, con paciente y tratamiento de cada cita en la misma consulta
+    @EntityGraph(Cita.GRAFO_NOTIFICACION)
+    @Query("SELECT c FROM citas c " +
+            "WHERE c.dentista.id = :dentistaId AND c.fecha = :fecha " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE " +
+            "ORDER BY c.hora")
+    List<Cita> findAgendaDelDentista(@Param("dentistaId") Long dentistaId, @Param("fecha") LocalDate fecha);
+
+    // Comprueba en un solo viaje que el paciente y el dentista de una reserva existen, sin cargarlos
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM usuarios WHERE id = :usuarioId) AS usuario, " +
+            "EXISTS (SELECT 1 FROM dentistas WHERE id = :dentistaId) AS dentista", nativeQuery = true)
+    ExistenciaParticipantes existenParticipantes(@Param("usuarioId") Long usuarioId, @Param("dentistaId") Long dentistaId);
+
+    interface ExistenciaParticipantes {
+        boolean getUsuario();
+        boolean getDentista();
+    }
+
+    // Se resuelve con el índice parcial de citas pendientes (dentista_id, fecha, hora, hora_fin) sin cargar ninguna entidad
+    @Query("SELECT COUNT(c) > 0 FROM citas c " +
+            "WHERE c.dentista.id = :dentistaId " +
+            "AND c.fecha = :fecha " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE " +
+            "AND c.hora < :horaFin " +
+            "AND c.horaFin > :hora")
+    boolean existsSolapamiento(@Param("dentistaId") Long dentistaId,
+                               @Param("fecha") LocalDate fecha,
+                               @Param("hora") LocalTime hora,
+                               @Param("horaFin") LocalTime horaFin);
+
+    // Igual que existsSolapamiento, pero sin contar la propia cita al reprogramarla o actualizarla
+    @Query("SELECT COUNT(c) > 0 FROM citas c " +
+            "WHERE c.dentista.id = :dentistaId " +
+            "AND c.fecha = :fecha " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE " +
+            "AND c.hora < :horaFin " +
+            "AND c.horaFin > :hora " +
+            "AND c.id <> :citaId")
+    boolean existsSolapamientoConOtraCita(@Param("dentistaId") Long dentistaId,
+                                          @Param("fecha") LocalDate fecha,
+                                          @Param("hora") LocalTime hora,
+                                          @Param("horaFin") LocalTime horaFin,
+                                          @Param("citaId") Long citaId);
+
+    // La oferta de la lista de espera se aprovechó si el paciente reservó ese mismo horario, aunque luego lo cancelara
+    @Query("SELECT COUNT(c) > 0 FROM citas c " +
+            "WHERE c.usuario.id = :usuarioId " +
+            "AND c.dentista.id = :dentistaId " +
+            "AND c.fecha = :fecha " +
+            "AND c.hora = :hora")
+    boolean existsReservaDelPaciente(@Param("usuarioId") Long usuarioId,
+                                     @Param("dentistaId") Long dentistaId,
+                                     @Param("fecha") LocalDate fecha,
+                                     @Param("hora") LocalTime hora);
+
+    // Solo las columnas necesarias para armar los mapas de ocupación: id, dentista_id, fecha, hora, hora_fin
+    @Query("SELECT c.id, c.dentista.id, c.fecha, c.hora, c.horaFin FROM citas c " +
+            "WHERE c.dentista.id IN :dentistaIds " +
+            "AND c.fecha BETWEEN :fechaInicio AND :fechaFin " +
+            "AND c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE " +
+            "AND c.horaFin IS NOT NULL")
+    List<Object[]> findIntervalosPendientes(@Param("dentistaIds") Collection<Long> dentistaIds,
+                                            @Param("fechaInicio") LocalDate fechaInicio,
+                                            @Param("fechaFin") LocalDate fechaFin);
+
+    // Resumen para el ETag de la vista mensual: toda cita que cambia dentro del rango mueve la última modificación
+    // y toda cita pendiente que sale del rango (reprogramada a otro mes o a otro dentista) baja el total
+    @Query("SELECT SUM(CASE WHEN c.estado = com.clinicavillegas.app.appointment.models.EstadoCita.PENDIENTE THEN 1 ELSE 0 END) AS pendientes, " +
+            "MAX(c.fechaModificacion) AS ultimaModificacion FROM citas c " +
+            "WHERE c.dentista.id IN :dentistaIds " +
+            "AND c.fecha BETWEEN :fechaInicio AND :fechaFin")
+    ResumenCambios resumirCambios(@Param("dentistaIds") Collection<Long> dentistaIds,
+                                  @Param("fechaInicio") LocalDate fechaInicio,
+                                  @Param("fechaFin") LocalDate fechaFin);
+
+    interface ResumenCambios {
+        Long getPendientes();
+        LocalDateTime getUltimaModificacion();
+    }
+
+    // Las consultas nativas comparan el ordinal guardado de EstadoCita: 0 pendiente, 1 atendida, 2 cancelada
     @Query(value = "SELECT sexo, COUNT(*) AS total " +
             "FROM cita " +
             "WHERE fecha BETWEEN :startDate AND :endDate " +
-            "AND estado = 'Pendiente' " +
-            "OR estado = 'Atendida' " +
+            "AND estado = 0 " +
+            "OR estado = 1 " +
             "GROUP BY sexo " +
             "ORDER BY sexo", nativeQuery = true)
     List<Object[]> countCitasByDateAndSexo(@Param("startDate") LocalDate startDate,
@@ -36,8 +161,8 @@ public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificat
             "JOIN tratamiento t ON c.tratamiento_id = t.id " +
             "JOIN tipo_tratamiento tt ON t.tipo_tratamiento_id = tt.id " +
             "WHERE fecha BETWEEN :startDate AND :endDate " +
-            "AND c.estado = 'Pendiente' " +
-            "OR c.estado = 'Atendida' " +
+            "AND c.estado = 0 " +
+            "OR c.estado = 1 " +
             "GROUP BY tt.nombre " +
             "ORDER BY tipo_tratamiento", nativeQuery = true)
     List<Object[]> countCitasByDateAndTipoTratamiento(@Param("startDate") LocalDate startDate,
@@ -46,7 +171,7 @@ public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificat
     @Query(value = "SELECT fecha AS fecha_cita, COUNT(*) AS total " +
             "FROM cita " +
             "WHERE fecha BETWEEN :startDate AND :endDate " +
-            "AND estado = 'Cancelada' " +
+            "AND estado = 2 " +
             "GROUP BY fecha " +
             "ORDER BY fecha;", nativeQuery = true)
     List<Object[]> countCitasCanceladasByFecha(@Param("startDate") LocalDate startDate,
@@ -64,7 +189,7 @@ public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificat
             "AND d.estado = 1 " +
             "AND c.fecha BETWEEN :startDate AND :endDate " +
             "GROUP BY d.id, d.n_colegiatura", nativeQuery = true)
-    List<Object[]> countCitasAtendidasPorDentista(@Param("estado") String estado,
+    List<Object[]> countCitasAtendidasPorDentista(@Param("estado") int estado,
                                                   @Param("startDate") LocalDate startDate,
                                                   @Param("endDate") LocalDate endDate);
 
@@ -0,0 +1,45 @@
+package com.clinicavillegas.app.appointment.repositories;
+
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.models.Cita;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Búsquedas por Specification con un grafo de entidad elegido por quien llama (ver las constantes GRAFO_* de Cita),
+ * para que cada caso de uso cargue sus asociaciones en la misma consulta.
+ */
+public interface CitaRepositoryCustom {
+
+    List<Cita> findAll(Specification<Cita> spec, String grafo);
+
+    Page<Cita> findAll(Specification<Cita> spec, Pageable pageable, String grafo);
+
+    /**
+     * Arma las respuestas de listado directamente desde las columnas que usa CitaResponse, sin cargar
+     * entidades Cita, Usuario ni Dentista en el contexto de persistencia. Acepta los mismos filtros de CitaSpecification.
+     */
+    List<CitaResponse> findResumenes(Specification<Cita> spec);
+
+    Page<CitaResponse> findResumenes(Specification<Cita> spec, Pageable pageable);
+
+    // Las primeras {@code limite} filas en el orden indicado, sin consulta de conteo
+    List<CitaResponse> findResumenes(Specification<Cita> spec, Sort sort, int limite);
+
+    /**
+     * Recorre las respuestas fila por fila con un cursor del servidor. Debe consumirse dentro de una transacción
+     * y cerrarse al terminar.
+     */
+    Stream<CitaResponse> streamResumenes(Specification<Cita> spec, Sort sort);
+
+    /**
+     * Inserta citas nuevas en un solo lote JDBC y les asigna el id generado. Con IDENTITY Hibernate no agrupa
+     * los INSERT, así que las series de citas pasan por aquí. Las citas no quedan en el contexto de persistencia.
+     */
+    void insertarEnLote(List<Cita> citas);
+}
@@ -0,0 +1,317 @@
+package com.clinicavillegas.app.appointment.repositories;
+
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.dto.response.DentistaResponse;
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.user.models.Sexo;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CitaRepositoryCustomImpl implements CitaRepositoryCustom {
+
+    private static final String HINT_GRAFO = "jakarta.persistence.fetchgraph";
+    private static final String JPQL_TIPOS_DOCUMENTO = "SELECT t FROM tipos_documento t WHERE t.id IN :ids";
+    private static final String JPQL_TRATAMIENTOS = "SELECT t FROM tratamientos t LEFT JOIN FETCH t.tipoTratamiento WHERE t.id IN :ids";
+    private static final String SQL_INSERTAR = "INSERT INTO citas (estado, observaciones, monto, fecha, hora, hora_fin, nombres, " +
+            "apellido_paterno, apellido_materno, tipo_documento_id, numero_identidad, sexo, fecha_nacimiento, usuario_id, " +
+            "tratamiento_id, dentista_id, fecha_creacion, fecha_modificacion) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Filas que el driver trae por viaje al recorrer con cursor del servidor
+    @Value("${app.citas.exportacion.fetch-size:500}")
+    private int tamanioLoteExportacion;
+
+    @Override
+    public List<Cita> findAll(Specification<Cita> spec, String grafo) {
+        return consulta(spec, Sort.unsorted(), grafo).getResultList();
+    }
+
+    @Override
+    public Page<Cita> findAll(Specification<Cita> spec, Pageable pageable, String grafo) {
+        TypedQuery<Cita> query = consulta(spec, pageable.getSort(), grafo);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        // El conteo solo se ejecuta si la página no alcanza a decir cuántas citas hay en total
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> contar(spec));
+    }
+
+    @Override
+    public List<CitaResponse> findResumenes(Specification<Cita> spec) {
+        return aRespuestas(consultaResumen(spec, Sort.unsorted()).getResultList());
+    }
+
+    @Override
+    public Page<CitaResponse> findResumenes(Specification<Cita> spec, Pageable pageable) {
+        TypedQuery<Tuple> query = consultaResumen(spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(aRespuestas(query.getResultList()), pageable, () -> contar(spec));
+    }
+
+    @Override
+    public List<CitaResponse> findResumenes(Specification<Cita> spec, Sort sort, int limite) {
+        return aRespuestas(consultaResumen(spec, sort).setMaxResults(limite).getResultList());
+    }
+
+    @Override
+    public Stream<CitaResponse> streamResumenes(Specification<Cita> spec, Sort sort) {
+        // En un recorrido largo los catálogos se piden a medida que aparecen ids nuevos, una vez cada uno
+        Map<Long, TipoDocumento> tiposDocumento = new HashMap<>();
+        Map<Long, Tratamiento> tratamientos = new HashMap<>();
+        Function<Long, TipoDocumento> tipoDocumento = id -> id == null ? null : tiposDocumento.computeIfAbsent(id,
+                clave -> catalogo(JPQL_TIPOS_DOCUMENTO, TipoDocumento.class, List.of(clave), TipoDocumento::getId).get(clave));
+        Function<Long, Tratamiento> tratamiento = id -> id == null ? null : tratamientos.computeIfAbsent(id,
+                clave -> catalogo(JPQL_TRATAMIENTOS, Tratamiento.class, List.of(clave), Tratamiento::getId).get(clave));
+        return consultaResumen(spec, sort)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, tamanioLoteExportacion)
+                .getResultStream()
+                .map(fila -> aRespuesta(fila, tipoDocumento, tratamiento));
+    }
+
+    @Override
+    public void insertarEnLote(List<Cita> citas) {
+        if (citas.isEmpty()) {
+            return;
+        }
+        // Lo pendiente del contexto sale antes, para que el lote vea el mismo estado que vería Hibernate
+        entityManager.flush();
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        entityManager.unwrap(Session.class).doWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(SQL_INSERTAR, new String[]{"id"})) {
+                for (Cita cita : citas) {
+                    if (cita.getTratamiento() != null && cita.getTratamiento().getDuracion() != null) {
+                        cita.setHoraFin(cita.getHora().plus(cita.getTratamiento().getDuracion()));
+                    }
+                    sentencia.setShort(1, (short) cita.getEstado().ordinal());
+                    sentencia.setString(2, cita.getObservaciones());
+                    sentencia.setBigDecimal(3, cita.getMonto());
+                    sentencia.setObject(4, cita.getFecha());
+                    sentencia.setObject(5, cita.getHora());
+                    sentencia.setObject(6, cita.getHoraFin());
+                    sentencia.setString(7, cita.getNombres());
+                    sentencia.setString(8, cita.getApellidoPaterno());
+                    sentencia.setString(9, cita.getApellidoMaterno());
+                    sentencia.setObject(10, idDe(cita.getTipoDocumento(), TipoDocumento::getId), Types.BIGINT);
+                    sentencia.setString(11, cita.getNumeroIdentidad());
+                    sentencia.setString(12, cita.getSexo().name());
+                    sentencia.setObject(13, cita.getFechaNacimiento());
+                    sentencia.setObject(14, idDe(cita.getUsuario(), Usuario::getId), Types.BIGINT);
+                    sentencia.setObject(15, idDe(cita.getTratamiento(), Tratamiento::getId), Types.BIGINT);
+                    sentencia.setObject(16, idDe(cita.getDentista(), Dentista::getId), Types.BIGINT);
+                    sentencia.setTimestamp(17, ahora);
+                    sentencia.setTimestamp(18, ahora);
+                    sentencia.addBatch();
+                }
+                sentencia.executeBatch();
+                try (ResultSet ids = sentencia.getGeneratedKeys()) {
+                    for (Cita cita : citas) {
+                        ids.next();
+                        cita.setId(ids.getLong(1));
+                    }
+                }
+            }
+        });
+    }
+
+    private static <T> Long idDe(T entidad, Function<T, Long> id) {
+        return entidad != null ? id.apply(entidad) : null;
+    }
+
+    private TypedQuery<Tuple> consultaResumen(Specification<Cita> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Cita> root = query.from(Cita.class);
+        Join<Cita, Usuario> paciente = root.join("usuario", JoinType.LEFT);
+        Join<Cita, Dentista> dentista = root.join("dentista", JoinType.LEFT);
+        Join<Dentista, Usuario> usuarioDentista = dentista.join("usuario", JoinType.LEFT);
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("fecha").alias("fecha"),
+                root.get("hora").alias("hora"),
+                root.get("monto").alias("monto"),
+                root.get("nombres").alias("nombres"),
+                root.get("apellidoPaterno").alias("apellidoPaterno"),
+                root.get("apellidoMaterno").alias("apellidoMaterno"),
+                root.get("tipoDocumento").get("id").alias("tipoDocumentoId"),
+                root.get("numeroIdentidad").alias("numeroIdentidad"),
+                root.get("sexo").alias("sexo"),
+                root.get("fechaNacimiento").alias("fechaNacimiento"),
+                root.get("estado").alias("estado"),
+                root.get("observaciones").alias("observaciones"),
+                root.get("tratamiento").get("id").alias("tratamientoId"),
+                paciente.get("id").alias("usuarioId"),
+                paciente.get("telefono").alias("telefono"),
+                dentista.get("id").alias("dentistaId"),
+                dentista.get("nColegiatura").alias("nColegiatura"),
+                dentista.get("especializacion").alias("especializacion"),
+                dentista.get("estado").alias("dentistaEstado"),
+                usuarioDentista.get("nombres").alias("dentistaNombres"),
+                usuarioDentista.get("apellidoPaterno").alias("dentistaApellidoPaterno"),
+                usuarioDentista.get("apellidoMaterno").alias("dentistaApellidoMaterno"),
+                usuarioDentista.get("tipoDocumento").get("id").alias("dentistaTipoDocumentoId"),
+                usuarioDentista.get("numeroIdentidad").alias("dentistaNumeroIdentidad"),
+                usuarioDentista.get("sexo").alias("dentistaSexo"),
+                usuarioDentista.get("fechaNacimiento").alias("dentistaFechaNacimiento"),
+                usuarioDentista.get("telefono").alias("dentistaTelefono")
+        );
+        Predicate predicado = spec.toPredicate(root, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private List<CitaResponse> aRespuestas(List<Tuple> filas) {
+        if (filas.isEmpty()) {
+            return List.of();
+        }
+        // Los tipos de documento y tratamientos son catálogos chicos: se cargan una vez por página, de solo lectura
+        Set<Long> tipoDocumentoIds = new HashSet<>();
+        Set<Long> tratamientoIds = new HashSet<>();
+        for (Tuple fila : filas) {
+            tipoDocumentoIds.add(fila.get("tipoDocumentoId", Long.class));
+            tipoDocumentoIds.add(fila.get("dentistaTipoDocumentoId", Long.class));
+            tratamientoIds.add(fila.get("tratamientoId", Long.class));
+        }
+        Map<Long, TipoDocumento> tiposDocumento = catalogo(
+                JPQL_TIPOS_DOCUMENTO, TipoDocumento.class, tipoDocumentoIds, TipoDocumento::getId);
+        Map<Long, Tratamiento> tratamientos = catalogo(
+                JPQL_TRATAMIENTOS, Tratamiento.class, tratamientoIds, Tratamiento::getId);
+        return filas.stream()
+                .map(fila -> aRespuesta(fila, tiposDocumento::get, tratamientos::get))
+                .toList();
+    }
+
+    private <T> Map<Long, T> catalogo(String jpql, Class<T> tipo, Collection<Long> ids, Function<T, Long> id) {
+        List<Long> existentes = ids.stream().filter(Objects::nonNull).toList();
+        if (existentes.isEmpty()) {
+            return Map.of();
+        }
+        return entityManager.createQuery(jpql, tipo)
+                .setParameter("ids", existentes)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    private static CitaResponse aRespuesta(Tuple fila, Function<Long, TipoDocumento> tiposDocumento, Function<Long, Tratamiento> tratamientos) {
+        Long dentistaId = fila.get("dentistaId", Long.class);
+        DentistaResponse dentista = null;
+        if (dentistaId != null) {
+            Sexo sexo = fila.get("dentistaSexo", Sexo.class);
+            LocalDate fechaNacimiento = fila.get("dentistaFechaNacimiento", LocalDate.class);
+            dentista = DentistaResponse.builder()
+                    .id(dentistaId)
+                    .nombres(fila.get("dentistaNombres", String.class))
+                    .apellidoPaterno(fila.get("dentistaApellidoPaterno", String.class))
+                    .apellidoMaterno(fila.get("dentistaApellidoMaterno", String.class))
+                    .especializacion(fila.get("especializacion", String.class))
+                    .nColegiatura(fila.get("nColegiatura", String.class))
+                    .estado(Boolean.TRUE.equals(fila.get("dentistaEstado", Boolean.class)))
+                    .tipoDocumento(tiposDocumento.apply(fila.get("dentistaTipoDocumentoId", Long.class)))
+                    .numeroIdentidad(fila.get("dentistaNumeroIdentidad", String.class))
+                    .sexo(sexo != null ? sexo.toString() : null)
+                    .fechaNacimiento(fechaNacimiento != null ? fechaNacimiento.toString() : null)
+                    .telefono(fila.get("dentistaTelefono", String.class))
+                    .build();
+        }
+        Sexo sexo = fila.get("sexo", Sexo.class);
+        return CitaResponse.builder()
+                .id(fila.get("id", Long.class))
+                .fecha(fila.get("fecha", LocalDate.class))
+                .hora(fila.get("hora", LocalTime.class))
+                .monto(fila.get("monto", BigDecimal.class))
+                .nombres(fila.get("nombres", String.class))
+                .apellidoPaterno(fila.get("apellidoPaterno", String.class))
+                .apellidoMaterno(fila.get("apellidoMaterno", String.class))
+                .tipoDocumento(tiposDocumento.apply(fila.get("tipoDocumentoId", Long.class)))
+                .numeroIdentidad(fila.get("numeroIdentidad", String.class))
+                .telefono(fila.get("telefono", String.class))
+                .sexo(sexo != null ? sexo.toString() : null)
+                .estado(fila.get("estado", EstadoCita.class).getNombre())
+                .observaciones(fila.get("observaciones", String.class))
+                .fechaNacimiento(fila.get("fechaNacimiento", LocalDate.class))
+                .dentista(dentista)
+                .usuarioId(fila.get("usuarioId", Long.class))
+                .tratamiento(tratamientos.apply(fila.get("tratamientoId", Long.class)))
+                .build();
+    }
+
+    private TypedQuery<Cita> consulta(Specification<Cita> spec, Sort sort, String grafo) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Cita> query = cb.createQuery(Cita.class);
+        Root<Cita> root = query.from(Cita.class);
+        Predicate predicado = spec.toPredicate(root, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query)
+                .setHint(HINT_GRAFO, entityManager.getEntityGraph(grafo));
+    }
+
+    private long contar(Specification<Cita> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Cita> root = query.from(Cita.class);
+        Predicate predicado = spec.toPredicate(root, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -2,9 +2,14 @@ package com.clinicavillegas.app.appointment.repositories;
 
 import com.clinicavillegas.app.appointment.models.Dentista;
 import com.clinicavillegas.app.user.models.Usuario;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,8 +17,28 @@ import java.util.Optional;
 
 @Repository
 public interface DentistaRepository extends JpaRepository<Dentista, Long>, JpaSpecificationExecutor<Dentista> {
+
+    // Los listados pasan por DentistaMapper, que lee el usuario y su tipo de documento
+    @Override
+    @EntityGraph(attributePaths = {"usuario", "usuario.tipoDocumento"})
+    List<Dentista> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"usuario", "usuario.tipoDocumento"})
+    List<Dentista> findAll(Specification<Dentista> spec);
+
+    @Override
+    @EntityGraph(attributePaths = {"usuario", "usuario.tipoDocumento"})
+    Page<Dentista> findAll(Specification<Dentista> spec, Pageable pageable);
+
     Optional<Dentista> findByUsuario(Usuario usuario);
 
     @Query("SELECT DISTINCT d.especializacion FROM dentistas d")
     List<String> findEspecializaciones();
+
+    @Query("SELECT d.id FROM dentistas d WHERE d.estado = true ORDER BY d.id")
+    List<Long> findIdsActivos();
+
+    @Query("SELECT d.id FROM dentistas d WHERE d.estado = true AND d.especializacion = :especializacion ORDER BY d.id")
+    List<Long> findIdsActivosPorEspecializacion(@Param("especializacion") String especializacion);
 }
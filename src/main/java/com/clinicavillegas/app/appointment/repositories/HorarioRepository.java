@@ -4,11 +4,27 @@ import com.clinicavillegas.app.appointment.models.Dentista;
 import com.clinicavillegas.app.appointment.models.Horario;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface HorarioRepository extends JpaRepository<Horario, Long>, JpaSpecificationExecutor<Horario> {
     List<Horario> findByDentista(Dentista dentista);
+
+    List<Horario> findByDentistaIdIn(Collection<Long> dentistaIds);
+
+    // Los horarios se eliminan físicamente, por eso el total acompaña a la última modificación
+    @Query("SELECT COUNT(h) AS total, MAX(h.fechaModificacion) AS ultimaModificacion FROM horarios h " +
+            "WHERE h.dentista.id IN :dentistaIds")
+    ResumenCambios resumirCambios(@Param("dentistaIds") Collection<Long> dentistaIds);
+
+    interface ResumenCambios {
+        Long getTotal();
+        LocalDateTime getUltimaModificacion();
+    }
 }
@@ -0,0 +1,74 @@
+package com.clinicavillegas.app.appointment.repositories;
+
+import com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SolicitudEsperaRepository extends JpaRepository<SolicitudEspera, Long> {
+
+    // Solo lo que necesita el índice en memoria; se usa una vez al arrancar con el índice parcial de V7
+    @Query("SELECT s.id AS id, s.usuario.id AS usuarioId, s.dentista.id AS dentistaId, s.especializacion AS especializacion, " +
+            "s.tratamiento.duracion AS duracion, s.fechaDesde AS fechaDesde, s.fechaHasta AS fechaHasta " +
+            "FROM lista_espera s " +
+            "WHERE s.estado = com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera.ESPERANDO " +
+            "AND s.fechaHasta >= :hoy")
+    List<SolicitudIndexable> findVigentes(@Param("hoy") LocalDate hoy);
+
+    interface SolicitudIndexable {
+        Long getId();
+        Long getUsuarioId();
+        Long getDentistaId();
+        String getEspecializacion();
+        Duration getDuracion();
+        LocalDate getFechaDesde();
+        LocalDate getFechaHasta();
+    }
+
+    // Sincronización del índice entre instancias: lo que cambió desde la última pasada, con el índice de V13
+    @Query("SELECT s.id AS id, s.usuario.id AS usuarioId, s.dentista.id AS dentistaId, s.especializacion AS especializacion, " +
+            "s.tratamiento.duracion AS duracion, s.fechaDesde AS fechaDesde, s.fechaHasta AS fechaHasta, s.estado AS estado " +
+            "FROM lista_espera s " +
+            "WHERE s.fechaModificacion >= :desde")
+    List<SolicitudModificada> findModificadasDesde(@Param("desde") LocalDateTime desde);
+
+    interface SolicitudModificada extends SolicitudIndexable {
+        EstadoSolicitudEspera getEstado();
+    }
+
+    @EntityGraph(attributePaths = {"tratamiento"})
+    List<SolicitudEspera> findByUsuarioIdAndEstadoNotOrderByFechaDesdeAsc(Long usuarioId, EstadoSolicitudEspera estado);
+
+    // Ofertas vencidas, con el índice parcial de V12
+    @EntityGraph(attributePaths = {"tratamiento"})
+    List<SolicitudEspera> findByEstadoAndOfertaVenceBefore(EstadoSolicitudEspera estado, LocalDateTime ahora);
+
+    // Cierran la oferta solo si sigue abierta: con varias instancias barriendo, una sola la procesa
+    @Modifying
+    @Query("UPDATE lista_espera s SET s.estado = com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera.ACEPTADA, " +
+            "s.bloqueoId = null, s.fechaModificacion = :ahora " +
+            "WHERE s.id = :id AND s.estado = com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera.OFRECIDA")
+    int aceptarOferta(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("UPDATE lista_espera s SET s.estado = com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera.ESPERANDO, " +
+            "s.dentistaOfrecido = null, s.fechaOfrecida = null, s.horaOfrecida = null, s.bloqueoId = null, " +
+            "s.ofertaVence = null, s.citaLiberadaId = null, s.fechaModificacion = :ahora " +
+            "WHERE s.id = :id AND s.estado = com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera.OFRECIDA")
+    int retirarOferta(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    // Correo de oferta: paciente, tratamiento y dentista ofrecido en una sola consulta
+    @EntityGraph(attributePaths = {"usuario", "tratamiento", "dentistaOfrecido", "dentistaOfrecido.usuario"})
+    Optional<SolicitudEspera> findParaNotificacionById(Long id);
+}
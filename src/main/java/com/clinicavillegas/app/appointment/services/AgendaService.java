@@ -0,0 +1,7 @@
+package com.clinicavillegas.app.appointment.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface AgendaService {
+    SseEmitter suscribir(Long dentistaId, String ultimoEventoId);
+}
@@ -1,9 +1,17 @@
 package com.clinicavillegas.app.appointment.services;
 
+import com.clinicavillegas.app.appointment.dto.request.BloqueoHorarioRequest;
+import com.clinicavillegas.app.appointment.dto.request.CancelacionMasivaRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaReprogramarRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.ReprogramacionMasivaRequest;
+import com.clinicavillegas.app.appointment.dto.request.SerieCitasRequest;
 import com.clinicavillegas.app.appointment.dto.request.ValidacionCitaRequest;
+import com.clinicavillegas.app.appointment.dto.response.BloqueoHorarioResponse;
 import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.dto.response.OperacionMasivaResponse;
+import com.clinicavillegas.app.appointment.dto.response.PaginaCitasResponse;
+import com.clinicavillegas.app.appointment.dto.response.SerieCitasResponse;
 import com.clinicavillegas.app.appointment.models.Cita;
 
 import org.springframework.data.domain.Page;    // <-- Nueva Importación
@@ -11,6 +19,7 @@ import org.springframework.data.domain.Pageable; // <-- Nueva Importación
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface CitaService {
 
@@ -22,13 +31,34 @@ public interface CitaService {
     Page<CitaResponse> obtenerCitasPaginadas(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
                                              LocalDate fechaFin, Long tratamientoId, String sexo, Pageable pageable);
 
+    // Paginación por cursor: cada página cuesta lo mismo sin importar qué tan lejos esté del inicio
+    PaginaCitasResponse obtenerCitasPorCursor(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
+                                              LocalDate fechaFin, Long tratamientoId, String sexo,
+                                              String cursor, int tamanio, boolean conTotal);
+
+    // Exportación completa sin cargar la lista en memoria ni pasar por la caché: entrega las citas una por una
+    void recorrerCitas(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
+                       LocalDate fechaFin, Long tratamientoId, String sexo, Consumer<CitaResponse> consumidor);
+
     List<Cita> obtenerCitasPorUsuario(Long usuarioId);
     List<Cita> obtenerCitasPorDentista(Long dentistaId);
 
     void agregarCita(CitaRequest citaRequest);
+
+    // Serie de citas recurrentes (por ejemplo cada 4 semanas durante un tratamiento de ortodoncia)
+    SerieCitasResponse agregarSerie(SerieCitasRequest request);
+
     void actualizarCita(Long id, CitaRequest citaRequest);
     void atenderCita(Long id);
     void eliminarCita(Long id, String observaciones);
     boolean validarDisponibilidad(ValidacionCitaRequest request);
     void reprogramarCita(Long id, CitaReprogramarRequest request);
+
+    // Bloqueo temporal del horario mientras el paciente completa la reserva
+    BloqueoHorarioResponse bloquearHorario(BloqueoHorarioRequest request);
+    void liberarBloqueo(String id);
+
+    // Operaciones sobre todas las citas pendientes de un dentista en un rango, en una sola transacción
+    OperacionMasivaResponse cancelarCitasDeDentista(Long dentistaId, CancelacionMasivaRequest request);
+    OperacionMasivaResponse reprogramarCitasDeDentista(Long dentistaId, ReprogramacionMasivaRequest request);
 }
\ No newline at end of file
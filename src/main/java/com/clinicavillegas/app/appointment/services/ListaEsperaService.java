@@ -0,0 +1,12 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.dto.request.ListaEsperaRequest;
+import com.clinicavillegas.app.appointment.dto.response.ListaEsperaResponse;
+
+import java.util.List;
+
+public interface ListaEsperaService {
+    ListaEsperaResponse registrar(ListaEsperaRequest request);
+    List<ListaEsperaResponse> obtenerPorUsuario(Long usuarioId);
+    void cancelar(Long id);
+}
@@ -0,0 +1,15 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.dto.response.DisponibilidadMensualResponse;
+import com.clinicavillegas.app.appointment.dto.response.HuecoDisponibleResponse;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Optional;
+
+public interface OcupacionService {
+    Optional<HuecoDisponibleResponse> buscarProximoHueco(Long tratamientoId, Long dentistaId, LocalDate fechaInicio, LocalDate fechaFin);
+    DisponibilidadMensualResponse obtenerDisponibilidadMensual(Long tratamientoId, Long dentistaId, YearMonth mes);
+    String selloDisponibilidadMensual(Long tratamientoId, Long dentistaId, YearMonth mes);
+    void invalidarDentista(Long dentistaId);
+}
@@ -0,0 +1,88 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializa las reservas que compiten por la agenda de un mismo dentista en un mismo día.
+ * Cada par (dentistaId, fecha) cae en una de N franjas de candados, así que las reservas de otros
+ * dentistas u otros días no esperan (salvo una colisión de hash ocasional). Si hay una transacción
+ * activa el candado se suelta al terminarla, para que la siguiente reserva ya vea la cita guardada.
+ * Solo protege dentro de una instancia; entre instancias la restricción de exclusión de la base de datos
+ * es la que impide el doble agendamiento.
+ */
+@Component
+public class AdmisionReservas {
+
+    private final ReentrantLock[] franjas;
+
+    public AdmisionReservas(@Value("${app.citas.admision.franjas:1024}") int cantidadFranjas) {
+        franjas = new ReentrantLock[Math.max(1, cantidadFranjas)];
+        for (int i = 0; i < franjas.length; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    public void ejecutar(Long dentistaId, LocalDate fecha, Runnable reserva) {
+        ejecutar(franjas[indiceDe(dentistaId, fecha)], reserva);
+    }
+
+    public <T> T ejecutarConResultado(Long dentistaId, LocalDate fecha, Supplier<T> reserva) {
+        List<T> resultado = new ArrayList<>(1);
+        ejecutar(franjas[indiceDe(dentistaId, fecha)], () -> resultado.add(reserva.get()));
+        return resultado.get(0);
+    }
+
+    /**
+     * Igual que {@link #ejecutar(Long, LocalDate, Runnable)} pero para varios días del mismo dentista.
+     * Las franjas se toman en orden de índice, así dos operaciones de varios días nunca se esperan en cruz.
+     */
+    public void ejecutar(Long dentistaId, Collection<LocalDate> fechas, Runnable reserva) {
+        int[] indices = fechas.stream()
+                .mapToInt(fecha -> indiceDe(dentistaId, fecha))
+                .distinct()
+                .sorted()
+                .toArray();
+        Runnable encadenada = reserva;
+        for (int i = indices.length - 1; i >= 0; i--) {
+            ReentrantLock candado = franjas[indices[i]];
+            Runnable siguiente = encadenada;
+            encadenada = () -> ejecutar(candado, siguiente);
+        }
+        encadenada.run();
+    }
+
+    private void ejecutar(ReentrantLock candado, Runnable reserva) {
+        candado.lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    candado.unlock();
+                }
+            });
+            reserva.run();
+            return;
+        }
+        try {
+            reserva.run();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private int indiceDe(Long dentistaId, LocalDate fecha) {
+        int hash = 31 * Objects.hashCode(dentistaId) + Objects.hashCode(fecha);
+        return Math.floorMod(hash ^ (hash >>> 16), franjas.length);
+    }
+}
@@ -0,0 +1,177 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bloqueos temporales de horario mientras el paciente llena el formulario de reserva, o mientras decide
+ * si acepta un hueco que le ofreció la lista de espera (con una duración propia, más larga).
+ * Viven solo en memoria: se guardan por dentista y día para comprobar cruces, y su vencimiento
+ * se lleva en una rueda de tiempo (una ranura por segundo) que {@link #avanzar()} recorre cada segundo,
+ * así que vencer un bloqueo cuesta lo mismo sin importar cuántos haya.
+ * Como {@link AdmisionReservas}, solo aplica dentro de una instancia; al reservar, la base de datos
+ * sigue siendo la que decide.
+ */
+@Component
+public class BloqueosHorario {
+
+    private final Duration duracion;
+    private final int maximoPorUsuario;
+    private final List<Set<String>> ranuras;
+
+    private final Map<String, Bloqueo> bloqueos = new HashMap<>();
+    private final Map<ClaveDia, List<Bloqueo>> porDia = new HashMap<>();
+    private final Map<Long, Deque<String>> porUsuario = new HashMap<>();
+    private long tick;
+
+    public BloqueosHorario(@Value("${app.citas.bloqueos.minutos:10}") long minutos,
+                           @Value("${app.citas.bloqueos.max-por-usuario:3}") int maximoPorUsuario,
+                           @Value("${app.citas.bloqueos.ranuras:1024}") int cantidadRanuras) {
+        this.duracion = Duration.ofMinutes(minutos);
+        this.maximoPorUsuario = Math.max(1, maximoPorUsuario);
+        this.ranuras = new ArrayList<>(Math.max(1, cantidadRanuras));
+        for (int i = 0; i < Math.max(1, cantidadRanuras); i++) {
+            ranuras.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Bloquea el intervalo para el paciente. Un nuevo bloqueo del mismo paciente que se cruza con uno suyo lo reemplaza,
+     * y si ya tiene el máximo permitido se suelta el más antiguo.
+     */
+    public Bloqueo bloquear(Long dentistaId, Long usuarioId, LocalDate fecha, LocalTime hora, LocalTime horaFin) {
+        return bloquear(dentistaId, usuarioId, fecha, hora, horaFin, duracion);
+    }
+
+    public synchronized Bloqueo bloquear(Long dentistaId, Long usuarioId, LocalDate fecha, LocalTime hora, LocalTime horaFin,
+                                         Duration duracion) {
+        for (Bloqueo existente : List.copyOf(porDia.getOrDefault(new ClaveDia(dentistaId, fecha), List.of()))) {
+            if (existente.seCruzaCon(hora, horaFin)) {
+                if (!existente.usuarioId().equals(usuarioId)) {
+                    throw new HorarioNoDisponibleException(dentistaId, fecha, hora);
+                }
+                quitar(existente.id());
+            }
+        }
+        Deque<String> delUsuario = porUsuario.computeIfAbsent(usuarioId, id -> new ArrayDeque<>());
+        while (delUsuario.size() >= maximoPorUsuario) {
+            quitar(delUsuario.peekFirst());
+        }
+        long segundos = duracion.toSeconds();
+        Bloqueo bloqueo = new Bloqueo(UUID.randomUUID().toString(), dentistaId, usuarioId, fecha, hora, horaFin,
+                tick + segundos, LocalDateTime.now().plusSeconds(segundos));
+        bloqueos.put(bloqueo.id(), bloqueo);
+        porDia.computeIfAbsent(new ClaveDia(dentistaId, fecha), clave -> new ArrayList<>()).add(bloqueo);
+        porUsuario.computeIfAbsent(usuarioId, id -> new ArrayDeque<>()).addLast(bloqueo.id());
+        ranuras.get(ranura(bloqueo.venceEnTick())).add(bloqueo.id());
+        return bloqueo;
+    }
+
+    // Cruce con un bloqueo vigente de otro; el bloqueo indicado (el del propio paciente) no cuenta
+    public synchronized boolean haySolapamiento(Long dentistaId, LocalDate fecha, LocalTime hora, LocalTime horaFin, String exceptoId) {
+        for (Bloqueo bloqueo : porDia.getOrDefault(new ClaveDia(dentistaId, fecha), List.of())) {
+            if (!bloqueo.id().equals(exceptoId) && bloqueo.seCruzaCon(hora, horaFin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized Optional<Bloqueo> obtener(String id) {
+        return Optional.ofNullable(id).map(bloqueos::get);
+    }
+
+    public synchronized void liberar(String id) {
+        if (id != null) {
+            quitar(id);
+        }
+    }
+
+    // El bloqueo se suelta cuando la cita ya quedó guardada; si la transacción falla, el paciente lo conserva
+    public void liberarAlConfirmar(String id) {
+        if (id == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    liberar(id);
+                }
+            });
+            return;
+        }
+        liberar(id);
+    }
+
+    public synchronized int activos() {
+        return bloqueos.size();
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public synchronized void avanzar() {
+        tick++;
+        Set<String> ranura = ranuras.get(ranura(tick));
+        // Los bloqueos que caen en esta ranura pero vencen en otra vuelta de la rueda se quedan
+        for (String id : List.copyOf(ranura)) {
+            Bloqueo bloqueo = bloqueos.get(id);
+            if (bloqueo == null || bloqueo.venceEnTick() <= tick) {
+                quitar(id);
+                ranura.remove(id);
+            }
+        }
+    }
+
+    private void quitar(String id) {
+        Bloqueo bloqueo = bloqueos.remove(id);
+        if (bloqueo == null) {
+            return;
+        }
+        ranuras.get(ranura(bloqueo.venceEnTick())).remove(id);
+        ClaveDia clave = new ClaveDia(bloqueo.dentistaId(), bloqueo.fecha());
+        List<Bloqueo> delDia = porDia.get(clave);
+        delDia.remove(bloqueo);
+        if (delDia.isEmpty()) {
+            porDia.remove(clave);
+        }
+        Deque<String> delUsuario = porUsuario.get(bloqueo.usuarioId());
+        delUsuario.remove(id);
+        if (delUsuario.isEmpty()) {
+            porUsuario.remove(bloqueo.usuarioId());
+        }
+    }
+
+    private int ranura(long tickDeVencimiento) {
+        return (int) Math.floorMod(tickDeVencimiento, (long) ranuras.size());
+    }
+
+    public record Bloqueo(String id, Long dentistaId, Long usuarioId, LocalDate fecha, LocalTime hora, LocalTime horaFin,
+                          long venceEnTick, LocalDateTime expira) {
+
+        boolean seCruzaCon(LocalTime otraHora, LocalTime otraHoraFin) {
+            return hora.isBefore(otraHoraFin) && horaFin.isAfter(otraHora);
+        }
+    }
+
+    private record ClaveDia(Long dentistaId, LocalDate fecha) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.exceptions.CursorInvalidoException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de la última cita entregada en un listado ordenado por (fecha, hora, id) descendente.
+ * Viaja al cliente como un texto opaco en Base64 URL-safe.
+ */
+public record CursorCita(LocalDate fecha, LocalTime hora, Long id) {
+
+    private static final String SEPARADOR = "|";
+
+    public static CursorCita de(CitaResponse cita) {
+        return new CursorCita(cita.getFecha(), cita.getHora(), cita.getId());
+    }
+
+    public String codificar() {
+        String valor = fecha + SEPARADOR + hora + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CursorCita decodificar(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = valor.split("\\|", -1);
+            if (partes.length != 3) {
+                throw new CursorInvalidoException(cursor);
+            }
+            return new CursorCita(LocalDate.parse(partes[0]), LocalTime.parse(partes[1]), Long.valueOf(partes[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new CursorInvalidoException(cursor);
+        }
+    }
+}
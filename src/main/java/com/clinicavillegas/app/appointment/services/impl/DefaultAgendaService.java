@@ -0,0 +1,244 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.dto.response.CambioAgendaResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.services.AgendaService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Envía por Server-Sent Events los cambios de citas a las pantallas de agenda, en lugar de que consulten
+ * la base de datos cada pocos segundos. Cada cambio confirmado recibe un id correlativo y se guarda en un anillo
+ * de tamaño fijo; cada suscriptor recuerda el último id que recibió y toma del anillo lo que le falta, así que
+ * el orden se mantiene y una reconexión con Last-Event-ID recupera lo perdido. Si el id ya salió del anillo
+ * (o es de antes de un reinicio del servidor) se envía un evento "reinicio" para que el cliente recargue la agenda.
+ * Los cambios confirmados en otras instancias llegan por {@link DifusionAgenda}.
+ */
+@Slf4j
+@Service
+public class DefaultAgendaService implements AgendaService {
+
+    public static final String EVENTO_CONECTADO = "conectado";
+    public static final String EVENTO_CITA = "cita";
+    public static final String EVENTO_REINICIO = "reinicio";
+
+    // Distingue los ids de este arranque de los que un navegador guardó antes de un reinicio
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Cambio[] anillo;
+    private long ultimoId;
+
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolTaskExecutor executor;
+    private final long tiempoMaximoMs;
+
+    public DefaultAgendaService(@Value("${app.citas.agenda.buffer:1000}") int capacidad,
+                                @Value("${app.citas.agenda.tiempo-maximo-ms:1800000}") long tiempoMaximoMs,
+                                @Value("${app.citas.agenda.hilos:2}") int hilos) {
+        this.anillo = new Cambio[Math.max(1, capacidad)];
+        this.tiempoMaximoMs = tiempoMaximoMs;
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("agenda-");
+        executor.initialize();
+    }
+
+    public SseEmitter suscribir(Long dentistaId, String ultimoEventoId) {
+        SseEmitter emitter = new SseEmitter(tiempoMaximoMs);
+        Suscriptor suscriptor;
+        if (ultimoEventoId == null || ultimoEventoId.isBlank()) {
+            // Sin Last-Event-ID el cliente acaba de cargar la agenda: solo le interesan los cambios desde ahora,
+            // pero se le envía el id actual para que pueda reanudar si se corta antes del primer cambio
+            long actual = ultimoId();
+            suscriptor = new Suscriptor(emitter, dentistaId, actual);
+            enviar(suscriptor, SseEmitter.event().id(idDeEvento(actual)).name(EVENTO_CONECTADO).data(""));
+        } else {
+            suscriptor = new Suscriptor(emitter, dentistaId, posicionDe(ultimoEventoId));
+        }
+        emitter.onCompletion(() -> suscriptores.remove(suscriptor));
+        emitter.onError(error -> suscriptores.remove(suscriptor));
+        suscriptores.add(suscriptor);
+        programar(suscriptor);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void registrarCambio(CitaModificadaEvent evento) {
+        if (evento.getCitaId() == null) {
+            return;
+        }
+        recibir(cambioDe(evento));
+    }
+
+    // Cambio ya confirmado, de esta instancia o de otra
+    public void recibir(CambioAgendaResponse cambio) {
+        agregar(cambio);
+        suscriptores.forEach(this::programar);
+    }
+
+    /**
+     * Se perdieron cambios de otras instancias (por ejemplo, se cayó la conexión que los escuchaba): se salta más de
+     * un anillo de ids para que cada suscriptor reciba un "reinicio" y recargue la agenda.
+     */
+    public void invalidar() {
+        synchronized (this) {
+            ultimoId += anillo.length + 1;
+        }
+        suscriptores.forEach(this::programar);
+    }
+
+    // Mantiene viva la conexión a través de proxies y descubre a los clientes que ya se fueron
+    @Scheduled(fixedRateString = "${app.citas.agenda.latido-ms:15000}")
+    public void latir() {
+        suscriptores.forEach(suscriptor -> enviar(suscriptor, SseEmitter.event().comment("latido")));
+    }
+
+    @PreDestroy
+    public void detener() {
+        suscriptores.forEach(suscriptor -> suscriptor.emitter.complete());
+        executor.shutdown();
+    }
+
+    public static CambioAgendaResponse cambioDe(CitaModificadaEvent evento) {
+        return CambioAgendaResponse.builder()
+                .citaId(evento.getCitaId())
+                .estado(evento.getEstado() != null ? evento.getEstado().name() : null)
+                .dentistaId(evento.getDentistaId())
+                .fecha(evento.getFecha())
+                .hora(evento.getHora())
+                .horaFin(evento.getHoraFin())
+                .dentistaIdAnterior(evento.getDentistaIdAnterior())
+                .fechaAnterior(evento.getFechaAnterior())
+                .build();
+    }
+
+    private synchronized void agregar(CambioAgendaResponse datos) {
+        ultimoId++;
+        anillo[(int) (ultimoId % anillo.length)] = new Cambio(ultimoId, datos);
+    }
+
+    private synchronized long ultimoId() {
+        return ultimoId;
+    }
+
+    // Los cambios posteriores a desdeId, o null si alguno ya se sobrescribió en el anillo
+    private synchronized List<Cambio> cambiosDesde(long desdeId) {
+        if (desdeId < 0 || desdeId > ultimoId || ultimoId - desdeId > anillo.length) {
+            return null;
+        }
+        List<Cambio> cambios = new ArrayList<>((int) (ultimoId - desdeId));
+        for (long id = desdeId + 1; id <= ultimoId; id++) {
+            cambios.add(anillo[(int) (id % anillo.length)]);
+        }
+        return cambios;
+    }
+
+    // Varios cambios seguidos (por ejemplo una cancelación masiva) se entregan en una sola pasada por suscriptor
+    private void programar(Suscriptor suscriptor) {
+        if (!suscriptor.programado.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                suscriptor.programado.set(false);
+                entregar(suscriptor);
+            });
+        } catch (TaskRejectedException e) {
+            // El próximo cambio lo vuelve a programar y recoge también lo pendiente
+            suscriptor.programado.set(false);
+            log.warn("No se pudo programar la entrega de cambios de agenda: {}", e.getMessage());
+        }
+    }
+
+    private void entregar(Suscriptor suscriptor) {
+        synchronized (suscriptor) {
+            List<Cambio> cambios = cambiosDesde(suscriptor.ultimoEnviado);
+            if (cambios == null) {
+                long actual = ultimoId();
+                suscriptor.ultimoEnviado = actual;
+                enviar(suscriptor, SseEmitter.event().id(idDeEvento(actual)).name(EVENTO_REINICIO).data(""));
+                return;
+            }
+            for (Cambio cambio : cambios) {
+                suscriptor.ultimoEnviado = cambio.id();
+                if (suscriptor.interesa(cambio.datos()) && !enviar(suscriptor, SseEmitter.event()
+                        .id(idDeEvento(cambio.id()))
+                        .name(EVENTO_CITA)
+                        .data(cambio.datos(), MediaType.APPLICATION_JSON))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean enviar(Suscriptor suscriptor, SseEmitter.SseEventBuilder evento) {
+        try {
+            suscriptor.emitter.send(evento);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // El cliente cerró la conexión
+            suscriptores.remove(suscriptor);
+            suscriptor.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private String idDeEvento(long id) {
+        return arranque + "-" + id;
+    }
+
+    // -1 obliga a enviar un reinicio: id mal formado o de un arranque anterior
+    private long posicionDe(String ultimoEventoId) {
+        int separador = ultimoEventoId.lastIndexOf('-');
+        if (separador < 0 || !ultimoEventoId.substring(0, separador).equals(arranque)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(ultimoEventoId.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Cambio(long id, CambioAgendaResponse datos) {
+    }
+
+    private static class Suscriptor {
+        private final SseEmitter emitter;
+        private final Long dentistaId;
+        private final AtomicBoolean programado = new AtomicBoolean();
+        private long ultimoEnviado;
+
+        Suscriptor(SseEmitter emitter, Long dentistaId, long ultimoEnviado) {
+            this.emitter = emitter;
+            this.dentistaId = dentistaId;
+            this.ultimoEnviado = ultimoEnviado;
+        }
+
+        // Sin dentista es la vista de toda la clínica; un dentista también ve las citas que le quitaron
+        boolean interesa(CambioAgendaResponse cambio) {
+            return dentistaId == null
+                    || Objects.equals(dentistaId, cambio.getDentistaId())
+                    || Objects.equals(dentistaId, cambio.getDentistaIdAnterior());
+        }
+    }
+}
@@ -1,38 +1,66 @@
 package com.clinicavillegas.app.appointment.services.impl;
 
+import com.clinicavillegas.app.appointment.dto.request.BloqueoHorarioRequest;
+import com.clinicavillegas.app.appointment.dto.request.CancelacionMasivaRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaReprogramarRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.ReprogramacionMasivaRequest;
+import com.clinicavillegas.app.appointment.dto.request.SerieCitasRequest;
 import com.clinicavillegas.app.appointment.dto.request.ValidacionCitaRequest;
+import com.clinicavillegas.app.appointment.dto.response.BloqueoHorarioResponse;
 import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
-import com.clinicavillegas.app.appointment.mappers.CitaMapper;
+import com.clinicavillegas.app.appointment.dto.response.OperacionMasivaResponse;
+import com.clinicavillegas.app.appointment.dto.response.PaginaCitasResponse;
+import com.clinicavillegas.app.appointment.dto.response.SerieCitasResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.exceptions.BloqueoInvalidoException;
+import com.clinicavillegas.app.appointment.exceptions.FueraDeHorarioException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioPasadoException;
+import com.clinicavillegas.app.appointment.exceptions.TransicionEstadoInvalidaException;
 import com.clinicavillegas.app.appointment.models.Cita;
 import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.Dia;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Horario;
 import com.clinicavillegas.app.appointment.models.Tratamiento;
 import com.clinicavillegas.app.appointment.repositories.CitaRepository;
 import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
-import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.repositories.HorarioRepository;
 import com.clinicavillegas.app.appointment.services.CitaService;
 import com.clinicavillegas.app.appointment.specifications.CitaSpecification;
 import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
-import com.clinicavillegas.app.email.services.EmailService;
+import com.clinicavillegas.app.email.services.NotificacionService;
 import com.clinicavillegas.app.user.models.Sexo;
 import com.clinicavillegas.app.user.models.TipoDocumento;
 import com.clinicavillegas.app.user.models.Usuario;
-import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
 import com.clinicavillegas.app.user.repositories.UsuarioRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -45,20 +73,29 @@ public class DefaultCitaService implements CitaService {
     private static final String CACHE_CITAS_POR_DENTISTA = "citasPorDentista"; // Podría ser una lista sin paginar o una paginada por dentista
 
 
+    private static final int TAMANIO_MAXIMO_PAGINA_CURSOR = 100;
+    private static final Sort ORDEN_CURSOR = Sort.by(Sort.Direction.DESC, "fecha", "hora", "id");
+
     private final CitaRepository citaRepository;
     private final UsuarioRepository usuarioRepository;
     private final DentistaRepository dentistaRepository;
-    private final TratamientoRepository tratamientoRepository;
-    private final TipoDocumentoRepository tipoDocumentoRepository;
-    private final EmailService emailService;
+    private final HorarioRepository horarioRepository;
+    private final NotificacionService notificacionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AdmisionReservas admisionReservas;
+    private final ResolutorReferencias resolutorReferencias;
+    private final BloqueosHorario bloqueosHorario;
 
-    public DefaultCitaService(CitaRepository citaRepository, UsuarioRepository usuarioRepository, DentistaRepository dentistaRepository, TratamientoRepository tratamientoRepository, TipoDocumentoRepository tipoDocumentoRepository, EmailService emailService) {
+    public DefaultCitaService(CitaRepository citaRepository, UsuarioRepository usuarioRepository, DentistaRepository dentistaRepository, HorarioRepository horarioRepository, NotificacionService notificacionService, ApplicationEventPublisher eventPublisher, AdmisionReservas admisionReservas, ResolutorReferencias resolutorReferencias, BloqueosHorario bloqueosHorario) {
         this.citaRepository = citaRepository;
         this.usuarioRepository = usuarioRepository;
         this.dentistaRepository = dentistaRepository;
-        this.tratamientoRepository = tratamientoRepository;
-        this.tipoDocumentoRepository = tipoDocumentoRepository;
-        this.emailService = emailService;
+        this.horarioRepository = horarioRepository;
+        this.notificacionService = notificacionService;
+        this.eventPublisher = eventPublisher;
+        this.admisionReservas = admisionReservas;
+        this.resolutorReferencias = resolutorReferencias;
+        this.bloqueosHorario = bloqueosHorario;
     }
 
     // Método auxiliar para construir la Specification
@@ -78,24 +115,60 @@ public class DefaultCitaService implements CitaService {
 
     // MÉTODOS DE BÚSQUEDA
 
+    // Las listas no se vacían en cada escritura: la clave lleva la generación del paciente y del dentista
+    // consultados (GeneracionesCitas), que avanza cuando cambia una de sus citas
+
     // 1. Método para obtener citas con paginación
-    @Cacheable(value = CACHE_CITAS_LISTA_PAGINADA, key = "{#usuarioId, #dentistaId, #estado, #fechaInicio, #fechaFin, #tratamientoId, #sexo, #pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
+    @Cacheable(value = CACHE_CITAS_LISTA_PAGINADA, key = "{@generacionesCitas.de(#usuarioId, #dentistaId), #usuarioId, #dentistaId, #estado, #fechaInicio, #fechaFin, #tratamientoId, #sexo, #pageable.pageNumber, #pageable.pageSize, #pageable.sort}")
     public Page<CitaResponse> obtenerCitasPaginadas(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
                                                     LocalDate fechaFin, Long tratamientoId, String sexo, Pageable pageable) {
         log.info("Obteniendo citas PAGINADAS de la base de datos con filtros y paginación: pageable={}", pageable);
         Specification<Cita> specs = buildCitaSpecification(usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo);
-        Page<Cita> citasPage = citaRepository.findAll(specs, pageable);
-        return citasPage.map(CitaMapper::toDto);
+        return citaRepository.findResumenes(specs, pageable);
     }
 
     // 2. Método para obtener citas SIN paginación
-    @Cacheable(value = CACHE_CITAS_LISTA_SIN_PAGINAR, key = "{#usuarioId, #dentistaId, #estado, #fechaInicio, #fechaFin, #tratamientoId, #sexo}")
+    @Cacheable(value = CACHE_CITAS_LISTA_SIN_PAGINAR, key = "{@generacionesCitas.de(#usuarioId, #dentistaId), #usuarioId, #dentistaId, #estado, #fechaInicio, #fechaFin, #tratamientoId, #sexo}")
     public List<CitaResponse> obtenerCitas(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
                                                         LocalDate fechaFin, Long tratamientoId, String sexo) {
         log.info("Obteniendo citas SIN PAGINACIÓN de la base de datos con filtros.");
         Specification<Cita> specs = buildCitaSpecification(usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo);
-        List<Cita> citas = citaRepository.findAll(specs);
-        return citas.stream().map(CitaMapper::toDto).toList();
+        return citaRepository.findResumenes(specs);
+    }
+
+    // 3. Método para obtener citas por cursor (fecha, hora, id descendente), sin OFFSET ni conteo obligatorio
+    public PaginaCitasResponse obtenerCitasPorCursor(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
+                                                     LocalDate fechaFin, Long tratamientoId, String sexo,
+                                                     String cursor, int tamanio, boolean conTotal) {
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PAGINA_CURSOR));
+        Specification<Cita> specs = buildCitaSpecification(usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo);
+        Specification<Cita> pagina = specs;
+        if (cursor != null && !cursor.isBlank()) {
+            CursorCita desde = CursorCita.decodificar(cursor);
+            pagina = specs.and(CitaSpecification.anteriorA(desde.fecha(), desde.hora(), desde.id()));
+        }
+        log.info("Obteniendo citas POR CURSOR de la base de datos: cursor={}, tamaño={}", cursor, limite);
+        // Se pide una fila de más para saber si hay otra página sin contar
+        List<CitaResponse> citas = citaRepository.findResumenes(pagina, ORDEN_CURSOR, limite + 1);
+        boolean hayMas = citas.size() > limite;
+        List<CitaResponse> contenido = hayMas ? citas.subList(0, limite) : citas;
+        return PaginaCitasResponse.builder()
+                .contenido(contenido)
+                .hayMas(hayMas)
+                .siguienteCursor(hayMas ? CursorCita.de(contenido.getLast()).codificar() : null)
+                .total(conTotal ? citaRepository.count(specs) : null)
+                .build();
+    }
+
+    // 4. Método para exportar citas fila por fila (NDJSON), sin caché
+    @Transactional(readOnly = true)
+    public void recorrerCitas(Long usuarioId, Long dentistaId, String estado, LocalDate fechaInicio,
+                              LocalDate fechaFin, Long tratamientoId, String sexo, Consumer<CitaResponse> consumidor) {
+        log.info("Exportando citas de la base de datos con filtros, fila por fila.");
+        Specification<Cita> specs = buildCitaSpecification(usuarioId, dentistaId, estado, fechaInicio, fechaFin, tratamientoId, sexo);
+        try (Stream<CitaResponse> citas = citaRepository.streamResumenes(specs, ORDEN_CURSOR)) {
+            citas.forEach(consumidor);
+        }
     }
 
     public List<Cita> obtenerCitasPorUsuario(Long usuarioId) {
@@ -117,70 +190,88 @@ public class DefaultCitaService implements CitaService {
     // MÉTODOS DE MODIFICACIÓN (INVALIDACIÓN DE CACHÉ)
 
     @Caching(evict = {
-            @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id", allEntries = true), // Considera si necesitas invalidar ALL para #id
-            @CacheEvict(value = CACHE_CITAS_LISTA_PAGINADA, allEntries = true), // Invalida todas las páginas
-            @CacheEvict(value = CACHE_CITAS_LISTA_SIN_PAGINAR, allEntries = true), // Invalida la lista completa sin paginar
             @CacheEvict(value = CACHE_CITAS_POR_USUARIO, key = "#citaRequest.usuarioId"), // Si cacheas listas por usuario
             @CacheEvict(value = CACHE_CITAS_POR_DENTISTA, key = "#citaRequest.dentistaId") // Si cacheas listas por dentista
     })
+    @Transactional
     public void agregarCita(CitaRequest citaRequest) {
         log.info("Agregando nueva cita: {}", citaRequest);
-        TipoDocumento tipoDocumento = tipoDocumentoRepository.findByAcronimo(citaRequest.getTipoDocumento()).orElseThrow(
-                () -> new ResourceNotFoundException(TipoDocumento.class, "Acrónimo", citaRequest.getTipoDocumento())
-        );
-        Dentista dentista = dentistaRepository.findById(citaRequest.getDentistaId()).orElseThrow(
-                () -> new ResourceNotFoundException(Dentista.class, citaRequest.getDentistaId())
-        );
-        Usuario usuario = usuarioRepository.findById(citaRequest.getUsuarioId()).orElseThrow(
-                () -> new ResourceNotFoundException(Usuario.class, citaRequest.getUsuarioId())
-        );
-        Tratamiento tratamiento = tratamientoRepository.findById(citaRequest.getTratamientoId()).orElseThrow(
-                () -> new ResourceNotFoundException(Tratamiento.class, citaRequest.getTratamientoId())
-        );
-        Cita cita = Cita.builder()
-                .fecha(citaRequest.getFecha())
-                .hora(citaRequest.getHora())
-                .monto(tratamiento.getCosto())
-                .nombres(citaRequest.getNombres())
-                .apellidoPaterno(citaRequest.getApellidoPaterno())
-                .apellidoMaterno(citaRequest.getApellidoMaterno())
-                .estado("Pendiente")
-                .tipoDocumento(tipoDocumento)
-                .numeroIdentidad(citaRequest.getNumeroIdentidad())
-                .sexo(Sexo.valueOf(citaRequest.getSexo()))
-                .fechaNacimiento(citaRequest.getFechaNacimiento())
-                .dentista(dentista)
-                .usuario(usuario)
-                .tratamiento(tratamiento)
+        TipoDocumento tipoDocumento = resolutorReferencias.tipoDocumentoPorAcronimo(citaRequest.getTipoDocumento());
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(citaRequest.getTratamientoId());
+        ResolutorReferencias.ParticipantesCita participantes =
+                resolutorReferencias.participantes(citaRequest.getUsuarioId(), citaRequest.getDentistaId());
+        Dentista dentista = participantes.dentista();
+        Cita cita = nuevaCita(citaRequest, citaRequest.getFecha(), tipoDocumento, tratamiento, participantes);
+        String bloqueoId = bloqueoPropio(citaRequest.getBloqueoId(), citaRequest.getUsuarioId(), dentista.getId(),
+                citaRequest.getFecha(), citaRequest.getHora());
+        admisionReservas.ejecutar(dentista.getId(), cita.getFecha(), () -> {
+            verificarSinSolapamiento(cita, null, bloqueoId);
+            citaRepository.save(cita);
+        });
+        // El bloqueo ya se convirtió en la cita
+        bloqueosHorario.liberarAlConfirmar(bloqueoId);
+        notificacionService.encolarConfirmacionReserva(cita);
+        eventPublisher.publishEvent(CitaModificadaEvent.de(cita));
+    }
+
+    // Todo o nada: la serie se valida contra el horario del dentista y las citas del rango con una consulta cada una,
+    // se inserta en un solo lote JDBC y el paciente recibe un único correo con todas las fechas
+    @Caching(evict = {
+            @CacheEvict(value = CACHE_CITAS_POR_USUARIO, key = "#request.cita.usuarioId"),
+            @CacheEvict(value = CACHE_CITAS_POR_DENTISTA, key = "#request.cita.dentistaId")
+    })
+    @Transactional
+    public SerieCitasResponse agregarSerie(SerieCitasRequest request) {
+        CitaRequest citaRequest = request.getCita();
+        log.info("Agregando serie de {} citas cada {} semanas desde {}: {}",
+                request.getOcurrencias(), request.getIntervaloSemanas(), citaRequest.getFecha(), citaRequest);
+        TipoDocumento tipoDocumento = resolutorReferencias.tipoDocumentoPorAcronimo(citaRequest.getTipoDocumento());
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(citaRequest.getTratamientoId());
+        ResolutorReferencias.ParticipantesCita participantes =
+                resolutorReferencias.participantes(citaRequest.getUsuarioId(), citaRequest.getDentistaId());
+        Long dentistaId = participantes.dentista().getId();
+        List<Cita> citas = new ArrayList<>(request.getOcurrencias());
+        for (int i = 0; i < request.getOcurrencias(); i++) {
+            LocalDate fecha = citaRequest.getFecha().plusWeeks((long) i * request.getIntervaloSemanas());
+            citas.add(nuevaCita(citaRequest, fecha, tipoDocumento, tratamiento, participantes));
+        }
+        Set<LocalDate> fechas = citas.stream().map(Cita::getFecha).collect(Collectors.toSet());
+        // El bloqueo corresponde a la primera cita de la serie
+        String bloqueoId = bloqueoPropio(citaRequest.getBloqueoId(), citaRequest.getUsuarioId(), dentistaId,
+                citaRequest.getFecha(), citaRequest.getHora());
+        admisionReservas.ejecutar(dentistaId, fechas, () -> {
+            verificarSerie(dentistaId, citas, tratamiento.getDuracion(), bloqueoId);
+            citaRepository.insertarEnLote(citas);
+        });
+        bloqueosHorario.liberarAlConfirmar(bloqueoId);
+        notificacionService.encolarConfirmacionSerie(citas);
+        citas.forEach(cita -> eventPublisher.publishEvent(CitaModificadaEvent.de(cita)));
+        return SerieCitasResponse.builder()
+                .citasIds(citas.stream().map(Cita::getId).toList())
+                .fechas(citas.stream().map(Cita::getFecha).toList())
                 .build();
-        emailService.enviarConfirmacionReserva(cita);
-        citaRepository.save(cita);
     }
 
     @Caching(evict = {
             @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id"),
-            @CacheEvict(value = CACHE_CITAS_LISTA_PAGINADA, allEntries = true),
-            @CacheEvict(value = CACHE_CITAS_LISTA_SIN_PAGINAR, allEntries = true),
             @CacheEvict(value = CACHE_CITAS_POR_USUARIO, key = "#citaRequest.usuarioId"),
             @CacheEvict(value = CACHE_CITAS_POR_DENTISTA, key = "#citaRequest.dentistaId")
     })
+    @Transactional
     public void actualizarCita(Long id, CitaRequest citaRequest) {
         log.info("Actualizando cita en la base de datos y caché para ID: {}", id);
         Cita cita = citaRepository.findById(id).orElseThrow(
                 () -> new ResourceNotFoundException(Cita.class, id)
         );
-        TipoDocumento tipoDocumento = tipoDocumentoRepository.findByNombre(citaRequest.getTipoDocumento()).orElseThrow(
-                () -> new ResourceNotFoundException(Tratamiento.class, "nombre", citaRequest.getTipoDocumento())
-        );
-        Dentista dentista = dentistaRepository.findById(citaRequest.getDentistaId()).orElseThrow(
-                () -> new ResourceNotFoundException(Dentista.class, citaRequest.getDentistaId())
-        );
-        Usuario usuario = usuarioRepository.findById(citaRequest.getUsuarioId()).orElseThrow(
-                () -> new ResourceNotFoundException(Usuario.class, citaRequest.getUsuarioId())
-        );
-        Tratamiento tratamiento = tratamientoRepository.findById(citaRequest.getTratamientoId()).orElseThrow(
-                () -> new ResourceNotFoundException(Tratamiento.class, citaRequest.getTratamientoId())
-        );
+        TipoDocumento tipoDocumento = resolutorReferencias.tipoDocumentoPorNombre(citaRequest.getTipoDocumento());
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(citaRequest.getTratamientoId());
+        ResolutorReferencias.ParticipantesCita participantes =
+                resolutorReferencias.participantes(citaRequest.getUsuarioId(), citaRequest.getDentistaId());
+        Dentista dentista = participantes.dentista();
+        Usuario usuario = participantes.usuario();
+        Dentista anteriorDentista = cita.getDentista();
+        LocalDate anteriorFecha = cita.getFecha();
+        Long anteriorUsuarioId = cita.getUsuario() != null ? cita.getUsuario().getId() : null;
         cita.setMonto(citaRequest.getMonto());
         cita.setHora(citaRequest.getHora());
         cita.setFecha(citaRequest.getFecha());
@@ -194,56 +285,136 @@ public class DefaultCitaService implements CitaService {
         cita.setDentista(dentista);
         cita.setUsuario(usuario);
         cita.setTratamiento(tratamiento);
-        citaRepository.save(cita);
+        admisionReservas.ejecutar(dentista.getId(), cita.getFecha(), () -> {
+            verificarSinSolapamiento(cita, id, null);
+            citaRepository.save(cita);
+        });
+        eventPublisher.publishEvent(CitaModificadaEvent.de(cita, anteriorDentista, anteriorFecha).toBuilder()
+                .usuarioIdAnterior(anteriorUsuarioId)
+                .build());
     }
 
 
-    @Caching(evict = {
-            @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id"),
-            @CacheEvict(value = CACHE_CITAS_LISTA_PAGINADA, allEntries = true),
-            @CacheEvict(value = CACHE_CITAS_LISTA_SIN_PAGINAR, allEntries = true)
-    })
+    @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id")
+    @Transactional
     public void atenderCita(Long id) {
         log.info("Marcando cita como atendida en la base de datos y caché para ID: {}", id);
         Cita cita = citaRepository.findById(id).orElseThrow(
                 () -> new ResourceNotFoundException(Cita.class, id)
         );
-        cita.setEstado("Atendida");
+        cambiarEstado(cita, EstadoCita.ATENDIDA);
         citaRepository.save(cita);
+        eventPublisher.publishEvent(CitaModificadaEvent.de(cita));
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id"),
-            @CacheEvict(value = CACHE_CITAS_LISTA_PAGINADA, allEntries = true),
-            @CacheEvict(value = CACHE_CITAS_LISTA_SIN_PAGINAR, allEntries = true)
-    })
+    @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id")
+    @Transactional
     public void eliminarCita(Long id, String observaciones) {
         log.info("Marcando cita como cancelada (lógico) en la base de datos y caché para ID: {}", id);
         Cita cita = citaRepository.findById(id).orElseThrow(
                 () -> new ResourceNotFoundException(Cita.class, id)
         );
-        cita.setEstado("Cancelada");
+        cambiarEstado(cita, EstadoCita.CANCELADA);
         cita.setObservaciones(observaciones);
-        emailService.enviarCancelacionReserva(cita);
+        notificacionService.encolarCancelacionReserva(cita);
         citaRepository.save(cita);
+        eventPublisher.publishEvent(CitaModificadaEvent.de(cita));
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id"),
-            @CacheEvict(value = CACHE_CITAS_LISTA_PAGINADA, allEntries = true),
-            @CacheEvict(value = CACHE_CITAS_LISTA_SIN_PAGINAR, allEntries = true)
-    })
+    @CacheEvict(value = CACHE_CITA_POR_ID, key = "#id")
+    @Transactional
     public void reprogramarCita(Long id, CitaReprogramarRequest request) {
         log.info("Reprogramando cita en la base de datos y caché para ID: {}", id);
         Cita cita = citaRepository.findById(id).orElseThrow(
                 () -> new ResourceNotFoundException(Cita.class, id)
         );
+        // Reprogramar no cambia el estado, pero solo se permite mientras la cita siga pendiente
+        cambiarEstado(cita, EstadoCita.PENDIENTE);
         LocalDate anteriorFecha = cita.getFecha();
         LocalTime anteriorHora = cita.getHora();
         cita.setHora(request.getHora());
         cita.setFecha(request.getFecha());
-        emailService.enviarReprogramacionCita(cita, anteriorFecha, anteriorHora);
-        citaRepository.save(cita);
+        admisionReservas.ejecutar(cita.getDentista().getId(), cita.getFecha(), () -> {
+            verificarSinSolapamiento(cita, id, null);
+            citaRepository.save(cita);
+        });
+        notificacionService.encolarReprogramacionCita(cita, anteriorFecha, anteriorHora);
+        eventPublisher.publishEvent(CitaModificadaEvent.de(cita, cita.getDentista(), anteriorFecha));
+    }
+
+    // Se toma dentro de la admisión del dentista y día, así que no puede colarse entre la comprobación y el guardado de una reserva.
+    // Solo se bloquea lo que se podría reservar: paciente y dentista existentes, un horario futuro y dentro de la jornada
+    public BloqueoHorarioResponse bloquearHorario(BloqueoHorarioRequest request) {
+        log.info("Bloqueando horario del dentista ID: {} el {} a las {} para el paciente ID: {}",
+                request.getDentistaId(), request.getFecha(), request.getHora(), request.getUsuarioId());
+        resolutorReferencias.participantes(request.getUsuarioId(), request.getDentistaId());
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(request.getTratamientoId());
+        LocalTime horaFin = request.getHora().plus(tratamiento.getDuracion());
+        verificarNoPasado(request.getFecha(), request.getHora());
+        if (!enJornada(jornadasDe(request.getDentistaId()), request.getFecha(), request.getHora(), horaFin)) {
+            throw new FueraDeHorarioException(request.getDentistaId(), request.getFecha(), request.getHora());
+        }
+        BloqueosHorario.Bloqueo bloqueo = admisionReservas.ejecutarConResultado(request.getDentistaId(), request.getFecha(), () -> {
+            if (citaRepository.existsSolapamiento(request.getDentistaId(), request.getFecha(), request.getHora(), horaFin)) {
+                throw new HorarioNoDisponibleException(request.getDentistaId(), request.getFecha(), request.getHora());
+            }
+            return bloqueosHorario.bloquear(request.getDentistaId(), request.getUsuarioId(),
+                    request.getFecha(), request.getHora(), horaFin);
+        });
+        return BloqueoHorarioResponse.builder()
+                .id(bloqueo.id())
+                .dentistaId(bloqueo.dentistaId())
+                .fecha(bloqueo.fecha())
+                .hora(bloqueo.hora())
+                .horaFin(bloqueo.horaFin())
+                .expira(bloqueo.expira())
+                .build();
+    }
+
+    public void liberarBloqueo(String id) {
+        bloqueosHorario.liberar(id);
+    }
+
+    // Las citas ya están en el contexto de persistencia: los UPDATE salen en lotes (hibernate.jdbc.batch_size) al confirmar.
+    // La caché por ID se vacía una sola vez para toda la operación
+    @CacheEvict(value = CACHE_CITA_POR_ID, allEntries = true)
+    @Transactional
+    public OperacionMasivaResponse cancelarCitasDeDentista(Long dentistaId, CancelacionMasivaRequest request) {
+        log.info("Cancelando las citas pendientes del dentista ID: {} entre {} y {}",
+                dentistaId, request.getFechaInicio(), request.getFechaFin());
+        List<Cita> citas = citasPendientesDeDentista(dentistaId, request.getFechaInicio(), request.getFechaFin());
+        for (Cita cita : citas) {
+            cambiarEstado(cita, EstadoCita.CANCELADA);
+            cita.setObservaciones(request.getObservaciones());
+        }
+        citaRepository.saveAll(citas);
+        int pacientes = encolarPorPaciente(citas, notificacionService::encolarCancelacionMasiva);
+        citas.forEach(cita -> eventPublisher.publishEvent(CitaModificadaEvent.de(cita)));
+        return OperacionMasivaResponse.builder().citasAfectadas(citas.size()).pacientesNotificados(pacientes).build();
+    }
+
+    // Todo o nada: si alguna cita choca, queda fuera de la jornada o en el pasado en su nuevo día, no se mueve ninguna
+    @CacheEvict(value = CACHE_CITA_POR_ID, allEntries = true)
+    @Transactional
+    public OperacionMasivaResponse reprogramarCitasDeDentista(Long dentistaId, ReprogramacionMasivaRequest request) {
+        log.info("Reprogramando {} días las citas pendientes del dentista ID: {} entre {} y {}",
+                request.getDias(), dentistaId, request.getFechaInicio(), request.getFechaFin());
+        List<Cita> citas = citasPendientesDeDentista(dentistaId, request.getFechaInicio(), request.getFechaFin());
+        int dias = request.getDias();
+        Set<LocalDate> destinos = citas.stream().map(cita -> cita.getFecha().plusDays(dias)).collect(Collectors.toSet());
+        Map<Long, LocalDate> fechasAnteriores = new HashMap<>();
+        admisionReservas.ejecutar(dentistaId, destinos, () -> {
+            verificarSinSolapamiento(dentistaId, citas, dias);
+            for (Cita cita : citas) {
+                fechasAnteriores.put(cita.getId(), cita.getFecha());
+                cita.setFecha(cita.getFecha().plusDays(dias));
+            }
+            citaRepository.saveAll(citas);
+        });
+        int pacientes = encolarPorPaciente(citas, notificacionService::encolarReprogramacionMasiva);
+        citas.forEach(cita -> eventPublisher.publishEvent(
+                CitaModificadaEvent.de(cita, cita.getDentista(), fechasAnteriores.get(cita.getId()))));
+        return OperacionMasivaResponse.builder().citasAfectadas(citas.size()).pacientesNotificados(pacientes).build();
     }
 
     public boolean validarDisponibilidad(ValidacionCitaRequest request) {
@@ -252,28 +423,163 @@ public class DefaultCitaService implements CitaService {
         LocalDate fecha = LocalDate.parse(request.getFecha());
         LocalTime hora = LocalTime.parse(request.getHora());
 
-        List<Cita> citasDelDia = citaRepository
-                .findAll(CitaSpecification.conFecha(fecha)
-                        .and(CitaSpecification.conEstado("Pendiente"))
-                        .and(CitaSpecification.conDentistaId(request.getDentistaId())));
-
-        Tratamiento tratamiento = tratamientoRepository.findById(request.getTratamientoId()).orElseThrow(
-                () -> new ResourceNotFoundException(Tratamiento.class, request.getTratamientoId())
-        );
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(request.getTratamientoId());
 
         Duration duracion = tratamiento.getDuracion();
         LocalTime horaFinPropuesta = hora.plus(duracion);
+        String bloqueoId = bloqueoPropio(request.getBloqueoId(), request.getUsuarioId(), request.getDentistaId(), fecha, hora);
+
+        return !bloqueosHorario.haySolapamiento(request.getDentistaId(), fecha, hora, horaFinPropuesta, bloqueoId)
+                && !citaRepository.existsSolapamiento(request.getDentistaId(), fecha, hora, horaFinPropuesta);
+    }
+
+    private List<Cita> citasPendientesDeDentista(Long dentistaId, LocalDate fechaInicio, LocalDate fechaFin) {
+        if (!dentistaRepository.existsById(dentistaId)) {
+            throw new ResourceNotFoundException(Dentista.class, dentistaId);
+        }
+        Specification<Cita> specs = CitaSpecification.conDentistaId(dentistaId)
+                .and(CitaSpecification.conRangoFecha(fechaInicio, fechaFin))
+                .and(CitaSpecification.conEstado(EstadoCita.PENDIENTE));
+        List<Cita> citas = new ArrayList<>(citaRepository.findAll(specs, Cita.GRAFO_NOTIFICACION));
+        citas.sort(Comparator.comparing(Cita::getFecha).thenComparing(Cita::getHora));
+        return citas;
+    }
 
-        for (Cita cita : citasDelDia) {
-            LocalTime horaInicioExistente = cita.getHora();
-            LocalTime horaFinExistente = horaInicioExistente.plus(cita.getTratamiento().getDuracion());
+    // Un solo correo por paciente con todas sus citas afectadas; las citas sin usuario no tienen a quién avisar
+    private int encolarPorPaciente(List<Cita> citas, Consumer<List<Cita>> encolar) {
+        Map<Long, List<Cita>> porPaciente = citas.stream()
+                .filter(cita -> cita.getUsuario() != null)
+                .collect(Collectors.groupingBy(cita -> cita.getUsuario().getId(), LinkedHashMap::new, Collectors.toList()));
+        porPaciente.values().forEach(encolar);
+        return porPaciente.size();
+    }
 
-            boolean seCruza = (hora.isBefore(horaFinExistente) && horaFinPropuesta.isAfter(horaInicioExistente));
+    // Igual que verificarSerie: una consulta de horarios y una de lo ocupado en los días de destino.
+    // Las citas que se están moviendo no cuentan, los bloqueos temporales de pacientes sí
+    private void verificarSinSolapamiento(Long dentistaId, List<Cita> citas, int dias) {
+        if (citas.isEmpty()) {
+            return;
+        }
+        Map<Dia, List<Horario>> jornadas = jornadasDe(dentistaId);
+        Set<Long> movidas = citas.stream().map(Cita::getId).collect(Collectors.toSet());
+        LocalDate desde = citas.get(0).getFecha().plusDays(dias);
+        LocalDate hasta = citas.get(citas.size() - 1).getFecha().plusDays(dias);
+        Map<LocalDate, List<Object[]>> ocupadas = citaRepository.findIntervalosPendientes(List.of(dentistaId), desde, hasta).stream()
+                .filter(fila -> !movidas.contains((Long) fila[0]))
+                .collect(Collectors.groupingBy(fila -> (LocalDate) fila[2]));
+        for (Cita cita : citas) {
+            LocalDate destino = cita.getFecha().plusDays(dias);
+            LocalTime hora = cita.getHora();
+            LocalTime horaFin = hora.plus(cita.getTratamiento().getDuracion());
+            verificarNoPasado(destino, hora);
+            if (!enJornada(jornadas, destino, hora, horaFin)) {
+                throw new FueraDeHorarioException(dentistaId, destino, hora);
+            }
+            boolean solapada = bloqueosHorario.haySolapamiento(dentistaId, destino, hora, horaFin, null)
+                    || ocupadas.getOrDefault(destino, List.of()).stream()
+                    .anyMatch(fila -> hora.isBefore((LocalTime) fila[4]) && horaFin.isAfter((LocalTime) fila[3]));
+            if (solapada) {
+                throw new HorarioNoDisponibleException(dentistaId, destino, hora);
+            }
+        }
+    }
+
+    private Cita nuevaCita(CitaRequest citaRequest, LocalDate fecha, TipoDocumento tipoDocumento, Tratamiento tratamiento,
+                           ResolutorReferencias.ParticipantesCita participantes) {
+        return Cita.builder()
+                .fecha(fecha)
+                .hora(citaRequest.getHora())
+                .monto(tratamiento.getCosto())
+                .nombres(citaRequest.getNombres())
+                .apellidoPaterno(citaRequest.getApellidoPaterno())
+                .apellidoMaterno(citaRequest.getApellidoMaterno())
+                .estado(EstadoCita.PENDIENTE)
+                .tipoDocumento(tipoDocumento)
+                .numeroIdentidad(citaRequest.getNumeroIdentidad())
+                .sexo(Sexo.valueOf(citaRequest.getSexo()))
+                .fechaNacimiento(citaRequest.getFechaNacimiento())
+                .dentista(participantes.dentista())
+                .usuario(participantes.usuario())
+                .tratamiento(tratamiento)
+                .build();
+    }
 
-            if (seCruza) {
-                return false;
+    // Cada fecha debe caer dentro de una jornada del dentista y no cruzarse con citas pendientes ni con bloqueos de otros pacientes.
+    // Los horarios y las citas de todo el rango se traen con una consulta cada uno
+    private void verificarSerie(Long dentistaId, List<Cita> citas, Duration duracion, String bloqueoId) {
+        Map<Dia, List<Horario>> jornadas = jornadasDe(dentistaId);
+        LocalDate desde = citas.get(0).getFecha();
+        LocalDate hasta = citas.get(citas.size() - 1).getFecha();
+        Map<LocalDate, List<Object[]>> ocupadas = citaRepository.findIntervalosPendientes(List.of(dentistaId), desde, hasta).stream()
+                .collect(Collectors.groupingBy(fila -> (LocalDate) fila[2]));
+        for (Cita cita : citas) {
+            LocalTime hora = cita.getHora();
+            LocalTime horaFin = hora.plus(duracion);
+            if (!enJornada(jornadas, cita.getFecha(), hora, horaFin)) {
+                throw new FueraDeHorarioException(dentistaId, cita.getFecha(), hora);
+            }
+            boolean solapada = bloqueosHorario.haySolapamiento(dentistaId, cita.getFecha(), hora, horaFin, bloqueoId)
+                    || ocupadas.getOrDefault(cita.getFecha(), List.of()).stream()
+                    .anyMatch(fila -> hora.isBefore((LocalTime) fila[4]) && horaFin.isAfter((LocalTime) fila[3]));
+            if (solapada) {
+                throw new HorarioNoDisponibleException(dentistaId, cita.getFecha(), hora);
             }
         }
-        return true;
     }
-}
\ No newline at end of file
+
+    private Map<Dia, List<Horario>> jornadasDe(Long dentistaId) {
+        return horarioRepository.findByDentistaIdIn(List.of(dentistaId)).stream()
+                .collect(Collectors.groupingBy(Horario::getDia));
+    }
+
+    // Una cita que pasa de la medianoche (horaFin antes que hora) nunca cabe en una jornada
+    private static boolean enJornada(Map<Dia, List<Horario>> jornadas, LocalDate fecha, LocalTime hora, LocalTime horaFin) {
+        return horaFin.isAfter(hora) && jornadas.getOrDefault(Dia.de(fecha.getDayOfWeek()), List.of()).stream()
+                .anyMatch(jornada -> !hora.isBefore(jornada.getHoraComienzo()) && !horaFin.isAfter(jornada.getHoraFin()));
+    }
+
+    private static void verificarNoPasado(LocalDate fecha, LocalTime hora) {
+        if (LocalDateTime.of(fecha, hora).isBefore(LocalDateTime.now())) {
+            throw new HorarioPasadoException(fecha, hora);
+        }
+    }
+
+    private void cambiarEstado(Cita cita, EstadoCita destino) {
+        if (!cita.getEstado().puedeCambiarA(destino)) {
+            throw new TransicionEstadoInvalidaException(cita.getId(), cita.getEstado(), destino);
+        }
+        cita.setEstado(destino);
+    }
+
+    // Solo se exceptúa el bloqueo del mismo paciente para el mismo dentista y horario; uno que ya venció no exceptúa nada
+    private String bloqueoPropio(String bloqueoId, Long usuarioId, Long dentistaId, LocalDate fecha, LocalTime hora) {
+        return bloqueosHorario.obtener(bloqueoId)
+                .map(bloqueo -> {
+                    if (!bloqueo.usuarioId().equals(usuarioId)
+                            || !bloqueo.dentistaId().equals(dentistaId)
+                            || !bloqueo.fecha().equals(fecha)
+                            || !bloqueo.hora().equals(hora)) {
+                        throw new BloqueoInvalidoException(bloqueo.id());
+                    }
+                    return bloqueo.id();
+                })
+                .orElse(null);
+    }
+
+    // Se llama dentro de la admisión, así que ninguna otra reserva del mismo dentista y día puede colarse entre la consulta y el guardado.
+    // Los bloqueos temporales de otros pacientes también cuentan; se revisan primero porque no van a la base
+    private void verificarSinSolapamiento(Cita cita, Long citaId, String bloqueoId) {
+        if (cita.getEstado() != EstadoCita.PENDIENTE) {
+            return;
+        }
+        Long dentistaId = cita.getDentista().getId();
+        LocalTime horaFin = cita.getHora().plus(cita.getTratamiento().getDuracion());
+        boolean solapada = bloqueosHorario.haySolapamiento(dentistaId, cita.getFecha(), cita.getHora(), horaFin, bloqueoId)
+                || (citaId == null
+                ? citaRepository.existsSolapamiento(dentistaId, cita.getFecha(), cita.getHora(), horaFin)
+                : citaRepository.existsSolapamientoConOtraCita(dentistaId, cita.getFecha(), cita.getHora(), horaFin, citaId));
+        if (solapada) {
+            throw new HorarioNoDisponibleException(dentistaId, cita.getFecha(), cita.getHora());
+        }
+    }
+}
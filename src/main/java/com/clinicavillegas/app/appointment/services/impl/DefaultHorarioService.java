@@ -8,6 +8,7 @@ import com.clinicavillegas.app.appointment.models.Horario;
 import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
 import com.clinicavillegas.app.appointment.repositories.HorarioRepository;
 import com.clinicavillegas.app.appointment.services.HorarioService;
+import com.clinicavillegas.app.appointment.services.OcupacionService;
 import com.clinicavillegas.app.appointment.specifications.HorarioSpecification;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -21,9 +22,12 @@ public class DefaultHorarioService implements HorarioService {
 
     public final DentistaRepository dentistaRepository;
 
-    public DefaultHorarioService(HorarioRepository horarioRepository, DentistaRepository dentistaRepository) {
+    private final OcupacionService ocupacionService;
+
+    public DefaultHorarioService(HorarioRepository horarioRepository, DentistaRepository dentistaRepository, OcupacionService ocupacionService) {
         this.horarioRepository = horarioRepository;
         this.dentistaRepository = dentistaRepository;
+        this.ocupacionService = ocupacionService;
     }
 
     public List<Horario> obteneHorarios() {
@@ -58,9 +62,11 @@ public class DefaultHorarioService implements HorarioService {
                 .dentista(dentistaRepository.findById(request.getDentistaId()).orElseThrow())
                 .build();
         horarioRepository.save(horario);
+        ocupacionService.invalidarDentista(request.getDentistaId());
     }
 
     public void eliminarHorario(Long id) {
+        horarioRepository.findById(id).ifPresent(horario -> ocupacionService.invalidarDentista(horario.getDentista().getId()));
         horarioRepository.deleteById(id);
     }
 }
@@ -0,0 +1,343 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.dto.request.ListaEsperaRequest;
+import com.clinicavillegas.app.appointment.dto.response.ListaEsperaResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.SolicitudEsperaRepository;
+import com.clinicavillegas.app.appointment.services.ListaEsperaService;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import com.clinicavillegas.app.user.models.Usuario;
+import com.clinicavillegas.app.user.repositories.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Lista de espera de huecos liberados. Las solicitudes se guardan en la tabla lista_espera y se indexan en
+ * {@link ListaEspera}; cuando se confirma la cancelación de una cita, la mejor solicitud para ese dentista y día
+ * sale del índice sin consultar la base, recibe un bloqueo del hueco y un correo con la oferta.
+ * El bloqueo de una oferta dura más que el de un formulario porque el paciente primero tiene que leer el correo;
+ * si vence sin reserva, el hueco pasa al siguiente de la lista y la solicitud vuelve a esperar.
+ * Cada instancia tiene su propio índice: se carga al arrancar y se pone al día con lo que cambió en las demás
+ * cada pocos segundos (ver {@link #sincronizar()}).
+ */
+@Slf4j
+@Service
+public class DefaultListaEsperaService implements ListaEsperaService {
+
+    private static final Duration MARGEN_SINCRONIZACION = Duration.ofMinutes(1);
+
+    private final SolicitudEsperaRepository solicitudEsperaRepository;
+    private final DentistaRepository dentistaRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final CitaRepository citaRepository;
+    private final NotificacionService notificacionService;
+    private final ResolutorReferencias resolutorReferencias;
+    private final AdmisionReservas admisionReservas;
+    private final BloqueosHorario bloqueosHorario;
+    private final ListaEspera listaEspera;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration duracionOferta;
+
+    // Hasta dónde se leyeron los cambios de lista_espera; null hasta la carga inicial
+    private volatile LocalDateTime sincronizadoHasta;
+
+    public DefaultListaEsperaService(SolicitudEsperaRepository solicitudEsperaRepository, DentistaRepository dentistaRepository,
+                                     UsuarioRepository usuarioRepository, CitaRepository citaRepository,
+                                     NotificacionService notificacionService, ResolutorReferencias resolutorReferencias,
+                                     AdmisionReservas admisionReservas, BloqueosHorario bloqueosHorario,
+                                     ListaEspera listaEspera, PlatformTransactionManager transactionManager,
+                                     @Value("${app.citas.lista-espera.oferta-minutos:120}") long minutosOferta) {
+        this.solicitudEsperaRepository = solicitudEsperaRepository;
+        this.dentistaRepository = dentistaRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.citaRepository = citaRepository;
+        this.notificacionService = notificacionService;
+        this.resolutorReferencias = resolutorReferencias;
+        this.admisionReservas = admisionReservas;
+        this.bloqueosHorario = bloqueosHorario;
+        this.listaEspera = listaEspera;
+        // La oferta se registra después de confirmada la cancelación, en una transacción propia
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.duracionOferta = Duration.ofMinutes(minutosOferta);
+    }
+
+    public ListaEsperaResponse registrar(ListaEsperaRequest request) {
+        log.info("Registrando en la lista de espera al paciente ID: {} para el tratamiento ID: {}",
+                request.getUsuarioId(), request.getTratamientoId());
+        if (!usuarioRepository.existsById(request.getUsuarioId())) {
+            throw new ResourceNotFoundException(Usuario.class, request.getUsuarioId());
+        }
+        Tratamiento tratamiento = resolutorReferencias.tratamiento(request.getTratamientoId());
+        List<Long> dentistaIds = dentistasDe(request.getDentistaId(), request.getEspecializacion());
+        // Los días que ya pasaron no cuentan
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = request.getFechaDesde().isBefore(hoy) ? hoy : request.getFechaDesde();
+        SolicitudEspera solicitud = solicitudEsperaRepository.save(SolicitudEspera.builder()
+                .usuario(usuarioRepository.getReferenceById(request.getUsuarioId()))
+                .tratamiento(tratamiento)
+                .dentista(request.getDentistaId() != null ? dentistaRepository.getReferenceById(request.getDentistaId()) : null)
+                .especializacion(request.getDentistaId() != null ? null : request.getEspecializacion())
+                .fechaDesde(desde)
+                .fechaHasta(request.getFechaHasta())
+                .estado(EstadoSolicitudEspera.ESPERANDO)
+                .build());
+        if (!desde.isAfter(request.getFechaHasta())) {
+            listaEspera.agregar(new ListaEspera.Entrada(solicitud.getId(), request.getUsuarioId(), tratamiento.getDuracion(),
+                    dentistaIds, desde, request.getFechaHasta()));
+        }
+        return toResponse(solicitud);
+    }
+
+    public List<ListaEsperaResponse> obtenerPorUsuario(Long usuarioId) {
+        return solicitudEsperaRepository.findByUsuarioIdAndEstadoNotOrderByFechaDesdeAsc(usuarioId, EstadoSolicitudEspera.CANCELADA)
+                .stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    public void cancelar(Long id) {
+        log.info("Retirando de la lista de espera la solicitud ID: {}", id);
+        SolicitudEspera solicitud = solicitudEsperaRepository.findById(id).orElseThrow(
+                () -> new ResourceNotFoundException(SolicitudEspera.class, id)
+        );
+        listaEspera.quitar(id);
+        EstadoSolicitudEspera estado = solicitud.getEstado();
+        if (estado == EstadoSolicitudEspera.ESPERANDO || estado == EstadoSolicitudEspera.OFRECIDA) {
+            solicitud.setEstado(EstadoSolicitudEspera.CANCELADA);
+            solicitudEsperaRepository.save(solicitud);
+        }
+        if (estado == EstadoSolicitudEspera.OFRECIDA) {
+            // El hueco que se le guardaba pasa al siguiente de la lista
+            bloqueosHorario.liberar(solicitud.getBloqueoId());
+            reofrecer(solicitud.getCitaLiberadaId(), solicitud.getDentistaOfrecido().getId(), solicitud.getFechaOfrecida(),
+                    solicitud.getHoraOfrecida(), solicitud.getTratamiento().getDuracion());
+        }
+    }
+
+    // Una consulta por especialización distinta, no por solicitud
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        // Lo que se modifique mientras se carga entra en la primera sincronización
+        sincronizadoHasta = LocalDateTime.now();
+        Map<String, List<Long>> porEspecializacion = new HashMap<>();
+        List<SolicitudEsperaRepository.SolicitudIndexable> vigentes = solicitudEsperaRepository.findVigentes(LocalDate.now());
+        LocalDate hoy = LocalDate.now();
+        for (SolicitudEsperaRepository.SolicitudIndexable solicitud : vigentes) {
+            listaEspera.agregar(entradaDe(solicitud, porEspecializacion, hoy));
+        }
+        log.info("Lista de espera cargada con {} solicitudes", vigentes.size());
+    }
+
+    /**
+     * registrar, cancelar y las ofertas solo tocan el índice de la instancia que atendió la petición; aquí se recogen
+     * las solicitudes que cambiaron en las demás. Se relee un margen hacia atrás porque fecha_modificacion la pone el reloj
+     * del nodo que escribió y la transacción puede confirmar después; aplicar dos veces un cambio no tiene efecto,
+     * y una entrada que ya no espera se descarta al ofrecer.
+     */
+    @Scheduled(fixedDelayString = "${app.citas.lista-espera.sincronizacion-ms:15000}",
+            initialDelayString = "${app.citas.lista-espera.sincronizacion-ms:15000}")
+    public void sincronizar() {
+        LocalDateTime desde = sincronizadoHasta;
+        if (desde == null) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        List<SolicitudEsperaRepository.SolicitudModificada> modificadas =
+                solicitudEsperaRepository.findModificadasDesde(desde.minus(MARGEN_SINCRONIZACION));
+        Map<String, List<Long>> porEspecializacion = new HashMap<>();
+        LocalDate hoy = LocalDate.now();
+        for (SolicitudEsperaRepository.SolicitudModificada solicitud : modificadas) {
+            if (solicitud.getEstado() == EstadoSolicitudEspera.ESPERANDO && !solicitud.getFechaHasta().isBefore(hoy)) {
+                listaEspera.agregar(entradaDe(solicitud, porEspecializacion, hoy));
+            } else {
+                listaEspera.quitar(solicitud.getId());
+            }
+        }
+        sincronizadoHasta = ahora;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void ofrecerHueco(CitaModificadaEvent evento) {
+        if (evento.getEstado() != EstadoCita.CANCELADA || evento.getDentistaId() == null || evento.getHoraFin() == null
+                || evento.getFecha().isBefore(LocalDate.now())) {
+            return;
+        }
+        Duration hueco = Duration.between(evento.getHora(), evento.getHoraFin());
+        ofrecerAlSiguiente(evento.getCitaId(), evento.getDentistaId(), evento.getFecha(), evento.getHora(), hueco);
+    }
+
+    /**
+     * Cierra las ofertas cuyo bloqueo venció. Si el paciente reservó el hueco la solicitud queda aceptada; si no,
+     * el hueco se ofrece al siguiente de la lista y la solicitud vuelve al índice después, para que no reciba el mismo.
+     */
+    @Scheduled(fixedDelayString = "${app.citas.lista-espera.vencimiento-ms:30000}")
+    public void vencerOfertas() {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (SolicitudEspera solicitud : solicitudEsperaRepository.findByEstadoAndOfertaVenceBefore(EstadoSolicitudEspera.OFRECIDA, ahora)) {
+            try {
+                vencerOferta(solicitud, ahora);
+            } catch (RuntimeException e) {
+                log.error("No se pudo cerrar la oferta vencida de la solicitud ID: {}", solicitud.getId(), e);
+            }
+        }
+    }
+
+    private void vencerOferta(SolicitudEspera solicitud, LocalDateTime ahora) {
+        Long usuarioId = solicitud.getUsuario().getId();
+        Long dentistaId = solicitud.getDentistaOfrecido().getId();
+        LocalDate fecha = solicitud.getFechaOfrecida();
+        LocalTime hora = solicitud.getHoraOfrecida();
+        if (citaRepository.existsReservaDelPaciente(usuarioId, dentistaId, fecha, hora)) {
+            transactionTemplate.execute(status -> solicitudEsperaRepository.aceptarOferta(solicitud.getId(), ahora));
+            return;
+        }
+        Integer retiradas = transactionTemplate.execute(status -> solicitudEsperaRepository.retirarOferta(solicitud.getId(), ahora));
+        if (retiradas == null || retiradas == 0) {
+            // Otra instancia ya la cerró
+            return;
+        }
+        log.info("La oferta a la solicitud ID: {} venció sin reserva, vuelve a la lista de espera", solicitud.getId());
+        bloqueosHorario.liberar(solicitud.getBloqueoId());
+        reofrecer(solicitud.getCitaLiberadaId(), dentistaId, fecha, hora, solicitud.getTratamiento().getDuracion());
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = solicitud.getFechaDesde().isBefore(hoy) ? hoy : solicitud.getFechaDesde();
+        if (!desde.isAfter(solicitud.getFechaHasta())) {
+            List<Long> dentistaIds = solicitud.getDentista() != null
+                    ? List.of(solicitud.getDentista().getId())
+                    : dentistaRepository.findIdsActivosPorEspecializacion(solicitud.getEspecializacion());
+            listaEspera.agregar(new ListaEspera.Entrada(solicitud.getId(), usuarioId, solicitud.getTratamiento().getDuracion(),
+                    dentistaIds, desde, solicitud.getFechaHasta()));
+        }
+    }
+
+    // Las ofertas anteriores a V12 no guardan la cita liberada, que la notificación necesita; su hueco queda libre sin más
+    private void reofrecer(Long citaId, Long dentistaId, LocalDate fecha, LocalTime hora, Duration hueco) {
+        if (citaId == null || fecha.isBefore(LocalDate.now())) {
+            return;
+        }
+        ofrecerAlSiguiente(citaId, dentistaId, fecha, hora, hueco);
+    }
+
+    // Una entrada cuya solicitud ya no espera (retirada, o atendida desde otra instancia) se descarta y se prueba con la siguiente
+    private void ofrecerAlSiguiente(Long citaId, Long dentistaId, LocalDate fecha, LocalTime hora, Duration hueco) {
+        Optional<ListaEspera.Entrada> siguiente;
+        while ((siguiente = listaEspera.tomar(dentistaId, fecha, hueco)).isPresent()) {
+            if (intentarOfrecer(citaId, dentistaId, fecha, hora, siguiente.get())) {
+                return;
+            }
+        }
+    }
+
+    // Devuelve false solo si la solicitud ya no esperaba; ante cualquier otro resultado no se sigue buscando
+    private boolean intentarOfrecer(Long citaId, Long dentistaId, LocalDate fecha, LocalTime hora, ListaEspera.Entrada entrada) {
+        try {
+            return ofrecer(citaId, dentistaId, fecha, hora, entrada);
+        } catch (HorarioNoDisponibleException e) {
+            // Otra reserva tomó el hueco primero: la solicitud sigue esperando el siguiente
+            listaEspera.agregar(entrada);
+        } catch (RuntimeException e) {
+            // La cancelación ya está confirmada, un fallo aquí no debe llegar a quien canceló
+            listaEspera.agregar(entrada);
+            log.error("No se pudo ofrecer el hueco de la cita ID: {} a la solicitud ID: {}", citaId, entrada.solicitudId(), e);
+        }
+        return true;
+    }
+
+    private boolean ofrecer(Long citaId, Long dentistaId, LocalDate fecha, LocalTime hora, ListaEspera.Entrada entrada) {
+        LocalTime horaFin = hora.plus(entrada.duracion());
+        Boolean ofrecida = transactionTemplate.execute(status -> admisionReservas.ejecutarConResultado(dentistaId, fecha, () -> {
+            SolicitudEspera solicitud = solicitudEsperaRepository.findById(entrada.solicitudId()).orElse(null);
+            if (solicitud == null || solicitud.getEstado() != EstadoSolicitudEspera.ESPERANDO) {
+                return false;
+            }
+            if (citaRepository.existsSolapamiento(dentistaId, fecha, hora, horaFin)) {
+                throw new HorarioNoDisponibleException(dentistaId, fecha, hora);
+            }
+            BloqueosHorario.Bloqueo bloqueo = bloqueosHorario.bloquear(dentistaId, entrada.usuarioId(), fecha, hora, horaFin,
+                    duracionOferta);
+            log.info("Ofreciendo el hueco del dentista ID: {} el {} a las {} a la solicitud ID: {}",
+                    dentistaId, fecha, hora, solicitud.getId());
+            solicitud.setEstado(EstadoSolicitudEspera.OFRECIDA);
+            solicitud.setDentistaOfrecido(dentistaRepository.getReferenceById(dentistaId));
+            solicitud.setFechaOfrecida(fecha);
+            solicitud.setHoraOfrecida(hora);
+            solicitud.setBloqueoId(bloqueo.id());
+            solicitud.setOfertaVence(bloqueo.expira());
+            solicitud.setCitaLiberadaId(citaId);
+            solicitudEsperaRepository.save(solicitud);
+            notificacionService.encolarOfertaListaEspera(solicitud, citaId);
+            return true;
+        }));
+        return Boolean.TRUE.equals(ofrecida);
+    }
+
+    private ListaEspera.Entrada entradaDe(SolicitudEsperaRepository.SolicitudIndexable solicitud,
+                                          Map<String, List<Long>> porEspecializacion, LocalDate hoy) {
+        List<Long> dentistaIds = solicitud.getDentistaId() != null
+                ? List.of(solicitud.getDentistaId())
+                : porEspecializacion.computeIfAbsent(solicitud.getEspecializacion(), dentistaRepository::findIdsActivosPorEspecializacion);
+        LocalDate desde = solicitud.getFechaDesde().isBefore(hoy) ? hoy : solicitud.getFechaDesde();
+        return new ListaEspera.Entrada(solicitud.getId(), solicitud.getUsuarioId(), solicitud.getDuracion(),
+                dentistaIds, desde, solicitud.getFechaHasta());
+    }
+
+    private List<Long> dentistasDe(Long dentistaId, String especializacion) {
+        if (dentistaId != null) {
+            if (!dentistaRepository.existsById(dentistaId)) {
+                throw new ResourceNotFoundException(Dentista.class, dentistaId);
+            }
+            return List.of(dentistaId);
+        }
+        List<Long> dentistaIds = dentistaRepository.findIdsActivosPorEspecializacion(especializacion);
+        if (dentistaIds.isEmpty()) {
+            throw new ResourceNotFoundException(Dentista.class, "especialización", especializacion);
+        }
+        return dentistaIds;
+    }
+
+    private ListaEsperaResponse toResponse(SolicitudEspera solicitud) {
+        return ListaEsperaResponse.builder()
+                .id(solicitud.getId())
+                .usuarioId(solicitud.getUsuario().getId())
+                .tratamientoId(solicitud.getTratamiento().getId())
+                .tratamiento(solicitud.getTratamiento().getNombre())
+                .dentistaId(solicitud.getDentista() != null ? solicitud.getDentista().getId() : null)
+                .especializacion(solicitud.getEspecializacion())
+                .fechaDesde(solicitud.getFechaDesde())
+                .fechaHasta(solicitud.getFechaHasta())
+                .estado(solicitud.getEstado().name())
+                .dentistaOfrecidoId(solicitud.getDentistaOfrecido() != null ? solicitud.getDentistaOfrecido().getId() : null)
+                .fechaOfrecida(solicitud.getFechaOfrecida())
+                .horaOfrecida(solicitud.getHoraOfrecida())
+                .bloqueoId(solicitud.getBloqueoId())
+                .ofertaVence(solicitud.getOfertaVence())
+                .build();
+    }
+}
@@ -0,0 +1,246 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.dto.response.DisponibilidadMensualResponse;
+import com.clinicavillegas.app.appointment.dto.response.HuecoDisponibleResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.Dia;
+import com.clinicavillegas.app.appointment.models.Horario;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.HorarioRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.services.OcupacionService;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene en memoria un {@link MapaOcupacion} por dentista y día para responder búsquedas de disponibilidad
+ * sin consultar la base de datos por cada combinación. Los mapas se arman en bloque con dos consultas
+ * y luego se actualizan con cada {@link CitaModificadaEvent}; el vencimiento corrige cualquier desfase.
+ * La reserva sigue validándose contra la base de datos, el mapa solo sirve para sugerir horarios.
+ */
+@Service
+@Slf4j
+public class DefaultOcupacionService implements OcupacionService {
+
+    private static final int DIAS_BUSQUEDA_POR_DEFECTO = 7;
+    private static final int DIAS_BUSQUEDA_MAXIMO = 31;
+
+    private final CitaRepository citaRepository;
+    private final HorarioRepository horarioRepository;
+    private final DentistaRepository dentistaRepository;
+    private final TratamientoRepository tratamientoRepository;
+    private final Cache<ClaveOcupacion, MapaOcupacion> mapas;
+
+    public DefaultOcupacionService(CitaRepository citaRepository, HorarioRepository horarioRepository,
+                                   DentistaRepository dentistaRepository, TratamientoRepository tratamientoRepository,
+                                   @Value("${app.ocupacion.ttl-minutes:10}") long ttlMinutos,
+                                   @Value("${app.ocupacion.max-size:5000}") long tamanioMaximo) {
+        this.citaRepository = citaRepository;
+        this.horarioRepository = horarioRepository;
+        this.dentistaRepository = dentistaRepository;
+        this.tratamientoRepository = tratamientoRepository;
+        this.mapas = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttlMinutos, TimeUnit.MINUTES)
+                .build();
+    }
+
+    public Optional<HuecoDisponibleResponse> buscarProximoHueco(Long tratamientoId, Long dentistaId,
+                                                                LocalDate fechaInicio, LocalDate fechaFin) {
+        Tratamiento tratamiento = buscarTratamiento(tratamientoId);
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = fechaInicio == null || fechaInicio.isBefore(hoy) ? hoy : fechaInicio;
+        LocalDate hasta = fechaFin != null ? fechaFin : desde.plusDays(DIAS_BUSQUEDA_POR_DEFECTO - 1);
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha de inicio debe ser anterior a la de fin");
+        }
+        if (desde.plusDays(DIAS_BUSQUEDA_MAXIMO).isBefore(hasta)) {
+            throw new IllegalArgumentException("El rango de búsqueda no puede superar los " + DIAS_BUSQUEDA_MAXIMO + " días");
+        }
+        List<Long> dentistaIds = dentistasDe(dentistaId);
+        log.info("Buscando próximo hueco para tratamientoId: {} entre {} y {} con {} dentistas",
+                tratamientoId, desde, hasta, dentistaIds.size());
+
+        List<ClaveOcupacion> claves = new ArrayList<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            for (Long id : dentistaIds) {
+                claves.add(new ClaveOcupacion(id, fecha));
+            }
+        }
+        Map<ClaveOcupacion, MapaOcupacion> mapasDelRango = mapas.getAll(claves, this::cargarMapas);
+
+        int bloques = MapaOcupacion.bloquesPara(tratamiento.getDuracion().toMinutes());
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            LocalTime horaMinima = fecha.equals(hoy) ? LocalTime.now() : LocalTime.MIN;
+            HuecoDisponibleResponse mejor = null;
+            for (Long id : dentistaIds) {
+                LocalTime hora = mapasDelRango.get(new ClaveOcupacion(id, fecha)).buscarHueco(bloques, horaMinima);
+                if (hora != null && (mejor == null || hora.isBefore(mejor.getHora()))) {
+                    mejor = HuecoDisponibleResponse.builder()
+                            .dentistaId(id)
+                            .fecha(fecha)
+                            .hora(hora)
+                            .horaFin(hora.plus(tratamiento.getDuracion()))
+                            .build();
+                }
+            }
+            if (mejor != null) {
+                return Optional.of(mejor);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Se arma directo de la base (no del caché de mapas) para que el contenido corresponda siempre al sello
+    public DisponibilidadMensualResponse obtenerDisponibilidadMensual(Long tratamientoId, Long dentistaId, YearMonth mes) {
+        Tratamiento tratamiento = buscarTratamiento(tratamientoId);
+        List<Long> dentistaIds = dentistasDe(dentistaId);
+        log.info("Armando disponibilidad de {} para tratamientoId: {} con {} dentistas", mes, tratamientoId, dentistaIds.size());
+
+        List<ClaveOcupacion> claves = new ArrayList<>();
+        for (int dia = 1; dia <= mes.lengthOfMonth(); dia++) {
+            for (Long id : dentistaIds) {
+                claves.add(new ClaveOcupacion(id, mes.atDay(dia)));
+            }
+        }
+        Map<ClaveOcupacion, MapaOcupacion> mapasDelMes = claves.isEmpty() ? Map.of() : cargarMapas(new HashSet<>(claves));
+
+        LocalDate hoy = LocalDate.now();
+        LocalTime ahora = LocalTime.now();
+        int bloques = MapaOcupacion.bloquesPara(tratamiento.getDuracion().toMinutes());
+        int[][] huecos = new int[dentistaIds.size()][mes.lengthOfMonth()];
+        for (int i = 0; i < dentistaIds.size(); i++) {
+            for (int dia = 1; dia <= mes.lengthOfMonth(); dia++) {
+                LocalDate fecha = mes.atDay(dia);
+                if (fecha.isBefore(hoy)) {
+                    continue;
+                }
+                LocalTime horaMinima = fecha.equals(hoy) ? ahora : LocalTime.MIN;
+                huecos[i][dia - 1] = mapasDelMes.get(new ClaveOcupacion(dentistaIds.get(i), fecha)).contarHuecos(bloques, horaMinima);
+            }
+        }
+        return DisponibilidadMensualResponse.builder()
+                .mes(mes)
+                .tratamientoId(tratamientoId)
+                .duracionMinutos(tratamiento.getDuracion().toMinutes())
+                .dentistas(dentistaIds)
+                .huecos(huecos)
+                .build();
+    }
+
+    // Cambia con cualquier cita del mes, con los horarios de los dentistas, con el tratamiento o con los dentistas activos.
+    // En el mes en curso también cambia cada bloque de 5 minutos, porque los huecos de hoy se cuentan desde la hora actual
+    public String selloDisponibilidadMensual(Long tratamientoId, Long dentistaId, YearMonth mes) {
+        Tratamiento tratamiento = buscarTratamiento(tratamientoId);
+        List<Long> dentistaIds = dentistasDe(dentistaId);
+        StringBuilder sello = new StringBuilder()
+                .append(mes).append('|')
+                .append(tratamientoId).append('|')
+                .append(tratamiento.getDuracion().toMinutes()).append('|')
+                .append(tratamiento.getFechaModificacion()).append('|')
+                .append(dentistaIds).append('|');
+        if (!dentistaIds.isEmpty()) {
+            CitaRepository.ResumenCambios citas = citaRepository.resumirCambios(dentistaIds, mes.atDay(1), mes.atEndOfMonth());
+            HorarioRepository.ResumenCambios horarios = horarioRepository.resumirCambios(dentistaIds);
+            sello.append(citas.getPendientes()).append('|').append(citas.getUltimaModificacion()).append('|')
+                    .append(horarios.getTotal()).append('|').append(horarios.getUltimaModificacion()).append('|');
+        }
+        LocalDate hoy = LocalDate.now();
+        if (!mes.atEndOfMonth().isBefore(hoy)) {
+            sello.append(hoy);
+            if (YearMonth.from(hoy).equals(mes)) {
+                sello.append('T').append(LocalTime.now().toSecondOfDay() / 60 / MapaOcupacion.MINUTOS_POR_BLOQUE);
+            }
+        }
+        return DigestUtils.md5DigestAsHex(sello.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void invalidarDentista(Long dentistaId) {
+        mapas.asMap().keySet().removeIf(clave -> clave.dentistaId().equals(dentistaId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void actualizarOcupacion(CitaModificadaEvent evento) {
+        if (evento.getDentistaId() == null || evento.getFecha() == null) {
+            return;
+        }
+        if (evento.getCitaId() == null) {
+            mapas.invalidate(new ClaveOcupacion(evento.getDentistaId(), evento.getFecha()));
+            return;
+        }
+        if (evento.getDentistaIdAnterior() != null && evento.getFechaAnterior() != null) {
+            MapaOcupacion anterior = mapas.getIfPresent(new ClaveOcupacion(evento.getDentistaIdAnterior(), evento.getFechaAnterior()));
+            if (anterior != null) {
+                anterior.liberar(evento.getCitaId());
+            }
+        }
+        MapaOcupacion actual = mapas.getIfPresent(new ClaveOcupacion(evento.getDentistaId(), evento.getFecha()));
+        if (actual == null) {
+            return;
+        }
+        if (evento.isPendiente() && evento.getHora() != null && evento.getHoraFin() != null) {
+            actual.ocupar(evento.getCitaId(), evento.getHora(), evento.getHoraFin());
+        } else {
+            actual.liberar(evento.getCitaId());
+        }
+    }
+
+    private Tratamiento buscarTratamiento(Long tratamientoId) {
+        return tratamientoRepository.findById(tratamientoId).orElseThrow(
+                () -> new ResourceNotFoundException(Tratamiento.class, tratamientoId)
+        );
+    }
+
+    private List<Long> dentistasDe(Long dentistaId) {
+        return dentistaId != null ? List.of(dentistaId) : dentistaRepository.findIdsActivos();
+    }
+
+    private Map<ClaveOcupacion, MapaOcupacion> cargarMapas(Set<? extends ClaveOcupacion> claves) {
+        Set<Long> dentistaIds = claves.stream().map(ClaveOcupacion::dentistaId).collect(Collectors.toSet());
+        LocalDate fechaInicio = claves.stream().map(ClaveOcupacion::fecha).min(LocalDate::compareTo).orElseThrow();
+        LocalDate fechaFin = claves.stream().map(ClaveOcupacion::fecha).max(LocalDate::compareTo).orElseThrow();
+        log.info("Armando {} mapas de ocupación para {} dentistas entre {} y {}", claves.size(), dentistaIds.size(), fechaInicio, fechaFin);
+
+        Map<Long, List<Horario>> horariosPorDentista = horarioRepository.findByDentistaIdIn(dentistaIds).stream()
+                .collect(Collectors.groupingBy(horario -> horario.getDentista().getId()));
+
+        Map<ClaveOcupacion, MapaOcupacion> resultado = new HashMap<>();
+        for (ClaveOcupacion clave : claves) {
+            MapaOcupacion mapa = new MapaOcupacion();
+            Dia dia = Dia.de(clave.fecha().getDayOfWeek());
+            for (Horario horario : horariosPorDentista.getOrDefault(clave.dentistaId(), List.of())) {
+                if (horario.getDia() == dia) {
+                    mapa.agregarJornada(horario.getHoraComienzo(), horario.getHoraFin());
+                }
+            }
+            resultado.put(clave, mapa);
+        }
+
+        for (Object[] fila : citaRepository.findIntervalosPendientes(dentistaIds, fechaInicio, fechaFin)) {
+            MapaOcupacion mapa = resultado.get(new ClaveOcupacion((Long) fila[1], (LocalDate) fila[2]));
+            if (mapa != null) {
+                mapa.ocupar((Long) fila[0], (LocalTime) fila[3], (LocalTime) fila[4]);
+            }
+        }
+        return resultado;
+    }
+
+    private record ClaveOcupacion(Long dentistaId, LocalDate fecha) {
+    }
+}
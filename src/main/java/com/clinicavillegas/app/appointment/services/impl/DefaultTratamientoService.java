@@ -8,6 +8,7 @@ import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
 import com.clinicavillegas.app.appointment.services.TratamientoService;
 import com.clinicavillegas.app.appointment.specifications.TratamientoSpecification; // Importa tu clase de especificación estática
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification; // ¡Importante! Asegúrate de importar esta
@@ -80,6 +81,7 @@ public class DefaultTratamientoService implements TratamientoService {
     }
 
     @Override
+    @CacheEvict(value = ResolutorReferencias.CACHE_TRATAMIENTOS, key = "#id")
     @Transactional
     public void actualizarTratamiento(Long id, TratamientoRequest request) {
         Tratamiento tratamientoExistente = tratamientoRepository.findById(id)
@@ -99,6 +101,7 @@ public class DefaultTratamientoService implements TratamientoService {
     }
 
     @Override
+    @CacheEvict(value = ResolutorReferencias.CACHE_TRATAMIENTOS, key = "#id")
     @Transactional
     public void eliminarTratamiento(Long id) {
         Tratamiento tratamientoExistente = tratamientoRepository.findById(id)
@@ -0,0 +1,169 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.dto.response.CambioAgendaResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Reparte los cambios de agenda entre las instancias con LISTEN/NOTIFY de PostgreSQL. Cada cambio se publica con
+ * pg_notify en la misma transacción que lo produjo, así que PostgreSQL solo lo entrega si la transacción confirma
+ * y en el orden de confirmación. Cada instancia escucha en una conexión del pool que queda ocupada mientras corre,
+ * descarta lo que publicó ella misma (eso ya lo entrega {@link DefaultAgendaService#registrarCambio}) y pasa el resto
+ * al anillo local. Si la conexión se cae, los avisos de ese intervalo se pierden: al reconectar se invalida el anillo
+ * para que las pantallas recarguen la agenda.
+ */
+@Slf4j
+@Component
+public class DifusionAgenda {
+
+    static final String CANAL = "agenda_citas";
+
+    // Identifica los avisos de esta instancia, que ya se entregaron localmente
+    private final String nodo = UUID.randomUUID().toString();
+
+    private final DataSource dataSource;
+    private final DefaultAgendaService agendaService;
+    private final ObjectMapper objectMapper;
+    private final boolean activa;
+    private final int esperaMs;
+    private final long reintentoMs;
+
+    private volatile boolean detenida;
+    private volatile boolean escuchando;
+    private Thread hilo;
+
+    public DifusionAgenda(DataSource dataSource, DefaultAgendaService agendaService, ObjectMapper objectMapper,
+                          @Value("${app.citas.agenda.difusion.activa:true}") boolean activa,
+                          @Value("${app.citas.agenda.difusion.espera-ms:500}") int esperaMs,
+                          @Value("${app.citas.agenda.difusion.reintento-ms:5000}") long reintentoMs) {
+        this.dataSource = dataSource;
+        this.agendaService = agendaService;
+        this.objectMapper = objectMapper;
+        this.activa = activa;
+        this.esperaMs = esperaMs;
+        this.reintentoMs = reintentoMs;
+    }
+
+    // Si el aviso no se puede encolar, la transacción falla: un cambio confirmado siempre llega a las demás instancias
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void publicar(CitaModificadaEvent evento) {
+        if (!activa || evento.getCitaId() == null) {
+            return;
+        }
+        String aviso;
+        try {
+            aviso = objectMapper.writeValueAsString(new Aviso(nodo, DefaultAgendaService.cambioDe(evento)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el cambio de agenda", e);
+        }
+        Connection conexion = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement sentencia = conexion.prepareStatement("SELECT pg_notify(?, ?)")) {
+            sentencia.setString(1, CANAL);
+            sentencia.setString(2, aviso);
+            sentencia.execute();
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo publicar el cambio de agenda", e);
+        } finally {
+            DataSourceUtils.releaseConnection(conexion, dataSource);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void iniciar() {
+        if (!activa || hilo != null) {
+            return;
+        }
+        hilo = new Thread(this::escuchar, "agenda-difusion");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    @PreDestroy
+    public synchronized void detener() {
+        detenida = true;
+        if (hilo != null) {
+            hilo.interrupt();
+        }
+    }
+
+    public boolean escuchando() {
+        return escuchando;
+    }
+
+    private void escuchar() {
+        boolean reconexion = false;
+        while (!detenida) {
+            try (Connection conexion = dataSource.getConnection()) {
+                conexion.setAutoCommit(true);
+                try (Statement sentencia = conexion.createStatement()) {
+                    sentencia.execute("LISTEN " + CANAL);
+                }
+                escuchando = true;
+                if (reconexion) {
+                    agendaService.invalidar();
+                }
+                PGConnection pg = conexion.unwrap(PGConnection.class);
+                while (!detenida) {
+                    PGNotification[] avisos = pg.getNotifications(esperaMs);
+                    if (avisos != null) {
+                        for (PGNotification aviso : avisos) {
+                            recibir(aviso.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!detenida) {
+                    log.warn("Se perdió la conexión que escucha los cambios de agenda: {}", e.getMessage());
+                }
+            }
+            escuchando = false;
+            reconexion = true;
+            if (!detenida && !pausar()) {
+                return;
+            }
+        }
+    }
+
+    private void recibir(String contenido) {
+        try {
+            Aviso aviso = objectMapper.readValue(contenido, Aviso.class);
+            if (!nodo.equals(aviso.nodo())) {
+                agendaService.recibir(aviso.cambio());
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Aviso de agenda mal formado: {}", e.getMessage());
+        }
+    }
+
+    private boolean pausar() {
+        try {
+            Thread.sleep(reintentoMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    record Aviso(String nodo, CambioAgendaResponse cambio) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generaciones de las listas de citas en caché, por dentista y por paciente.
+ * La generación forma parte de la clave de caché, así que un cambio en una cita solo deja huérfanas
+ * las entradas de su dentista, de su paciente y de las búsquedas sin ninguno de esos filtros;
+ * las demás siguen sirviéndose. Las entradas huérfanas salen por tamaño o vencimiento.
+ * Se avanza después del commit para que nadie vuelva a guardar datos viejos con la generación nueva.
+ */
+@Component("generacionesCitas")
+public class GeneracionesCitas {
+
+    private final AtomicLong global = new AtomicLong();
+    private final Map<Long, AtomicLong> porDentista = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> porUsuario = new ConcurrentHashMap<>();
+
+    /**
+     * Parte de la clave de caché para una búsqueda con estos filtros. Una búsqueda sin dentista ni paciente
+     * puede incluir cualquier cita, por eso depende de la generación global.
+     */
+    public String de(Long usuarioId, Long dentistaId) {
+        if (usuarioId == null && dentistaId == null) {
+            return "g" + global.get();
+        }
+        StringBuilder clave = new StringBuilder();
+        if (usuarioId != null) {
+            clave.append('u').append(generacion(porUsuario, usuarioId));
+        }
+        if (dentistaId != null) {
+            clave.append('d').append(generacion(porDentista, dentistaId));
+        }
+        return clave.toString();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void avanzar(CitaModificadaEvent evento) {
+        global.incrementAndGet();
+        avanzar(porUsuario, evento.getUsuarioId());
+        avanzar(porUsuario, evento.getUsuarioIdAnterior());
+        avanzar(porDentista, evento.getDentistaId());
+        avanzar(porDentista, evento.getDentistaIdAnterior());
+    }
+
+    private static long generacion(Map<Long, AtomicLong> generaciones, Long id) {
+        AtomicLong generacion = generaciones.get(id);
+        return generacion == null ? 0 : generacion.get();
+    }
+
+    private static void avanzar(Map<Long, AtomicLong> generaciones, Long id) {
+        if (id != null) {
+            generaciones.computeIfAbsent(id, clave -> new AtomicLong()).incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Índice en memoria de la lista de espera por dentista y día. Cada día guarda sus solicitudes en un árbol
+ * ordenado por duración del tratamiento (de mayor a menor) y luego por antigüedad, así que la solicitud que mejor
+ * aprovecha un hueco liberado es el primer elemento que no lo excede: un {@code ceiling} en O(log n), sin consultas.
+ * Como {@link BloqueosHorario}, solo vive en esta instancia; la tabla lista_espera es la fuente: se carga al arrancar
+ * y se sincroniza periódicamente con lo que cambian las demás instancias.
+ */
+@Component
+public class ListaEspera {
+
+    private static final Comparator<Entrada> ORDEN = Comparator.comparing(Entrada::duracion, Comparator.reverseOrder())
+            .thenComparing(Entrada::solicitudId);
+
+    private final Map<ClaveDia, NavigableSet<Entrada>> porDia = new HashMap<>();
+    private final Map<Long, Entrada> porSolicitud = new HashMap<>();
+
+    public synchronized void agregar(Entrada entrada) {
+        quitar(entrada.solicitudId());
+        porSolicitud.put(entrada.solicitudId(), entrada);
+        for (Long dentistaId : entrada.dentistaIds()) {
+            for (LocalDate fecha = entrada.desde(); !fecha.isAfter(entrada.hasta()); fecha = fecha.plusDays(1)) {
+                porDia.computeIfAbsent(new ClaveDia(dentistaId, fecha), clave -> new TreeSet<>(ORDEN)).add(entrada);
+            }
+        }
+    }
+
+    /**
+     * Saca de la lista y devuelve la solicitud que mejor ocupa el hueco: la de tratamiento más largo que quepa
+     * y, a igual duración, la más antigua.
+     */
+    public synchronized Optional<Entrada> tomar(Long dentistaId, LocalDate fecha, Duration hueco) {
+        NavigableSet<Entrada> delDia = porDia.get(new ClaveDia(dentistaId, fecha));
+        if (delDia == null) {
+            return Optional.empty();
+        }
+        Entrada mejor = delDia.ceiling(new Entrada(Long.MIN_VALUE, null, hueco, List.of(), fecha, fecha));
+        if (mejor == null) {
+            return Optional.empty();
+        }
+        quitar(mejor.solicitudId());
+        return Optional.of(mejor);
+    }
+
+    public synchronized void quitar(Long solicitudId) {
+        Entrada entrada = porSolicitud.remove(solicitudId);
+        if (entrada == null) {
+            return;
+        }
+        for (Long dentistaId : entrada.dentistaIds()) {
+            for (LocalDate fecha = entrada.desde(); !fecha.isAfter(entrada.hasta()); fecha = fecha.plusDays(1)) {
+                ClaveDia clave = new ClaveDia(dentistaId, fecha);
+                NavigableSet<Entrada> delDia = porDia.get(clave);
+                if (delDia != null && delDia.remove(entrada) && delDia.isEmpty()) {
+                    porDia.remove(clave);
+                }
+            }
+        }
+    }
+
+    public synchronized int pendientes() {
+        return porSolicitud.size();
+    }
+
+    // Un día que ya pasó no puede recibir huecos; las solicitudes vencidas siguen ESPERANDO en la tabla pero no se vuelven a cargar
+    @Scheduled(cron = "${app.citas.lista-espera.depuracion-cron:0 5 0 * * *}")
+    public synchronized void depurar() {
+        LocalDate hoy = LocalDate.now();
+        porSolicitud.values().stream()
+                .filter(entrada -> entrada.hasta().isBefore(hoy))
+                .map(Entrada::solicitudId)
+                .toList()
+                .forEach(this::quitar);
+        porDia.keySet().removeIf(clave -> clave.fecha().isBefore(hoy));
+    }
+
+    public record Entrada(Long solicitudId, Long usuarioId, Duration duracion, Collection<Long> dentistaIds,
+                          LocalDate desde, LocalDate hasta) {
+    }
+
+    private record ClaveDia(Long dentistaId, LocalDate fecha) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import java.time.LocalTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ocupación de un dentista en un día, con un bit por cada bloque de 5 minutos (288 bloques, 5 palabras de 64 bits).
+ * La jornada marca los bloques dentro del horario de atención y la ocupación los bloques tomados por citas pendientes.
+ * Se guarda el rango de cada cita para poder liberarla sin perder los bloques que comparte con una cita vecina.
+ */
+public class MapaOcupacion {
+
+    public static final int MINUTOS_POR_BLOQUE = 5;
+    public static final int BLOQUES_POR_DIA = 24 * 60 / MINUTOS_POR_BLOQUE;
+
+    private final BitSet jornada = new BitSet(BLOQUES_POR_DIA);
+    private final BitSet ocupacion = new BitSet(BLOQUES_POR_DIA);
+    private final Map<Long, int[]> citas = new HashMap<>();
+
+    public synchronized void agregarJornada(LocalTime horaComienzo, LocalTime horaFin) {
+        int desde = bloqueSiguiente(horaComienzo);
+        int hasta = horaFin.isAfter(horaComienzo) ? bloqueAnterior(horaFin) : BLOQUES_POR_DIA;
+        if (desde < hasta) {
+            jornada.set(desde, hasta);
+        }
+    }
+
+    public synchronized void ocupar(Long citaId, LocalTime hora, LocalTime horaFin) {
+        liberar(citaId);
+        int desde = bloqueAnterior(hora);
+        int hasta = horaFin.isBefore(hora) ? BLOQUES_POR_DIA : bloqueSiguiente(horaFin);
+        citas.put(citaId, new int[]{desde, hasta});
+        ocupacion.set(desde, hasta);
+    }
+
+    public synchronized void liberar(Long citaId) {
+        if (liberarSinRecalcular(citaId)) {
+            // Los bloques de los extremos pueden estar compartidos con otra cita
+            citas.values().forEach(rango -> ocupacion.set(rango[0], rango[1]));
+        }
+    }
+
+    /**
+     * Devuelve la primera hora desde {@code horaMinima} en la que hay {@code bloques} bloques libres seguidos
+     * dentro de la jornada, o {@code null} si no hay espacio en el día.
+     */
+    public synchronized LocalTime buscarHueco(int bloques, LocalTime horaMinima) {
+        BitSet libres = (BitSet) jornada.clone();
+        libres.andNot(ocupacion);
+        int inicio = libres.nextSetBit(bloqueSiguiente(horaMinima));
+        while (inicio >= 0 && inicio + bloques <= BLOQUES_POR_DIA) {
+            int fin = libres.nextClearBit(inicio);
+            if (fin - inicio >= bloques) {
+                return aHora(inicio);
+            }
+            inicio = libres.nextSetBit(fin);
+        }
+        return null;
+    }
+
+    /**
+     * Cuenta cuántas citas de {@code bloques} bloques caben todavía en el día desde {@code horaMinima},
+     * sumando por cada tramo libre de la jornada las que entran una tras otra.
+     */
+    public synchronized int contarHuecos(int bloques, LocalTime horaMinima) {
+        BitSet libres = (BitSet) jornada.clone();
+        libres.andNot(ocupacion);
+        int total = 0;
+        int inicio = libres.nextSetBit(bloqueSiguiente(horaMinima));
+        while (inicio >= 0) {
+            int fin = libres.nextClearBit(inicio);
+            total += (fin - inicio) / bloques;
+            inicio = libres.nextSetBit(fin);
+        }
+        return total;
+    }
+
+    public static int bloquesPara(long minutos) {
+        return (int) Math.max(1, (minutos + MINUTOS_POR_BLOQUE - 1) / MINUTOS_POR_BLOQUE);
+    }
+
+    private boolean liberarSinRecalcular(Long citaId) {
+        int[] rango = citas.remove(citaId);
+        if (rango == null) {
+            return false;
+        }
+        ocupacion.clear(rango[0], rango[1]);
+        return true;
+    }
+
+    private static int bloqueAnterior(LocalTime hora) {
+        return minutos(hora) / MINUTOS_POR_BLOQUE;
+    }
+
+    private static int bloqueSiguiente(LocalTime hora) {
+        return (minutos(hora) + MINUTOS_POR_BLOQUE - 1) / MINUTOS_POR_BLOQUE;
+    }
+
+    private static int minutos(LocalTime hora) {
+        int minutos = hora.getHour() * 60 + hora.getMinute();
+        return hora.getSecond() > 0 || hora.getNano() > 0 ? minutos + 1 : minutos;
+    }
+
+    private static LocalTime aHora(int bloque) {
+        return LocalTime.MIN.plusMinutes((long) bloque * MINUTOS_POR_BLOQUE);
+    }
+}
@@ -0,0 +1,79 @@
+package com.clinicavillegas.app.appointment.services.impl;
+
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
+import com.clinicavillegas.app.user.repositories.UsuarioRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resuelve las referencias de una cita sin ir a la base por cada una.
+ * Los catálogos (tratamientos y tipos de documento) cambian muy poco y se sirven desde una caché local de TTL corto,
+ * que sus servicios vacían al modificarlos. Del paciente y el dentista solo se necesita la clave foránea:
+ * se comprueba que ambos existan en una sola consulta y se usan referencias perezosas que no vuelven a consultar.
+ */
+@Component
+public class ResolutorReferencias {
+
+    public static final String CACHE_TRATAMIENTOS = "referenciasTratamiento";
+    public static final String CACHE_TIPOS_DOCUMENTO = "referenciasTipoDocumento";
+
+    private final CitaRepository citaRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final DentistaRepository dentistaRepository;
+    private final TratamientoRepository tratamientoRepository;
+    private final TipoDocumentoRepository tipoDocumentoRepository;
+
+    public ResolutorReferencias(CitaRepository citaRepository, UsuarioRepository usuarioRepository,
+                                DentistaRepository dentistaRepository, TratamientoRepository tratamientoRepository,
+                                TipoDocumentoRepository tipoDocumentoRepository) {
+        this.citaRepository = citaRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.dentistaRepository = dentistaRepository;
+        this.tratamientoRepository = tratamientoRepository;
+        this.tipoDocumentoRepository = tipoDocumentoRepository;
+    }
+
+    // Las entidades en caché quedan desacopladas de la sesión: solo se leen y se asignan como referencia
+    @Cacheable(value = CACHE_TRATAMIENTOS, key = "#id")
+    public Tratamiento tratamiento(Long id) {
+        return tratamientoRepository.findById(id).orElseThrow(
+                () -> new ResourceNotFoundException(Tratamiento.class, id)
+        );
+    }
+
+    @Cacheable(value = CACHE_TIPOS_DOCUMENTO, key = "'acronimo:' + #acronimo")
+    public TipoDocumento tipoDocumentoPorAcronimo(String acronimo) {
+        return tipoDocumentoRepository.findByAcronimo(acronimo).orElseThrow(
+                () -> new ResourceNotFoundException(TipoDocumento.class, "Acrónimo", acronimo)
+        );
+    }
+
+    @Cacheable(value = CACHE_TIPOS_DOCUMENTO, key = "'nombre:' + #nombre")
+    public TipoDocumento tipoDocumentoPorNombre(String nombre) {
+        return tipoDocumentoRepository.findByNombre(nombre).orElseThrow(
+                () -> new ResourceNotFoundException(TipoDocumento.class, "nombre", nombre)
+        );
+    }
+
+    public ParticipantesCita participantes(Long usuarioId, Long dentistaId) {
+        CitaRepository.ExistenciaParticipantes existencia = citaRepository.existenParticipantes(usuarioId, dentistaId);
+        if (!existencia.getDentista()) {
+            throw new ResourceNotFoundException(Dentista.class, dentistaId);
+        }
+        if (!existencia.getUsuario()) {
+            throw new ResourceNotFoundException(Usuario.class, usuarioId);
+        }
+        return new ParticipantesCita(usuarioRepository.getReferenceById(usuarioId), dentistaRepository.getReferenceById(dentistaId));
+    }
+
+    public record ParticipantesCita(Usuario usuario, Dentista dentista) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.clinicavillegas.app.appointment.specifications;
 
 import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
 import com.clinicavillegas.app.user.models.Sexo;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
@@ -8,6 +9,7 @@ import jakarta.persistence.criteria.Root;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 
 public class CitaSpecification {
     public static Specification<Cita> conUsuarioId(Long usuarioId) {
@@ -27,6 +29,9 @@ public class CitaSpecification {
         };
     }
     public static Specification<Cita> conEstado(String estado) {
+        return conEstado(estado != null ? EstadoCita.de(estado) : null);
+    }
+    public static Specification<Cita> conEstado(EstadoCita estado) {
         return (Root<Cita> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> {
             if (estado == null) {
                 return cb.conjunction();
@@ -59,6 +64,19 @@ public class CitaSpecification {
             return cb.equal(root.get("tratamiento").get("id"), tratamientoId);
         };
     }
+    // Citas posteriores a (fecha, hora, id) en orden descendente. La condición sobre fecha sola se repite
+    // para que el índice (fecha, hora, id) acote el rango antes de evaluar el resto
+    public static Specification<Cita> anteriorA(LocalDate fecha, LocalTime hora, Long id) {
+        return (Root<Cita> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("fecha"), fecha),
+                cb.or(
+                        cb.lessThan(root.get("fecha"), fecha),
+                        cb.and(cb.equal(root.get("fecha"), fecha), cb.lessThan(root.get("hora"), hora)),
+                        cb.and(cb.equal(root.get("fecha"), fecha), cb.equal(root.get("hora"), hora), cb.lessThan(root.get("id"), id))
+                )
+        );
+    }
+
     public static Specification<Cita> conSexo(String sexo) {
         return (Root<Cita> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> {
             if (sexo == null) {
@@ -61,6 +61,8 @@ public class SecurityConfig {
                                 .requestMatchers(HttpMethod.PUT, deepMatcher(EndpointPaths.HORARIO_BASE)).hasAnyRole("DENTISTA", "ADMINISTRADOR")
                                 .requestMatchers(HttpMethod.DELETE, deepMatcher(EndpointPaths.HORARIO_BASE)).hasAnyRole("DENTISTA", "ADMINISTRADOR")
 
+                                .requestMatchers(HttpMethod.PATCH, EndpointPaths.CITA_BASE + "/dentista/**").hasAnyRole("DENTISTA", "ADMINISTRADOR")
+                                .requestMatchers(HttpMethod.GET, EndpointPaths.CITA_BASE + "/agenda/**").hasAnyRole("DENTISTA", "ADMINISTRADOR")
                                 .requestMatchers(deepMatcher(EndpointPaths.CITA_BASE)).authenticated()
 
                                 .requestMatchers(HttpMethod.POST ,deepMatcher(EndpointPaths.AUTH_BASE)).permitAll()
@@ -76,6 +78,8 @@ public class SecurityConfig {
                                 .requestMatchers(HttpMethod.DELETE, deepMatcher(EndpointPaths.CHAT_BASE)).hasAnyRole("PACIENTE", "DENTISTA")
 
                                 .requestMatchers(deepMatcher(EndpointPaths.REPORTE_BASE)).permitAll()
+
+                                .requestMatchers("/actuator/**").hasRole("ADMINISTRADOR")
                                 .anyRequest().denyAll()
 
                 )
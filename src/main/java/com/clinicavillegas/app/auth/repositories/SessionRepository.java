@@ -3,11 +3,22 @@ package com.clinicavillegas.app.auth.repositories;
 import com.clinicavillegas.app.auth.models.Session;
 import com.clinicavillegas.app.user.models.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 public interface SessionRepository extends JpaRepository<Session, Long> {
     Optional<Session> findByToken(String token);
     void deleteByUsuario(Usuario usuario);
-}
 
+    // Un lote de sesiones vencidas, las más antiguas primero; las que otra transacción tiene tomadas quedan para el siguiente
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM sesiones WHERE id IN (SELECT id FROM sesiones WHERE expiry_date < :ahora " +
+            "ORDER BY expiry_date LIMIT :lote FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    int eliminarVencidas(@Param("ahora") Instant ahora, @Param("lote") int lote);
+}
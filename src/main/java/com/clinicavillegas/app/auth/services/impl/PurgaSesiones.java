@@ -0,0 +1,142 @@
+package com.clinicavillegas.app.auth.services.impl;
+
+import com.clinicavillegas.app.auth.repositories.SessionRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Borra las sesiones vencidas para que la tabla crezca con los usuarios activos y no con cada inicio de sesión.
+ * Solo una instancia purga a la vez: se toma un candado consultivo de PostgreSQL en una conexión propia, que la base
+ * suelta sola si el nodo cae. El borrado va por lotes acotados, cada uno en su propia transacción y con una pausa
+ * entre ellos, para no retener bloqueos ni generar de golpe todo el WAL de una tabla grande.
+ * La primera purga de una tabla grande puede tardar minutos, así que corre en un hilo propio y no ocupa
+ * el planificador que comparten los bloqueos de horario, el relay de notificaciones y los latidos de la agenda.
+ */
+@Slf4j
+@Component
+public class PurgaSesiones {
+
+    // Identifica el candado consultivo de este trabajo; ninguna otra parte de la aplicación usa esta clave
+    static final long CLAVE_CANDADO = 7_310_245_002L;
+
+    private final DataSource dataSource;
+    private final SessionRepository sessionRepository;
+    private final int lote;
+    private final long pausaMs;
+
+    private final DistributionSummary purgadas;
+    private final Timer duracion;
+    private final ThreadPoolTaskExecutor executor;
+
+    public PurgaSesiones(DataSource dataSource, SessionRepository sessionRepository,
+                         ObjectProvider<MeterRegistry> meterRegistry,
+                         @Value("${app.sesiones.purga.lote:1000}") int lote,
+                         @Value("${app.sesiones.purga.pausa-ms:50}") long pausaMs) {
+        this.dataSource = dataSource;
+        this.sessionRepository = sessionRepository;
+        this.lote = lote;
+        this.pausaMs = pausaMs;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        purgadas = DistributionSummary.builder("sesiones.purgadas")
+                .description("Sesiones vencidas borradas en cada ejecución de la purga")
+                .register(registry);
+        duracion = Timer.builder("sesiones.purga.duracion").register(registry);
+
+        // Un solo hilo y sin cola: si la purga anterior sigue en curso, la nueva se descarta
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("purga-sesiones-");
+        executor.initialize();
+    }
+
+    @Scheduled(cron = "${app.sesiones.purga.cron:0 15 * * * *}")
+    public void programar() {
+        try {
+            executor.execute(this::purgarVencidas);
+        } catch (TaskRejectedException e) {
+            log.warn("La purga de sesiones anterior sigue en curso, se omite esta ejecución");
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdown();
+    }
+
+    public void purgarVencidas() {
+        try (Connection conexion = dataSource.getConnection()) {
+            if (!consultar(conexion, "SELECT pg_try_advisory_lock(?)")) {
+                log.debug("Otra instancia está purgando las sesiones vencidas");
+                return;
+            }
+            try {
+                purgar(Instant.now());
+            } finally {
+                consultar(conexion, "SELECT pg_advisory_unlock(?)");
+            }
+        } catch (SQLException e) {
+            log.error("No se pudo tomar el candado de la purga de sesiones", e);
+        }
+    }
+
+    // Un lote incompleto indica que ya no quedan vencidas; las que venzan durante la purga quedan para la siguiente
+    private void purgar(Instant ahora) {
+        long inicio = System.nanoTime();
+        long total = 0;
+        int eliminadas;
+        do {
+            eliminadas = sessionRepository.eliminarVencidas(ahora, lote);
+            total += eliminadas;
+        } while (eliminadas == lote && pausar());
+
+        Duration transcurrido = Duration.ofNanos(System.nanoTime() - inicio);
+        purgadas.record(total);
+        duracion.record(transcurrido);
+        if (total > 0) {
+            log.info("Se eliminaron {} sesiones vencidas en {} ms", total, transcurrido.toMillis());
+        }
+    }
+
+    private boolean pausar() {
+        if (pausaMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pausaMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean consultar(Connection conexion, String sql) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement(sql)) {
+            sentencia.setLong(1, CLAVE_CANDADO);
+            try (ResultSet resultado = sentencia.executeQuery()) {
+                return resultado.next() && resultado.getBoolean(1);
+            }
+        }
+    }
+}
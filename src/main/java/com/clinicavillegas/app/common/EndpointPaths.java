@@ -16,6 +16,8 @@ public class EndpointPaths {
 
     public static final String CITA_BASE = "/api/citas";
 
+    public static final String LISTA_ESPERA_BASE = CITA_BASE + "/lista-espera";
+
     public static final String AUTH_BASE = "/api/auth";
 
     public static final String RENIEC_BASE = "/api/reniec";
@@ -1,9 +1,16 @@
 package com.clinicavillegas.app.common;
 
 
+import com.clinicavillegas.app.appointment.exceptions.CursorInvalidoException;
+import com.clinicavillegas.app.appointment.exceptions.BloqueoInvalidoException;
+import com.clinicavillegas.app.appointment.exceptions.FueraDeHorarioException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioPasadoException;
+import com.clinicavillegas.app.appointment.exceptions.TransicionEstadoInvalidaException;
 import com.clinicavillegas.app.auth.exceptions.InvalidTokenException;
 import com.clinicavillegas.app.auth.exceptions.TokenExpiredException;
 import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -21,6 +28,59 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(HorarioNoDisponibleException.class)
+    public ResponseEntity<Map<String, String>> handleHorarioNoDisponible(HorarioNoDisponibleException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(BloqueoInvalidoException.class)
+    public ResponseEntity<Map<String, String>> handleBloqueoInvalido(BloqueoInvalidoException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(FueraDeHorarioException.class)
+    public ResponseEntity<Map<String, String>> handleFueraDeHorario(FueraDeHorarioException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(HorarioPasadoException.class)
+    public ResponseEntity<Map<String, String>> handleHorarioPasado(HorarioPasadoException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(TransicionEstadoInvalidaException.class)
+    public ResponseEntity<Map<String, String>> handleTransicionEstadoInvalida(TransicionEstadoInvalidaException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(CursorInvalidoException.class)
+    public ResponseEntity<Map<String, String>> handleCursorInvalido(CursorInvalidoException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    // La restricción de exclusión de citas es la última barrera cuando dos instancias reservan a la vez
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Map<String, String>> handleIntegridad(DataIntegrityViolationException ex) {
+        if (ex.getMessage() != null && ex.getMessage().contains("excl_citas_solapamiento")) {
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", HorarioNoDisponibleException.MENSAJE_GENERICO));
+        }
+        return handleGeneral(ex);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidacion(MethodArgumentNotValidException ex) {
         Map<String, String> errores = new HashMap<>();
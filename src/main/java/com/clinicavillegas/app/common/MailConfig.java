@@ -0,0 +1,45 @@
+package com.clinicavillegas.app.common;
+
+import com.clinicavillegas.app.email.services.impl.JavaMailSenderConPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Reemplaza el JavaMailSender de Spring Boot por uno que reutiliza sesiones SMTP; se configura con las mismas
+ * propiedades spring.mail.*.
+ */
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfig {
+
+    @Bean
+    public JavaMailSenderConPool javaMailSender(MailProperties propiedades,
+                                                @Value("${app.notificaciones.smtp.sesiones:4}") int sesiones,
+                                                @Value("${app.notificaciones.smtp.inactividad-segundos:60}") long inactividadSegundos,
+                                                @Value("${app.notificaciones.smtp.espera-maxima-segundos:30}") long esperaMaximaSegundos) {
+        JavaMailSenderConPool sender = new JavaMailSenderConPool(sesiones, Duration.ofSeconds(inactividadSegundos),
+                Duration.ofSeconds(esperaMaximaSegundos));
+        sender.setHost(propiedades.getHost());
+        if (propiedades.getPort() != null) {
+            sender.setPort(propiedades.getPort());
+        }
+        sender.setUsername(propiedades.getUsername());
+        sender.setPassword(propiedades.getPassword());
+        sender.setProtocol(propiedades.getProtocol());
+        if (propiedades.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(propiedades.getDefaultEncoding().name());
+        }
+        if (!propiedades.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(propiedades.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+        }
+        return sender;
+    }
+}
@@ -1,6 +1,10 @@
 package com.clinicavillegas.app.common.cache.config;
 
+import com.clinicavillegas.app.appointment.services.impl.ResolutorReferencias;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -8,7 +12,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -21,12 +25,39 @@ public class CacheConfig {
     @Value("${app.cache.global.max-size:1000}")
     private long globalCacheMaxSize;
 
+    @Value("${app.cache.referencias.ttl-minutes:5}")
+    private long referenciasTtlMinutes;
+
+    @Value("${app.cache.referencias.max-size:500}")
+    private long referenciasMaxSize;
+
     @Bean
-    public CacheManager cacheManager(){
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+    public CacheManager cacheManager(ObjectProvider<MeterRegistry> meterRegistry){
+        // Las cachés se crean al primer uso, así que se registran en Micrometer en ese momento
+        // (cache.gets con result=hit/miss, cache.evictions, cache.size) en /actuator/metrics
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected com.github.benmanes.caffeine.cache.Cache<Object, Object> createNativeCaffeineCache(String name) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = super.createNativeCaffeineCache(name);
+                meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, name));
+                return cache;
+            }
+        };
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .maximumSize(globalCacheMaxSize)
-                .expireAfterWrite(globalCacheTtlMinutes, TimeUnit.MINUTES));
+                .expireAfterWrite(globalCacheTtlMinutes, TimeUnit.MINUTES)
+                .recordStats());
+        // Catálogos que se leen en cada reserva (ResolutorReferencias): TTL corto para que los cambios hechos
+        // en otra instancia se vean pronto; en la propia instancia los servicios de catálogo los vacían al modificar
+        for (String nombre : List.of(ResolutorReferencias.CACHE_TRATAMIENTOS, ResolutorReferencias.CACHE_TIPOS_DOCUMENTO)) {
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(referenciasMaxSize)
+                    .expireAfterWrite(referenciasTtlMinutes, TimeUnit.MINUTES)
+                    .recordStats()
+                    .build();
+            meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, nombre));
+            cacheManager.registerCustomCache(nombre, cache);
+        }
         return cacheManager;
     }
-}
\ No newline at end of file
+}
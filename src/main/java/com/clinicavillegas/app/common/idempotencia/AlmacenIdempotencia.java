@@ -0,0 +1,110 @@
+package com.clinicavillegas.app.common.idempotencia;
+
+import com.clinicavillegas.app.common.idempotencia.models.EstadoIdempotencia;
+import com.clinicavillegas.app.common.idempotencia.models.RegistroIdempotencia;
+import com.clinicavillegas.app.common.idempotencia.repositories.RegistroIdempotenciaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Guarda las respuestas de las peticiones con Idempotency-Key durante el TTL.
+ * La copia en memoria (acotada) atiende los reintentos que vuelven a la misma instancia sin ir a la base;
+ * la tabla idempotencia hace que la clave valga para todas las instancias y sirve de reserva entre ellas.
+ * Con app.idempotencia.compartida=false solo se usa la memoria.
+ */
+@Slf4j
+@Component
+public class AlmacenIdempotencia {
+
+    private final RegistroIdempotenciaRepository repository;
+    private final Cache<String, RespuestaGuardada> respuestas;
+    private final Duration ttl;
+    private final Duration plazoReserva;
+    private final boolean compartida;
+
+    public AlmacenIdempotencia(RegistroIdempotenciaRepository repository, ObjectProvider<MeterRegistry> meterRegistry,
+                               @Value("${app.idempotencia.ttl-horas:24}") long ttlHoras,
+                               @Value("${app.idempotencia.max-entradas:10000}") long maxEntradas,
+                               @Value("${app.idempotencia.plazo-reserva-segundos:60}") long plazoReservaSegundos,
+                               @Value("${app.idempotencia.compartida:true}") boolean compartida) {
+        this.repository = repository;
+        this.ttl = Duration.ofHours(ttlHoras);
+        this.plazoReserva = Duration.ofSeconds(plazoReservaSegundos);
+        this.compartida = compartida;
+        this.respuestas = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, respuestas, "idempotencia"));
+    }
+
+    public Optional<RespuestaGuardada> buscar(String clave) {
+        RespuestaGuardada local = respuestas.getIfPresent(clave);
+        if (local != null || !compartida) {
+            return Optional.ofNullable(local);
+        }
+        return repository.findById(clave)
+                .filter(registro -> registro.getEstado() == EstadoIdempotencia.COMPLETADA)
+                .filter(registro -> registro.getExpira().isAfter(LocalDateTime.now()))
+                .map(registro -> {
+                    RespuestaGuardada respuesta = aRespuesta(registro);
+                    respuestas.put(clave, respuesta);
+                    return respuesta;
+                });
+    }
+
+    /**
+     * Marca la clave como en curso en la tabla compartida. Devuelve false si otra instancia la está
+     * ejecutando o ya guardó su respuesta; si esa instancia cae, la reserva vence tras el plazo.
+     */
+    public boolean reservar(String clave, String huella) {
+        if (!compartida) {
+            return true;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        return repository.reservar(clave, huella, ahora.plus(plazoReserva), ahora) == 1;
+    }
+
+    public void guardar(String clave, RespuestaGuardada respuesta) {
+        respuestas.put(clave, respuesta);
+        if (compartida) {
+            repository.completar(clave, respuesta.getCodigoEstado(), respuesta.getTipoContenido(),
+                    respuesta.getCuerpo(), LocalDateTime.now().plus(ttl));
+        }
+    }
+
+    // La petición falló sin respuesta reutilizable: el siguiente reintento vuelve a ejecutarla
+    public void liberar(String clave) {
+        if (compartida) {
+            repository.liberar(clave);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotencia.purga-ms:3600000}")
+    public void purgarVencidas() {
+        if (!compartida) {
+            return;
+        }
+        int eliminadas = repository.eliminarVencidas(LocalDateTime.now());
+        if (eliminadas > 0) {
+            log.info("Se eliminaron {} respuestas idempotentes vencidas", eliminadas);
+        }
+    }
+
+    private RespuestaGuardada aRespuesta(RegistroIdempotencia registro) {
+        return new RespuestaGuardada(registro.getHuella(), registro.getCodigoEstado(),
+                registro.getTipoContenido(), registro.getCuerpo());
+    }
+}
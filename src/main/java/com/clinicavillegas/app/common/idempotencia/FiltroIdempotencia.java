@@ -0,0 +1,264 @@
+package com.clinicavillegas.app.common.idempotencia;
+
+import com.clinicavillegas.app.common.EndpointPaths;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hace idempotentes las peticiones POST/PUT/PATCH/DELETE que llegan con la cabecera Idempotency-Key.
+ * La primera ejecución guarda su respuesta y los reintentos con la misma clave (del mismo usuario, método y ruta)
+ * la reciben tal cual sin volver a tocar la base ni enviar correos. Los duplicados que llegan mientras
+ * la primera sigue en curso esperan su resultado en lugar de ejecutarse en paralelo.
+ * Las respuestas 5xx no se guardan, así el cliente puede reintentar de verdad.
+ */
+@Slf4j
+public class FiltroIdempotencia extends OncePerRequestFilter {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LARGO_MAXIMO_CLAVE = 255;
+    private static final long PAUSA_SONDEO_MS = 100;
+    private static final Set<String> METODOS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final AlmacenIdempotencia almacen;
+    private final Duration espera;
+    private final ConcurrentMap<String, CompletableFuture<RespuestaGuardada>> enCurso = new ConcurrentHashMap<>();
+
+    public FiltroIdempotencia(AlmacenIdempotencia almacen, Duration espera) {
+        this.almacen = almacen;
+        this.espera = espera;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Las respuestas de /api/auth llevan cookies de sesión, que no se guardan ni se reenvían
+        return !METODOS.contains(request.getMethod())
+                || request.getHeader(CABECERA) == null
+                || request.getRequestURI().startsWith(EndpointPaths.AUTH_BASE);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(CABECERA);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > LARGO_MAXIMO_CLAVE) {
+            escribirError(response, HttpStatus.BAD_REQUEST,
+                    "La cabecera " + CABECERA + " debe tener entre 1 y " + LARGO_MAXIMO_CLAVE + " caracteres");
+            return;
+        }
+        byte[] cuerpo = request.getInputStream().readAllBytes();
+        String huella = sha256(cuerpo);
+        String clave = sha256((usuarioActual() + "|" + request.getMethod() + "|" + request.getRequestURI() + "|" + idempotencyKey)
+                .getBytes(StandardCharsets.UTF_8));
+
+        Optional<RespuestaGuardada> guardada = almacen.buscar(clave);
+        if (guardada.isPresent()) {
+            responder(response, guardada.get(), huella);
+            return;
+        }
+
+        CompletableFuture<RespuestaGuardada> propia = new CompletableFuture<>();
+        CompletableFuture<RespuestaGuardada> primera = enCurso.putIfAbsent(clave, propia);
+        if (primera != null) {
+            log.debug("Petición duplicada con {} en curso, se espera a la primera", CABECERA);
+            responder(response, esperar(primera), huella);
+            return;
+        }
+        RespuestaGuardada resultado = null;
+        try {
+            resultado = ejecutarUnaVez(clave, huella, new PeticionConCuerpo(request, cuerpo), response, filterChain);
+        } finally {
+            enCurso.remove(clave, propia);
+            propia.complete(resultado);
+        }
+    }
+
+    private RespuestaGuardada ejecutarUnaVez(String clave, String huella, HttpServletRequest request,
+                                             HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!almacen.reservar(clave, huella)) {
+            // Otra instancia la tiene en curso o la terminó entre la búsqueda y la reserva
+            RespuestaGuardada deOtraInstancia = sondear(clave);
+            responder(response, deOtraInstancia, huella);
+            return deOtraInstancia;
+        }
+        ContentCachingResponseWrapper envoltura = new ContentCachingResponseWrapper(response);
+        RespuestaGuardada resultado = null;
+        try {
+            filterChain.doFilter(request, envoltura);
+            if (envoltura.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                resultado = new RespuestaGuardada(huella, envoltura.getStatus(), envoltura.getContentType(),
+                        envoltura.getContentAsByteArray());
+                almacen.guardar(clave, resultado);
+            }
+            return resultado;
+        } finally {
+            if (resultado == null) {
+                almacen.liberar(clave);
+            }
+            envoltura.copyBodyToResponse();
+        }
+    }
+
+    private RespuestaGuardada esperar(CompletableFuture<RespuestaGuardada> primera) {
+        try {
+            return primera.get(espera.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private RespuestaGuardada sondear(String clave) {
+        long limite = System.nanoTime() + espera.toNanos();
+        do {
+            Optional<RespuestaGuardada> guardada = almacen.buscar(clave);
+            if (guardada.isPresent()) {
+                return guardada.get();
+            }
+            try {
+                Thread.sleep(PAUSA_SONDEO_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        } while (System.nanoTime() < limite);
+        return null;
+    }
+
+    private void responder(HttpServletResponse response, RespuestaGuardada guardada, String huella) throws IOException {
+        if (guardada == null) {
+            // La primera ejecución sigue en curso tras la espera o terminó con error: el cliente puede reintentar
+            escribirError(response, HttpStatus.CONFLICT,
+                    "Hay una petición con la misma " + CABECERA + " en curso o sin completar, reintente más tarde");
+            return;
+        }
+        if (!guardada.getHuella().equals(huella)) {
+            escribirError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "La " + CABECERA + " ya se usó con una petición distinta");
+            return;
+        }
+        response.setStatus(guardada.getCodigoEstado());
+        if (guardada.getTipoContenido() != null) {
+            response.setContentType(guardada.getTipoContenido());
+        }
+        response.setHeader(CABECERA_REPETIDA, "true");
+        response.getOutputStream().write(guardada.getCuerpo() == null ? new byte[0] : guardada.getCuerpo());
+    }
+
+    private void escribirError(HttpServletResponse response, HttpStatus status, String mensaje) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"" + mensaje + "\"}");
+    }
+
+    private String usuarioActual() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion == null || autenticacion instanceof AnonymousAuthenticationToken) {
+            return "anonimo";
+        }
+        return autenticacion.getName();
+    }
+
+    private static String sha256(byte[] datos) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // El cuerpo ya se leyó para calcular la huella; el controlador lo vuelve a leer desde aquí
+    private static class PeticionConCuerpo extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        PeticionConCuerpo(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // El cuerpo ya está en memoria: todo está disponible desde el principio
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    Objects.requireNonNull(readListener, "readListener");
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.clinicavillegas.app.common.idempotencia;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class IdempotenciaConfig {
+
+    @Bean
+    public FilterRegistrationBean<FiltroIdempotencia> filtroIdempotencia(
+            AlmacenIdempotencia almacen,
+            @Value("${app.idempotencia.espera-segundos:30}") long esperaSegundos) {
+        FilterRegistrationBean<FiltroIdempotencia> registro =
+                new FilterRegistrationBean<>(new FiltroIdempotencia(almacen, Duration.ofSeconds(esperaSegundos)));
+        registro.addUrlPatterns("/api/*");
+        // Justo después de la cadena de seguridad: ya se conoce el usuario y las peticiones rechazadas no llegan a guardarse
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registro;
+    }
+}
@@ -0,0 +1,15 @@
+package com.clinicavillegas.app.common.idempotencia;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RespuestaGuardada {
+
+    // SHA-256 del cuerpo de la petición original; un reintento con otro contenido no recibe esta respuesta
+    private final String huella;
+    private final int codigoEstado;
+    private final String tipoContenido;
+    private final byte[] cuerpo;
+}
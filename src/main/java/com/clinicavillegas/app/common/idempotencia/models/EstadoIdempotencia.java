@@ -0,0 +1,5 @@
+package com.clinicavillegas.app.common.idempotencia.models;
+
+public enum EstadoIdempotencia {
+    EN_CURSO, COMPLETADA
+}
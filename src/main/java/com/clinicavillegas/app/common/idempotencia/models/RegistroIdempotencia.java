@@ -0,0 +1,42 @@
+package com.clinicavillegas.app.common.idempotencia.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Respuesta guardada para una Idempotency-Key. Las filas EN_CURSO marcan que una instancia está
+ * ejecutando la petición; al terminar pasan a COMPLETADA con la respuesta que se reenvía a los reintentos.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "idempotencia")
+@Table(name = "idempotencia")
+public class RegistroIdempotencia {
+
+    @Id
+    @Column(length = 64)
+    private String clave;
+
+    @Column(length = 64, nullable = false)
+    private String huella;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 15, nullable = false)
+    private EstadoIdempotencia estado;
+
+    @Column(name = "codigo_estado")
+    private Integer codigoEstado;
+
+    @Column(name = "tipo_contenido", length = 100)
+    private String tipoContenido;
+
+    private byte[] cuerpo;
+
+    @Column(nullable = false)
+    private LocalDateTime expira;
+}
@@ -0,0 +1,45 @@
+package com.clinicavillegas.app.common.idempotencia.repositories;
+
+import com.clinicavillegas.app.common.idempotencia.models.RegistroIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RegistroIdempotenciaRepository extends JpaRepository<RegistroIdempotencia, String> {
+
+    // Devuelve 1 si esta instancia se quedó con la clave: no existía o la fila anterior ya había expirado
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotencia (clave, huella, estado, expira) " +
+            "VALUES (:clave, :huella, 'EN_CURSO', :expira) " +
+            "ON CONFLICT (clave) DO UPDATE SET huella = EXCLUDED.huella, estado = 'EN_CURSO', codigo_estado = NULL, " +
+            "tipo_contenido = NULL, cuerpo = NULL, expira = EXCLUDED.expira " +
+            "WHERE idempotencia.expira < :ahora", nativeQuery = true)
+    int reservar(@Param("clave") String clave, @Param("huella") String huella,
+                 @Param("expira") LocalDateTime expira, @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE idempotencia SET estado = 'COMPLETADA', codigo_estado = :codigoEstado, " +
+            "tipo_contenido = :tipoContenido, cuerpo = :cuerpo, expira = :expira " +
+            "WHERE clave = :clave", nativeQuery = true)
+    int completar(@Param("clave") String clave, @Param("codigoEstado") int codigoEstado,
+                  @Param("tipoContenido") String tipoContenido, @Param("cuerpo") byte[] cuerpo,
+                  @Param("expira") LocalDateTime expira);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM idempotencia WHERE clave = :clave AND estado = 'EN_CURSO'", nativeQuery = true)
+    int liberar(@Param("clave") String clave);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM idempotencia WHERE expira < :ahora", nativeQuery = true)
+    int eliminarVencidas(@Param("ahora") LocalDateTime ahora);
+}
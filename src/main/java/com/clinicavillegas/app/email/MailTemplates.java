@@ -257,5 +257,192 @@ public class MailTemplates {
 
 
 
+    // Fila de las tablas de citas en los correos masivos: fecha, hora y tratamiento
+    public static final String APPOINTMENT_ROW = """
+        <tr>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+        </tr>""";
+
+    public static final String PATIENT_BULK_CANCELLATION = """
+        <!DOCTYPE html>
+        <html lang='es'>
+        <head>
+            <meta charset='UTF-8'>
+            <meta name='viewport' content='width=device-width, initial-scale=1.0'>
+            <title>Cancelación de citas</title>
+        </head>
+        <body style='font-family: Arial, sans-serif; color: #333; margin: 0; padding: 0;'>
+            <div style='max-width: 600px; margin: 20px auto; border: 1px solid #e0e0e0; border-radius: 8px; overflow: hidden;'>
+                <header style='background-color: #0F2650; color: white; text-align: center; padding: 10px 0;'>
+                    <h1 style='margin: 0;'>Clínica Dental Villegas</h1>
+                </header>
+                <section style='padding: 20px;'>
+                    <h2 style='color: #0F2650;'>Estimado(a) %s %s %s</h2>
+                    <p>Lamentamos informarle que las siguientes citas con el Dr. <strong>%s %s %s</strong> han sido canceladas:</p>
+                    <table style='width: 100%%; border-collapse: collapse; margin: 20px 0;'>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Fecha</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Hora</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Tratamiento</th>
+                        </tr>
+                        %s
+                    </table>
+                    <p><strong>Motivo:</strong> %s</p>
+                    <p style='font-size: 0.9em;'>Si tiene alguna duda, comuníquese con la clínica.</p>
+                </section>
+                <footer style='background-color: #f4f4f4; color: #666; text-align: center; padding: 10px;'>
+                    <p style='margin: 0;'>© 2025 Clínica Dental Villegas. Todos los derechos reservados.</p>
+                </footer>
+            </div>
+        </body>
+        </html>""";
+
+    public static final String PATIENT_BULK_RESCHEDULE = """
+        <!DOCTYPE html>
+        <html lang='es'>
+        <head>
+            <meta charset='UTF-8'>
+            <meta name='viewport' content='width=device-width, initial-scale=1.0'>
+            <title>Reprogramación de citas</title>
+        </head>
+        <body style='font-family: Arial, sans-serif; color: #333; margin: 0; padding: 0;'>
+            <div style='max-width: 600px; margin: 20px auto; border: 1px solid #e0e0e0; border-radius: 8px; overflow: hidden;'>
+                <header style='background-color: #0F2650; color: white; text-align: center; padding: 10px 0;'>
+                    <h1 style='margin: 0;'>Clínica Dental Villegas</h1>
+                </header>
+                <section style='padding: 20px;'>
+                    <h2 style='color: #0F2650;'>Estimado(a) %s %s %s</h2>
+                    <p>Le informamos que las siguientes citas con el Dr. <strong>%s %s %s</strong> han sido reprogramadas. Estas son las nuevas fechas:</p>
+                    <table style='width: 100%%; border-collapse: collapse; margin: 20px 0;'>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Fecha</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Hora</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Tratamiento</th>
+                        </tr>
+                        %s
+                    </table>
+                    <p style='font-size: 0.9em;'>Si tiene alguna duda, comuníquese con la clínica.</p>
+                </section>
+                <footer style='background-color: #f4f4f4; color: #666; text-align: center; padding: 10px;'>
+                    <p style='margin: 0;'>© 2025 Clínica Dental Villegas. Todos los derechos reservados.</p>
+                </footer>
+            </div>
+        </body>
+        </html>""";
+
+    public static final String PATIENT_APPOINTMENT_SERIES = """
+        <!DOCTYPE html>
+        <html lang='es'>
+        <head>
+            <meta charset='UTF-8'>
+            <meta name='viewport' content='width=device-width, initial-scale=1.0'>
+            <title>Confirmación de serie de citas</title>
+        </head>
+        <body style='font-family: Arial, sans-serif; color: #333; margin: 0; padding: 0;'>
+            <div style='max-width: 600px; margin: 20px auto; border: 1px solid #e0e0e0; border-radius: 8px; overflow: hidden;'>
+                <header style='background-color: #0F2650; color: white; text-align: center; padding: 10px 0;'>
+                    <h1 style='margin: 0;'>Clínica Dental Villegas</h1>
+                </header>
+                <section style='padding: 20px;'>
+                    <h2 style='color: #0F2650;'>Estimado(a) %s %s %s</h2>
+                    <p>Sus citas de tratamiento con el Dr. <strong>%s %s %s</strong> han sido reservadas en las siguientes fechas:</p>
+                    <table style='width: 100%%; border-collapse: collapse; margin: 20px 0;'>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Fecha</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Hora</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Tratamiento</th>
+                        </tr>
+                        %s
+                    </table>
+                    <p style='font-size: 0.9em;'>Le enviaremos un recordatorio antes de cada cita. Si necesita cambiar alguna, comuníquese con la clínica.</p>
+                </section>
+                <footer style='background-color: #f4f4f4; color: #666; text-align: center; padding: 10px;'>
+                    <p style='margin: 0;'>© 2025 Clínica Dental Villegas. Todos los derechos reservados.</p>
+                </footer>
+            </div>
+        </body>
+        </html>""";
+
+    public static final String WAITLIST_OFFER = """
+        <!DOCTYPE html>
+        <html lang='es'>
+        <head>
+            <meta charset='UTF-8'>
+            <meta name='viewport' content='width=device-width, initial-scale=1.0'>
+            <title>Horario disponible</title>
+        </head>
+        <body style='font-family: Arial, sans-serif; color: #333; margin: 0; padding: 0;'>
+            <div style='max-width: 600px; margin: 20px auto; border: 1px solid #e0e0e0; border-radius: 8px; overflow: hidden;'>
+                <header style='background-color: #0F2650; color: white; text-align: center; padding: 10px 0;'>
+                    <h1 style='margin: 0;'>Clínica Dental Villegas</h1>
+                </header>
+                <section style='padding: 20px;'>
+                    <h2 style='color: #0F2650;'>Estimado(a) %s %s %s</h2>
+                    <p>Se liberó un horario con el Dr. <strong>%s %s %s</strong> y lo hemos reservado para usted:</p>
+                    <table style='width: 100%%; border-collapse: collapse; margin: 20px 0;'>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Fecha</th>
+                            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+                        </tr>
+                        <tr>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Hora</th>
+                            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+                        </tr>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Tratamiento</th>
+                            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+                        </tr>
+                    </table>
+                    <p>Ingrese a su cuenta y confirme la cita antes de las <strong>%s</strong>; después el horario se libera para otros pacientes.</p>
+                </section>
+                <footer style='background-color: #f4f4f4; color: #666; text-align: center; padding: 10px;'>
+                    <p style='margin: 0;'>© 2025 Clínica Dental Villegas. Todos los derechos reservados.</p>
+                </footer>
+            </div>
+        </body>
+        </html>""";
+
+    // Fila de la agenda diaria del dentista: hora, paciente y tratamiento
+    public static final String AGENDA_ROW = """
+        <tr>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s %s %s</td>
+            <td style='padding: 10px; border: 1px solid #ddd;'>%s</td>
+        </tr>""";
+
+    public static final String DENTIST_DAILY_AGENDA = """
+        <!DOCTYPE html>
+        <html lang='es'>
+        <head>
+            <meta charset='UTF-8'>
+            <meta name='viewport' content='width=device-width, initial-scale=1.0'>
+            <title>Agenda del día</title>
+        </head>
+        <body style='font-family: Arial, sans-serif; color: #333; margin: 0; padding: 0;'>
+            <div style='max-width: 600px; margin: 20px auto; border: 1px solid #e0e0e0; border-radius: 8px; overflow: hidden;'>
+                <header style='background-color: #0F2650; color: white; text-align: center; padding: 10px 0;'>
+                    <h1 style='margin: 0;'>Clínica Dental Villegas</h1>
+                </header>
+                <section style='padding: 20px;'>
+                    <h2 style='color: #0F2650;'>Hola Dr. %s %s %s</h2>
+                    <p>Estas son sus citas programadas para el <strong>%s</strong> (%s en total):</p>
+                    <table style='width: 100%%; border-collapse: collapse; margin: 20px 0;'>
+                        <tr style='background-color: #f9f9f9;'>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Hora</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Paciente</th>
+                            <th style='padding: 10px; border: 1px solid #ddd; text-align: left;'>Tratamiento</th>
+                        </tr>
+                        %s
+                    </table>
+                </section>
+                <footer style='background-color: #f4f4f4; color: #666; text-align: center; padding: 10px;'>
+                    <p style='margin: 0;'>© 2025 Clínica Dental Villegas. Todos los derechos reservados.</p>
+                </footer>
+            </div>
+        </body>
+        </html>""";
+
     private MailTemplates() {}
 }
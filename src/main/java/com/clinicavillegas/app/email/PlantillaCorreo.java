@@ -0,0 +1,160 @@
+package com.clinicavillegas.app.email;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plantilla de {@link MailTemplates} compilada una sola vez: el HTML fijo queda en segmentos ya codificados en UTF-8
+ * y cada {@code %s} en una ranura. Renderizar solo copia los segmentos y escribe los valores escapados para HTML,
+ * sin volver a interpretar el formato ni pasar por un String intermedio. Los valores {@link Html} (filas ya
+ * renderizadas con otra plantilla) se copian sin escapar.
+ * Solo admite {@code %s} y {@code %%}, que es lo que usan las plantillas.
+ */
+public final class PlantillaCorreo {
+
+    private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOT = "&quot;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] APOS = "&#39;".getBytes(StandardCharsets.US_ASCII);
+    // Espacio que se reserva por ranura al calcular el tamaño inicial del resultado
+    private static final int BYTES_POR_RANURA = 24;
+
+    private final byte[][] segmentos;
+    private final int tamanoFijo;
+
+    private PlantillaCorreo(byte[][] segmentos) {
+        this.segmentos = segmentos;
+        this.tamanoFijo = Arrays.stream(segmentos).mapToInt(segmento -> segmento.length).sum();
+    }
+
+    public static PlantillaCorreo compilar(String formato) {
+        List<byte[]> segmentos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < formato.length(); i++) {
+            char c = formato.charAt(i);
+            if (c != '%') {
+                actual.append(c);
+                continue;
+            }
+            char siguiente = i + 1 < formato.length() ? formato.charAt(i + 1) : ' ';
+            if (siguiente == '%') {
+                actual.append('%');
+            } else if (siguiente == 's') {
+                segmentos.add(actual.toString().getBytes(StandardCharsets.UTF_8));
+                actual.setLength(0);
+            } else {
+                throw new IllegalArgumentException("Especificador no admitido en la plantilla: %" + siguiente);
+            }
+            i++;
+        }
+        segmentos.add(actual.toString().getBytes(StandardCharsets.UTF_8));
+        return new PlantillaCorreo(segmentos.toArray(byte[][]::new));
+    }
+
+    public int ranuras() {
+        return segmentos.length - 1;
+    }
+
+    public byte[] renderizar(Object... valores) {
+        if (valores.length != ranuras()) {
+            throw new IllegalArgumentException("La plantilla espera " + ranuras() + " valores y recibió " + valores.length);
+        }
+        Salida salida = new Salida(tamanoFijo + ranuras() * BYTES_POR_RANURA);
+        salida.escribir(segmentos[0]);
+        for (int i = 0; i < valores.length; i++) {
+            if (valores[i] instanceof Html html) {
+                salida.escribir(html.contenido());
+            } else {
+                salida.escribirEscapado(String.valueOf(valores[i]));
+            }
+            salida.escribir(segmentos[i + 1]);
+        }
+        return salida.resultado();
+    }
+
+    public Html renderizarHtml(Object... valores) {
+        return new Html(renderizar(valores));
+    }
+
+    /**
+     * HTML ya renderizado que se copia sin escapar.
+     */
+    public record Html(byte[] contenido) {
+
+        public static Html unir(List<Html> partes) {
+            Salida salida = new Salida(partes.stream().mapToInt(parte -> parte.contenido().length).sum());
+            partes.forEach(parte -> salida.escribir(parte.contenido()));
+            return new Html(salida.resultado());
+        }
+    }
+
+    private static final class Salida {
+        private byte[] buffer;
+        private int posicion;
+
+        Salida(int capacidad) {
+            buffer = new byte[Math.max(16, capacidad)];
+        }
+
+        void escribir(byte[] bytes) {
+            asegurar(bytes.length);
+            System.arraycopy(bytes, 0, buffer, posicion, bytes.length);
+            posicion += bytes.length;
+        }
+
+        // Escapa y codifica en UTF-8 en una sola pasada
+        void escribirEscapado(String texto) {
+            asegurar(texto.length());
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                switch (c) {
+                    case '&' -> escribir(AMP);
+                    case '<' -> escribir(LT);
+                    case '>' -> escribir(GT);
+                    case '"' -> escribir(QUOT);
+                    case '\'' -> escribir(APOS);
+                    default -> {
+                        if (c < 0x80) {
+                            asegurar(1);
+                            buffer[posicion++] = (byte) c;
+                        } else if (c < 0x800) {
+                            asegurar(2);
+                            buffer[posicion++] = (byte) (0xC0 | (c >> 6));
+                            buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+                        } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                                && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                            int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                            asegurar(4);
+                            buffer[posicion++] = (byte) (0xF0 | (codigo >> 18));
+                            buffer[posicion++] = (byte) (0x80 | ((codigo >> 12) & 0x3F));
+                            buffer[posicion++] = (byte) (0x80 | ((codigo >> 6) & 0x3F));
+                            buffer[posicion++] = (byte) (0x80 | (codigo & 0x3F));
+                        } else if (Character.isSurrogate(c)) {
+                            // Sustituto suelto: se reemplaza como lo haría String.getBytes
+                            asegurar(1);
+                            buffer[posicion++] = '?';
+                        } else {
+                            asegurar(3);
+                            buffer[posicion++] = (byte) (0xE0 | (c >> 12));
+                            buffer[posicion++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                            buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+                        }
+                    }
+                }
+            }
+        }
+
+        byte[] resultado() {
+            return posicion == buffer.length ? buffer : Arrays.copyOf(buffer, posicion);
+        }
+
+        private void asegurar(int adicionales) {
+            if (posicion + adicionales > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicion + adicionales));
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.clinicavillegas.app.email.models;
+
+public enum EstadoNotificacion {
+    PENDIENTE, EN_PROCESO, ENVIADA, FALLIDA
+}
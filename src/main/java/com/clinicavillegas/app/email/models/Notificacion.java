@@ -0,0 +1,78 @@
+package com.clinicavillegas.app.email.models;
+
+import com.clinicavillegas.app.audit.AudityEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Correo pendiente de envío (outbox). Se guarda en la misma transacción que el cambio de la cita
+ * y lo despacha el relay en segundo plano; el contenido se arma al enviar con los datos vigentes de la cita.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "notificaciones")
+@Table(name = "notificaciones")
+public class Notificacion extends AudityEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30, nullable = false)
+    private TipoNotificacion tipo;
+
+    @Column(name = "cita_id", nullable = false)
+    private Long citaId;
+
+    // Solo para notificaciones masivas: todas las citas del paciente incluidas en el correo
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "citas_ids")
+    private List<Long> citasIds;
+
+    // Solo para ofertas de la lista de espera: la solicitud del paciente que recibe el correo
+    @Column(name = "solicitud_espera_id")
+    private Long solicitudEsperaId;
+
+    // Solo para notificaciones que varias instancias pueden encolar a la vez (recordatorios): identifica el envío
+    @Column(length = 100, unique = true)
+    private String clave;
+
+    // Solo para agendas de dentista: el dentista y el día; las citas se leen al enviar
+    @Column(name = "dentista_id")
+    private Long dentistaId;
+
+    @Column(name = "fecha_agenda")
+    private LocalDate fechaAgenda;
+
+    // Solo para reprogramaciones: fecha y hora que tenía la cita antes del cambio
+    @Column(name = "fecha_anterior")
+    private LocalDate fechaAnterior;
+
+    @Column(name = "hora_anterior")
+    private LocalTime horaAnterior;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 15, nullable = false)
+    private EstadoNotificacion estado;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    // Próximo momento en que el relay puede tomarla; mientras está EN_PROCESO funciona como plazo de la reserva
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 1000)
+    private String ultimoError;
+}
@@ -0,0 +1,15 @@
+package com.clinicavillegas.app.email.models;
+
+public enum TipoNotificacion {
+    CONFIRMACION_RESERVA, CANCELACION_RESERVA, REPROGRAMACION_CITA,
+    // Un solo correo al paciente por todas sus citas afectadas en una operación masiva
+    CANCELACION_MASIVA, REPROGRAMACION_MASIVA,
+    // Un solo correo con todas las citas de una serie recurrente
+    SERIE_CITAS,
+    // Hueco liberado ofrecido a un paciente de la lista de espera; cita_id es la cita cancelada
+    OFERTA_LISTA_ESPERA,
+    // Recordatorio a cierta anticipación del inicio de la cita
+    RECORDATORIO_CITA,
+    // Agenda del día con todas las citas pendientes de un dentista; cita_id es la primera de ellas
+    AGENDA_DENTISTA
+}
@@ -0,0 +1,38 @@
+package com.clinicavillegas.app.email.repositories;
+
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificacionRepository extends JpaRepository<Notificacion, Long> {
+
+    // Toma las notificaciones vencidas (incluidas las EN_PROCESO cuya reserva expiró) sin esperar a otras instancias
+    @Query(value = "SELECT * FROM notificaciones " +
+            "WHERE estado IN ('PENDIENTE', 'EN_PROCESO') " +
+            "AND proximo_intento <= :ahora " +
+            "ORDER BY proximo_intento " +
+            "LIMIT :limite " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Notificacion> reclamarLote(@Param("ahora") LocalDateTime ahora, @Param("limite") int limite);
+
+    // Encola sin fallar si otra instancia ya registró la misma clave; devuelve 0 en ese caso
+    @Modifying
+    @Query(value = "INSERT INTO notificaciones (tipo, cita_id, dentista_id, fecha_agenda, clave, estado, intentos, proximo_intento, " +
+            "fecha_creacion, fecha_modificacion) " +
+            "VALUES (:tipo, :citaId, :dentistaId, :fechaAgenda, :clave, 'PENDIENTE', 0, :ahora, :ahora, :ahora) " +
+            "ON CONFLICT (clave) DO NOTHING", nativeQuery = true)
+    int encolarUnica(@Param("tipo") String tipo, @Param("citaId") Long citaId, @Param("dentistaId") Long dentistaId,
+                     @Param("fechaAgenda") LocalDate fechaAgenda, @Param("clave") String clave,
+                     @Param("ahora") LocalDateTime ahora);
+
+    long countByEstado(EstadoNotificacion estado);
+}
@@ -1,10 +1,12 @@
 package com.clinicavillegas.app.email.services;
 
 import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
 import com.clinicavillegas.app.email.dto.EmailRequest;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.List;
 
 public interface EmailService {
 
@@ -14,10 +16,20 @@ public interface EmailService {
 
     void enviarRecordatorio(Cita cita);
 
+    void enviarAgendaDentista(List<Cita> citasDelDia);
+
     void enviarConfirmacionReserva(Cita cita);
 
     void enviarReprogramacionCita(Cita cita, LocalDate anteriorFecha, LocalTime anteriorHora);
 
     void enviarCancelacionReserva(Cita cita);
 
+    void enviarCancelacionMasiva(List<Cita> citasDelPaciente);
+
+    void enviarReprogramacionMasiva(List<Cita> citasDelPaciente);
+
+    void enviarConfirmacionSerie(List<Cita> citasDeLaSerie);
+
+    void enviarOfertaListaEspera(SolicitudEspera solicitud);
+
 }
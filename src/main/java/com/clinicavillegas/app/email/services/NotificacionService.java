@@ -0,0 +1,32 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+public interface NotificacionService {
+
+    void encolarConfirmacionReserva(Cita cita);
+
+    void encolarReprogramacionCita(Cita cita, LocalDate anteriorFecha, LocalTime anteriorHora);
+
+    void encolarCancelacionReserva(Cita cita);
+
+    void encolarCancelacionMasiva(List<Cita> citasDelPaciente);
+
+    void encolarReprogramacionMasiva(List<Cita> citasDelPaciente);
+
+    void encolarConfirmacionSerie(List<Cita> citasDeLaSerie);
+
+    void encolarOfertaListaEspera(SolicitudEspera solicitud, Long citaCanceladaId);
+
+    boolean encolarRecordatorio(Long citaId, Duration anticipacion, LocalDateTime inicio);
+
+    boolean encolarAgendaDentista(Long dentistaId, LocalDate fecha, Long primeraCitaId);
+
+}
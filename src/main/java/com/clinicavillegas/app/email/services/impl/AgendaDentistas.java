@@ -0,0 +1,56 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Encola cada mañana un solo correo por dentista con su agenda del día, en lugar de uno por cada recordatorio.
+ * Los dentistas con citas pendientes salen de una consulta agrupada; el contenido lo arma el relay al enviar.
+ * Corre en todas las instancias y la clave única de la notificación deja una agenda por dentista y día.
+ */
+@Slf4j
+@Component
+public class AgendaDentistas {
+
+    private final CitaRepository citaRepository;
+    private final NotificacionService notificacionService;
+    private final boolean activa;
+
+    public AgendaDentistas(CitaRepository citaRepository, NotificacionService notificacionService,
+                           @Value("${app.notificaciones.agenda-dentistas.activa:true}") boolean activa) {
+        this.citaRepository = citaRepository;
+        this.notificacionService = notificacionService;
+        this.activa = activa;
+    }
+
+    @Scheduled(cron = "${app.notificaciones.agenda-dentistas.cron:0 30 6 * * *}")
+    public void encolarDelDia() {
+        encolar(LocalDate.now());
+    }
+
+    public void encolar(LocalDate fecha) {
+        if (!activa) {
+            return;
+        }
+        List<CitaRepository.AgendaDelDia> agendas = citaRepository.findAgendasDelDia(fecha);
+        int encoladas = 0;
+        for (CitaRepository.AgendaDelDia agenda : agendas) {
+            try {
+                if (notificacionService.encolarAgendaDentista(agenda.getDentistaId(), fecha, agenda.getPrimeraCitaId())) {
+                    encoladas++;
+                }
+            } catch (RuntimeException e) {
+                // Una agenda que no se pudo encolar no impide las demás
+                log.error("No se pudo encolar la agenda del dentista ID: {} del {}", agenda.getDentistaId(), fecha, e);
+            }
+        }
+        log.info("Agendas del {}: {} dentistas con citas, {} encoladas en esta instancia", fecha, agendas.size(), encoladas);
+    }
+}
@@ -1,13 +1,19 @@
 package com.clinicavillegas.app.email.services.impl;
 
 import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
 import com.clinicavillegas.app.email.MailTemplates;
+import com.clinicavillegas.app.email.PlantillaCorreo;
+import com.clinicavillegas.app.email.PlantillaCorreo.Html;
 import com.clinicavillegas.app.email.dto.EmailRequest;
 import com.clinicavillegas.app.email.services.EmailService;
+import jakarta.activation.DataHandler;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.ByteArrayDataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailPreparationException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -15,17 +21,40 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 @Slf4j
 @Service
 public class DefaultEmailService implements EmailService {
 
+    private static final String CONTENIDO_HTML = "text/html; charset=UTF-8";
+
+    // Compiladas una sola vez al cargar la clase; ver PlantillaCorreo
+    private static final PlantillaCorreo VERIFICATION_CODE = PlantillaCorreo.compilar(MailTemplates.VERIFICATION_CODE);
+    private static final PlantillaCorreo USER_REMINDER = PlantillaCorreo.compilar(MailTemplates.USER_REMINDER);
+    private static final PlantillaCorreo DENTIST_REMINDER = PlantillaCorreo.compilar(MailTemplates.DENTIST_REMINDER);
+    private static final PlantillaCorreo USER_CONFIRMATION = PlantillaCorreo.compilar(MailTemplates.USER_CONFIRMATION);
+    private static final PlantillaCorreo DENTIST_CANCELLATION_NOTIFICATION = PlantillaCorreo.compilar(MailTemplates.DENTIST_CANCELLATION_NOTIFICATION);
+    private static final PlantillaCorreo DENTIST_RESCHEDULE_NOTIFICATION = PlantillaCorreo.compilar(MailTemplates.DENTIST_RESCHEDULE_NOTIFICATION);
+    private static final PlantillaCorreo APPOINTMENT_ROW = PlantillaCorreo.compilar(MailTemplates.APPOINTMENT_ROW);
+    private static final PlantillaCorreo PATIENT_BULK_CANCELLATION = PlantillaCorreo.compilar(MailTemplates.PATIENT_BULK_CANCELLATION);
+    private static final PlantillaCorreo PATIENT_BULK_RESCHEDULE = PlantillaCorreo.compilar(MailTemplates.PATIENT_BULK_RESCHEDULE);
+    private static final PlantillaCorreo PATIENT_APPOINTMENT_SERIES = PlantillaCorreo.compilar(MailTemplates.PATIENT_APPOINTMENT_SERIES);
+    private static final PlantillaCorreo WAITLIST_OFFER = PlantillaCorreo.compilar(MailTemplates.WAITLIST_OFFER);
+    private static final PlantillaCorreo AGENDA_ROW = PlantillaCorreo.compilar(MailTemplates.AGENDA_ROW);
+    private static final PlantillaCorreo DENTIST_DAILY_AGENDA = PlantillaCorreo.compilar(MailTemplates.DENTIST_DAILY_AGENDA);
+
     private final JavaMailSender javaMailSender;
 
     @Value("${spring.mail.username}")
     private String emisor;
 
+    // Con la agenda diaria activa el dentista no recibe un correo por cada recordatorio
+    @Value("${app.notificaciones.agenda-dentistas.activa:true}")
+    private boolean agendaDentistas;
+
     public DefaultEmailService(JavaMailSender javaMailSender) {
         this.javaMailSender = javaMailSender;
     }
@@ -53,14 +82,12 @@ public class DefaultEmailService implements EmailService {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
 
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
             helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helper.setTo(email);
             helper.setSubject("Código de verificación para el registro");
 
-            String htmlContent = String.format(MailTemplates.VERIFICATION_CODE, code);
-
-            helper.setText(htmlContent, true);
+            escribirCuerpo(mimeMessage, VERIFICATION_CODE, code);
 
             javaMailSender.send(mimeMessage);
 
@@ -73,14 +100,13 @@ public class DefaultEmailService implements EmailService {
     public void enviarRecordatorio(Cita cita) {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
 
             helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helper.setTo(cita.getUsuario().getCorreo());
             helper.setSubject("Recordatorio de cita");
 
-            String htmlContent = String.format(
-                    MailTemplates.USER_REMINDER,
+            escribirCuerpo(mimeMessage, USER_REMINDER,
                     cita.getUsuario().getNombres(),
                     cita.getUsuario().getApellidoPaterno(),
                     cita.getUsuario().getApellidoMaterno(),
@@ -95,19 +121,21 @@ public class DefaultEmailService implements EmailService {
                     cita.getDentista().getUsuario().getApellidoMaterno()
             );
 
-            helper.setText(htmlContent, true);
             javaMailSender.send(mimeMessage);
 
+            if (agendaDentistas) {
+                return;
+            }
+
             // Enviar correo al dentista
             MimeMessage mimeMessageDentista = javaMailSender.createMimeMessage();
-            MimeMessageHelper helperDentista = new MimeMessageHelper(mimeMessageDentista, true, "UTF-8");
+            MimeMessageHelper helperDentista = new MimeMessageHelper(mimeMessageDentista, "UTF-8");
 
             helperDentista.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helperDentista.setTo(cita.getDentista().getUsuario().getCorreo());
             helperDentista.setSubject("Recordatorio de cita programada");
 
-            String htmlContentDentista = String.format(
-                    MailTemplates.DENTIST_REMINDER,
+            escribirCuerpo(mimeMessageDentista, DENTIST_REMINDER,
                     cita.getDentista().getUsuario().getNombres(),
                     cita.getDentista().getUsuario().getApellidoPaterno(),
                     cita.getDentista().getUsuario().getApellidoMaterno(),
@@ -118,24 +146,23 @@ public class DefaultEmailService implements EmailService {
                     cita.getUsuario().getApellidoMaterno()
             );
 
-            helperDentista.setText(htmlContentDentista, true);
             javaMailSender.send(mimeMessageDentista);
-        } catch (Exception  e) {
-            log.error("Error al enviar el correo de recordatorio al dentista: {}", e.getMessage());
+        } catch (MessagingException e) {
+            // Se propaga, igual que un MailException del envío, para que el relay de notificaciones pueda reintentar
+            throw new MailPreparationException("Error al preparar el correo de recordatorio", e);
         }
 
     }
     public void enviarConfirmacionReserva(Cita cita) {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
 
             helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helper.setTo(cita.getUsuario().getCorreo());
             helper.setSubject("Confirmación de reserva de cita");
 
-            String htmlContent = String.format(
-                    MailTemplates.USER_CONFIRMATION,
+            escribirCuerpo(mimeMessage, USER_CONFIRMATION,
                     cita.getUsuario().getNombres(),
                     cita.getUsuario().getApellidoPaterno(),
                     cita.getUsuario().getApellidoMaterno(),
@@ -150,24 +177,23 @@ public class DefaultEmailService implements EmailService {
                     cita.getDentista().getUsuario().getApellidoMaterno()
             );
 
-            helper.setText(htmlContent, true);
             javaMailSender.send(mimeMessage);
-        } catch (Exception  e) {
-            log.error("Error al enviar el correo de confirmación al usuario: {}", e.getMessage());
+        } catch (MessagingException e) {
+            // Se propaga para que el relay de notificaciones pueda reintentar
+            throw new MailPreparationException("Error al preparar el correo de confirmación al usuario", e);
         }
 
     }
     public void enviarReprogramacionCita(Cita cita, LocalDate anteriorFecha, LocalTime anteriorHora) {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
 
             helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helper.setTo(cita.getDentista().getUsuario().getCorreo());
             helper.setSubject("Reprogramación de cita");
 
-            String htmlContent = String.format(
-                    MailTemplates.DENTIST_RESCHEDULE_NOTIFICATION,
+            escribirCuerpo(mimeMessage, DENTIST_RESCHEDULE_NOTIFICATION,
                     cita.getDentista().getUsuario().getNombres(),
                     cita.getDentista().getUsuario().getApellidoPaterno(),
                     cita.getDentista().getUsuario().getApellidoMaterno(),
@@ -178,27 +204,24 @@ public class DefaultEmailService implements EmailService {
                     anteriorHora,
                     cita.getFecha(),
                     cita.getHora()
-
             );
 
-            helper.setText(htmlContent, true);
             javaMailSender.send(mimeMessage);
-        } catch (Exception  e) {
-            log.error("Error al enviar el correo de reprogramación al dentista: {}", e.getMessage());
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Error al preparar el correo de reprogramación al dentista", e);
         }
 
     }
     public void enviarCancelacionReserva(Cita cita) {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
 
             helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
             helper.setTo(cita.getDentista().getUsuario().getCorreo());
             helper.setSubject("Cancelación de cita");
 
-            String htmlContent = String.format(
-                    MailTemplates.DENTIST_CANCELLATION_NOTIFICATION,
+            escribirCuerpo(mimeMessage, DENTIST_CANCELLATION_NOTIFICATION,
                     cita.getDentista().getUsuario().getNombres(),
                     cita.getDentista().getUsuario().getApellidoPaterno(),
                     cita.getDentista().getUsuario().getApellidoMaterno(),
@@ -211,12 +234,124 @@ public class DefaultEmailService implements EmailService {
                     cita.getObservaciones() != null ? cita.getObservaciones() : ""
             );
 
-            helper.setText(htmlContent, true);
             javaMailSender.send(mimeMessage);
-        } catch (Exception  e) {
-            log.error("Error al enviar el correo de cancelación al dentista: {}", e.getMessage());
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Error al preparar el correo de cancelación al dentista", e);
         }
 
     }
 
-}
\ No newline at end of file
+    public void enviarCancelacionMasiva(List<Cita> citasDelPaciente) {
+        String observaciones = citasDelPaciente.get(0).getObservaciones();
+        enviarMasivo(citasDelPaciente, "Cancelación de citas", PATIENT_BULK_CANCELLATION,
+                observaciones != null ? observaciones : "");
+    }
+
+    public void enviarReprogramacionMasiva(List<Cita> citasDelPaciente) {
+        enviarMasivo(citasDelPaciente, "Reprogramación de citas", PATIENT_BULK_RESCHEDULE);
+    }
+
+    public void enviarConfirmacionSerie(List<Cita> citasDeLaSerie) {
+        enviarMasivo(citasDeLaSerie, "Confirmación de serie de citas", PATIENT_APPOINTMENT_SERIES);
+    }
+
+    public void enviarOfertaListaEspera(SolicitudEspera solicitud) {
+        try {
+            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
+
+            helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
+            helper.setTo(solicitud.getUsuario().getCorreo());
+            helper.setSubject("Hay un horario disponible para su cita");
+
+            escribirCuerpo(mimeMessage, WAITLIST_OFFER,
+                    solicitud.getUsuario().getNombres(),
+                    solicitud.getUsuario().getApellidoPaterno(),
+                    solicitud.getUsuario().getApellidoMaterno(),
+                    solicitud.getDentistaOfrecido().getUsuario().getNombres(),
+                    solicitud.getDentistaOfrecido().getUsuario().getApellidoPaterno(),
+                    solicitud.getDentistaOfrecido().getUsuario().getApellidoMaterno(),
+                    solicitud.getFechaOfrecida(),
+                    solicitud.getHoraOfrecida(),
+                    solicitud.getTratamiento().getNombre(),
+                    solicitud.getOfertaVence().toLocalTime().withNano(0)
+            );
+
+            javaMailSender.send(mimeMessage);
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Error al preparar el correo de oferta de la lista de espera", e);
+        }
+    }
+
+    // Un solo correo al dentista con sus citas del día, en el orden en que llegan (por hora)
+    public void enviarAgendaDentista(List<Cita> citasDelDia) {
+        Cita primera = citasDelDia.get(0);
+        List<Html> filas = new ArrayList<>(citasDelDia.size());
+        for (Cita cita : citasDelDia) {
+            filas.add(AGENDA_ROW.renderizarHtml(
+                    cita.getHora(),
+                    cita.getUsuario().getNombres(),
+                    cita.getUsuario().getApellidoPaterno(),
+                    cita.getUsuario().getApellidoMaterno(),
+                    cita.getTratamiento().getNombre()));
+        }
+        try {
+            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
+
+            helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
+            helper.setTo(primera.getDentista().getUsuario().getCorreo());
+            helper.setSubject("Agenda del " + primera.getFecha());
+
+            escribirCuerpo(mimeMessage, DENTIST_DAILY_AGENDA,
+                    primera.getDentista().getUsuario().getNombres(),
+                    primera.getDentista().getUsuario().getApellidoPaterno(),
+                    primera.getDentista().getUsuario().getApellidoMaterno(),
+                    primera.getFecha(),
+                    citasDelDia.size(),
+                    Html.unir(filas)
+            );
+
+            javaMailSender.send(mimeMessage);
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Error al preparar la agenda del dentista", e);
+        }
+    }
+
+    // Un solo correo al paciente con una fila por cita; todas son del mismo paciente y del mismo dentista
+    private void enviarMasivo(List<Cita> citas, String asunto, PlantillaCorreo plantilla, Object... extras) {
+        Cita primera = citas.get(0);
+        List<Html> filas = new ArrayList<>(citas.size());
+        for (Cita cita : citas) {
+            filas.add(APPOINTMENT_ROW.renderizarHtml(
+                    cita.getFecha(), cita.getHora(), cita.getTratamiento().getNombre()));
+        }
+        List<Object> valores = new ArrayList<>(List.of(
+                primera.getUsuario().getNombres(),
+                primera.getUsuario().getApellidoPaterno(),
+                primera.getUsuario().getApellidoMaterno(),
+                primera.getDentista().getUsuario().getNombres(),
+                primera.getDentista().getUsuario().getApellidoPaterno(),
+                primera.getDentista().getUsuario().getApellidoMaterno(),
+                Html.unir(filas)
+        ));
+        valores.addAll(List.of(extras));
+        try {
+            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
+
+            helper.setFrom("ClinicaDentalVillegas<" + emisor + ">");
+            helper.setTo(primera.getUsuario().getCorreo());
+            helper.setSubject(asunto);
+            escribirCuerpo(mimeMessage, plantilla, valores.toArray());
+            javaMailSender.send(mimeMessage);
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Error al preparar el correo de " + asunto.toLowerCase() + " al paciente", e);
+        }
+    }
+
+    // El cuerpo va como HTML de una sola parte: las plantillas no llevan adjuntos ni imágenes embebidas
+    private void escribirCuerpo(MimeMessage mimeMessage, PlantillaCorreo plantilla, Object... valores) throws MessagingException {
+        mimeMessage.setDataHandler(new DataHandler(new ByteArrayDataSource(plantilla.renderizar(valores), CONTENIDO_HTML)));
+    }
+}
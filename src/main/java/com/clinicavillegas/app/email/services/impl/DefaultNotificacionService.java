@@ -0,0 +1,122 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import com.clinicavillegas.app.email.models.TipoNotificacion;
+import com.clinicavillegas.app.email.repositories.NotificacionRepository;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Registra los correos de citas en la tabla de notificaciones. Se une a la transacción de quien la llama,
+ * así el correo solo existe si el cambio de la cita se confirma.
+ */
+@Slf4j
+@Service
+public class DefaultNotificacionService implements NotificacionService {
+
+    private final NotificacionRepository notificacionRepository;
+
+    public DefaultNotificacionService(NotificacionRepository notificacionRepository) {
+        this.notificacionRepository = notificacionRepository;
+    }
+
+    public void encolarConfirmacionReserva(Cita cita) {
+        encolar(TipoNotificacion.CONFIRMACION_RESERVA, cita, null, null);
+    }
+
+    public void encolarReprogramacionCita(Cita cita, LocalDate anteriorFecha, LocalTime anteriorHora) {
+        encolar(TipoNotificacion.REPROGRAMACION_CITA, cita, anteriorFecha, anteriorHora);
+    }
+
+    public void encolarCancelacionReserva(Cita cita) {
+        encolar(TipoNotificacion.CANCELACION_RESERVA, cita, null, null);
+    }
+
+    public void encolarCancelacionMasiva(List<Cita> citasDelPaciente) {
+        encolarMasiva(TipoNotificacion.CANCELACION_MASIVA, citasDelPaciente);
+    }
+
+    public void encolarReprogramacionMasiva(List<Cita> citasDelPaciente) {
+        encolarMasiva(TipoNotificacion.REPROGRAMACION_MASIVA, citasDelPaciente);
+    }
+
+    public void encolarConfirmacionSerie(List<Cita> citasDeLaSerie) {
+        encolarMasiva(TipoNotificacion.SERIE_CITAS, citasDeLaSerie);
+    }
+
+    public void encolarOfertaListaEspera(SolicitudEspera solicitud, Long citaCanceladaId) {
+        log.info("Encolando notificación {} para la solicitud de espera ID: {}", TipoNotificacion.OFERTA_LISTA_ESPERA, solicitud.getId());
+        notificacionRepository.save(Notificacion.builder()
+                .tipo(TipoNotificacion.OFERTA_LISTA_ESPERA)
+                .citaId(citaCanceladaId)
+                .solicitudEsperaId(solicitud.getId())
+                .estado(EstadoNotificacion.PENDIENTE)
+                .intentos(0)
+                .proximoIntento(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Cada instancia programa los mismos recordatorios; la clave (cita, anticipación e inicio) deja pasar solo al primero.
+     * Si la cita se reprograma, el inicio cambia y el nuevo recordatorio tiene otra clave.
+     */
+    @Transactional
+    public boolean encolarRecordatorio(Long citaId, Duration anticipacion, LocalDateTime inicio) {
+        String clave = "RECORDATORIO:" + citaId + ":" + anticipacion.toMinutes() + ":" + inicio;
+        boolean encolado = notificacionRepository.encolarUnica(TipoNotificacion.RECORDATORIO_CITA.name(), citaId, null, null,
+                clave, LocalDateTime.now()) > 0;
+        if (encolado) {
+            log.info("Encolando notificación {} para la cita ID: {} ({} antes)", TipoNotificacion.RECORDATORIO_CITA, citaId, anticipacion);
+        }
+        return encolado;
+    }
+
+    // Una agenda por dentista y día, aunque el trabajo corra en todas las instancias
+    @Transactional
+    public boolean encolarAgendaDentista(Long dentistaId, LocalDate fecha, Long primeraCitaId) {
+        String clave = "AGENDA:" + dentistaId + ":" + fecha;
+        boolean encolada = notificacionRepository.encolarUnica(TipoNotificacion.AGENDA_DENTISTA.name(), primeraCitaId, dentistaId,
+                fecha, clave, LocalDateTime.now()) > 0;
+        if (encolada) {
+            log.info("Encolando notificación {} para el dentista ID: {} del {}", TipoNotificacion.AGENDA_DENTISTA, dentistaId, fecha);
+        }
+        return encolada;
+    }
+
+    private void encolarMasiva(TipoNotificacion tipo, List<Cita> citas) {
+        List<Long> ids = citas.stream().map(Cita::getId).toList();
+        log.info("Encolando notificación {} para las citas IDs: {}", tipo, ids);
+        notificacionRepository.save(Notificacion.builder()
+                .tipo(tipo)
+                .citaId(ids.get(0))
+                .citasIds(ids)
+                .estado(EstadoNotificacion.PENDIENTE)
+                .intentos(0)
+                .proximoIntento(LocalDateTime.now())
+                .build());
+    }
+
+    private void encolar(TipoNotificacion tipo, Cita cita, LocalDate fechaAnterior, LocalTime horaAnterior) {
+        log.info("Encolando notificación {} para la cita ID: {}", tipo, cita.getId());
+        notificacionRepository.save(Notificacion.builder()
+                .tipo(tipo)
+                .citaId(cita.getId())
+                .fechaAnterior(fechaAnterior)
+                .horaAnterior(horaAnterior)
+                .estado(EstadoNotificacion.PENDIENTE)
+                .intentos(0)
+                .proximoIntento(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,179 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link JavaMailSenderImpl} que reutiliza sesiones SMTP ya autenticadas en lugar de abrir una conexión
+ * (TCP, STARTTLS y AUTH) por cada envío. Un envío de varios mensajes usa una sola sesión.
+ * Las sesiones libres se guardan en una pila: la última usada es la primera en volver a salir, así las que sobran
+ * envejecen y se cierran al pasar el tiempo de inactividad, antes de que el servidor las corte. Una sesión que estuvo
+ * libre más de un momento se comprueba con NOOP al tomarla; si una falla a mitad de un lote se descarta y el resto
+ * del lote sigue en una nueva.
+ */
+@Slf4j
+public class JavaMailSenderConPool extends JavaMailSenderImpl implements DisposableBean {
+
+    // Una sesión usada hace menos que esto se toma sin comprobarla
+    private static final long VERIFICAR_DESPUES_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Semaphore permisos;
+    private final long inactividadMaximaNanos;
+    private final Duration esperaMaxima;
+    private final Deque<Sesion> libres = new ArrayDeque<>();
+    private final AtomicLong conexionesAbiertas = new AtomicLong();
+
+    public JavaMailSenderConPool(int maximoSesiones, Duration inactividadMaxima, Duration esperaMaxima) {
+        this.permisos = new Semaphore(Math.max(1, maximoSesiones), true);
+        this.inactividadMaximaNanos = inactividadMaxima.toNanos();
+        this.esperaMaxima = esperaMaxima;
+    }
+
+    // Conexiones abiertas desde que se creó, incluidas las reemplazadas
+    public long conexionesAbiertas() {
+        return conexionesAbiertas.get();
+    }
+
+    public synchronized int sesionesLibres() {
+        return libres.size();
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> fallidos = new LinkedHashMap<>();
+        tomarPermiso();
+        Transport transporte = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+                if (transporte == null) {
+                    try {
+                        transporte = tomar();
+                    } catch (AuthenticationFailedException e) {
+                        throw new MailAuthenticationException(e);
+                    } catch (MessagingException e) {
+                        // Sin conexión no sale ninguno de los que faltan
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            fallidos.put(originalMessages != null ? originalMessages[j] : mimeMessages[j], e);
+                        }
+                        throw new MailSendException("No se pudo conectar con el servidor de correo", e, fallidos);
+                    }
+                }
+                try {
+                    enviar(transporte, mimeMessages[i]);
+                } catch (MessagingException e) {
+                    fallidos.put(original, e);
+                    if (!transporte.isConnected()) {
+                        cerrar(transporte);
+                        transporte = null;
+                    }
+                }
+            }
+        } finally {
+            if (transporte != null) {
+                devolver(transporte);
+            }
+            permisos.release();
+        }
+        if (!fallidos.isEmpty()) {
+            throw new MailSendException(fallidos);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            libres.forEach(sesion -> cerrar(sesion.transporte()));
+            libres.clear();
+        }
+    }
+
+    private void tomarPermiso() {
+        try {
+            if (!permisos.tryAcquire(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("No hay sesiones SMTP disponibles tras esperar " + esperaMaxima);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Envío interrumpido esperando una sesión SMTP", e);
+        }
+    }
+
+    private Transport tomar() throws MessagingException {
+        while (true) {
+            Sesion sesion;
+            synchronized (this) {
+                cerrarInactivas();
+                sesion = libres.pollFirst();
+            }
+            if (sesion == null) {
+                Transport transporte = connectTransport();
+                conexionesAbiertas.incrementAndGet();
+                return transporte;
+            }
+            // isConnected envía un NOOP; si el servidor cerró la sesión se prueba con la siguiente
+            if (System.nanoTime() - sesion.libreDesde() < VERIFICAR_DESPUES_NANOS || sesion.transporte().isConnected()) {
+                return sesion.transporte();
+            }
+            cerrar(sesion.transporte());
+        }
+    }
+
+    private synchronized void devolver(Transport transporte) {
+        libres.addFirst(new Sesion(transporte, System.nanoTime()));
+        cerrarInactivas();
+    }
+
+    // Quien llama tiene el candado; las más antiguas están al final
+    private void cerrarInactivas() {
+        long ahora = System.nanoTime();
+        while (!libres.isEmpty() && ahora - libres.peekLast().libreDesde() > inactividadMaximaNanos) {
+            cerrar(libres.pollLast().transporte());
+        }
+    }
+
+    // Lo mismo que prepara JavaMailSenderImpl antes de cada mensaje
+    private void enviar(Transport transporte, MimeMessage mensaje) throws MessagingException {
+        if (mensaje.getSentDate() == null) {
+            mensaje.setSentDate(new Date());
+        }
+        String messageId = mensaje.getMessageID();
+        mensaje.saveChanges();
+        if (messageId != null) {
+            mensaje.setHeader("Message-ID", messageId);
+        }
+        Address[] destinatarios = mensaje.getAllRecipients();
+        transporte.sendMessage(mensaje, destinatarios != null ? destinatarios : new Address[0]);
+    }
+
+    private void cerrar(Transport transporte) {
+        try {
+            transporte.close();
+        } catch (MessagingException e) {
+            log.debug("Error al cerrar la sesión SMTP: {}", e.getMessage());
+        }
+    }
+
+    private record Sesion(Transport transporte, long libreDesde) {
+    }
+}
@@ -0,0 +1,207 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recordatorios de cita a cierta anticipación del inicio (por defecto 24 y 2 horas antes), repartidos a lo largo
+ * del día en lugar de salir todos juntos de madrugada. Los temporizadores viven en una {@link RuedaJerarquica} con
+ * ticks de un segundo: solo se cargan los días dentro del horizonte, que se llena al arrancar y se amplía cada
+ * medianoche, y cada cambio de cita confirmado cancela y vuelve a programar los suyos.
+ * Al vencer, el recordatorio se encola en la tabla de notificaciones y el relay lo envía. Todas las instancias
+ * programan lo mismo; la clave única de la notificación hace que solo una lo encole.
+ */
+@Slf4j
+@Component
+public class RecordatoriosCitas {
+
+    // Cinco niveles de 64 ranuras con ticks de un segundo: más de 30 años de alcance
+    private static final int NIVELES = 5;
+    private static final Duration ESPERA_REINTENTO = Duration.ofMinutes(1);
+
+    private final CitaRepository citaRepository;
+    private final NotificacionService notificacionService;
+    private final List<Duration> anticipaciones;
+    private final int horizonteDias;
+    private final Duration tolerancia;
+    private final Clock reloj;
+    private final Instant inicioRueda;
+
+    private final RuedaJerarquica<Recordatorio> rueda = new RuedaJerarquica<>(NIVELES);
+    private final Map<Long, List<RuedaJerarquica.Temporizador<Recordatorio>>> porCita = new HashMap<>();
+
+    private final Counter encolados;
+    private final Counter fallidos;
+
+    @Autowired
+    public RecordatoriosCitas(CitaRepository citaRepository, NotificacionService notificacionService,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${app.notificaciones.recordatorios.anticipaciones:24h,2h}") List<Duration> anticipaciones,
+                              @Value("${app.notificaciones.recordatorios.horizonte-dias:3}") int horizonteDias,
+                              @Value("${app.notificaciones.recordatorios.tolerancia-minutos:10}") long toleranciaMinutos) {
+        this(citaRepository, notificacionService, meterRegistry, anticipaciones, horizonteDias, toleranciaMinutos,
+                Clock.systemDefaultZone());
+    }
+
+    public RecordatoriosCitas(CitaRepository citaRepository, NotificacionService notificacionService,
+                              ObjectProvider<MeterRegistry> meterRegistry, List<Duration> anticipaciones, int horizonteDias,
+                              long toleranciaMinutos, Clock reloj) {
+        this.citaRepository = citaRepository;
+        this.notificacionService = notificacionService;
+        this.anticipaciones = anticipaciones.stream().sorted(Comparator.reverseOrder()).toList();
+        // El horizonte tiene que cubrir la anticipación más larga
+        long diasMinimos = this.anticipaciones.isEmpty() ? 0 : this.anticipaciones.get(0).toDays() + 1;
+        this.horizonteDias = (int) Math.max(horizonteDias, diasMinimos);
+        this.tolerancia = Duration.ofMinutes(toleranciaMinutos);
+        this.reloj = reloj;
+        this.inicioRueda = reloj.instant();
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        encolados = Counter.builder("recordatorios.encolados").register(registry);
+        fallidos = Counter.builder("recordatorios.fallidos").register(registry);
+        Gauge.builder("recordatorios.programados", this, RecordatoriosCitas::programados)
+                .description("Recordatorios en la rueda de esta instancia")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        LocalDate hoy = LocalDate.now(reloj);
+        cargarDias(hoy, hoy.plusDays(horizonteDias));
+    }
+
+    // El día que entra al horizonte; si el nodo estuvo caído a medianoche, la carga al arrancar ya lo incluyó
+    @Scheduled(cron = "${app.notificaciones.recordatorios.ampliacion-cron:0 0 0 * * *}")
+    public void ampliarHorizonte() {
+        LocalDate dia = LocalDate.now(reloj).plusDays(horizonteDias);
+        cargarDias(dia, dia);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void actualizar(CitaModificadaEvent evento) {
+        cancelar(evento.getCitaId());
+        if (evento.isPendiente() && evento.getFecha() != null && evento.getHora() != null
+                && !evento.getFecha().isAfter(LocalDate.now(reloj).plusDays(horizonteDias))) {
+            programar(evento.getCitaId(), LocalDateTime.of(evento.getFecha(), evento.getHora()));
+        }
+    }
+
+    /**
+     * Avanza la rueda hasta el segundo actual (recupera los ticks perdidos si el planificador se atrasó)
+     * y encola los recordatorios vencidos fuera del candado.
+     */
+    @Scheduled(fixedRate = 1000)
+    public void avanzar() {
+        List<Recordatorio> vencidos = new ArrayList<>();
+        synchronized (this) {
+            long objetivo = tickDe(reloj.instant());
+            while (rueda.tick() < objetivo) {
+                for (RuedaJerarquica.Temporizador<Recordatorio> temporizador : rueda.avanzar()) {
+                    Recordatorio recordatorio = temporizador.valor();
+                    List<RuedaJerarquica.Temporizador<Recordatorio>> deLaCita = porCita.get(recordatorio.citaId());
+                    if (deLaCita != null && deLaCita.remove(temporizador) && deLaCita.isEmpty()) {
+                        porCita.remove(recordatorio.citaId());
+                    }
+                    vencidos.add(recordatorio);
+                }
+            }
+        }
+        for (Recordatorio recordatorio : vencidos) {
+            encolar(recordatorio);
+        }
+    }
+
+    public synchronized int programados() {
+        return rueda.programados();
+    }
+
+    private void cargarDias(LocalDate desde, LocalDate hasta) {
+        List<CitaRepository.CitaProgramable> citas = citaRepository.findProgramablesEntre(desde, hasta);
+        synchronized (this) {
+            citas.forEach(cita -> programar(cita.getId(), LocalDateTime.of(cita.getFecha(), cita.getHora())));
+        }
+        log.info("Recordatorios programados para {} citas del {} al {}", citas.size(), desde, hasta);
+    }
+
+    // Quien llama tiene el candado. Un recordatorio que ya pasó solo se programa si el atraso está dentro de la
+    // tolerancia (p. ej. el nodo reinició justo en ese momento); si no, lo cubre el de menor anticipación
+    private void programar(Long citaId, LocalDateTime inicio) {
+        cancelar(citaId);
+        Instant ahora = reloj.instant();
+        List<RuedaJerarquica.Temporizador<Recordatorio>> temporizadores = new ArrayList<>(anticipaciones.size());
+        for (Duration anticipacion : anticipaciones) {
+            Instant momento = inicio.minus(anticipacion).atZone(reloj.getZone()).toInstant();
+            if (momento.isBefore(ahora.minus(tolerancia))) {
+                continue;
+            }
+            temporizadores.add(rueda.programar(tickDe(momento), new Recordatorio(citaId, anticipacion, inicio)));
+        }
+        if (!temporizadores.isEmpty()) {
+            porCita.put(citaId, temporizadores);
+        }
+    }
+
+    private void cancelar(Long citaId) {
+        List<RuedaJerarquica.Temporizador<Recordatorio>> temporizadores = porCita.remove(citaId);
+        if (temporizadores != null) {
+            temporizadores.forEach(rueda::cancelar);
+        }
+    }
+
+    private void encolar(Recordatorio recordatorio) {
+        try {
+            if (notificacionService.encolarRecordatorio(recordatorio.citaId(), recordatorio.anticipacion(), recordatorio.inicio())) {
+                encolados.increment();
+            }
+        } catch (RuntimeException e) {
+            fallidos.increment();
+            log.warn("No se pudo encolar el recordatorio de la cita ID: {}, se reintentará en {}: {}",
+                    recordatorio.citaId(), ESPERA_REINTENTO, e.getMessage());
+            reintentar(recordatorio);
+        }
+    }
+
+    private synchronized void reintentar(Recordatorio recordatorio) {
+        // Mientras tanto la cita pudo cambiar o la cita ya empezó
+        List<RuedaJerarquica.Temporizador<Recordatorio>> deLaCita = porCita.get(recordatorio.citaId());
+        boolean reprogramada = deLaCita != null && deLaCita.stream().anyMatch(t -> !t.valor().inicio().equals(recordatorio.inicio()));
+        if (reprogramada || !recordatorio.inicio().atZone(reloj.getZone()).toInstant().isAfter(reloj.instant())) {
+            return;
+        }
+        RuedaJerarquica.Temporizador<Recordatorio> temporizador =
+                rueda.programar(tickDe(reloj.instant().plus(ESPERA_REINTENTO)), recordatorio);
+        porCita.computeIfAbsent(recordatorio.citaId(), id -> new ArrayList<>()).add(temporizador);
+    }
+
+    private long tickDe(Instant momento) {
+        return Duration.between(inicioRueda, momento).toSeconds();
+    }
+
+    record Recordatorio(Long citaId, Duration anticipacion, LocalDateTime inicio) {
+    }
+}
@@ -0,0 +1,256 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.SolicitudEsperaRepository;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import com.clinicavillegas.app.email.repositories.NotificacionRepository;
+import com.clinicavillegas.app.email.services.EmailService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Despacha en segundo plano los correos encolados en la tabla de notificaciones.
+ * Cada ciclo reclama un lote con FOR UPDATE SKIP LOCKED (varias instancias no se pisan), lo marca EN_PROCESO
+ * con un plazo de reserva y lo reparte en un pool de hilos acotado. Los fallos se reintentan con espera
+ * exponencial y, al agotar los intentos, la notificación queda FALLIDA para revisión manual.
+ * Los envíos de todos los hilos se espacian a un ritmo máximo por instancia para no saturar el servidor de correo
+ * cuando vencen muchos recordatorios a la vez. Por tipo de notificación se miden los envíos y fallos (la tasa sale
+ * del contador), la duración de cada envío y la demora desde que se encoló hasta que salió.
+ */
+@Slf4j
+@Component
+public class RelayNotificaciones {
+
+    private static final int LARGO_MAXIMO_ERROR = 1000;
+
+    private final NotificacionRepository notificacionRepository;
+    private final CitaRepository citaRepository;
+    private final SolicitudEsperaRepository solicitudEsperaRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final int lote;
+    private final int maxIntentos;
+    private final Duration esperaBase;
+    private final Duration esperaMaxima;
+    private final Duration plazoReserva;
+    private final long nanosEntreEnvios;
+    private final AtomicLong proximoTurno = new AtomicLong(System.nanoTime());
+
+    private final MeterRegistry registry;
+
+    private volatile boolean detenido;
+
+    public RelayNotificaciones(NotificacionRepository notificacionRepository, CitaRepository citaRepository,
+                               SolicitudEsperaRepository solicitudEsperaRepository, EmailService emailService, PlatformTransactionManager transactionManager,
+                               ObjectProvider<MeterRegistry> meterRegistry,
+                               @Value("${app.notificaciones.relay.hilos:4}") int hilos,
+                               @Value("${app.notificaciones.relay.lote:50}") int lote,
+                               @Value("${app.notificaciones.relay.max-intentos:6}") int maxIntentos,
+                               @Value("${app.notificaciones.relay.espera-base-segundos:30}") long esperaBaseSegundos,
+                               @Value("${app.notificaciones.relay.espera-maxima-minutos:60}") long esperaMaximaMinutos,
+                               @Value("${app.notificaciones.relay.plazo-reserva-minutos:5}") long plazoReservaMinutos,
+                               @Value("${app.notificaciones.relay.espera-cierre-segundos:30}") int esperaCierreSegundos,
+                               @Value("${app.notificaciones.relay.envios-por-segundo:10}") int enviosPorSegundo) {
+        this.notificacionRepository = notificacionRepository;
+        this.citaRepository = citaRepository;
+        this.solicitudEsperaRepository = solicitudEsperaRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lote = lote;
+        this.maxIntentos = maxIntentos;
+        this.esperaBase = Duration.ofSeconds(esperaBaseSegundos);
+        this.esperaMaxima = Duration.ofMinutes(esperaMaximaMinutos);
+        this.plazoReserva = Duration.ofMinutes(plazoReservaMinutos);
+        this.nanosEntreEnvios = TimeUnit.SECONDS.toNanos(1) / Math.max(1, enviosPorSegundo);
+        this.registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(lote);
+        executor.setThreadNamePrefix("notificaciones-");
+        // Al apagar se terminan los envíos en curso y los que ya estaban en cola
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(esperaCierreSegundos);
+        executor.initialize();
+    }
+
+    @Scheduled(fixedDelayString = "${app.notificaciones.relay.intervalo-ms:2000}")
+    public void despachar() {
+        if (detenido) {
+            return;
+        }
+        // Nunca se reclama más de lo que el pool puede aceptar, lo demás espera en la tabla
+        int capacidad = executor.getMaxPoolSize() + lote - executor.getActiveCount() - executor.getQueueSize();
+        if (capacidad <= 0) {
+            return;
+        }
+        List<Notificacion> reclamadas = reclamar(Math.min(capacidad, lote));
+        for (Notificacion notificacion : reclamadas) {
+            try {
+                executor.execute(() -> procesar(notificacion));
+            } catch (TaskRejectedException e) {
+                // Queda EN_PROCESO y se vuelve a tomar cuando vence el plazo de reserva
+                log.warn("No se pudo programar la notificación ID: {}: {}", notificacion.getId(), e.getMessage());
+            }
+        }
+    }
+
+    public void procesar(Notificacion notificacion) {
+        notificacion.setIntentos(notificacion.getIntentos() + 1);
+        esperarTurno();
+        String tipo = notificacion.getTipo().name();
+        long inicio = System.nanoTime();
+        try {
+            enviar(notificacion);
+            notificacion.setEstado(EstadoNotificacion.ENVIADA);
+            notificacion.setUltimoError(null);
+            Counter.builder("notificaciones.enviadas").tag("tipo", tipo).register(registry).increment();
+            if (notificacion.getFechaCreacion() != null) {
+                Timer.builder("notificaciones.demora")
+                        .description("Tiempo desde que se encoló la notificación hasta que salió el correo")
+                        .tag("tipo", tipo)
+                        .register(registry)
+                        .record(Duration.between(notificacion.getFechaCreacion(), LocalDateTime.now()));
+            }
+        } catch (Exception e) {
+            Counter.builder("notificaciones.fallidas").tag("tipo", tipo).register(registry).increment();
+            registrarFallo(notificacion, e);
+        }
+        Timer.builder("notificaciones.envio").tag("tipo", tipo).register(registry)
+                .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        notificacionRepository.save(notificacion);
+    }
+
+    @PreDestroy
+    public void detener() {
+        detenido = true;
+        executor.shutdown();
+    }
+
+    // Reparte los envíos a intervalos fijos entre todos los hilos
+    private void esperarTurno() {
+        long turno = proximoTurno.getAndUpdate(previo -> Math.max(previo, System.nanoTime()) + nanosEntreEnvios);
+        long espera = turno - System.nanoTime();
+        if (espera > 0) {
+            LockSupport.parkNanos(espera);
+        }
+    }
+
+    private List<Notificacion> reclamar(int limite) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Notificacion> reclamadas = notificacionRepository.reclamarLote(ahora, limite);
+            reclamadas.forEach(notificacion -> {
+                notificacion.setEstado(EstadoNotificacion.EN_PROCESO);
+                notificacion.setProximoIntento(ahora.plus(plazoReserva));
+            });
+            return reclamadas;
+        });
+    }
+
+    private void enviar(Notificacion notificacion) {
+        switch (notificacion.getTipo()) {
+            case CANCELACION_MASIVA -> emailService.enviarCancelacionMasiva(citasDe(notificacion));
+            case REPROGRAMACION_MASIVA -> emailService.enviarReprogramacionMasiva(citasDe(notificacion));
+            case SERIE_CITAS -> emailService.enviarConfirmacionSerie(citasDe(notificacion));
+            case OFERTA_LISTA_ESPERA -> emailService.enviarOfertaListaEspera(solicitudDe(notificacion));
+            case AGENDA_DENTISTA -> enviarAgenda(notificacion);
+            default -> enviarIndividual(notificacion);
+        }
+    }
+
+    private void enviarIndividual(Notificacion notificacion) {
+        Cita cita = citaRepository.findParaNotificacionById(notificacion.getCitaId()).orElseThrow(
+                () -> new ResourceNotFoundException(Cita.class, notificacion.getCitaId())
+        );
+        switch (notificacion.getTipo()) {
+            case CONFIRMACION_RESERVA -> emailService.enviarConfirmacionReserva(cita);
+            case CANCELACION_RESERVA -> emailService.enviarCancelacionReserva(cita);
+            case REPROGRAMACION_CITA -> emailService.enviarReprogramacionCita(
+                    cita, notificacion.getFechaAnterior(), notificacion.getHoraAnterior());
+            case RECORDATORIO_CITA -> {
+                // Se encoló antes de que la cita se cancelara o atendiera: se da por despachado sin correo
+                if (cita.getEstado() == EstadoCita.PENDIENTE) {
+                    emailService.enviarRecordatorio(cita);
+                } else {
+                    log.info("Recordatorio de la cita ID: {} omitido, la cita ya no está pendiente", cita.getId());
+                }
+            }
+            default -> throw new IllegalStateException("Tipo de notificación no individual: " + notificacion.getTipo());
+        }
+    }
+
+    // Las citas se leen al enviar: las canceladas desde que se encoló ya no aparecen
+    private void enviarAgenda(Notificacion notificacion) {
+        List<Cita> citas = citaRepository.findAgendaDelDentista(notificacion.getDentistaId(), notificacion.getFechaAgenda());
+        if (citas.isEmpty()) {
+            log.info("Agenda del dentista ID: {} del {} omitida, ya no tiene citas pendientes",
+                    notificacion.getDentistaId(), notificacion.getFechaAgenda());
+            return;
+        }
+        emailService.enviarAgendaDentista(citas);
+    }
+
+    private List<Cita> citasDe(Notificacion notificacion) {
+        List<Cita> citas = citaRepository.findParaNotificacionByIdInOrderByFechaAscHoraAsc(notificacion.getCitasIds());
+        if (citas.isEmpty()) {
+            throw new ResourceNotFoundException(Cita.class, notificacion.getCitaId());
+        }
+        return citas;
+    }
+
+    private SolicitudEspera solicitudDe(Notificacion notificacion) {
+        return solicitudEsperaRepository.findParaNotificacionById(notificacion.getSolicitudEsperaId()).orElseThrow(
+                () -> new ResourceNotFoundException(SolicitudEspera.class, notificacion.getSolicitudEsperaId())
+        );
+    }
+
+    private void registrarFallo(Notificacion notificacion, Exception e) {
+        String error = String.valueOf(e.getMessage());
+        notificacion.setUltimoError(error.length() > LARGO_MAXIMO_ERROR ? error.substring(0, LARGO_MAXIMO_ERROR) : error);
+        // Si la cita ya no existe no tiene sentido reintentar
+        if (e instanceof ResourceNotFoundException || notificacion.getIntentos() >= maxIntentos) {
+            log.error("Notificación ID: {} descartada tras {} intentos: {}", notificacion.getId(), notificacion.getIntentos(), error);
+            notificacion.setEstado(EstadoNotificacion.FALLIDA);
+            return;
+        }
+        long factor = 1L << Math.min(notificacion.getIntentos() - 1, 20);
+        Duration espera = esperaBase.multipliedBy(factor);
+        if (espera.compareTo(esperaMaxima) > 0) {
+            espera = esperaMaxima;
+        }
+        // Un poco de variación para que los reintentos de un corte del servidor de correo no lleguen todos juntos
+        espera = espera.plusMillis(ThreadLocalRandom.current().nextLong(espera.toMillis() / 5 + 1));
+        log.warn("Falló el envío de la notificación ID: {} (intento {}), se reintentará en {}", notificacion.getId(), notificacion.getIntentos(), espera);
+        notificacion.setEstado(EstadoNotificacion.PENDIENTE);
+        notificacion.setProximoIntento(LocalDateTime.now().plus(espera));
+    }
+}
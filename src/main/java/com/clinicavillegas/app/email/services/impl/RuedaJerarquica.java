@@ -0,0 +1,128 @@
+package com.clinicavillegas.app.email.services.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rueda de tiempo jerárquica para temporizadores a horas o días vista. Cada nivel tiene 64 ranuras y una ranura
+ * abarca una vuelta completa del nivel anterior: con ticks de un segundo el primer nivel cubre un minuto, el segundo
+ * una hora, el tercero casi tres días, y así. Programar y cancelar cuestan O(1); cada tick solo vacía la ranura actual
+ * del primer nivel y, al completar una vuelta, baja un nivel el contenido de una ranura del siguiente (cada
+ * temporizador baja como mucho una vez por nivel).
+ * No es segura entre hilos: quien la usa sincroniza.
+ */
+public class RuedaJerarquica<T> {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+
+    private final List<List<Set<Temporizador<T>>>> niveles;
+    private long tick;
+    private int programados;
+
+    public RuedaJerarquica(int cantidadNiveles) {
+        niveles = new ArrayList<>(Math.max(1, cantidadNiveles));
+        for (int nivel = 0; nivel < Math.max(1, cantidadNiveles); nivel++) {
+            List<Set<Temporizador<T>>> ranuras = new ArrayList<>(RANURAS);
+            for (int i = 0; i < RANURAS; i++) {
+                ranuras.add(new HashSet<>());
+            }
+            niveles.add(ranuras);
+        }
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public int programados() {
+        return programados;
+    }
+
+    // Ticks hacia adelante que la rueda puede alojar
+    public long alcance() {
+        return 1L << (BITS * niveles.size());
+    }
+
+    /**
+     * Programa el valor para el tick indicado; un tick que ya pasó vence en el siguiente avance.
+     */
+    public Temporizador<T> programar(long venceEnTick, T valor) {
+        long vence = Math.max(venceEnTick, tick + 1);
+        if (vence - tick >= alcance()) {
+            throw new IllegalArgumentException("El tick " + venceEnTick + " está fuera del alcance de la rueda");
+        }
+        Temporizador<T> temporizador = new Temporizador<>(vence, valor);
+        ubicar(temporizador);
+        programados++;
+        return temporizador;
+    }
+
+    public boolean cancelar(Temporizador<T> temporizador) {
+        if (temporizador.ranura == null || !temporizador.ranura.remove(temporizador)) {
+            return false;
+        }
+        temporizador.ranura = null;
+        programados--;
+        return true;
+    }
+
+    /**
+     * Avanza un tick y devuelve los temporizadores que vencen en él.
+     */
+    public List<Temporizador<T>> avanzar() {
+        tick++;
+        // De arriba hacia abajo, así lo que baja de un nivel alto puede seguir bajando en este mismo tick
+        for (int nivel = niveles.size() - 1; nivel > 0; nivel--) {
+            if ((tick & ((1L << (BITS * nivel)) - 1)) == 0) {
+                Set<Temporizador<T>> ranura = niveles.get(nivel).get(indice(tick, nivel));
+                List<Temporizador<T>> bajan = List.copyOf(ranura);
+                ranura.clear();
+                bajan.forEach(this::ubicar);
+            }
+        }
+        Set<Temporizador<T>> actual = niveles.get(0).get(indice(tick, 0));
+        List<Temporizador<T>> vencidos = new ArrayList<>(actual);
+        actual.clear();
+        vencidos.forEach(temporizador -> temporizador.ranura = null);
+        programados -= vencidos.size();
+        return vencidos;
+    }
+
+    private void ubicar(Temporizador<T> temporizador) {
+        long faltan = temporizador.vence - tick;
+        int nivel = 0;
+        while (nivel < niveles.size() - 1 && faltan >= 1L << (BITS * (nivel + 1))) {
+            nivel++;
+        }
+        Set<Temporizador<T>> ranura = niveles.get(nivel).get(indice(temporizador.vence, nivel));
+        ranura.add(temporizador);
+        temporizador.ranura = ranura;
+    }
+
+    private static int indice(long tick, int nivel) {
+        return (int) ((tick >>> (BITS * nivel)) & MASCARA);
+    }
+
+    public static final class Temporizador<T> {
+        private final long vence;
+        private final T valor;
+        private Set<Temporizador<T>> ranura;
+
+        private Temporizador(long vence, T valor) {
+            this.vence = vence;
+            this.valor = valor;
+        }
+
+        public long vence() {
+            return vence;
+        }
+
+        public T valor() {
+            return valor;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.clinicavillegas.app.reports.services;
 
 import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
 import com.clinicavillegas.app.appointment.models.Dentista;
 import com.clinicavillegas.app.appointment.models.TipoTratamiento;
 import com.clinicavillegas.app.appointment.models.Tratamiento;
@@ -270,28 +271,28 @@ public class ReporteExcelService {
             long totalPendiente = 0;
             for (Cita c : entry.getValue()) {
                 Row row = sheet.createRow(rowIndex++);
-                String estado = c.getEstado();
+                EstadoCita estado = c.getEstado();
 
                 CellStyle textStyleEstado;
                 CellStyle dateStyleEstado;
                 CellStyle numberStyleEstado;
 
                 switch (estado) {
-                    case "Atendida" -> {
+                    case ATENDIDA -> {
                         textStyleEstado = atendidaTextStyle;
                         dateStyleEstado = atendidaDateStyle;
                         numberStyleEstado = atendidaNumberStyle;
                         totalAtendida++;
                         totalMontoAtendida += c.getMonto().doubleValue();
                     }
-                    case "Cancelada" -> {
+                    case CANCELADA -> {
                         textStyleEstado = canceladaTextStyle;
                         dateStyleEstado = canceladaDateStyle;
                         numberStyleEstado = canceladaNumberStyle;
                         totalCancelada++;
                         totalMontoCancelada += c.getMonto().doubleValue();
                     }
-                    case "Pendiente" -> {
+                    case PENDIENTE -> {
                         textStyleEstado = pendienteTextStyle;
                         dateStyleEstado = pendienteDateStyle;
                         numberStyleEstado = pendienteNumberStyle;
@@ -322,7 +323,7 @@ public class ReporteExcelService {
                 montoCell.setCellValue(c.getMonto().doubleValue());
                 montoCell.setCellStyle(numberStyleEstado);
 
-                row.createCell(5).setCellValue(c.getEstado());
+                row.createCell(5).setCellValue(c.getEstado().getNombre());
                 row.getCell(5).setCellStyle(textStyleEstado);
 
                 row.createCell(6).setCellValue(c.getObservaciones());
@@ -374,7 +375,7 @@ public class ReporteExcelService {
             case "tratamiento" -> cita.getTratamiento().getNombre();
             case "tipoTratamiento" -> cita.getTratamiento().getTipoTratamiento().getNombre();
             case "tipoDocumento" -> cita.getUsuario().getTipoDocumento().getNombre();
-            case "estado" -> cita.getEstado();
+            case "estado" -> cita.getEstado().getNombre();
             case "sexo" -> cita.getSexo().name();
             default -> "—";
         };
@@ -414,8 +415,9 @@ public class ReporteExcelService {
             System.out.println("Agregando filtro: " + predicates);
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-        System.out.println("Citas encontradas: " + citaRepository.findAll(spec).size());
-        return citaRepository.findAll(spec);
+        List<Cita> citas = citaRepository.findAll(spec, Cita.GRAFO_REPORTE);
+        System.out.println("Citas encontradas: " + citas.size());
+        return citas;
     }
 
 
@@ -248,18 +248,18 @@ public class ReportePdfService {
                 table.addCell(c.getTratamiento().getNombre());
                 table.addCell(c.getDentista().getUsuario().getNombres());
                 table.addCell(c.getMonto().toString());
-                table.addCell(c.getEstado());
+                table.addCell(c.getEstado().getNombre());
                 table.addCell(c.getObservaciones() != null ? c.getObservaciones() : "");
                 switch (c.getEstado()){
-                    case "Atendida" -> {
+                    case ATENDIDA -> {
                         totalAtendida++;
                         totalMontoAtendida += c.getMonto().doubleValue();
                     }
-                    case "Cancelada" -> {
+                    case CANCELADA -> {
                         totalCancelada++;
                         totalMontoCancelada += c.getMonto().doubleValue();
                     }
-                    case "Pendiente" -> {
+                    case PENDIENTE -> {
                         totalPendiente++;
                         totalMontoPendiente += c.getMonto().doubleValue();
                     }
@@ -313,7 +313,7 @@ public class ReportePdfService {
             case "tratamiento" -> cita.getTratamiento().getNombre();
             case "tipoTratamiento" -> cita.getTratamiento().getTipoTratamiento().getNombre();
             case "tipoDocumento" -> cita.getTipoDocumento().getNombre();
-            case "estado" -> cita.getEstado();
+            case "estado" -> cita.getEstado().getNombre();
             case "sexo" -> cita.getSexo().name();
             default -> "—";
         };
@@ -352,8 +352,9 @@ public class ReportePdfService {
             System.out.println("Agregando filtro: " + predicates);
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-        System.out.println("Citas encontradas: " + citaRepository.findAll(spec).size());
-        return citaRepository.findAll(spec);
+        List<Cita> citas = citaRepository.findAll(spec, Cita.GRAFO_REPORTE);
+        System.out.println("Citas encontradas: " + citas.size());
+        return citas;
     }
 
 
@@ -1,7 +1,9 @@
 package com.clinicavillegas.app.user.mappers;
 
 import com.clinicavillegas.app.user.dto.response.UsuarioResponse;
+import com.clinicavillegas.app.user.models.TipoDocumento;
 import com.clinicavillegas.app.user.models.Usuario;
+import org.hibernate.Hibernate;
 
 public class UsuarioMapper {
     public static UsuarioResponse toDto(Usuario usuario){
@@ -19,7 +21,7 @@ public class UsuarioMapper {
                 .estado(usuario.isEstado())
                 .imagenPerfil(usuario.getImagenPerfil())
                 .rol(usuario.getRol())
-                .tipoDocumento(usuario.getTipoDocumento())
+                .tipoDocumento(Hibernate.unproxy(usuario.getTipoDocumento(), TipoDocumento.class))
                 .fechaCreacion(usuario.getFechaCreacion())
                 .fechaModificacion(usuario.getFechaModificacion())
                 .build();
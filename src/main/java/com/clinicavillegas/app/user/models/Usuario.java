@@ -60,7 +60,7 @@ public class Usuario extends AudityEntity implements UserDetails {
     @Column(nullable = false)
     private Rol rol;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "tipo_documento_id")
     private TipoDocumento tipoDocumento;
 
@@ -1,13 +1,28 @@
 package com.clinicavillegas.app.user.repositories;
 
 import com.clinicavillegas.app.user.models.Usuario;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UsuarioRepository  extends JpaRepository<Usuario, Long>, JpaSpecificationExecutor<Usuario> {
+    // También carga al usuario autenticado; su perfil se arma fuera de la sesión de Hibernate
+    @EntityGraph(attributePaths = "tipoDocumento")
     Optional<Usuario> findByCorreo(String correo);
+
+    @Override
+    @EntityGraph(attributePaths = "tipoDocumento")
+    List<Usuario> findAll(Specification<Usuario> spec);
+
+    @Override
+    @EntityGraph(attributePaths = "tipoDocumento")
+    Page<Usuario> findAll(Specification<Usuario> spec, Pageable pageable);
 }
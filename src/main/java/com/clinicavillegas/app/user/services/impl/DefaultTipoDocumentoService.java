@@ -23,6 +23,8 @@ public class DefaultTipoDocumentoService implements TipoDocumentoService {
     private static final String CACHE_TIPOS_DOCUMENTO_LISTA = "tiposDocumentoLista";
     private static final String CACHE_TIPOS_DOCUMENTO_PAGINADOS = "tiposDocumentoPaginados";
     private static final String CACHE_TIPO_DOCUMENTO_POR_ID = "tipoDocumentoPorId";
+    // La usa ResolutorReferencias al reservar citas, indexada por acrónimo y por nombre
+    private static final String CACHE_TIPOS_DOCUMENTO_REFERENCIAS = "referenciasTipoDocumento";
 
     private final TipoDocumentoRepository tipoDocumentoRepository;
 
@@ -67,7 +69,8 @@ public class DefaultTipoDocumentoService implements TipoDocumentoService {
     @Caching(evict = {
             @CacheEvict(value = CACHE_TIPO_DOCUMENTO_POR_ID, key = "#id"),
             @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_LISTA, allEntries = true),
-            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_PAGINADOS, allEntries = true)
+            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_PAGINADOS, allEntries = true),
+            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_REFERENCIAS, allEntries = true)
     })
     public void actualizarTipoDocumento(Long id, TipoDocumentoRequest request) {
         log.info("Actualizando tipo de documento en la base de datos y caché para ID: {}", id);
@@ -83,7 +86,8 @@ public class DefaultTipoDocumentoService implements TipoDocumentoService {
     @Caching(evict = {
             @CacheEvict(value = CACHE_TIPO_DOCUMENTO_POR_ID, key = "#id"),
             @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_LISTA, allEntries = true),
-            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_PAGINADOS, allEntries = true)
+            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_PAGINADOS, allEntries = true),
+            @CacheEvict(value = CACHE_TIPOS_DOCUMENTO_REFERENCIAS, allEntries = true)
     })
     public void eliminarTipoDocumento(Long id) {
         log.info("Eliminando tipo de documento (lógico) de la base de datos y caché para ID: {}", id);
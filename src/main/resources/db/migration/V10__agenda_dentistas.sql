@@ -0,0 +1,11 @@
+-- Agenda diaria del dentista: un correo por dentista y día en lugar de uno por cita.
+-- El relay lee las citas pendientes del dentista para ese día al momento de enviar.
+ALTER TABLE notificaciones ADD COLUMN dentista_id BIGINT REFERENCES dentistas;
+ALTER TABLE notificaciones ADD COLUMN fecha_agenda DATE;
+
+ALTER TABLE notificaciones DROP CONSTRAINT IF EXISTS notificaciones_tipo_check;
+ALTER TABLE notificaciones ADD CONSTRAINT notificaciones_tipo_check CHECK (tipo IN (
+    'CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA',
+    'CANCELACION_MASIVA', 'REPROGRAMACION_MASIVA', 'SERIE_CITAS', 'OFERTA_LISTA_ESPERA', 'RECORDATORIO_CITA',
+    'AGENDA_DENTISTA'
+));
@@ -0,0 +1,2 @@
+-- La purga de sesiones borra por lotes las más antiguas primero; sin este índice cada lote recorre toda la tabla
+CREATE INDEX IF NOT EXISTS idx_sesiones_expiry_date ON sesiones (expiry_date);
@@ -0,0 +1,11 @@
+-- Las ofertas de la lista de espera vencen: si el paciente reservó el hueco la solicitud queda aceptada,
+-- si no vuelve a esperar y el hueco pasa al siguiente paciente.
+
+ALTER TABLE lista_espera DROP CONSTRAINT IF EXISTS lista_espera_estado_check;
+ALTER TABLE lista_espera ADD CONSTRAINT lista_espera_estado_check
+    CHECK (estado IN ('ESPERANDO', 'OFRECIDA', 'ACEPTADA', 'CANCELADA'));
+
+ALTER TABLE lista_espera ADD COLUMN IF NOT EXISTS cita_liberada_id BIGINT;
+
+-- Barrido periódico de ofertas vencidas
+CREATE INDEX IF NOT EXISTS idx_lista_espera_ofertas ON lista_espera (oferta_vence) WHERE estado = 'OFRECIDA';
@@ -0,0 +1,2 @@
+-- Cada instancia pone al día su índice en memoria con las solicitudes modificadas desde su última pasada
+CREATE INDEX IF NOT EXISTS idx_lista_espera_modificacion ON lista_espera (fecha_modificacion);
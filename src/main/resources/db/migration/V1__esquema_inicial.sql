@@ -0,0 +1,130 @@
+-- Esquema base tal como lo dejaba hibernate.ddl-auto=update antes de pasar a Flyway.
+-- En bases existentes no se ejecuta: Flyway las marca como versión 1 (spring.flyway.baseline-on-migrate),
+-- así que debe coincidir exactamente con ese esquema; todo lo que se agregó después va en V2 en adelante.
+
+CREATE TABLE tipos_documento (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre             VARCHAR(100) NOT NULL,
+    acronimo           VARCHAR(15)  NOT NULL,
+    estado             BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE tipos_tratamiento (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre             VARCHAR(60)  NOT NULL,
+    estado             BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE tipos_reporte (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    titulo             VARCHAR(100),
+    estado             BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE usuarios (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombres            VARCHAR(40)  NOT NULL,
+    apellido_paterno   VARCHAR(35)  NOT NULL,
+    apellido_materno   VARCHAR(35)  NOT NULL,
+    tipo_documento_id  BIGINT REFERENCES tipos_documento,
+    numero_identidad   VARCHAR(25)  NOT NULL,
+    sexo               VARCHAR(255) NOT NULL CHECK (sexo IN ('MASCULINO', 'FEMENINO')),
+    fecha_nacimiento   DATE         NOT NULL,
+    telefono           VARCHAR(9)   NOT NULL,
+    correo             VARCHAR(100) NOT NULL UNIQUE,
+    contrasena         VARCHAR(255) NOT NULL,
+    imagen_perfil      VARCHAR(255),
+    rol                VARCHAR(255) NOT NULL CHECK (rol IN ('ADMINISTRADOR', 'PACIENTE', 'DENTISTA')),
+    estado             BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE dentistas (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    usuario_id         BIGINT UNIQUE REFERENCES usuarios,
+    n_colegiatura      VARCHAR(25)  NOT NULL,
+    especializacion    VARCHAR(25)  NOT NULL,
+    estado             BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE horarios (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    dentista_id        BIGINT REFERENCES dentistas,
+    dia                SMALLINT     NOT NULL CHECK (dia BETWEEN 0 AND 6),
+    hora_comienzo      TIME(6)      NOT NULL,
+    hora_fin           TIME(6)      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+-- duracion guarda nanosegundos (java.time.Duration)
+CREATE TABLE tratamientos (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tipo_tratamiento_id BIGINT REFERENCES tipos_tratamiento,
+    nombre              VARCHAR(255)   NOT NULL,
+    descripcion         VARCHAR(255),
+    costo               NUMERIC(38, 2) NOT NULL,
+    duracion            NUMERIC(21, 0) NOT NULL,
+    imagenurl           VARCHAR(255),
+    estado              BOOLEAN        NOT NULL,
+    fecha_creacion      TIMESTAMP(6)   NOT NULL,
+    fecha_modificacion  TIMESTAMP(6)   NOT NULL
+);
+
+CREATE TABLE citas (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    fecha              DATE           NOT NULL,
+    hora               TIME(6)        NOT NULL,
+    estado             VARCHAR(10)    NOT NULL,
+    monto              NUMERIC(38, 2) NOT NULL,
+    observaciones      VARCHAR(500),
+    nombres            VARCHAR(40)    NOT NULL,
+    apellido_paterno   VARCHAR(35)    NOT NULL,
+    apellido_materno   VARCHAR(35)    NOT NULL,
+    tipo_documento_id  BIGINT REFERENCES tipos_documento,
+    numero_identidad   VARCHAR(25)    NOT NULL,
+    sexo               VARCHAR(255)   NOT NULL CHECK (sexo IN ('MASCULINO', 'FEMENINO')),
+    fecha_nacimiento   DATE           NOT NULL,
+    usuario_id         BIGINT REFERENCES usuarios,
+    dentista_id        BIGINT REFERENCES dentistas,
+    tratamiento_id     BIGINT REFERENCES tratamientos,
+    fecha_creacion     TIMESTAMP(6)   NOT NULL,
+    fecha_modificacion TIMESTAMP(6)   NOT NULL
+);
+
+CREATE TABLE comentarios (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    contenido          VARCHAR(255) NOT NULL,
+    usuario_id         BIGINT REFERENCES usuarios,
+    comentario_id      BIGINT REFERENCES comentarios,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE reportes (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tipo_reporte_id    BIGINT REFERENCES tipos_reporte,
+    usuario_id         BIGINT REFERENCES usuarios,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE sesiones (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    usuario_id         BIGINT                      NOT NULL REFERENCES usuarios,
+    token              VARCHAR(255)                NOT NULL UNIQUE,
+    expiry_date        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    ip_address         VARCHAR(255),
+    user_agent         VARCHAR(500),
+    fecha_creacion     TIMESTAMP(6)                NOT NULL,
+    fecha_modificacion TIMESTAMP(6)                NOT NULL
+);
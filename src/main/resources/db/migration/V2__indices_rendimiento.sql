@@ -0,0 +1,74 @@
+-- Índices según los caminos de acceso reales de CitaSpecification y de los repositorios.
+-- Se usa IF NOT EXISTS porque las bases creadas con ddl-auto=update pueden tener ya alguno de ellos.
+
+-- Columnas y tablas que se agregaron mientras el esquema lo generaba Hibernate: una base creada antes no las tiene
+-- y una creada después ya las tiene, así que ambas se crean solo si faltan
+ALTER TABLE citas ADD COLUMN IF NOT EXISTS hora_fin TIME(6);
+
+CREATE TABLE IF NOT EXISTS notificaciones (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    tipo               VARCHAR(30)   NOT NULL CHECK (tipo IN ('CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA')),
+    cita_id            BIGINT        NOT NULL,
+    fecha_anterior     DATE,
+    hora_anterior      TIME(6),
+    estado             VARCHAR(15)   NOT NULL CHECK (estado IN ('PENDIENTE', 'EN_PROCESO', 'ENVIADA', 'FALLIDA')),
+    intentos           INTEGER       NOT NULL,
+    proximo_intento    TIMESTAMP(6)  NOT NULL,
+    ultimo_error       VARCHAR(1000),
+    fecha_creacion     TIMESTAMP(6)  NOT NULL,
+    fecha_modificacion TIMESTAMP(6)  NOT NULL
+);
+
+-- Validación de solapamiento y mapas de ocupación: siempre filtran estado = 'Pendiente',
+-- así que basta un índice parcial que deja fuera las citas atendidas y canceladas
+DROP INDEX IF EXISTS idx_citas_dentista_fecha_hora;
+CREATE INDEX IF NOT EXISTS idx_citas_pendientes_dentista_fecha_hora
+    ON citas (dentista_id, fecha, hora, hora_fin) WHERE estado = 'Pendiente';
+
+-- Agenda del dentista: conDentistaId + conFecha/conRangoFecha + conEstado con cualquier estado
+CREATE INDEX IF NOT EXISTS idx_citas_dentista_fecha_estado ON citas (dentista_id, fecha, estado);
+
+-- Citas del paciente: conUsuarioId + conRangoFecha, ordenadas por fecha
+CREATE INDEX IF NOT EXISTS idx_citas_usuario_fecha ON citas (usuario_id, fecha);
+
+-- Listado por cursor: se recorre hacia atrás en orden (fecha, hora, id)
+CREATE INDEX IF NOT EXISTS idx_citas_fecha_hora_id ON citas (fecha, hora, id);
+
+-- sesiones.token ya tiene índice por su restricción UNIQUE; falta el de deleteByUsuario al cerrar sesión
+CREATE INDEX IF NOT EXISTS idx_sesiones_usuario ON sesiones (usuario_id);
+
+-- findByDentista / findByDentistaIdIn y la jornada de un día concreto
+CREATE INDEX IF NOT EXISTS idx_horarios_dentista_dia ON horarios (dentista_id, dia);
+
+-- Respuestas de un comentario (findByComentario)
+CREATE INDEX IF NOT EXISTS idx_comentarios_comentario ON comentarios (comentario_id);
+
+-- Reclamo de lotes del relay de notificaciones
+CREATE INDEX IF NOT EXISTS idx_notificaciones_estado_proximo_intento ON notificaciones (estado, proximo_intento);
+
+-- Completa hora_fin de las citas registradas antes de que existiera la columna (duracion está en nanosegundos)
+UPDATE citas c
+SET hora_fin = c.hora + (t.duracion / 1000000000.0)::float8 * INTERVAL '1 second'
+FROM tratamientos t
+WHERE t.id = c.tratamiento_id
+  AND c.hora_fin IS NULL;
+
+-- Red de seguridad contra el doble agendamiento: dos citas pendientes del mismo dentista no pueden cruzarse.
+-- El rango es [inicio, fin), así que una cita puede empezar justo cuando termina la anterior.
+-- Los candados de AdmisionReservas solo cubren una instancia; esta restricción es la única protección entre nodos,
+-- así que si no se puede crear (btree_gist no disponible o citas pendientes que ya se cruzan) la migración falla
+-- y hay que resolverlo antes de desplegar.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint
+                   WHERE conname = 'excl_citas_solapamiento' AND conrelid = 'citas'::regclass) THEN
+        ALTER TABLE citas ADD CONSTRAINT excl_citas_solapamiento EXCLUDE USING gist (
+            dentista_id WITH =,
+            tsrange(fecha + hora,
+                    fecha + hora_fin + CASE WHEN hora_fin < hora THEN INTERVAL '1 day' ELSE INTERVAL '0' END) WITH &&
+        ) WHERE (estado = 'Pendiente' AND hora_fin IS NOT NULL);
+    END IF;
+END
+$$;
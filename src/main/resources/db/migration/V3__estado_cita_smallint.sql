@@ -0,0 +1,28 @@
+-- citas.estado pasa de texto a smallint con el ordinal de EstadoCita: 0 pendiente, 1 atendida, 2 cancelada.
+-- La restricción de exclusión y el índice parcial dependen de la columna, así que se recrean con el nuevo tipo.
+
+ALTER TABLE citas DROP CONSTRAINT IF EXISTS excl_citas_solapamiento;
+DROP INDEX IF EXISTS idx_citas_pendientes_dentista_fecha_hora;
+
+-- Un valor desconocido queda en NULL y hace fallar la migración en lugar de perderse en silencio
+ALTER TABLE citas ALTER COLUMN estado TYPE SMALLINT USING CASE lower(estado)
+    WHEN 'pendiente' THEN 0
+    WHEN 'atendida' THEN 1
+    WHEN 'cancelada' THEN 2
+END;
+ALTER TABLE citas ADD CONSTRAINT ck_citas_estado CHECK (estado BETWEEN 0 AND 2);
+
+-- Solapamiento y mapas de ocupación: con id incluido, findIntervalosPendientes se resuelve sin leer la tabla
+CREATE INDEX idx_citas_pendientes_dentista_fecha_hora
+    ON citas (dentista_id, fecha, hora, hora_fin) INCLUDE (id) WHERE estado = 0;
+
+-- Recordatorios del día (ScheduledConfig): solo citas pendientes de una fecha
+CREATE INDEX idx_citas_pendientes_fecha ON citas (fecha) WHERE estado = 0;
+
+-- Sin EXCEPTION: igual que en V2, si la restricción no se puede crear la migración tiene que fallar
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+ALTER TABLE citas ADD CONSTRAINT excl_citas_solapamiento EXCLUDE USING gist (
+    dentista_id WITH =,
+    tsrange(fecha + hora,
+            fecha + hora_fin + CASE WHEN hora_fin < hora THEN INTERVAL '1 day' ELSE INTERVAL '0' END) WITH &&
+) WHERE (estado = 0 AND hora_fin IS NOT NULL);
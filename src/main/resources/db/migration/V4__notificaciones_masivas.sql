@@ -0,0 +1,10 @@
+-- Notificaciones consolidadas: un solo correo por paciente para todas sus citas canceladas o reprogramadas
+-- en una operación masiva. cita_id conserva la primera cita y citas_ids la lista completa.
+
+ALTER TABLE notificaciones ADD COLUMN citas_ids BIGINT[];
+
+ALTER TABLE notificaciones DROP CONSTRAINT IF EXISTS notificaciones_tipo_check;
+ALTER TABLE notificaciones ADD CONSTRAINT notificaciones_tipo_check CHECK (tipo IN (
+    'CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA',
+    'CANCELACION_MASIVA', 'REPROGRAMACION_MASIVA'
+));
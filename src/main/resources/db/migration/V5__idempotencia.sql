@@ -0,0 +1,16 @@
+-- Respuestas guardadas por Idempotency-Key para que los reintentos de los clientes no repitan la operación.
+-- La tabla es compartida entre instancias; cada instancia tiene además una copia en memoria.
+-- clave es el SHA-256 de usuario + método + ruta + Idempotency-Key y huella el SHA-256 del cuerpo de la petición.
+
+CREATE TABLE idempotencia (
+    clave          VARCHAR(64)  PRIMARY KEY,
+    huella         VARCHAR(64)  NOT NULL,
+    estado         VARCHAR(15)  NOT NULL CHECK (estado IN ('EN_CURSO', 'COMPLETADA')),
+    codigo_estado  INTEGER,
+    tipo_contenido VARCHAR(100),
+    cuerpo         BYTEA,
+    -- Mientras está EN_CURSO es el plazo de la reserva; al completarse, el fin del TTL
+    expira         TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_idempotencia_expira ON idempotencia (expira);
@@ -0,0 +1,7 @@
+-- Confirmación única para las series de citas recurrentes (ortodoncia, periodoncia): citas_ids lleva toda la serie.
+
+ALTER TABLE notificaciones DROP CONSTRAINT IF EXISTS notificaciones_tipo_check;
+ALTER TABLE notificaciones ADD CONSTRAINT notificaciones_tipo_check CHECK (tipo IN (
+    'CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA',
+    'CANCELACION_MASIVA', 'REPROGRAMACION_MASIVA', 'SERIE_CITAS'
+));
@@ -0,0 +1,35 @@
+-- Lista de espera: pacientes interesados en un hueco con un dentista (o cualquiera de una especialización)
+-- dentro de una ventana de fechas. El índice en memoria se reconstruye desde aquí al arrancar.
+
+CREATE TABLE lista_espera (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    usuario_id           BIGINT       NOT NULL REFERENCES usuarios,
+    tratamiento_id       BIGINT       NOT NULL REFERENCES tratamientos,
+    dentista_id          BIGINT REFERENCES dentistas,
+    especializacion      VARCHAR(25),
+    fecha_desde          DATE         NOT NULL,
+    fecha_hasta          DATE         NOT NULL,
+    estado               VARCHAR(10)  NOT NULL CHECK (estado IN ('ESPERANDO', 'OFRECIDA', 'CANCELADA')),
+    dentista_ofrecido_id BIGINT REFERENCES dentistas,
+    fecha_ofrecida       DATE,
+    hora_ofrecida        TIME(6),
+    bloqueo_id           VARCHAR(36),
+    oferta_vence         TIMESTAMP(6),
+    fecha_creacion       TIMESTAMP(6) NOT NULL,
+    fecha_modificacion   TIMESTAMP(6) NOT NULL,
+    CHECK (dentista_id IS NOT NULL OR especializacion IS NOT NULL),
+    CHECK (fecha_hasta >= fecha_desde)
+);
+
+-- Carga del índice al arrancar y solicitudes de un paciente
+CREATE INDEX idx_lista_espera_esperando ON lista_espera (fecha_hasta) WHERE estado = 'ESPERANDO';
+CREATE INDEX idx_lista_espera_usuario ON lista_espera (usuario_id);
+
+-- La oferta de un hueco liberado se envía al paciente de la lista de espera, no al de la cita cancelada
+ALTER TABLE notificaciones ADD COLUMN solicitud_espera_id BIGINT REFERENCES lista_espera;
+
+ALTER TABLE notificaciones DROP CONSTRAINT IF EXISTS notificaciones_tipo_check;
+ALTER TABLE notificaciones ADD CONSTRAINT notificaciones_tipo_check CHECK (tipo IN (
+    'CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA',
+    'CANCELACION_MASIVA', 'REPROGRAMACION_MASIVA', 'SERIE_CITAS', 'OFERTA_LISTA_ESPERA'
+));
@@ -0,0 +1,17 @@
+-- Avance del envío de recordatorios de cada día. Se guarda tras cada página, así que si el nodo cae
+-- la siguiente ejecución (en cualquier instancia) continúa desde (ultima_hora, ultimo_id).
+
+CREATE TABLE avance_recordatorios (
+    fecha              DATE PRIMARY KEY,
+    ultima_hora        TIME(6),
+    ultimo_id          BIGINT,
+    enviados           INTEGER      NOT NULL,
+    fallidos           INTEGER      NOT NULL,
+    completado         BOOLEAN      NOT NULL,
+    fecha_creacion     TIMESTAMP(6) NOT NULL,
+    fecha_modificacion TIMESTAMP(6) NOT NULL
+);
+
+-- Recordatorios del día: el recorrido por cursor (hora, id) sale del índice ya ordenado
+DROP INDEX IF EXISTS idx_citas_pendientes_fecha;
+CREATE INDEX idx_citas_pendientes_fecha ON citas (fecha, hora, id) WHERE estado = 0;
@@ -0,0 +1,12 @@
+-- Los recordatorios se programan por cita (a cierta anticipación del inicio) en lugar de enviarse todos de madrugada,
+-- así que el avance del envío por días deja de usarse.
+DROP TABLE avance_recordatorios;
+
+-- Cada instancia programa los mismos recordatorios; la clave única hace que solo uno llegue a la tabla
+ALTER TABLE notificaciones ADD COLUMN clave VARCHAR(100) UNIQUE;
+
+ALTER TABLE notificaciones DROP CONSTRAINT IF EXISTS notificaciones_tipo_check;
+ALTER TABLE notificaciones ADD CONSTRAINT notificaciones_tipo_check CHECK (tipo IN (
+    'CONFIRMACION_RESERVA', 'CANCELACION_RESERVA', 'REPROGRAMACION_CITA',
+    'CANCELACION_MASIVA', 'REPROGRAMACION_MASIVA', 'SERIE_CITAS', 'OFERTA_LISTA_ESPERA', 'RECORDATORIO_CITA'
+));
@@ -0,0 +1,174 @@
+package com.clinicavillegas.app.appointment.benchmarks;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.specifications.CitaSpecification;
+import com.clinicavillegas.app.user.models.Rol;
+import com.clinicavillegas.app.user.models.Sexo;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara la validación de disponibilidad anterior (cargar las citas del día y recorrerlas)
+ * con la consulta de existencia sobre el índice (dentista_id, fecha, hora, hora_fin).
+ * Se ejecuta con: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class DisponibilidadBenchmarkTest {
+
+    private static final int ITERACIONES_CALENTAMIENTO = 20;
+    private static final int ITERACIONES_MEDICION = 200;
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 15);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private TipoDocumento tipoDocumento;
+    private Usuario usuario;
+    private Dentista dentista;
+    private Tratamiento tratamiento;
+
+    @BeforeEach
+    void setUp() {
+        tipoDocumento = entityManager.persist(
+                TipoDocumento.builder().nombre("DNI").acronimo("DNI").estado(true).build()
+        );
+        usuario = entityManager.persist(
+                Usuario.builder()
+                        .nombres("Luis")
+                        .apellidoPaterno("Ramos")
+                        .apellidoMaterno("Pérez")
+                        .rol(Rol.DENTISTA)
+                        .contrasena("jbyuy$vty%4f")
+                        .correo("benchmark@gmail.com")
+                        .telefono("987654321")
+                        .numeroIdentidad("12345678")
+                        .tipoDocumento(tipoDocumento)
+                        .sexo(Sexo.MASCULINO)
+                        .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                        .estado(true)
+                        .build()
+        );
+        dentista = entityManager.persist(
+                Dentista.builder()
+                        .usuario(usuario)
+                        .nColegiatura("COD123")
+                        .especializacion("Cirugía dental")
+                        .estado(true)
+                        .build()
+        );
+        tratamiento = entityManager.persist(
+                Tratamiento.builder()
+                        .nombre("Control")
+                        .costo(BigDecimal.valueOf(20.00))
+                        .duracion(Duration.ofMinutes(2))
+                        .estado(true)
+                        .build()
+        );
+    }
+
+    @ParameterizedTest(name = "{0} citas en el día")
+    @ValueSource(ints = {5, 50, 500})
+    void compararValidacionDeDisponibilidad(int cantidadCitas) {
+        for (int i = 0; i < cantidadCitas; i++) {
+            entityManager.persist(crearCita(LocalTime.MIDNIGHT.plusMinutes(2L * i)));
+        }
+        entityManager.flush();
+
+        // Se consulta un horario libre para que el bucle tenga que recorrer todas las citas del día
+        LocalTime hora = LocalTime.of(23, 0);
+        Duration duracion = Duration.ofMinutes(30);
+
+        assertEquals(disponibleConBucle(hora, duracion), disponibleConConsulta(hora, duracion));
+
+        double bucle = medirMicrosegundos(() -> disponibleConBucle(hora, duracion));
+        double consulta = medirMicrosegundos(() -> disponibleConConsulta(hora, duracion));
+
+        System.out.printf("[Disponibilidad] %d citas -> bucle en memoria: %.1f µs, consulta de existencia: %.1f µs (x%.1f)%n",
+                cantidadCitas, bucle, consulta, bucle / consulta);
+    }
+
+    private boolean disponibleConBucle(LocalTime hora, Duration duracion) {
+        List<Cita> citasDelDia = citaRepository
+                .findAll(CitaSpecification.conFecha(FECHA)
+                        .and(CitaSpecification.conEstado("Pendiente"))
+                        .and(CitaSpecification.conDentistaId(dentista.getId())));
+        LocalTime horaFinPropuesta = hora.plus(duracion);
+        for (Cita cita : citasDelDia) {
+            LocalTime horaInicioExistente = cita.getHora();
+            LocalTime horaFinExistente = horaInicioExistente.plus(cita.getTratamiento().getDuracion());
+            if (hora.isBefore(horaFinExistente) && horaFinPropuesta.isAfter(horaInicioExistente)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean disponibleConConsulta(LocalTime hora, Duration duracion) {
+        return !citaRepository.existsSolapamiento(dentista.getId(), FECHA, hora, hora.plus(duracion));
+    }
+
+    private double medirMicrosegundos(BooleanSupplier validacion) {
+        for (int i = 0; i < ITERACIONES_CALENTAMIENTO; i++) {
+            entityManager.clear();
+            validacion.getAsBoolean();
+        }
+        long total = 0;
+        for (int i = 0; i < ITERACIONES_MEDICION; i++) {
+            entityManager.clear();
+            long inicio = System.nanoTime();
+            validacion.getAsBoolean();
+            total += System.nanoTime() - inicio;
+        }
+        return total / 1_000.0 / ITERACIONES_MEDICION;
+    }
+
+    private Cita crearCita(LocalTime hora) {
+        return Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .monto(BigDecimal.valueOf(20.00))
+                .fecha(FECHA)
+                .hora(hora)
+                .nombres("Ana")
+                .apellidoPaterno("Lopez")
+                .apellidoMaterno("Martinez")
+                .tipoDocumento(tipoDocumento)
+                .numeroIdentidad("87654321")
+                .sexo(Sexo.FEMENINO)
+                .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                .usuario(usuario)
+                .tratamiento(tratamiento)
+                .dentista(dentista)
+                .build();
+    }
+}
@@ -0,0 +1,170 @@
+package com.clinicavillegas.app.appointment.benchmarks;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.mappers.CitaMapper;
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.specifications.CitaSpecification;
+import com.clinicavillegas.app.user.models.Rol;
+import com.clinicavillegas.app.user.models.Sexo;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara la memoria asignada por el listado de citas cargando entidades (grafo de listado + CitaMapper)
+ * con la proyección a CitaResponse de findResumenes.
+ * Se ejecuta con: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class ListadoCitasBenchmarkTest {
+
+    private static final int ITERACIONES_CALENTAMIENTO = 20;
+    private static final int ITERACIONES_MEDICION = 100;
+    private static final int DENTISTAS = 10;
+    private static final LocalDate FECHA = LocalDate.of(2030, 2, 4);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private TipoDocumento tipoDocumento;
+    private Tratamiento tratamiento;
+    private Dentista[] dentistas;
+
+    @BeforeEach
+    void setUp() {
+        tipoDocumento = entityManager.persist(
+                TipoDocumento.builder().nombre("DNI").acronimo("DNI").estado(true).build()
+        );
+        tratamiento = entityManager.persist(
+                Tratamiento.builder()
+                        .nombre("Control")
+                        .costo(BigDecimal.valueOf(20.00))
+                        .duracion(Duration.ofMinutes(5))
+                        .estado(true)
+                        .build()
+        );
+        dentistas = new Dentista[DENTISTAS];
+        for (int i = 0; i < DENTISTAS; i++) {
+            Usuario usuario = entityManager.persist(crearUsuario("benchmark" + i + "@gmail.com"));
+            dentistas[i] = entityManager.persist(
+                    Dentista.builder()
+                            .usuario(usuario)
+                            .nColegiatura("COD" + i)
+                            .especializacion("Cirugía dental")
+                            .estado(true)
+                            .build()
+            );
+        }
+    }
+
+    @ParameterizedTest(name = "páginas de {0} citas")
+    @ValueSource(ints = {10, 50, 200})
+    void compararMemoriaDelListado(int tamanioPagina) {
+        for (int i = 0; i < tamanioPagina; i++) {
+            Dentista dentista = dentistas[i % DENTISTAS];
+            entityManager.persist(crearCita(dentista, LocalTime.MIDNIGHT.plusMinutes(5L * (i / DENTISTAS))));
+        }
+        entityManager.flush();
+
+        Specification<Cita> specs = CitaSpecification.conFecha(FECHA).and(CitaSpecification.conEstado("Pendiente"));
+        Pageable pageable = PageRequest.of(0, tamanioPagina, Sort.by("hora", "id"));
+        Supplier<Page<CitaResponse>> entidades = () -> citaRepository.findAll(specs, pageable, Cita.GRAFO_LISTADO).map(CitaMapper::toDto);
+        Supplier<Page<CitaResponse>> proyeccion = () -> citaRepository.findResumenes(specs, pageable);
+
+        assertEquals(entidades.get().getContent().size(), proyeccion.get().getContent().size());
+
+        double bytesEntidades = medirBytes(entidades);
+        double bytesProyeccion = medirBytes(proyeccion);
+
+        System.out.printf("[Listado] página de %d citas -> entidades + mapper: %.1f KB, proyección: %.1f KB (x%.1f)%n",
+                tamanioPagina, bytesEntidades / 1024, bytesProyeccion / 1024, bytesEntidades / bytesProyeccion);
+    }
+
+    private double medirBytes(Supplier<Page<CitaResponse>> listado) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+        for (int i = 0; i < ITERACIONES_CALENTAMIENTO; i++) {
+            entityManager.clear();
+            listado.get();
+        }
+        long total = 0;
+        for (int i = 0; i < ITERACIONES_MEDICION; i++) {
+            entityManager.clear();
+            long inicio = hilos.getThreadAllocatedBytes(hilo);
+            listado.get();
+            total += hilos.getThreadAllocatedBytes(hilo) - inicio;
+        }
+        return (double) total / ITERACIONES_MEDICION;
+    }
+
+    private Usuario crearUsuario(String correo) {
+        return Usuario.builder()
+                .nombres("Luis")
+                .apellidoPaterno("Ramos")
+                .apellidoMaterno("Pérez")
+                .rol(Rol.DENTISTA)
+                .contrasena("jbyuy$vty%4f")
+                .correo(correo)
+                .telefono("987654321")
+                .numeroIdentidad("12345678")
+                .tipoDocumento(tipoDocumento)
+                .sexo(Sexo.MASCULINO)
+                .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                .estado(true)
+                .build();
+    }
+
+    private Cita crearCita(Dentista dentista, LocalTime hora) {
+        return Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .monto(BigDecimal.valueOf(20.00))
+                .fecha(FECHA)
+                .hora(hora)
+                .nombres("Ana")
+                .apellidoPaterno("Lopez")
+                .apellidoMaterno("Martinez")
+                .tipoDocumento(tipoDocumento)
+                .numeroIdentidad("87654321")
+                .sexo(Sexo.FEMENINO)
+                .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                .usuario(dentista.getUsuario())
+                .tratamiento(tratamiento)
+                .dentista(dentista)
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.clinicavillegas.app.appointment.benchmarks;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Muestra el plan de PostgreSQL para cada camino de acceso cubierto por V2__indices_rendimiento.sql y V3__estado_cita_smallint.sql,
+ * primero solo con las claves primarias y restricciones UNIQUE (lo que dejaba ddl-auto=update) y luego
+ * con los índices de la migración. Los índices se eliminan dentro de la transacción del test, así que
+ * el rollback final los restaura.
+ * Se ejecuta con: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class PlanesConsultaBenchmarkTest {
+
+    private static final int USUARIOS = 2_000;
+    private static final int DENTISTAS = 200;
+    private static final int CITAS = 40_000;
+    private static final int COMENTARIOS = 5_000;
+
+    private static final List<String> INDICES_MIGRACION = List.of(
+            "idx_citas_pendientes_dentista_fecha_hora",
+            "idx_citas_pendientes_fecha",
+            "idx_citas_dentista_fecha_estado",
+            "idx_citas_usuario_fecha",
+            "idx_citas_fecha_hora_id",
+            "idx_sesiones_usuario",
+            "idx_horarios_dentista_dia",
+            "idx_comentarios_comentario"
+    );
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private long dentistaId;
+    private long usuarioId;
+    private long comentarioId;
+
+    @BeforeEach
+    void setUp() {
+        ejecutar("INSERT INTO tipos_documento (nombre, acronimo, estado, fecha_creacion, fecha_modificacion) " +
+                "VALUES ('DNI', 'DNI', true, now(), now())");
+        ejecutar("INSERT INTO tratamientos (nombre, costo, duracion, estado, fecha_creacion, fecha_modificacion) " +
+                "VALUES ('Control', 20, 1200000000000, true, now(), now())");
+        ejecutar("INSERT INTO usuarios (nombres, apellido_paterno, apellido_materno, tipo_documento_id, numero_identidad, " +
+                "sexo, fecha_nacimiento, telefono, correo, contrasena, rol, estado, fecha_creacion, fecha_modificacion) " +
+                "SELECT 'Ana', 'Lopez', 'Martinez', (SELECT max(id) FROM tipos_documento), lpad(g::text, 8, '0'), " +
+                "'FEMENINO', DATE '1995-05-10', '987654321', 'plan' || g || '@gmail.com', 'x', 'PACIENTE', true, now(), now() " +
+                "FROM generate_series(1, " + USUARIOS + ") g");
+        ejecutar("INSERT INTO dentistas (usuario_id, n_colegiatura, especializacion, estado, fecha_creacion, fecha_modificacion) " +
+                "SELECT id, 'COD' || id, 'General', true, now(), now() FROM usuarios " +
+                "WHERE correo LIKE 'plan%' ORDER BY id LIMIT " + DENTISTAS);
+        // Cada dentista tiene 16 citas de 20 minutos por día, repartidas entre pendientes, atendidas y canceladas (ordinal de EstadoCita)
+        ejecutar("INSERT INTO citas (fecha, hora, hora_fin, estado, monto, nombres, apellido_paterno, apellido_materno, " +
+                "tipo_documento_id, numero_identidad, sexo, fecha_nacimiento, usuario_id, dentista_id, tratamiento_id, " +
+                "fecha_creacion, fecha_modificacion) " +
+                "SELECT DATE '2030-01-01' + (g / " + DENTISTAS + ") / 16, " +
+                "TIME '08:00' + ((g / " + DENTISTAS + ") % 16) * INTERVAL '30 minutes', " +
+                "TIME '08:20' + ((g / " + DENTISTAS + ") % 16) * INTERVAL '30 minutes', " +
+                "g % 3, 20, " +
+                "'Ana', 'Lopez', 'Martinez', (SELECT max(id) FROM tipos_documento), '87654321', 'FEMENINO', DATE '1995-05-10', " +
+                "(SELECT array_agg(id ORDER BY id) FROM usuarios WHERE correo LIKE 'plan%')[1 + g % " + USUARIOS + "], " +
+                "(SELECT array_agg(id ORDER BY id) FROM dentistas)[1 + g % " + DENTISTAS + "], " +
+                "(SELECT max(id) FROM tratamientos), now(), now() " +
+                "FROM generate_series(0, " + (CITAS - 1) + ") g");
+        ejecutar("INSERT INTO horarios (dentista_id, dia, hora_comienzo, hora_fin, fecha_creacion, fecha_modificacion) " +
+                "SELECT d.id, dia, TIME '08:00', TIME '17:00', now(), now() " +
+                "FROM dentistas d CROSS JOIN generate_series(0, 5) dia");
+        ejecutar("INSERT INTO sesiones (usuario_id, token, expiry_date, fecha_creacion, fecha_modificacion) " +
+                "SELECT id, md5(id::text), now() + INTERVAL '7 days', now(), now() FROM usuarios WHERE correo LIKE 'plan%'");
+        // Un comentario padre por cada cinco, el resto son respuestas
+        ejecutar("INSERT INTO comentarios (contenido, usuario_id, fecha_creacion, fecha_modificacion) " +
+                "SELECT 'Comentario ' || g, (SELECT min(id) FROM usuarios WHERE correo LIKE 'plan%'), now(), now() " +
+                "FROM generate_series(1, " + COMENTARIOS / 5 + ") g");
+        ejecutar("INSERT INTO comentarios (contenido, usuario_id, comentario_id, fecha_creacion, fecha_modificacion) " +
+                "SELECT 'Respuesta ' || g, (SELECT min(id) FROM usuarios WHERE correo LIKE 'plan%'), " +
+                "(SELECT min(id) FROM comentarios) + g % " + COMENTARIOS / 5 + ", now(), now() " +
+                "FROM generate_series(1, " + (COMENTARIOS - COMENTARIOS / 5) + ") g");
+        ejecutar("ANALYZE citas, usuarios, dentistas, horarios, sesiones, comentarios");
+
+        dentistaId = numero("SELECT min(id) FROM dentistas");
+        usuarioId = numero("SELECT max(id) FROM usuarios");
+        comentarioId = numero("SELECT min(id) FROM comentarios");
+    }
+
+    @Test
+    void compararPlanesConYSinIndices() {
+        Map<String, String> consultas = consultas();
+
+        Map<String, String> conIndices = new LinkedHashMap<>();
+        consultas.forEach((nombre, sql) -> conIndices.put(nombre, explicar(sql)));
+
+        ejecutar("ALTER TABLE citas DROP CONSTRAINT IF EXISTS excl_citas_solapamiento");
+        INDICES_MIGRACION.forEach(indice -> ejecutar("DROP INDEX IF EXISTS " + indice));
+        Map<String, String> sinIndices = new LinkedHashMap<>();
+        consultas.forEach((nombre, sql) -> sinIndices.put(nombre, explicar(sql)));
+
+        consultas.keySet().forEach(nombre -> System.out.printf(
+                "[Planes] %s%n  sin índices:%n%s%n  con migraciones:%n%s%n", nombre, sinIndices.get(nombre), conIndices.get(nombre)));
+
+        conIndices.forEach((nombre, plan) ->
+                assertFalse(plan.contains("Seq Scan"), () -> nombre + " no debería recorrer la tabla completa:\n" + plan));
+    }
+
+    private Map<String, String> consultas() {
+        Map<String, String> consultas = new LinkedHashMap<>();
+        consultas.put("Solapamiento al reservar (existsSolapamiento)",
+                "SELECT count(*) > 0 FROM citas WHERE dentista_id = " + dentistaId + " AND fecha = DATE '2030-01-10' " +
+                        "AND estado = 0 AND hora < TIME '10:30' AND hora_fin > TIME '10:00'");
+        consultas.put("Mapa de ocupación (findIntervalosPendientes)",
+                "SELECT id, dentista_id, fecha, hora, hora_fin FROM citas WHERE dentista_id IN (" + dentistaId + ") " +
+                        "AND fecha BETWEEN DATE '2030-01-10' AND DATE '2030-01-16' " +
+                        "AND estado = 0 AND hora_fin IS NOT NULL");
+        consultas.put("Horizonte de recordatorios (CitaRepository.findProgramablesEntre)",
+                "SELECT id, fecha, hora FROM citas WHERE fecha BETWEEN DATE '2030-01-10' AND DATE '2030-01-13' AND estado = 0");
+        consultas.put("Agenda del dentista por estado (conDentistaId + conRangoFecha + conEstado)",
+                "SELECT * FROM citas WHERE dentista_id = " + dentistaId + " AND fecha BETWEEN DATE '2030-01-01' AND DATE '2030-01-31' " +
+                        "AND estado = 1 ORDER BY fecha DESC LIMIT 10");
+        consultas.put("Citas del paciente (conUsuarioId)",
+                "SELECT * FROM citas WHERE usuario_id = " + usuarioId + " ORDER BY fecha DESC LIMIT 10");
+        consultas.put("Listado por cursor (anteriorA)",
+                "SELECT * FROM citas WHERE fecha < DATE '2030-02-01' OR (fecha = DATE '2030-02-01' AND hora < TIME '12:00') " +
+                        "ORDER BY fecha DESC, hora DESC, id DESC LIMIT 11");
+        consultas.put("Sesión por token (SessionRepository.findByToken)",
+                "SELECT * FROM sesiones WHERE token = md5('" + usuarioId + "')");
+        consultas.put("Cierre de sesiones (SessionRepository.deleteByUsuario)",
+                "SELECT * FROM sesiones WHERE usuario_id = " + usuarioId);
+        consultas.put("Horarios de dentistas (HorarioRepository.findByDentistaIdIn)",
+                "SELECT * FROM horarios WHERE dentista_id IN (" + dentistaId + ", " + (dentistaId + 1) + ")");
+        consultas.put("Respuestas de un comentario (ComentarioRepository.findByComentario)",
+                "SELECT * FROM comentarios WHERE comentario_id = " + comentarioId);
+        return consultas;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String explicar(String sql) {
+        List<String> plan = entityManager.createNativeQuery("EXPLAIN " + sql).getResultList();
+        return plan.stream().map(linea -> "    " + linea).collect(Collectors.joining("\n"));
+    }
+
+    private void ejecutar(String sql) {
+        entityManager.createNativeQuery(sql).executeUpdate();
+    }
+
+    private long numero(String sql) {
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
+}
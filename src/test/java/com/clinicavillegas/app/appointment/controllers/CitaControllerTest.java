@@ -2,11 +2,19 @@ package com.clinicavillegas.app.appointment.controllers;
 
 import com.clinicavillegas.app.appointment.dto.request.CitaReprogramarRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.SerieCitasRequest;
 import com.clinicavillegas.app.appointment.dto.request.ValidacionCitaRequest;
 import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
 import com.clinicavillegas.app.appointment.dto.response.DentistaResponse;
 import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.dto.response.DisponibilidadMensualResponse;
+import com.clinicavillegas.app.appointment.dto.response.HuecoDisponibleResponse;
+import com.clinicavillegas.app.appointment.dto.response.PaginaCitasResponse;
+import com.clinicavillegas.app.appointment.dto.response.SerieCitasResponse;
+import com.clinicavillegas.app.appointment.exceptions.CursorInvalidoException;
+import com.clinicavillegas.app.appointment.services.AgendaService;
 import com.clinicavillegas.app.appointment.services.CitaService;
+import com.clinicavillegas.app.appointment.services.OcupacionService;
 import com.clinicavillegas.app.auth.services.CookieService;
 import com.clinicavillegas.app.auth.services.JwtService;
 import com.clinicavillegas.app.user.models.TipoDocumento;
@@ -22,6 +30,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import com.clinicavillegas.app.appointment.dto.request.CancelacionCitaRequest; // Add this import
 // ... (other imports)
 
@@ -36,8 +45,12 @@ import java.util.Arrays;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -52,6 +65,9 @@ public class CitaControllerTest {
     @Autowired
     private CitaService citaService;
 
+    @Autowired
+    private OcupacionService ocupacionService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -62,6 +78,14 @@ public class CitaControllerTest {
             return Mockito.mock(CitaService.class);
         }
         @Bean
+        public OcupacionService ocupacionService() {
+            return Mockito.mock(OcupacionService.class);
+        }
+        @Bean
+        public AgendaService agendaService() {
+            return Mockito.mock(AgendaService.class);
+        }
+        @Bean
         public JwtService jwtService() {
             return mock(JwtService.class);
         }
@@ -273,6 +297,36 @@ public class CitaControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    @DisplayName("POST /api/citas/series - debe crear la serie de citas")
+    void testAgregarSerie() throws Exception {
+        CitaRequest primera = CitaRequest.builder()
+                .fecha(LocalDate.of(2030, 3, 4))
+                .hora(LocalTime.of(9, 0))
+                .nombres("Ana")
+                .apellidoPaterno("Morales")
+                .apellidoMaterno("López")
+                .tipoDocumento("DNI")
+                .numeroIdentidad("12345678")
+                .sexo("FEMENINO")
+                .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .build();
+        SerieCitasRequest request = SerieCitasRequest.builder().cita(primera).intervaloSemanas(4).ocurrencias(3).build();
+        when(citaService.agregarSerie(any(SerieCitasRequest.class))).thenReturn(SerieCitasResponse.builder()
+                .citasIds(List.of(7L, 8L, 9L))
+                .fechas(List.of(LocalDate.of(2030, 3, 4), LocalDate.of(2030, 4, 1), LocalDate.of(2030, 4, 29)))
+                .build());
+
+        mockMvc.perform(post("/api/citas/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.citasIds.length()").value(3));
+    }
+
     @Test
     @DisplayName("PUT /api/citas/{id} - debe actualizar cita")
     void testActualizarCita() throws Exception {
@@ -317,4 +371,132 @@ public class CitaControllerTest {
         // Verify that the service method was called with the correct arguments
         verify(citaService, times(1)).eliminarCita(citaId, observaciones);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("GET /api/citas/proximo-disponible - debe devolver el primer hueco libre")
+    void testBuscarProximoDisponible() throws Exception {
+        HuecoDisponibleResponse hueco = HuecoDisponibleResponse.builder()
+                .dentistaId(2L)
+                .fecha(LocalDate.of(2030, 7, 1))
+                .hora(LocalTime.of(9, 30))
+                .horaFin(LocalTime.of(10, 0))
+                .build();
+        when(ocupacionService.buscarProximoHueco(3L, null, LocalDate.of(2030, 7, 1), null)).thenReturn(Optional.of(hueco));
+
+        mockMvc.perform(get("/api/citas/proximo-disponible")
+                        .param("tratamientoId", "3")
+                        .param("fechaInicio", "2030-07-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dentistaId").value(2));
+    }
+
+    @Test
+    @DisplayName("GET /api/citas/proximo-disponible - debe devolver 204 si no hay huecos")
+    void testBuscarProximoDisponibleSinHuecos() throws Exception {
+        when(ocupacionService.buscarProximoHueco(3L, 1L, null, null)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/citas/proximo-disponible")
+                        .param("tratamientoId", "3")
+                        .param("dentistaId", "1"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("GET /api/citas/disponibilidad-mensual - debe devolver la matriz con su ETag")
+    void testObtenerDisponibilidadMensual() throws Exception {
+        YearMonth mes = YearMonth.of(2030, 7);
+        DisponibilidadMensualResponse disponibilidad = DisponibilidadMensualResponse.builder()
+                .mes(mes)
+                .tratamientoId(3L)
+                .duracionMinutos(30)
+                .dentistas(List.of(1L))
+                .huecos(new int[][]{new int[31]})
+                .build();
+        disponibilidad.getHuecos()[0][0] = 12;
+        when(ocupacionService.selloDisponibilidadMensual(3L, null, mes)).thenReturn("abc123");
+        when(ocupacionService.obtenerDisponibilidadMensual(3L, null, mes)).thenReturn(disponibilidad);
+
+        mockMvc.perform(get("/api/citas/disponibilidad-mensual")
+                        .param("tratamientoId", "3")
+                        .param("mes", "2030-07"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(jsonPath("$.mes").value("2030-07"))
+                .andExpect(jsonPath("$.huecos[0][0]").value(12))
+                .andExpect(jsonPath("$.huecos[0].length()").value(31));
+    }
+
+    @Test
+    @DisplayName("GET /api/citas/disponibilidad-mensual - debe responder 304 sin armar la matriz si el ETag coincide")
+    void testObtenerDisponibilidadMensualSinCambios() throws Exception {
+        YearMonth mes = YearMonth.of(2030, 8);
+        when(ocupacionService.selloDisponibilidadMensual(4L, 1L, mes)).thenReturn("abc123");
+
+        mockMvc.perform(get("/api/citas/disponibilidad-mensual")
+                        .param("tratamientoId", "4")
+                        .param("dentistaId", "1")
+                        .param("mes", "2030-08")
+                        .header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified());
+
+        verify(ocupacionService, never()).obtenerDisponibilidadMensual(4L, 1L, mes);
+    }
+
+    @Test
+    @DisplayName("GET /api/citas?cursor= - debe usar la paginación por cursor")
+    void testBuscarCitasPorCursor() throws Exception {
+        PaginaCitasResponse pagina = PaginaCitasResponse.builder()
+                .contenido(List.of(CitaResponse.builder().id(5L).build()))
+                .siguienteCursor("abc")
+                .hayMas(true)
+                .build();
+        when(citaService.obtenerCitasPorCursor(null, 1L, null, null, null, null, null, "", 1, false)).thenReturn(pagina);
+
+        mockMvc.perform(get("/api/citas")
+                        .param("dentistaId", "1")
+                        .param("cursor", "")
+                        .param("tamanio", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].id").value(5))
+                .andExpect(jsonPath("$.siguienteCursor").value("abc"))
+                .andExpect(jsonPath("$.hayMas").value(true));
+    }
+
+    @Test
+    @DisplayName("GET /api/citas?cursor=... - debe devolver 400 si el cursor no es válido")
+    void testBuscarCitasPorCursorInvalido() throws Exception {
+        when(citaService.obtenerCitasPorCursor(null, null, null, null, null, null, null, "xyz", 10, false))
+                .thenThrow(new CursorInvalidoException("xyz"));
+
+        mockMvc.perform(get("/api/citas").param("cursor", "xyz"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/citas con Accept: application/x-ndjson - debe escribir una cita por línea")
+    @SuppressWarnings("unchecked")
+    void testExportarCitasNdjson() throws Exception {
+        doAnswer(invocacion -> {
+            Consumer<CitaResponse> consumidor = invocacion.getArgument(7);
+            consumidor.accept(CitaResponse.builder().id(1L).estado("Pendiente").build());
+            consumidor.accept(CitaResponse.builder().id(2L).estado("Atendida").build());
+            return null;
+        }).when(citaService).recorrerCitas(eq(null), eq(3L), eq(null), eq(null), eq(null), eq(null), eq(null), any());
+
+        MvcResult resultado = mockMvc.perform(get("/api/citas")
+                        .param("dentistaId", "3")
+                        .accept(CitaController.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String cuerpo = mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CitaController.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lineas = cuerpo.split("\n");
+        assertEquals(2, lineas.length);
+        assertEquals(1, objectMapper.readValue(lineas[0], CitaResponse.class).getId());
+        assertEquals("Atendida", objectMapper.readValue(lineas[1], CitaResponse.class).getEstado());
+        verify(citaService, never()).obtenerCitas(any(), eq(3L), any(), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,108 @@
+package com.clinicavillegas.app.appointment.controllers;
+
+import com.clinicavillegas.app.appointment.dto.request.ListaEsperaRequest;
+import com.clinicavillegas.app.appointment.dto.response.ListaEsperaResponse;
+import com.clinicavillegas.app.appointment.services.ListaEsperaService;
+import com.clinicavillegas.app.auth.services.CookieService;
+import com.clinicavillegas.app.auth.services.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ListaEsperaController.class)
+@Import(ListaEsperaControllerTest.Config.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class ListaEsperaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ListaEsperaService listaEsperaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        public ListaEsperaService listaEsperaService() {
+            return Mockito.mock(ListaEsperaService.class);
+        }
+
+        @Bean
+        public JwtService jwtService() {
+            return Mockito.mock(JwtService.class);
+        }
+        @Bean
+        public CookieService cookieService(){
+            return mock(CookieService.class);
+        }
+    }
+
+    @Test
+    void testRegistrar() throws Exception {
+        ListaEsperaRequest request = ListaEsperaRequest.builder()
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .especializacion("Ortodoncia")
+                .fechaDesde(LocalDate.of(2030, 4, 1))
+                .fechaHasta(LocalDate.of(2030, 4, 15))
+                .build();
+        when(listaEsperaService.registrar(any(ListaEsperaRequest.class))).thenReturn(ListaEsperaResponse.builder()
+                .id(9L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .especializacion("Ortodoncia")
+                .estado("ESPERANDO")
+                .build());
+
+        mockMvc.perform(post("/api/citas/lista-espera")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(9L))
+                .andExpect(jsonPath("$.estado").value("ESPERANDO"));
+    }
+
+    @Test
+    void testObtenerPorUsuario() throws Exception {
+        when(listaEsperaService.obtenerPorUsuario(2L)).thenReturn(List.of(ListaEsperaResponse.builder()
+                .id(9L)
+                .estado("OFRECIDA")
+                .fechaOfrecida(LocalDate.of(2030, 4, 3))
+                .horaOfrecida(LocalTime.of(10, 0))
+                .bloqueoId("b-1")
+                .build()));
+
+        mockMvc.perform(get("/api/citas/lista-espera/usuario/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].bloqueoId").value("b-1"));
+    }
+
+    @Test
+    void testCancelar() throws Exception {
+        doNothing().when(listaEsperaService).cancelar(9L);
+
+        mockMvc.perform(delete("/api/citas/lista-espera/9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mensaje").value("Solicitud retirada de la lista de espera"));
+    }
+}
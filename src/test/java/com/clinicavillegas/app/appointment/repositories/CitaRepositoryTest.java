@@ -1,25 +1,37 @@
 package com.clinicavillegas.app.appointment.repositories;
 
 import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.mappers.CitaMapper;
 import com.clinicavillegas.app.appointment.models.*;
+import com.clinicavillegas.app.appointment.specifications.CitaSpecification;
 import com.clinicavillegas.app.user.models.Rol;
 import com.clinicavillegas.app.user.models.Sexo;
 import com.clinicavillegas.app.user.models.TipoDocumento;
 import com.clinicavillegas.app.user.models.Usuario;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -86,7 +98,7 @@ public class CitaRepositoryTest {
 
         cita = entityManager.persist(
                 Cita.builder()
-                        .estado("Pendiente")
+                        .estado(EstadoCita.PENDIENTE)
                         .monto(BigDecimal.valueOf(80.00))
                         .fecha(LocalDate.now())
                         .hora(LocalTime.of(10, 30))
@@ -107,7 +119,7 @@ public class CitaRepositoryTest {
     @Test
     void testGuardarCita() {
         Cita nuevaCita = Cita.builder()
-                .estado("Atendida")
+                .estado(EstadoCita.ATENDIDA)
                 .monto(BigDecimal.valueOf(100))
                 .fecha(LocalDate.now())
                 .hora(LocalTime.of(9, 0))
@@ -152,4 +164,354 @@ public class CitaRepositoryTest {
         assertThat(citas).hasSize(1);
         assertEquals(LocalDate.now(), citas.getFirst().getFecha());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCalcularHoraFin() {
+        assertEquals(LocalTime.of(11, 0), cita.getHoraFin());
+    }
+
+    @Test
+    void testExisteSolapamiento() {
+        assertTrue(citaRepository.existsSolapamiento(dentista.getId(), LocalDate.now(), LocalTime.of(10, 0), LocalTime.of(10, 45)));
+        assertTrue(citaRepository.existsSolapamiento(dentista.getId(), LocalDate.now(), LocalTime.of(10, 45), LocalTime.of(11, 15)));
+    }
+
+    @Test
+    void testNoExisteSolapamiento() {
+        assertFalse(citaRepository.existsSolapamiento(dentista.getId(), LocalDate.now(), LocalTime.of(10, 0), LocalTime.of(10, 30)));
+        assertFalse(citaRepository.existsSolapamiento(dentista.getId(), LocalDate.now(), LocalTime.of(11, 0), LocalTime.of(11, 30)));
+        assertFalse(citaRepository.existsSolapamiento(dentista.getId(), LocalDate.now().plusDays(1), LocalTime.of(10, 30), LocalTime.of(11, 0)));
+    }
+
+    @Test
+    void testExistenParticipantes() {
+        CitaRepository.ExistenciaParticipantes ambos = citaRepository.existenParticipantes(usuario.getId(), dentista.getId());
+        assertTrue(ambos.getUsuario());
+        assertTrue(ambos.getDentista());
+
+        CitaRepository.ExistenciaParticipantes ninguno = citaRepository.existenParticipantes(-1L, -1L);
+        assertFalse(ninguno.getUsuario());
+        assertFalse(ninguno.getDentista());
+    }
+
+    @Test
+    void testBuscarIntervalosPendientes() {
+        List<Object[]> intervalos = citaRepository.findIntervalosPendientes(List.of(dentista.getId()), LocalDate.now(), LocalDate.now());
+
+        assertEquals(1, intervalos.size());
+        assertEquals(cita.getId(), intervalos.get(0)[0]);
+        assertEquals(LocalTime.of(10, 30), intervalos.get(0)[3]);
+        assertEquals(LocalTime.of(11, 0), intervalos.get(0)[4]);
+    }
+
+    @Test
+    void testResumirCambios() {
+        CitaRepository.ResumenCambios resumen = citaRepository.resumirCambios(List.of(dentista.getId()), LocalDate.now(), LocalDate.now());
+        assertEquals(1L, resumen.getPendientes());
+        assertNotNull(resumen.getUltimaModificacion());
+
+        CitaRepository.ResumenCambios vacio = citaRepository.resumirCambios(List.of(dentista.getId()), LocalDate.now().plusDays(1), LocalDate.now().plusDays(1));
+        assertNull(vacio.getPendientes());
+        assertNull(vacio.getUltimaModificacion());
+    }
+
+    @Test
+    void testExisteSolapamientoConOtraCita() {
+        assertFalse(citaRepository.existsSolapamientoConOtraCita(dentista.getId(), LocalDate.now(), LocalTime.of(10, 45), LocalTime.of(11, 15), cita.getId()));
+        assertTrue(citaRepository.existsSolapamientoConOtraCita(dentista.getId(), LocalDate.now(), LocalTime.of(10, 45), LocalTime.of(11, 15), cita.getId() + 1));
+    }
+
+    @Test
+    void testRestriccionDeExclusionImpideCitasCruzadas() {
+        Cita cruzada = Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .monto(BigDecimal.valueOf(80.00))
+                .fecha(LocalDate.now())
+                .hora(LocalTime.of(10, 45))
+                .nombres("Ana")
+                .apellidoPaterno("Lopez")
+                .apellidoMaterno("Martinez")
+                .tipoDocumento(tipoDocumento)
+                .numeroIdentidad("87654321")
+                .sexo(Sexo.FEMENINO)
+                .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                .usuario(usuario)
+                .tratamiento(tratamiento)
+                .dentista(dentista)
+                .build();
+
+        assertThrows(PersistenceException.class, () -> {
+            entityManager.persist(cruzada);
+            entityManager.flush();
+        });
+    }
+
+    @Test
+    void testInsertarEnLote() {
+        List<Cita> serie = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            serie.add(citaDeSerie(LocalDate.now().plusWeeks(i), LocalTime.of(10, 30)));
+        }
+
+        citaRepository.insertarEnLote(serie);
+
+        assertThat(serie).allSatisfy(nueva -> assertNotNull(nueva.getId()));
+        entityManager.clear();
+        Cita guardada = citaRepository.findById(serie.get(2).getId()).orElseThrow();
+        assertEquals(LocalDate.now().plusWeeks(3), guardada.getFecha());
+        assertEquals(LocalTime.of(11, 0), guardada.getHoraFin());
+        assertEquals(EstadoCita.PENDIENTE, guardada.getEstado());
+        assertNotNull(guardada.getFechaCreacion());
+    }
+
+    @Test
+    void testInsertarEnLoteRespetaLaRestriccionDeExclusion() {
+        List<Cita> serie = List.of(
+                citaDeSerie(LocalDate.now().plusWeeks(1), LocalTime.of(10, 30)),
+                citaDeSerie(LocalDate.now(), LocalTime.of(10, 45)));
+
+        DataIntegrityViolationException error = assertThrows(DataIntegrityViolationException.class,
+                () -> citaRepository.insertarEnLote(serie));
+        assertThat(error.getMessage()).contains("excl_citas_solapamiento");
+    }
+
+    @Test
+    void testListadoPaginadoConGrafoEnDosConsultas() {
+        agregarCitasDeOtrosDentistas();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        Page<CitaResponse> pagina = citaRepository
+                .findAll(CitaSpecification.conEstado("Pendiente"), PageRequest.of(0, 2, Sort.by("id")), Cita.GRAFO_LISTADO)
+                .map(CitaMapper::toDto);
+
+        assertEquals(3, pagina.getTotalElements());
+        assertThat(pagina.getContent()).allSatisfy(respuesta -> assertNotNull(respuesta.getDentista().getNombres()));
+        // Una consulta para la página y otra para el conteo, sin importar cuántos dentistas aparezcan
+        assertEquals(2, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void testListadoConGrafoEnUnaConsulta() {
+        agregarCitasDeOtrosDentistas();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        List<CitaResponse> citas = citaRepository.findAll(CitaSpecification.conEstado("Pendiente"), Cita.GRAFO_LISTADO)
+                .stream().map(CitaMapper::toDto).toList();
+
+        assertThat(citas).hasSize(3);
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void testCitaParaNotificacionEnUnaConsulta() {
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        Cita encontrada = citaRepository.findParaNotificacionById(cita.getId()).orElseThrow();
+
+        assertEquals("lorem@gmail.com", encontrada.getUsuario().getCorreo());
+        assertEquals("Luis", encontrada.getDentista().getUsuario().getNombres());
+        assertEquals("Limpieza Dental", encontrada.getTratamiento().getNombre());
+        assertEquals("DNI", encontrada.getTipoDocumento().getNombre());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void testReporteConGrafoEnUnaConsulta() {
+        agregarCitasDeOtrosDentistas();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        List<Cita> citas = citaRepository.findAll(CitaSpecification.conEstado("Pendiente"), Cita.GRAFO_REPORTE);
+
+        assertThat(citas).hasSize(3).allSatisfy(encontrada -> {
+            assertNotNull(encontrada.getDentista().getUsuario().getNombres());
+            assertNotNull(encontrada.getUsuario().getTipoDocumento().getNombre());
+            assertNotNull(encontrada.getTratamiento().getNombre());
+        });
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void testRecorrerPorCursorSinRepetirCitas() {
+        agregarCitasDeOtrosDentistas();
+        Sort orden = Sort.by(Sort.Direction.DESC, "fecha", "hora", "id");
+
+        List<CitaResponse> primera = citaRepository.findResumenes(CitaSpecification.conEstado("Pendiente"), orden, 2);
+        CitaResponse ultima = primera.getLast();
+        List<CitaResponse> segunda = citaRepository.findResumenes(CitaSpecification.conEstado("Pendiente")
+                .and(CitaSpecification.anteriorA(ultima.getFecha(), ultima.getHora(), ultima.getId())), orden, 2);
+
+        assertThat(primera).hasSize(2);
+        assertThat(segunda).hasSize(1);
+        assertThat(segunda.getFirst().getId()).isLessThan(ultima.getId());
+        assertThat(primera).extracting(CitaResponse::getId).doesNotContain(segunda.getFirst().getId());
+    }
+
+    @Test
+    void testProgramablesEntreSoloTraeLasPendientesDelRango() {
+        agregarCitasDeOtrosDentistas();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        List<CitaRepository.CitaProgramable> programables = citaRepository.findProgramablesEntre(LocalDate.now(), LocalDate.now());
+
+        assertThat(programables).hasSize(3);
+        assertThat(programables).allSatisfy(cita -> {
+            assertEquals(LocalDate.now(), cita.getFecha());
+            assertNotNull(cita.getHora());
+        });
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertThat(citaRepository.findProgramablesEntre(LocalDate.now().plusDays(1), LocalDate.now().plusDays(3))).isEmpty();
+    }
+
+    @Test
+    void testAgendasDelDiaAgrupadasPorDentista() {
+        agregarCitasDeOtrosDentistas();
+        Cita temprana = entityManager.persist(citaDeSerie(LocalDate.now(), LocalTime.of(8, 0)));
+        Cita cancelada = citaDeSerie(LocalDate.now(), LocalTime.of(12, 0));
+        cancelada.setEstado(EstadoCita.CANCELADA);
+        entityManager.persist(cancelada);
+        entityManager.flush();
+        entityManager.clear();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        List<CitaRepository.AgendaDelDia> agendas = citaRepository.findAgendasDelDia(LocalDate.now());
+        List<Cita> agenda = citaRepository.findAgendaDelDentista(dentista.getId(), LocalDate.now());
+
+        assertThat(agendas).hasSize(3);
+        CitaRepository.AgendaDelDia delDentista = agendas.stream()
+                .filter(fila -> fila.getDentistaId().equals(dentista.getId()))
+                .findFirst().orElseThrow();
+        assertEquals(2L, delDentista.getCitas());
+        assertEquals(Math.min(cita.getId(), temprana.getId()), delDentista.getPrimeraCitaId());
+        assertThat(agenda).extracting(Cita::getId).containsExactly(temprana.getId(), cita.getId());
+        assertNotNull(agenda.get(1).getUsuario().getCorreo());
+        assertEquals("Limpieza Dental", agenda.get(1).getTratamiento().getNombre());
+        assertEquals(2, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void testRecorrerResumenesConCursorDelServidor() {
+        agregarCitasDeOtrosDentistas();
+        entityManager.flush();
+        entityManager.clear();
+        Sort orden = Sort.by(Sort.Direction.DESC, "fecha", "hora", "id");
+
+        List<CitaResponse> esperadas = citaRepository.findResumenes(CitaSpecification.conEstado("Pendiente"), orden, 10);
+        List<CitaResponse> recorridas;
+        try (Stream<CitaResponse> citas = citaRepository.streamResumenes(CitaSpecification.conEstado("Pendiente"), orden)) {
+            recorridas = citas.toList();
+        }
+
+        assertThat(recorridas).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(esperadas);
+    }
+
+    @Test
+    void testResumenesCoincidenConElMapper() {
+        agregarCitasDeOtrosDentistas();
+        entityManager.flush();
+        entityManager.clear();
+
+        List<CitaResponse> esperadas = citaRepository.findAll(CitaSpecification.conEstado("Pendiente"), Cita.GRAFO_LISTADO)
+                .stream().map(CitaMapper::toDto).toList();
+        entityManager.clear();
+        List<CitaResponse> resumenes = citaRepository.findResumenes(CitaSpecification.conEstado("Pendiente"));
+
+        assertThat(resumenes).hasSize(3);
+        assertThat(resumenes).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(esperadas);
+    }
+
+    @Test
+    void testResumenesPaginadosSinCargarCitas() {
+        agregarCitasDeOtrosDentistas();
+        Statistics estadisticas = reiniciarEstadisticas();
+
+        Page<CitaResponse> pagina = citaRepository.findResumenes(
+                CitaSpecification.conDentistaId(dentista.getId()).or(CitaSpecification.conEstado("Pendiente")),
+                PageRequest.of(0, 2, Sort.by("hora", "id")));
+
+        assertEquals(3, pagina.getTotalElements());
+        assertThat(pagina.getContent()).hasSize(2)
+                .allSatisfy(respuesta -> assertEquals("Limpieza Dental", respuesta.getTratamiento().getNombre()));
+        // Ni citas, ni pacientes, ni dentistas pasan por el contexto de persistencia
+        assertEquals(0, estadisticas.getEntityStatistics(Cita.class.getName()).getLoadCount());
+        assertEquals(0, estadisticas.getEntityStatistics(Usuario.class.getName()).getLoadCount());
+        assertEquals(0, estadisticas.getEntityStatistics(Dentista.class.getName()).getLoadCount());
+        // Página, tipos de documento, tratamientos y conteo
+        assertEquals(4, estadisticas.getPrepareStatementCount());
+    }
+
+    private Cita citaDeSerie(LocalDate fecha, LocalTime hora) {
+        return Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .monto(BigDecimal.valueOf(80.00))
+                .fecha(fecha)
+                .hora(hora)
+                .nombres("Ana")
+                .apellidoPaterno("Lopez")
+                .apellidoMaterno("Martinez")
+                .tipoDocumento(tipoDocumento)
+                .numeroIdentidad("87654321")
+                .sexo(Sexo.FEMENINO)
+                .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                .usuario(usuario)
+                .tratamiento(tratamiento)
+                .dentista(dentista)
+                .build();
+    }
+
+    private Statistics reiniciarEstadisticas() {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics estadisticas = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        return estadisticas;
+    }
+
+    private void agregarCitasDeOtrosDentistas() {
+        for (int i = 1; i <= 2; i++) {
+            Usuario otroUsuario = entityManager.persist(
+                    Usuario.builder()
+                            .nombres("Dentista " + i)
+                            .apellidoPaterno("Soto")
+                            .apellidoMaterno("Vega")
+                            .rol(Rol.DENTISTA)
+                            .contrasena("jbyuy$vty%4f")
+                            .correo("dentista" + i + "@gmail.com")
+                            .telefono("987654321")
+                            .numeroIdentidad("1234567" + i)
+                            .tipoDocumento(tipoDocumento)
+                            .sexo(Sexo.FEMENINO)
+                            .fechaNacimiento(LocalDate.of(1985, 1, 1))
+                            .estado(true)
+                            .build()
+            );
+            Dentista otroDentista = entityManager.persist(
+                    Dentista.builder()
+                            .usuario(otroUsuario)
+                            .nColegiatura("COD12" + i)
+                            .especializacion("Ortodoncia")
+                            .estado(true)
+                            .build()
+            );
+            entityManager.persist(
+                    Cita.builder()
+                            .estado(EstadoCita.PENDIENTE)
+                            .monto(BigDecimal.valueOf(80.00))
+                            .fecha(LocalDate.now())
+                            .hora(LocalTime.of(10, 30))
+                            .nombres("Ana")
+                            .apellidoPaterno("Lopez")
+                            .apellidoMaterno("Martinez")
+                            .tipoDocumento(tipoDocumento)
+                            .numeroIdentidad("87654321")
+                            .sexo(Sexo.FEMENINO)
+                            .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                            .usuario(otroUsuario)
+                            .tratamiento(tratamiento)
+                            .dentista(otroDentista)
+                            .build()
+            );
+        }
+    }
+}
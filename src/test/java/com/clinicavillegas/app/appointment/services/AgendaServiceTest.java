@@ -0,0 +1,151 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.controllers.CitaController;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.services.impl.DefaultAgendaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class AgendaServiceTest {
+
+    private static final Pattern ID = Pattern.compile("id:(\\S+)");
+
+    private DefaultAgendaService agendaService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        agendaService = new DefaultAgendaService(3, 60_000, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new CitaController(
+                mock(CitaService.class), mock(OcupacionService.class), agendaService, new ObjectMapper())).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        agendaService.detener();
+    }
+
+    @Test
+    @DisplayName("Debe enviar al dentista solo los cambios de su agenda, incluidas las citas que le quitaron")
+    void testCambiosDelDentista() throws Exception {
+        MockHttpServletResponse dentista = suscribir(1L, null);
+        MockHttpServletResponse clinica = suscribir(null, null);
+
+        agendaService.registrarCambio(evento(10L, 1L, null));
+        agendaService.registrarCambio(evento(11L, 2L, null));
+        agendaService.registrarCambio(evento(12L, 2L, 1L));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> clinica.getContentAsString().contains("\"citaId\":12"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> dentista.getContentAsString().contains("\"citaId\":12"));
+        String agenda = dentista.getContentAsString();
+        assertTrue(agenda.startsWith("id:"));
+        assertTrue(agenda.contains("event:" + DefaultAgendaService.EVENTO_CONECTADO));
+        assertTrue(agenda.contains("\"citaId\":10"));
+        assertFalse(agenda.contains("\"citaId\":11"));
+        assertTrue(agenda.indexOf("\"citaId\":10") < agenda.indexOf("\"citaId\":12"));
+        assertTrue(clinica.getContentAsString().contains("\"citaId\":11"));
+    }
+
+    @Test
+    @DisplayName("Al reconectar con Last-Event-ID debe reenviar solo lo que se perdió")
+    void testReconexion() throws Exception {
+        MockHttpServletResponse primera = suscribir(1L, null);
+        agendaService.registrarCambio(evento(20L, 1L, null));
+        await().atMost(Duration.ofSeconds(5)).until(() -> primera.getContentAsString().contains("\"citaId\":20"));
+        String ultimoId = ultimoId(primera.getContentAsString());
+
+        // Mientras el cliente estaba desconectado
+        agendaService.registrarCambio(evento(21L, 1L, null));
+        agendaService.registrarCambio(evento(22L, 1L, null));
+
+        MockHttpServletResponse segunda = suscribir(1L, ultimoId);
+        await().atMost(Duration.ofSeconds(5)).until(() -> segunda.getContentAsString().contains("\"citaId\":22"));
+        String reenviado = segunda.getContentAsString();
+        assertFalse(reenviado.contains("\"citaId\":20"));
+        assertTrue(reenviado.contains("\"citaId\":21"));
+        assertFalse(reenviado.contains("event:" + DefaultAgendaService.EVENTO_REINICIO));
+    }
+
+    @Test
+    @DisplayName("Debe pedir recargar la agenda si el Last-Event-ID ya salió del anillo o es de otro arranque")
+    void testReinicio() throws Exception {
+        MockHttpServletResponse primera = suscribir(null, null);
+        await().atMost(Duration.ofSeconds(5)).until(() -> primera.getContentAsString().contains("event:conectado"));
+        String ultimoId = ultimoId(primera.getContentAsString());
+        for (long citaId = 30; citaId < 34; citaId++) {
+            agendaService.registrarCambio(evento(citaId, 1L, null));
+        }
+
+        MockHttpServletResponse atrasada = suscribir(null, ultimoId);
+        MockHttpServletResponse otroArranque = suscribir(null, "abc-2");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> atrasada.getContentAsString().contains("event:reinicio"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> otroArranque.getContentAsString().contains("event:reinicio"));
+        assertFalse(atrasada.getContentAsString().contains("\"citaId\""));
+    }
+
+    @Test
+    @DisplayName("Si se perdieron cambios de otras instancias debe pedir recargar y seguir con los siguientes")
+    void testInvalidar() throws Exception {
+        MockHttpServletResponse conectada = suscribir(null, null);
+        await().atMost(Duration.ofSeconds(5)).until(() -> conectada.getContentAsString().contains("event:conectado"));
+
+        agendaService.invalidar();
+        await().atMost(Duration.ofSeconds(5)).until(() -> conectada.getContentAsString().contains("event:reinicio"));
+        agendaService.recibir(DefaultAgendaService.cambioDe(evento(40L, 1L, null)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> conectada.getContentAsString().contains("\"citaId\":40"));
+    }
+
+    private MockHttpServletResponse suscribir(Long dentistaId, String ultimoEventoId) throws Exception {
+        var peticion = get("/api/citas/agenda/eventos");
+        if (dentistaId != null) {
+            peticion.param("dentistaId", dentistaId.toString());
+        }
+        if (ultimoEventoId != null) {
+            peticion.header("Last-Event-ID", ultimoEventoId);
+        }
+        return mockMvc.perform(peticion).andExpect(request().asyncStarted()).andReturn().getResponse();
+    }
+
+    private String ultimoId(String contenido) {
+        Matcher matcher = ID.matcher(contenido);
+        String id = null;
+        while (matcher.find()) {
+            id = matcher.group(1);
+        }
+        return id;
+    }
+
+    private CitaModificadaEvent evento(Long citaId, Long dentistaId, Long dentistaIdAnterior) {
+        return CitaModificadaEvent.builder()
+                .citaId(citaId)
+                .estado(EstadoCita.PENDIENTE)
+                .dentistaId(dentistaId)
+                .fecha(LocalDate.of(2030, 3, 4))
+                .hora(LocalTime.of(9, 0))
+                .horaFin(LocalTime.of(9, 30))
+                .dentistaIdAnterior(dentistaIdAnterior)
+                .fechaAnterior(dentistaIdAnterior != null ? LocalDate.of(2030, 3, 4) : null)
+                .build();
+    }
+}
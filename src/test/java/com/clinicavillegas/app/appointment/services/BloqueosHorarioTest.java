@@ -0,0 +1,124 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.services.impl.BloqueosHorario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloqueosHorarioTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 4, 2);
+
+    private BloqueosHorario bloqueos;
+
+    @BeforeEach
+    void setUp() {
+        // Un minuto de bloqueo en una rueda de 16 ranuras: cada bloqueo da casi cuatro vueltas antes de vencer
+        bloqueos = new BloqueosHorario(1, 2, 16);
+    }
+
+    @Test
+    @DisplayName("El bloqueo vence al cumplirse su duración y no antes")
+    void testVencimiento() {
+        BloqueosHorario.Bloqueo bloqueo = bloquear(1L, 10L, LocalTime.of(9, 0));
+
+        avanzar(59);
+        assertTrue(bloqueos.obtener(bloqueo.id()).isPresent());
+        assertTrue(bloqueos.haySolapamiento(1L, FECHA, LocalTime.of(9, 10), LocalTime.of(9, 40), null));
+
+        avanzar(1);
+        assertTrue(bloqueos.obtener(bloqueo.id()).isEmpty());
+        assertFalse(bloqueos.haySolapamiento(1L, FECHA, LocalTime.of(9, 10), LocalTime.of(9, 40), null));
+        assertEquals(0, bloqueos.activos());
+    }
+
+    @Test
+    @DisplayName("Otro paciente no puede bloquear un horario que se cruza")
+    void testCruceConOtroPaciente() {
+        bloquear(1L, 10L, LocalTime.of(9, 0));
+
+        assertThrows(HorarioNoDisponibleException.class, () -> bloquear(1L, 11L, LocalTime.of(9, 20)));
+        assertDoesNotThrow(() -> bloquear(1L, 11L, LocalTime.of(9, 30)));
+        assertDoesNotThrow(() -> bloquear(2L, 11L, LocalTime.of(9, 0)));
+    }
+
+    @Test
+    @DisplayName("El propio bloqueo no cuenta como cruce y el paciente puede cambiar de horario")
+    void testMismoPaciente() {
+        BloqueosHorario.Bloqueo primero = bloquear(1L, 10L, LocalTime.of(9, 0));
+        assertFalse(bloqueos.haySolapamiento(1L, FECHA, LocalTime.of(9, 0), LocalTime.of(9, 30), primero.id()));
+
+        BloqueosHorario.Bloqueo segundo = bloquear(1L, 10L, LocalTime.of(9, 15));
+
+        assertTrue(bloqueos.obtener(primero.id()).isEmpty());
+        assertTrue(bloqueos.obtener(segundo.id()).isPresent());
+    }
+
+    @Test
+    @DisplayName("Al superar el máximo por paciente se suelta su bloqueo más antiguo")
+    void testMaximoPorPaciente() {
+        BloqueosHorario.Bloqueo primero = bloquear(1L, 10L, LocalTime.of(9, 0));
+        bloquear(1L, 10L, LocalTime.of(10, 0));
+        bloquear(1L, 10L, LocalTime.of(11, 0));
+
+        assertTrue(bloqueos.obtener(primero.id()).isEmpty());
+        assertEquals(2, bloqueos.activos());
+    }
+
+    @Test
+    @DisplayName("Un bloqueo liberado deja el horario disponible de inmediato")
+    void testLiberar() {
+        BloqueosHorario.Bloqueo bloqueo = bloquear(1L, 10L, LocalTime.of(9, 0));
+
+        bloqueos.liberar(bloqueo.id());
+        avanzar(60);
+
+        assertEquals(0, bloqueos.activos());
+        assertFalse(bloqueos.haySolapamiento(1L, FECHA, LocalTime.of(9, 0), LocalTime.of(9, 30), null));
+    }
+
+    @Test
+    @DisplayName("Dentro de una transacción el bloqueo se libera solo si se confirma")
+    void testLiberarAlConfirmar() {
+        BloqueosHorario.Bloqueo revertido = bloquear(1L, 10L, LocalTime.of(9, 0));
+        BloqueosHorario.Bloqueo confirmado = bloquear(1L, 11L, LocalTime.of(11, 0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bloqueos.liberarAlConfirmar(revertido.id());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sincronizacion -> sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bloqueos.liberarAlConfirmar(confirmado.id());
+            assertTrue(bloqueos.obtener(confirmado.id()).isPresent());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(bloqueos.obtener(revertido.id()).isPresent());
+        assertTrue(bloqueos.obtener(confirmado.id()).isEmpty());
+    }
+
+    private BloqueosHorario.Bloqueo bloquear(Long dentistaId, Long usuarioId, LocalTime hora) {
+        return bloqueos.bloquear(dentistaId, usuarioId, FECHA, hora, hora.plusMinutes(30));
+    }
+
+    private void avanzar(int segundos) {
+        for (int i = 0; i < segundos; i++) {
+            bloqueos.avanzar();
+        }
+    }
+}
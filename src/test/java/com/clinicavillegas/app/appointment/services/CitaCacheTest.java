@@ -0,0 +1,176 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.HorarioRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.services.impl.AdmisionReservas;
+import com.clinicavillegas.app.appointment.services.impl.BloqueosHorario;
+import com.clinicavillegas.app.appointment.services.impl.DefaultCitaService;
+import com.clinicavillegas.app.appointment.services.impl.GeneracionesCitas;
+import com.clinicavillegas.app.appointment.services.impl.ResolutorReferencias;
+import com.clinicavillegas.app.common.cache.config.CacheConfig;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
+import com.clinicavillegas.app.user.repositories.UsuarioRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifica que las listas de citas en caché solo se recalculan cuando cambia una cita
+ * del paciente o del dentista consultado.
+ */
+@SpringJUnitConfig(CitaCacheTest.Config.class)
+class CitaCacheTest {
+
+    @Configuration
+    @Import({CacheConfig.class, GeneracionesCitas.class})
+    static class Config {
+        @Bean
+        CitaRepository citaRepository() {
+            return mock(CitaRepository.class);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        TratamientoRepository tratamientoRepository() {
+            return mock(TratamientoRepository.class);
+        }
+
+        @Bean
+        ResolutorReferencias resolutorReferencias(CitaRepository citaRepository, TratamientoRepository tratamientoRepository) {
+            return new ResolutorReferencias(citaRepository, mock(UsuarioRepository.class), mock(DentistaRepository.class),
+                    tratamientoRepository, mock(TipoDocumentoRepository.class));
+        }
+
+        @Bean
+        CitaService citaService(CitaRepository citaRepository, ResolutorReferencias resolutorReferencias) {
+            return new DefaultCitaService(citaRepository, mock(UsuarioRepository.class), mock(DentistaRepository.class),
+                    mock(HorarioRepository.class), mock(NotificacionService.class), mock(ApplicationEventPublisher.class), new AdmisionReservas(16),
+                    resolutorReferencias, new BloqueosHorario(10, 3, 64));
+        }
+    }
+
+    @Autowired
+    private CitaService citaService;
+    @Autowired
+    private CitaRepository citaRepository;
+    @Autowired
+    private TratamientoRepository tratamientoRepository;
+    @Autowired
+    private ResolutorReferencias resolutorReferencias;
+    @Autowired
+    private GeneracionesCitas generacionesCitas;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+        reset(citaRepository);
+        when(citaRepository.findResumenes(any(Specification.class))).thenReturn(List.of());
+    }
+
+    @Test
+    @DisplayName("Los tratamientos de las reservas se leen de la base una sola vez")
+    void testTratamientoDesdeCacheDeReferencias() {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(Tratamiento.builder().id(3L).build()));
+
+        resolutorReferencias.tratamiento(3L);
+        resolutorReferencias.tratamiento(3L);
+
+        verify(tratamientoRepository, times(1)).findById(3L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", ResolutorReferencias.CACHE_TRATAMIENTOS)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Una cita de otro dentista no invalida la lista del dentista consultado")
+    @SuppressWarnings("unchecked")
+    void testCambioDeOtroDentistaConservaLista() {
+        citaService.obtenerCitas(null, 1L, null, null, null, null, null);
+        citaService.obtenerCitas(null, 1L, null, null, null, null, null);
+        verify(citaRepository, times(1)).findResumenes(any(Specification.class));
+
+        generacionesCitas.avanzar(evento(20L, 2L));
+        citaService.obtenerCitas(null, 1L, null, null, null, null, null);
+        verify(citaRepository, times(1)).findResumenes(any(Specification.class));
+
+        generacionesCitas.avanzar(evento(20L, 1L));
+        citaService.obtenerCitas(null, 1L, null, null, null, null, null);
+        verify(citaRepository, times(2)).findResumenes(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("La lista sin filtros de paciente ni dentista se recalcula con cualquier cambio")
+    @SuppressWarnings("unchecked")
+    void testListaGeneralSeInvalidaConCualquierCambio() {
+        citaService.obtenerCitas(null, null, null, null, null, null, null);
+        generacionesCitas.avanzar(evento(20L, 2L));
+        citaService.obtenerCitas(null, null, null, null, null, null, null);
+
+        verify(citaRepository, times(2)).findResumenes(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Al cambiar de paciente se invalidan las listas del paciente anterior")
+    @SuppressWarnings("unchecked")
+    void testCambioDePacienteInvalidaPacienteAnterior() {
+        citaService.obtenerCitas(30L, null, null, null, null, null, null);
+        generacionesCitas.avanzar(evento(31L, 1L).toBuilder().usuarioIdAnterior(30L).build());
+        citaService.obtenerCitas(30L, null, null, null, null, null, null);
+
+        verify(citaRepository, times(2)).findResumenes(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Debe publicar aciertos y fallos de la caché como métricas")
+    void testMetricasDeCache() {
+        citaService.obtenerCitas(40L, null, null, null, null, null, null);
+        double aciertos = lecturas("hit");
+        double fallos = lecturas("miss");
+
+        citaService.obtenerCitas(40L, null, null, null, null, null, null);
+        citaService.obtenerCitas(41L, null, null, null, null, null, null);
+
+        assertEquals(aciertos + 1, lecturas("hit"));
+        assertEquals(fallos + 1, lecturas("miss"));
+    }
+
+    private double lecturas(String resultado) {
+        return meterRegistry.get("cache.gets").tag("cache", "citasListaSinPaginar").tag("result", resultado)
+                .functionCounter().count();
+    }
+
+    private static CitaModificadaEvent evento(Long usuarioId, Long dentistaId) {
+        return CitaModificadaEvent.builder().citaId(100L).estado(EstadoCita.PENDIENTE).usuarioId(usuarioId).dentistaId(dentistaId).build();
+    }
+}
@@ -0,0 +1,207 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.services.impl.AdmisionReservas;
+import com.clinicavillegas.app.appointment.services.impl.BloqueosHorario;
+import com.clinicavillegas.app.appointment.services.impl.DefaultCitaService;
+import com.clinicavillegas.app.appointment.services.impl.ResolutorReferencias;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import com.clinicavillegas.app.user.models.Rol;
+import com.clinicavillegas.app.user.models.Sexo;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
+import com.clinicavillegas.app.user.repositories.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Lanza cientos de reservas simultáneas contra la base de datos real. Las reservas se guardan
+ * en sus propias transacciones, por eso la prueba no es transaccional y limpia sus datos al final.
+ */
+@DataJpaTest
+@Import({JpaTestConfig.class, DefaultCitaService.class, AdmisionReservas.class, ResolutorReferencias.class, BloqueosHorario.class, CitaConcurrenciaTest.Config.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CitaConcurrenciaTest {
+
+    private static final int RESERVAS_SIMULTANEAS = 200;
+    private static final LocalDate FECHA = LocalDate.of(2031, 3, 10);
+
+    @Autowired
+    private CitaService citaService;
+    @Autowired
+    private CitaRepository citaRepository;
+    @Autowired
+    private DentistaRepository dentistaRepository;
+    @Autowired
+    private TratamientoRepository tratamientoRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private TipoDocumentoRepository tipoDocumentoRepository;
+
+    private TipoDocumento tipoDocumento;
+    private List<Usuario> usuarios;
+    private List<Dentista> dentistas;
+    private Tratamiento tratamiento;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        public NotificacionService notificacionService() {
+            return Mockito.mock(NotificacionService.class);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        tipoDocumento = tipoDocumentoRepository.save(
+                TipoDocumento.builder().nombre("Concurrencia").acronimo("CCR").estado(true).build()
+        );
+        usuarios = new ArrayList<>();
+        dentistas = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Usuario usuario = usuarioRepository.save(
+                    Usuario.builder()
+                            .nombres("Luis")
+                            .apellidoPaterno("Ramos")
+                            .apellidoMaterno("Pérez")
+                            .rol(Rol.DENTISTA)
+                            .contrasena("jbyuy$vty%4f")
+                            .correo("concurrencia" + i + "@gmail.com")
+                            .telefono("987654321")
+                            .numeroIdentidad("1234567" + i)
+                            .tipoDocumento(tipoDocumento)
+                            .sexo(Sexo.MASCULINO)
+                            .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                            .estado(true)
+                            .build()
+            );
+            usuarios.add(usuario);
+            dentistas.add(dentistaRepository.save(
+                    Dentista.builder().usuario(usuario).nColegiatura("CCR" + i).especializacion("General").estado(true).build()
+            ));
+        }
+        tratamiento = tratamientoRepository.save(
+                Tratamiento.builder().nombre("Limpieza").costo(BigDecimal.valueOf(80)).duracion(Duration.ofMinutes(30)).estado(true).build()
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        dentistas.forEach(dentista -> citaRepository.deleteAll(citaRepository.findByDentista(dentista)));
+        dentistaRepository.deleteAll(dentistas);
+        tratamientoRepository.delete(tratamiento);
+        usuarioRepository.deleteAll(usuarios);
+        tipoDocumentoRepository.delete(tipoDocumento);
+    }
+
+    @Test
+    @DisplayName("Solo una de cientos de reservas simultáneas para el mismo horario debe registrarse")
+    void testReservasSimultaneasMismoHorario() throws Exception {
+        Dentista dentista = dentistas.getFirst();
+        // Horas escalonadas a menos de 30 minutos entre sí: cualquier par de reservas se cruza
+        List<LocalTime> horas = List.of(LocalTime.of(9, 50), LocalTime.of(10, 0), LocalTime.of(10, 10), LocalTime.of(10, 15));
+
+        Resultado resultado = reservarEnParalelo(i -> solicitud(dentista, FECHA, horas.get(i % horas.size())));
+
+        assertEquals(1, resultado.exitosas());
+        assertEquals(RESERVAS_SIMULTANEAS - 1, resultado.rechazadas());
+        assertEquals(0, resultado.errores());
+        assertEquals(1, citaRepository.findByDentista(dentista).size());
+    }
+
+    @Test
+    @DisplayName("Las reservas de distintos dentistas y días no deben bloquearse entre sí")
+    void testReservasSimultaneasSinConflicto() throws Exception {
+        // 4 dentistas x 50 días, un único horario por combinación
+        Resultado resultado = reservarEnParalelo(i -> solicitud(dentistas.get(i % dentistas.size()), FECHA.plusDays(i / dentistas.size()), LocalTime.of(10, 0)));
+
+        assertEquals(RESERVAS_SIMULTANEAS, resultado.exitosas());
+        assertEquals(0, resultado.rechazadas());
+        assertEquals(0, resultado.errores());
+    }
+
+    private Resultado reservarEnParalelo(java.util.function.IntFunction<CitaRequest> solicitudes) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(RESERVAS_SIMULTANEAS);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger exitosas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        AtomicInteger errores = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int i = 0; i < RESERVAS_SIMULTANEAS; i++) {
+            CitaRequest request = solicitudes.apply(i);
+            tareas.add(executor.submit(() -> {
+                largada.await();
+                try {
+                    citaService.agregarCita(request);
+                    exitosas.incrementAndGet();
+                } catch (HorarioNoDisponibleException e) {
+                    rechazadas.incrementAndGet();
+                } catch (RuntimeException e) {
+                    errores.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return new Resultado(exitosas.get(), rechazadas.get(), errores.get());
+    }
+
+    private CitaRequest solicitud(Dentista dentista, LocalDate fecha, LocalTime hora) {
+        return CitaRequest.builder()
+                .fecha(fecha)
+                .hora(hora)
+                .nombres("Ana")
+                .apellidoPaterno("Lopez")
+                .apellidoMaterno("Martinez")
+                .tipoDocumento("CCR")
+                .numeroIdentidad("87654321")
+                .sexo("FEMENINO")
+                .fechaNacimiento(LocalDate.of(1995, 5, 10))
+                .dentistaId(dentista.getId())
+                .usuarioId(usuarios.getFirst().getId())
+                .tratamientoId(tratamiento.getId())
+                .build();
+    }
+
+    private record Resultado(int exitosas, int rechazadas, int errores) {
+    }
+}
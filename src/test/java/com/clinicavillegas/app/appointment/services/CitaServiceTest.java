@@ -1,36 +1,74 @@
 package com.clinicavillegas.app.appointment.services;
 
 
+import com.clinicavillegas.app.appointment.dto.request.BloqueoHorarioRequest;
+import com.clinicavillegas.app.appointment.dto.request.CancelacionMasivaRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaReprogramarRequest;
 import com.clinicavillegas.app.appointment.dto.request.CitaRequest;
+import com.clinicavillegas.app.appointment.dto.request.ReprogramacionMasivaRequest;
+import com.clinicavillegas.app.appointment.dto.request.SerieCitasRequest;
 import com.clinicavillegas.app.appointment.dto.request.ValidacionCitaRequest;
+import com.clinicavillegas.app.appointment.dto.response.CitaResponse;
+import com.clinicavillegas.app.appointment.dto.response.OperacionMasivaResponse;
+import com.clinicavillegas.app.appointment.dto.response.PaginaCitasResponse;
+import com.clinicavillegas.app.appointment.dto.response.SerieCitasResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.exceptions.BloqueoInvalidoException;
+import com.clinicavillegas.app.appointment.exceptions.CursorInvalidoException;
+import com.clinicavillegas.app.appointment.exceptions.FueraDeHorarioException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioNoDisponibleException;
+import com.clinicavillegas.app.appointment.exceptions.HorarioPasadoException;
+import com.clinicavillegas.app.appointment.exceptions.TransicionEstadoInvalidaException;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.Dia;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Horario;
 import com.clinicavillegas.app.appointment.models.Cita;
 import com.clinicavillegas.app.appointment.models.Tratamiento;
 import com.clinicavillegas.app.appointment.repositories.*;
+import com.clinicavillegas.app.appointment.services.impl.AdmisionReservas;
+import com.clinicavillegas.app.appointment.services.impl.BloqueosHorario;
+import com.clinicavillegas.app.appointment.services.impl.CursorCita;
 import com.clinicavillegas.app.appointment.services.impl.DefaultCitaService;
-import com.clinicavillegas.app.email.services.EmailService;
+import com.clinicavillegas.app.appointment.services.impl.ResolutorReferencias;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import com.clinicavillegas.app.user.models.Usuario;
 import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
 import com.clinicavillegas.app.user.repositories.UsuarioRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CitaServiceTest {
 
+    private static final LocalDate LUNES_SERIE = LocalDate.of(2030, 3, 4);
+    private static final LocalDate SABADO_BLOQUEO = LocalDate.of(2030, 5, 11);
+    private static final LocalDate MARTES_MASIVA = LocalDate.of(2030, 5, 14);
+
     private DefaultCitaService citaService;
+    private BloqueosHorario bloqueosHorario;
 
     @Mock
     private CitaRepository citaRepository;
@@ -39,17 +77,25 @@ class CitaServiceTest {
     @Mock
     private DentistaRepository dentistaRepository;
     @Mock
+    private HorarioRepository horarioRepository;
+    @Mock
     private TratamientoRepository tratamientoRepository;
     @Mock
     private TipoDocumentoRepository tipoDocumentoRepository;
     @Mock
-    private EmailService emailService;
+    private NotificacionService notificacionService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        bloqueosHorario = new BloqueosHorario(10, 3, 64);
         citaService = new DefaultCitaService(
-                citaRepository, usuarioRepository, dentistaRepository, tratamientoRepository, tipoDocumentoRepository, emailService
+                citaRepository, usuarioRepository, dentistaRepository, horarioRepository, notificacionService, eventPublisher,
+                new AdmisionReservas(16),
+                new ResolutorReferencias(citaRepository, usuarioRepository, dentistaRepository, tratamientoRepository, tipoDocumentoRepository),
+                bloqueosHorario
         );
     }
 
@@ -80,14 +126,234 @@ class CitaServiceTest {
                 .build();
 
 
-        when(usuarioRepository.findById(2L)).thenReturn(Optional.of(mock()));
-        when(dentistaRepository.findById(1L)).thenReturn(Optional.of(mock()));
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, true));
+        when(usuarioRepository.getReferenceById(2L)).thenReturn(Usuario.builder().id(2L).build());
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
         when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(tratamiento));
         when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
 
         citaService.agregarCita(request);
 
         verify(citaRepository).save(any(Cita.class));
+        verify(notificacionService).encolarConfirmacionReserva(any(Cita.class));
+        ArgumentCaptor<CitaModificadaEvent> evento = ArgumentCaptor.forClass(CitaModificadaEvent.class);
+        verify(eventPublisher).publishEvent(evento.capture());
+        assertEquals(EstadoCita.PENDIENTE, evento.getValue().getEstado());
+        assertEquals(LocalTime.of(10, 40), evento.getValue().getHoraFin());
+    }
+
+    @Test
+    @DisplayName("No debe agregar una cita que se cruza con otra del mismo dentista")
+    void testAgregarCitaHorarioOcupado() {
+        CitaRequest request = CitaRequest.builder()
+                .fecha(LocalDate.of(2025, 5, 10))
+                .hora(LocalTime.of(10, 0))
+                .nombres("Ana")
+                .apellidoPaterno("Morales")
+                .apellidoMaterno("López")
+                .tipoDocumento("DNI")
+                .numeroIdentidad("12345678")
+                .sexo("FEMENINO")
+                .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .build();
+        Tratamiento tratamiento = Tratamiento.builder()
+                .id(3L)
+                .costo(BigDecimal.valueOf(250.0))
+                .duracion(Duration.ofMinutes(40))
+                .build();
+
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, true));
+        when(usuarioRepository.getReferenceById(2L)).thenReturn(Usuario.builder().id(2L).build());
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(tratamiento));
+        when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
+        when(citaRepository.existsSolapamiento(1L, LocalDate.of(2025, 5, 10), LocalTime.of(10, 0), LocalTime.of(10, 40)))
+                .thenReturn(true);
+
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.agregarCita(request));
+        verify(citaRepository, never()).save(any(Cita.class));
+        verify(notificacionService, never()).encolarConfirmacionReserva(any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Debe convertir el bloqueo del paciente en la cita y no aceptar la de otro paciente")
+    void testAgregarCitaConBloqueo() {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).costo(BigDecimal.TEN).duracion(Duration.ofMinutes(40)).build()));
+        when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
+        when(citaRepository.existenParticipantes(any(), eq(1L))).thenReturn(existencia(true, true));
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+        prepararJornadaSabado();
+
+        String bloqueoId = citaService.bloquearHorario(BloqueoHorarioRequest.builder()
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .fecha(SABADO_BLOQUEO)
+                .hora(LocalTime.of(10, 0))
+                .build()).getId();
+
+        CitaRequest otroPaciente = solicitudCita(5L, LocalTime.of(10, 20), null);
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.agregarCita(otroPaciente));
+        assertFalse(citaService.validarDisponibilidad(ValidacionCitaRequest.builder()
+                .fecha(SABADO_BLOQUEO.toString()).hora("10:20").dentistaId(1L).tratamientoId(3L).build()));
+        // Para el propio paciente, con su bloqueo, el horario sigue disponible
+        assertTrue(citaService.validarDisponibilidad(ValidacionCitaRequest.builder()
+                .fecha(SABADO_BLOQUEO.toString()).hora("10:00").dentistaId(1L).tratamientoId(3L)
+                .usuarioId(2L).bloqueoId(bloqueoId).build()));
+        assertThrows(BloqueoInvalidoException.class, () -> citaService.validarDisponibilidad(ValidacionCitaRequest.builder()
+                .fecha(SABADO_BLOQUEO.toString()).hora("10:00").dentistaId(1L).tratamientoId(3L)
+                .usuarioId(5L).bloqueoId(bloqueoId).build()));
+
+        citaService.agregarCita(solicitudCita(2L, LocalTime.of(10, 0), bloqueoId));
+
+        verify(citaRepository).save(any(Cita.class));
+        assertTrue(bloqueosHorario.obtener(bloqueoId).isEmpty());
+    }
+
+    @Test
+    @DisplayName("No debe aceptar el bloqueo de otro paciente ni uno para otro horario")
+    void testAgregarCitaConBloqueoAjeno() {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).costo(BigDecimal.TEN).duracion(Duration.ofMinutes(40)).build()));
+        when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
+        when(citaRepository.existenParticipantes(any(), eq(1L))).thenReturn(existencia(true, true));
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+        prepararJornadaSabado();
+        String bloqueoId = citaService.bloquearHorario(BloqueoHorarioRequest.builder()
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .fecha(SABADO_BLOQUEO)
+                .hora(LocalTime.of(10, 0))
+                .build()).getId();
+
+        CitaRequest otroPaciente = solicitudCita(5L, LocalTime.of(10, 0), bloqueoId);
+        CitaRequest otroHorario = solicitudCita(2L, LocalTime.of(10, 20), bloqueoId);
+
+        assertThrows(BloqueoInvalidoException.class, () -> citaService.agregarCita(otroPaciente));
+        assertThrows(BloqueoInvalidoException.class, () -> citaService.agregarCita(otroHorario));
+        verify(citaRepository, never()).save(any(Cita.class));
+        assertTrue(bloqueosHorario.obtener(bloqueoId).isPresent());
+    }
+
+    @Test
+    @DisplayName("Debe crear la serie completa con una consulta de horarios, una de citas y un solo lote")
+    void testAgregarSerie() {
+        prepararSerie(LocalTime.of(8, 0), LocalTime.of(17, 0));
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+        AtomicLong ids = new AtomicLong(100);
+        doAnswer(invocacion -> {
+            List<Cita> citas = invocacion.getArgument(0);
+            citas.forEach(cita -> cita.setId(ids.incrementAndGet()));
+            return null;
+        }).when(citaRepository).insertarEnLote(anyList());
+
+        SerieCitasResponse serie = citaService.agregarSerie(solicitudSerie(LocalTime.of(9, 0)));
+
+        assertEquals(List.of(101L, 102L, 103L, 104L), serie.getCitasIds());
+        assertEquals(List.of(LUNES_SERIE, LUNES_SERIE.plusWeeks(4), LUNES_SERIE.plusWeeks(8), LUNES_SERIE.plusWeeks(12)),
+                serie.getFechas());
+        verify(horarioRepository, times(1)).findByDentistaIdIn(List.of(1L));
+        verify(citaRepository, times(1)).findIntervalosPendientes(List.of(1L), LUNES_SERIE, LUNES_SERIE.plusWeeks(12));
+        verify(citaRepository, times(1)).insertarEnLote(anyList());
+        verify(citaRepository, never()).save(any(Cita.class));
+        verify(notificacionService, times(1)).encolarConfirmacionSerie(anyList());
+        verify(eventPublisher, times(4)).publishEvent(any(CitaModificadaEvent.class));
+    }
+
+    @Test
+    @DisplayName("No debe crear ninguna cita de la serie si una termina fuera de la jornada del dentista")
+    void testAgregarSerieFueraDeHorario() {
+        prepararSerie(LocalTime.of(8, 0), LocalTime.of(9, 30));
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+
+        assertThrows(FueraDeHorarioException.class, () -> citaService.agregarSerie(solicitudSerie(LocalTime.of(9, 0))));
+        verify(citaRepository, never()).insertarEnLote(anyList());
+        verify(notificacionService, never()).encolarConfirmacionSerie(anyList());
+    }
+
+    @Test
+    @DisplayName("No debe crear ninguna cita de la serie si una fecha choca con otra cita")
+    void testAgregarSerieConCruce() {
+        prepararSerie(LocalTime.of(8, 0), LocalTime.of(17, 0));
+        List<Object[]> intervalos = new ArrayList<>();
+        intervalos.add(new Object[]{50L, 1L, LUNES_SERIE.plusWeeks(8), LocalTime.of(9, 30), LocalTime.of(10, 0)});
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(intervalos);
+
+        HorarioNoDisponibleException error = assertThrows(HorarioNoDisponibleException.class,
+                () -> citaService.agregarSerie(solicitudSerie(LocalTime.of(9, 0))));
+        assertTrue(error.getMessage().contains(LUNES_SERIE.plusWeeks(8).toString()));
+        verify(citaRepository, never()).insertarEnLote(anyList());
+    }
+
+    @Test
+    @DisplayName("No debe bloquear un horario que ya tiene una cita")
+    void testBloquearHorarioOcupado() {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(40)).build()));
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, true));
+        prepararJornadaSabado();
+        when(citaRepository.existsSolapamiento(1L, SABADO_BLOQUEO, LocalTime.of(10, 0), LocalTime.of(10, 40)))
+                .thenReturn(true);
+        BloqueoHorarioRequest request = BloqueoHorarioRequest.builder()
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .fecha(SABADO_BLOQUEO)
+                .hora(LocalTime.of(10, 0))
+                .build();
+
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.bloquearHorario(request));
+        assertEquals(0, bloqueosHorario.activos());
+    }
+
+    @Test
+    @DisplayName("No debe bloquear para un paciente inexistente, en un horario pasado ni fuera de la jornada")
+    void testBloquearHorarioInvalido() {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(40)).build()));
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, true));
+        when(citaRepository.existenParticipantes(9L, 1L)).thenReturn(existencia(false, true));
+        prepararJornadaSabado();
+
+        assertThrows(ResourceNotFoundException.class, () -> citaService.bloquearHorario(solicitudBloqueo(9L,
+                SABADO_BLOQUEO, LocalTime.of(10, 0))));
+        assertThrows(HorarioPasadoException.class, () -> citaService.bloquearHorario(solicitudBloqueo(2L,
+                LocalDate.now().minusDays(1), LocalTime.of(10, 0))));
+        // Termina a las 17:20, después del cierre de la jornada
+        assertThrows(FueraDeHorarioException.class, () -> citaService.bloquearHorario(solicitudBloqueo(2L,
+                SABADO_BLOQUEO, LocalTime.of(16, 40))));
+        // El domingo no atiende
+        assertThrows(FueraDeHorarioException.class, () -> citaService.bloquearHorario(solicitudBloqueo(2L,
+                SABADO_BLOQUEO.plusDays(1), LocalTime.of(10, 0))));
+        assertEquals(0, bloqueosHorario.activos());
+    }
+
+    @Test
+    @DisplayName("No debe agregar una cita para un dentista inexistente")
+    void testAgregarCitaDentistaInexistente() {
+        CitaRequest request = CitaRequest.builder()
+                .fecha(LocalDate.of(2025, 5, 10))
+                .hora(LocalTime.of(10, 0))
+                .tipoDocumento("DNI")
+                .dentistaId(1L)
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .build();
+
+        when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(Tratamiento.builder().id(3L).build()));
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, false));
+
+        assertThrows(ResourceNotFoundException.class, () -> citaService.agregarCita(request));
+        verify(usuarioRepository, never()).findById(any());
+        verify(dentistaRepository, never()).getReferenceById(any());
+        verify(citaRepository, never()).save(any(Cita.class));
     }
 
     @Test
@@ -112,17 +378,49 @@ class CitaServiceTest {
         LocalTime horaInicio = LocalTime.of(9, 0);
 
         when(tratamientoRepository.findById(1L)).thenReturn(Optional.of(tratamiento));
-        when(citaRepository.findAll(any(Specification.class))).thenReturn(List.of());
+        when(citaRepository.existsSolapamiento(2L, fecha, horaInicio, LocalTime.of(9, 40))).thenReturn(false);
 
         boolean disponible = citaService.validarDisponibilidad(request);
 
         assertTrue(disponible);
+        verify(citaRepository, never()).findAll(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Debe indicar que no hay disponibilidad cuando la cita se cruza con otra")
+    void testValidarDisponibilidadConCruce() {
+        ValidacionCitaRequest request = ValidacionCitaRequest.builder()
+                .fecha("2025-05-10")
+                .hora("09:00")
+                .tratamientoId(1L)
+                .dentistaId(2L)
+                .build();
+
+        Tratamiento tratamiento = Tratamiento.builder()
+                .id(1L)
+                .nombre("Ortodoncia")
+                .costo(BigDecimal.valueOf(250.0))
+                .duracion(Duration.ofMinutes(40))
+                .estado(true)
+                .build();
+
+        when(tratamientoRepository.findById(1L)).thenReturn(Optional.of(tratamiento));
+        when(citaRepository.existsSolapamiento(2L, LocalDate.of(2025, 5, 10), LocalTime.of(9, 0), LocalTime.of(9, 40)))
+                .thenReturn(true);
+
+        assertFalse(citaService.validarDisponibilidad(request));
     }
 
     @Test
     @DisplayName("Debe reprogramar una cita correctamente")
     void testReprogramarCita() {
-        Cita cita = new Cita();
+        Cita cita = Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .fecha(LocalDate.of(2025, 5, 14))
+                .hora(LocalTime.of(9, 0))
+                .dentista(Dentista.builder().id(2L).build())
+                .tratamiento(Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(40)).build())
+                .build();
         CitaReprogramarRequest request = CitaReprogramarRequest.builder()
                 .fecha(LocalDate.of(2025, 5, 15))
                 .hora(LocalTime.of(10, 30))
@@ -134,14 +432,41 @@ class CitaServiceTest {
 
         assertEquals(LocalDate.of(2025, 5, 15), cita.getFecha());
         assertEquals(LocalTime.of(10, 30), cita.getHora());
+        verify(citaRepository).existsSolapamientoConOtraCita(2L, LocalDate.of(2025, 5, 15), LocalTime.of(10, 30), LocalTime.of(11, 10), 1L);
         verify(citaRepository).save(cita);
+        verify(notificacionService).encolarReprogramacionCita(cita, LocalDate.of(2025, 5, 14), LocalTime.of(9, 0));
+        verify(eventPublisher).publishEvent(any(CitaModificadaEvent.class));
+    }
+
+    @Test
+    @DisplayName("No debe reprogramar una cita a un horario ocupado")
+    void testReprogramarCitaHorarioOcupado() {
+        Cita cita = Cita.builder()
+                .estado(EstadoCita.PENDIENTE)
+                .fecha(LocalDate.of(2025, 5, 14))
+                .hora(LocalTime.of(9, 0))
+                .dentista(Dentista.builder().id(2L).build())
+                .tratamiento(Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(40)).build())
+                .build();
+        CitaReprogramarRequest request = CitaReprogramarRequest.builder()
+                .fecha(LocalDate.of(2025, 5, 15))
+                .hora(LocalTime.of(10, 30))
+                .build();
+
+        when(citaRepository.findById(1L)).thenReturn(Optional.of(cita));
+        when(citaRepository.existsSolapamientoConOtraCita(2L, LocalDate.of(2025, 5, 15), LocalTime.of(10, 30), LocalTime.of(11, 10), 1L))
+                .thenReturn(true);
+
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.reprogramarCita(1L, request));
+        verify(citaRepository, never()).save(any(Cita.class));
+        verify(notificacionService, never()).encolarReprogramacionCita(any(), any(), any());
     }
 
     @Test
     @DisplayName("Debe eliminar una cita correctamente")
     void testEliminarCita() {
         Cita cita = new Cita();
-        cita.setEstado("Pendiente");
+        cita.setEstado(EstadoCita.PENDIENTE);
         String observacionesDeCancelacion = "Paciente canceló por motivos personales."; // ¡Nuevo!
 
         when(citaRepository.findById(1L)).thenReturn(Optional.of(cita));
@@ -149,8 +474,280 @@ class CitaServiceTest {
         // ¡MODIFICACIÓN AQUÍ! Ahora pasamos las observaciones
         citaService.eliminarCita(1L, observacionesDeCancelacion); // <--- CAMBIO CLAVE
 
-        assertEquals("Cancelada", cita.getEstado());
+        assertEquals(EstadoCita.CANCELADA, cita.getEstado());
         assertEquals(observacionesDeCancelacion, cita.getObservaciones()); // ¡Nuevo! Verificar observaciones
         verify(citaRepository).save(cita);
+        verify(notificacionService).encolarCancelacionReserva(cita);
+    }
+
+    @Test
+    @DisplayName("No debe cancelar una cita que ya fue atendida")
+    void testEliminarCitaAtendida() {
+        Cita cita = new Cita();
+        cita.setId(1L);
+        cita.setEstado(EstadoCita.ATENDIDA);
+
+        when(citaRepository.findById(1L)).thenReturn(Optional.of(cita));
+
+        assertThrows(TransicionEstadoInvalidaException.class, () -> citaService.eliminarCita(1L, "Sin motivo"));
+        assertEquals(EstadoCita.ATENDIDA, cita.getEstado());
+        verify(citaRepository, never()).save(any(Cita.class));
+        verify(notificacionService, never()).encolarCancelacionReserva(any());
+    }
+
+    @Test
+    @DisplayName("No debe reprogramar una cita cancelada")
+    void testReprogramarCitaCancelada() {
+        Cita cita = Cita.builder()
+                .id(1L)
+                .estado(EstadoCita.CANCELADA)
+                .fecha(LocalDate.of(2025, 5, 10))
+                .hora(LocalTime.of(9, 0))
+                .build();
+        CitaReprogramarRequest request = CitaReprogramarRequest.builder()
+                .fecha(LocalDate.of(2025, 5, 15))
+                .hora(LocalTime.of(10, 30))
+                .build();
+
+        when(citaRepository.findById(1L)).thenReturn(Optional.of(cita));
+
+        assertThrows(TransicionEstadoInvalidaException.class, () -> citaService.reprogramarCita(1L, request));
+        assertEquals(LocalDate.of(2025, 5, 10), cita.getFecha());
+        verify(notificacionService, never()).encolarReprogramacionCita(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe cancelar las citas del dentista con un solo aviso por paciente")
+    @SuppressWarnings("unchecked")
+    void testCancelarCitasDeDentista() {
+        Usuario ana = Usuario.builder().id(10L).build();
+        Usuario luis = Usuario.builder().id(11L).build();
+        Cita primera = citaPendiente(1L, ana, LocalDate.of(2025, 5, 14), LocalTime.of(9, 0));
+        Cita segunda = citaPendiente(2L, luis, LocalDate.of(2025, 5, 14), LocalTime.of(10, 0));
+        Cita tercera = citaPendiente(3L, ana, LocalDate.of(2025, 5, 15), LocalTime.of(9, 0));
+        CancelacionMasivaRequest request = CancelacionMasivaRequest.builder()
+                .fechaInicio(LocalDate.of(2025, 5, 14))
+                .fechaFin(LocalDate.of(2025, 5, 15))
+                .observaciones("El dentista no asistirá")
+                .build();
+
+        when(dentistaRepository.existsById(2L)).thenReturn(true);
+        when(citaRepository.findAll(any(Specification.class), eq(Cita.GRAFO_NOTIFICACION)))
+                .thenReturn(List.of(tercera, segunda, primera));
+
+        OperacionMasivaResponse response = citaService.cancelarCitasDeDentista(2L, request);
+
+        assertEquals(3, response.getCitasAfectadas());
+        assertEquals(2, response.getPacientesNotificados());
+        Stream.of(primera, segunda, tercera).forEach(cita -> {
+            assertEquals(EstadoCita.CANCELADA, cita.getEstado());
+            assertEquals("El dentista no asistirá", cita.getObservaciones());
+        });
+        verify(citaRepository).saveAll(List.of(primera, segunda, tercera));
+        verify(notificacionService).encolarCancelacionMasiva(List.of(primera, tercera));
+        verify(notificacionService).encolarCancelacionMasiva(List.of(segunda));
+        verify(eventPublisher, times(3)).publishEvent(any(CitaModificadaEvent.class));
+    }
+
+    @Test
+    @DisplayName("No debe mover ninguna cita si una choca en su nuevo día")
+    @SuppressWarnings("unchecked")
+    void testReprogramarCitasDeDentistaConCruce() {
+        Usuario ana = Usuario.builder().id(10L).build();
+        Cita primera = citaPendiente(1L, ana, MARTES_MASIVA, LocalTime.of(9, 0));
+        Cita segunda = citaPendiente(2L, ana, MARTES_MASIVA, LocalTime.of(11, 0));
+        ReprogramacionMasivaRequest request = ReprogramacionMasivaRequest.builder()
+                .fechaInicio(MARTES_MASIVA)
+                .fechaFin(MARTES_MASIVA)
+                .dias(1)
+                .build();
+
+        when(dentistaRepository.existsById(2L)).thenReturn(true);
+        prepararJornadas(Dia.MARTES, Dia.MIERCOLES);
+        when(citaRepository.findAll(any(Specification.class), eq(Cita.GRAFO_NOTIFICACION)))
+                .thenReturn(List.of(primera, segunda));
+        List<Object[]> ocupadas = List.<Object[]>of(
+                new Object[]{9L, 2L, MARTES_MASIVA.plusDays(1), LocalTime.of(11, 20), LocalTime.of(12, 0)});
+        when(citaRepository.findIntervalosPendientes(List.of(2L), MARTES_MASIVA.plusDays(1), MARTES_MASIVA.plusDays(1)))
+                .thenReturn(ocupadas);
+
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.reprogramarCitasDeDentista(2L, request));
+        assertEquals(MARTES_MASIVA, primera.getFecha());
+        assertEquals(MARTES_MASIVA, segunda.getFecha());
+        verify(citaRepository, never()).saveAll(any());
+        verify(notificacionService, never()).encolarReprogramacionMasiva(any());
+    }
+
+    @Test
+    @DisplayName("No debe mover citas a un día sin jornada, al pasado ni sobre el bloqueo de un paciente")
+    @SuppressWarnings("unchecked")
+    void testReprogramarCitasDeDentistaDestinoInvalido() {
+        Cita cita = citaPendiente(1L, Usuario.builder().id(10L).build(), MARTES_MASIVA, LocalTime.of(9, 0));
+        when(dentistaRepository.existsById(2L)).thenReturn(true);
+        when(citaRepository.findAll(any(Specification.class), eq(Cita.GRAFO_NOTIFICACION))).thenReturn(List.of(cita));
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+        prepararJornadas(Dia.MARTES, Dia.MIERCOLES);
+
+        // El jueves no atiende
+        assertThrows(FueraDeHorarioException.class, () -> citaService.reprogramarCitasDeDentista(2L, reprogramacion(2)));
+        // Mover la cita tantos días atrás la deja en el pasado
+        int alPasado = (int) -ChronoUnit.DAYS.between(LocalDate.now().minusWeeks(1), MARTES_MASIVA);
+        assertThrows(HorarioPasadoException.class, () -> citaService.reprogramarCitasDeDentista(2L, reprogramacion(alPasado)));
+        bloqueosHorario.bloquear(2L, 20L, MARTES_MASIVA.plusDays(1), LocalTime.of(9, 20), LocalTime.of(10, 0));
+        assertThrows(HorarioNoDisponibleException.class, () -> citaService.reprogramarCitasDeDentista(2L, reprogramacion(1)));
+
+        assertEquals(MARTES_MASIVA, cita.getFecha());
+        verify(citaRepository, never()).saveAll(any());
+    }
+
+    private ReprogramacionMasivaRequest reprogramacion(int dias) {
+        return ReprogramacionMasivaRequest.builder()
+                .fechaInicio(MARTES_MASIVA)
+                .fechaFin(MARTES_MASIVA)
+                .dias(dias)
+                .build();
+    }
+
+    private void prepararJornadas(Dia... dias) {
+        when(horarioRepository.findByDentistaIdIn(List.of(2L))).thenReturn(Stream.of(dias)
+                .map(dia -> Horario.builder().dia(dia).horaComienzo(LocalTime.of(8, 0)).horaFin(LocalTime.of(17, 0)).build())
+                .toList());
+    }
+
+    private void prepararSerie(LocalTime horaComienzo, LocalTime horaFin) {
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).costo(BigDecimal.TEN).duracion(Duration.ofMinutes(40)).build()));
+        when(tipoDocumentoRepository.findByAcronimo("DNI")).thenReturn(Optional.of(mock()));
+        when(citaRepository.existenParticipantes(2L, 1L)).thenReturn(existencia(true, true));
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+        when(usuarioRepository.getReferenceById(2L)).thenReturn(Usuario.builder().id(2L).build());
+        when(horarioRepository.findByDentistaIdIn(any())).thenReturn(List.of(
+                Horario.builder().dia(Dia.LUNES).horaComienzo(horaComienzo).horaFin(horaFin).build()));
+    }
+
+    private void prepararJornadaSabado() {
+        when(horarioRepository.findByDentistaIdIn(List.of(1L))).thenReturn(List.of(
+                Horario.builder().dia(Dia.SABADO).horaComienzo(LocalTime.of(8, 0)).horaFin(LocalTime.of(17, 0)).build()));
+    }
+
+    private BloqueoHorarioRequest solicitudBloqueo(Long usuarioId, LocalDate fecha, LocalTime hora) {
+        return BloqueoHorarioRequest.builder()
+                .dentistaId(1L)
+                .usuarioId(usuarioId)
+                .tratamientoId(3L)
+                .fecha(fecha)
+                .hora(hora)
+                .build();
+    }
+
+    private SerieCitasRequest solicitudSerie(LocalTime hora) {
+        CitaRequest primera = solicitudCita(2L, hora, null);
+        primera.setFecha(LUNES_SERIE);
+        return SerieCitasRequest.builder().cita(primera).intervaloSemanas(4).ocurrencias(4).build();
+    }
+
+    private CitaRequest solicitudCita(Long usuarioId, LocalTime hora, String bloqueoId) {
+        return CitaRequest.builder()
+                .fecha(SABADO_BLOQUEO)
+                .hora(hora)
+                .nombres("Ana")
+                .apellidoPaterno("Morales")
+                .apellidoMaterno("López")
+                .tipoDocumento("DNI")
+                .numeroIdentidad("12345678")
+                .sexo("FEMENINO")
+                .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                .dentistaId(1L)
+                .usuarioId(usuarioId)
+                .tratamientoId(3L)
+                .bloqueoId(bloqueoId)
+                .build();
+    }
+
+    private CitaRepository.ExistenciaParticipantes existencia(boolean usuario, boolean dentista) {
+        return new CitaRepository.ExistenciaParticipantes() {
+            @Override
+            public boolean getUsuario() {
+                return usuario;
+            }
+
+            @Override
+            public boolean getDentista() {
+                return dentista;
+            }
+        };
+    }
+
+    private Cita citaPendiente(Long id, Usuario usuario, LocalDate fecha, LocalTime hora) {
+        return Cita.builder()
+                .id(id)
+                .estado(EstadoCita.PENDIENTE)
+                .fecha(fecha)
+                .hora(hora)
+                .usuario(usuario)
+                .dentista(Dentista.builder().id(2L).build())
+                .tratamiento(Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(40)).build())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Debe devolver la página por cursor con el cursor de la última cita")
+    @SuppressWarnings("unchecked")
+    void testObtenerCitasPorCursor() {
+        List<CitaResponse> filas = List.of(
+                CitaResponse.builder().id(9L).fecha(LocalDate.of(2030, 1, 2)).hora(LocalTime.of(10, 0)).build(),
+                CitaResponse.builder().id(7L).fecha(LocalDate.of(2030, 1, 2)).hora(LocalTime.of(9, 0)).build(),
+                CitaResponse.builder().id(8L).fecha(LocalDate.of(2030, 1, 1)).hora(LocalTime.of(9, 0)).build()
+        );
+        when(citaRepository.findResumenes(any(Specification.class), any(Sort.class), eq(3))).thenReturn(filas);
+
+        PaginaCitasResponse pagina = citaService.obtenerCitasPorCursor(null, null, null, null, null, null, null, null, 2, false);
+
+        assertEquals(2, pagina.getContenido().size());
+        assertTrue(pagina.isHayMas());
+        assertEquals(new CursorCita(LocalDate.of(2030, 1, 2), LocalTime.of(9, 0), 7L), CursorCita.decodificar(pagina.getSiguienteCursor()));
+        assertNull(pagina.getTotal());
+        verify(citaRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("La última página por cursor no trae cursor siguiente y cuenta solo si se pide")
+    @SuppressWarnings("unchecked")
+    void testObtenerCitasPorCursorUltimaPagina() {
+        String cursor = new CursorCita(LocalDate.of(2030, 1, 2), LocalTime.of(9, 0), 7L).codificar();
+        when(citaRepository.findResumenes(any(Specification.class), any(Sort.class), eq(11))).thenReturn(List.of(
+                CitaResponse.builder().id(8L).fecha(LocalDate.of(2030, 1, 1)).hora(LocalTime.of(9, 0)).build()
+        ));
+        when(citaRepository.count(any(Specification.class))).thenReturn(3L);
+
+        PaginaCitasResponse pagina = citaService.obtenerCitasPorCursor(null, null, null, null, null, null, null, cursor, 10, true);
+
+        assertFalse(pagina.isHayMas());
+        assertNull(pagina.getSiguienteCursor());
+        assertEquals(3L, pagina.getTotal());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un cursor mal formado")
+    void testObtenerCitasPorCursorInvalido() {
+        assertThrows(CursorInvalidoException.class,
+                () -> citaService.obtenerCitasPorCursor(null, null, null, null, null, null, null, "no-es-un-cursor", 10, false));
+    }
+
+    @Test
+    @DisplayName("Debe entregar las citas exportadas una por una y cerrar el cursor")
+    @SuppressWarnings("unchecked")
+    void testRecorrerCitas() {
+        AtomicBoolean cerrado = new AtomicBoolean();
+        Stream<CitaResponse> filas = Stream.of(CitaResponse.builder().id(1L).build(), CitaResponse.builder().id(2L).build())
+                .onClose(() -> cerrado.set(true));
+        when(citaRepository.streamResumenes(any(Specification.class), any(Sort.class))).thenReturn(filas);
+        List<Long> recibidas = new ArrayList<>();
+
+        citaService.recorrerCitas(null, 1L, null, null, null, null, null, cita -> recibidas.add(cita.getId()));
+
+        assertEquals(List.of(1L, 2L), recibidas);
+        assertTrue(cerrado.get());
+        verify(citaRepository, never()).findResumenes(any(Specification.class));
     }
 }
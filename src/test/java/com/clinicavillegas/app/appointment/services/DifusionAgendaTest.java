@@ -0,0 +1,103 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.appointment.dto.response.CambioAgendaResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.services.impl.DefaultAgendaService;
+import com.clinicavillegas.app.appointment.services.impl.DifusionAgenda;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DifusionAgendaTest {
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private DefaultAgendaService agendaA;
+    private DefaultAgendaService agendaB;
+    private DifusionAgenda nodoA;
+    private DifusionAgenda nodoB;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        agendaA = mock(DefaultAgendaService.class);
+        agendaB = mock(DefaultAgendaService.class);
+        nodoA = new DifusionAgenda(dataSource, agendaA, objectMapper, true, 100, 100);
+        nodoB = new DifusionAgenda(dataSource, agendaB, objectMapper, true, 100, 100);
+        nodoA.iniciar();
+        nodoB.iniciar();
+        await().atMost(Duration.ofSeconds(5)).until(() -> nodoA.escuchando() && nodoB.escuchando());
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodoA.detener();
+        nodoB.detener();
+    }
+
+    @Test
+    @DisplayName("Un cambio confirmado en una instancia llega a las demás, pero no vuelve a la que lo publicó")
+    void testCambioLlegaALasDemasInstancias() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> nodoA.publicar(evento(30L)));
+
+        verify(agendaB, timeout(5000)).recibir(argThat((CambioAgendaResponse cambio) ->
+                cambio.getCitaId() == 30L && LocalTime.of(9, 30).equals(cambio.getHora())));
+        verify(agendaA, after(500).never()).recibir(any());
+    }
+
+    @Test
+    @DisplayName("Un cambio de una transacción revertida no se difunde")
+    void testCambioRevertidoNoSeDifunde() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            nodoA.publicar(evento(31L));
+            estado.setRollbackOnly();
+        });
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> nodoA.publicar(evento(32L)));
+
+        // Los avisos llegan en orden de confirmación: cuando llega el 32 el 31 ya habría llegado
+        verify(agendaB, timeout(5000)).recibir(argThat((CambioAgendaResponse cambio) -> cambio.getCitaId() == 32L));
+        verify(agendaB, never()).recibir(argThat((CambioAgendaResponse cambio) -> cambio.getCitaId() == 31L));
+    }
+
+    private CitaModificadaEvent evento(Long citaId) {
+        return CitaModificadaEvent.builder()
+                .citaId(citaId)
+                .estado(EstadoCita.PENDIENTE)
+                .dentistaId(1L)
+                .fecha(LocalDate.of(2030, 5, 14))
+                .hora(LocalTime.of(9, 30))
+                .horaFin(LocalTime.of(10, 0))
+                .build();
+    }
+}
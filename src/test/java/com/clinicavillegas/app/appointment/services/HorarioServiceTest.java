@@ -30,11 +30,13 @@ public class HorarioServiceTest {
     private HorarioRepository horarioRepository;
     @Mock
     private DentistaRepository dentistaRepository;
+    @Mock
+    private OcupacionService ocupacionService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        horarioService = new DefaultHorarioService(horarioRepository, dentistaRepository);
+        horarioService = new DefaultHorarioService(horarioRepository, dentistaRepository, ocupacionService);
     }
 
     @Test
@@ -54,6 +56,7 @@ public class HorarioServiceTest {
         horarioService.agregarHorario(request);
 
         verify(horarioRepository).save(any(Horario.class));
+        verify(ocupacionService).invalidarDentista(1L);
     }
 
     @Test
@@ -127,8 +130,13 @@ public class HorarioServiceTest {
     @Test
     @DisplayName("Debe eliminar un horario por ID")
     void testEliminarHorario() {
+        Dentista dentista = Dentista.builder().id(2L).build();
+        when(horarioRepository.findById(5L)).thenReturn(Optional.of(Horario.builder().id(5L).dentista(dentista).build()));
+
         horarioService.eliminarHorario(5L);
+
         verify(horarioRepository).deleteById(5L);
+        verify(ocupacionService).invalidarDentista(2L);
     }
 
     @Test
@@ -0,0 +1,304 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.dto.request.ListaEsperaRequest;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.EstadoSolicitudEspera;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.SolicitudEsperaRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.services.impl.AdmisionReservas;
+import com.clinicavillegas.app.appointment.services.impl.BloqueosHorario;
+import com.clinicavillegas.app.appointment.services.impl.DefaultListaEsperaService;
+import com.clinicavillegas.app.appointment.services.impl.ListaEspera;
+import com.clinicavillegas.app.appointment.services.impl.ResolutorReferencias;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import com.clinicavillegas.app.email.services.NotificacionService;
+import com.clinicavillegas.app.user.models.Usuario;
+import com.clinicavillegas.app.user.repositories.TipoDocumentoRepository;
+import com.clinicavillegas.app.user.repositories.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ListaEsperaServiceTest {
+
+    private static final LocalDate FECHA = LocalDate.now().plusDays(7);
+
+    private DefaultListaEsperaService listaEsperaService;
+    private ListaEspera listaEspera;
+    private BloqueosHorario bloqueosHorario;
+
+    @Mock
+    private SolicitudEsperaRepository solicitudEsperaRepository;
+    @Mock
+    private DentistaRepository dentistaRepository;
+    @Mock
+    private UsuarioRepository usuarioRepository;
+    @Mock
+    private CitaRepository citaRepository;
+    @Mock
+    private TratamientoRepository tratamientoRepository;
+    @Mock
+    private TipoDocumentoRepository tipoDocumentoRepository;
+    @Mock
+    private NotificacionService notificacionService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        listaEspera = new ListaEspera();
+        bloqueosHorario = new BloqueosHorario(10, 3, 64);
+        listaEsperaService = new DefaultListaEsperaService(solicitudEsperaRepository, dentistaRepository, usuarioRepository,
+                citaRepository, notificacionService,
+                new ResolutorReferencias(citaRepository, usuarioRepository, dentistaRepository, tratamientoRepository, tipoDocumentoRepository),
+                new AdmisionReservas(16), bloqueosHorario, listaEspera, transactionManager, 120);
+        when(tratamientoRepository.findById(3L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(3L).nombre("Limpieza").costo(BigDecimal.TEN).duracion(Duration.ofMinutes(30)).build()));
+        when(usuarioRepository.existsById(2L)).thenReturn(true);
+        when(usuarioRepository.getReferenceById(2L)).thenReturn(Usuario.builder().id(2L).build());
+        when(solicitudEsperaRepository.save(any(SolicitudEspera.class))).thenAnswer(invocacion -> {
+            SolicitudEspera solicitud = invocacion.getArgument(0);
+            if (solicitud.getId() == null) {
+                solicitud.setId(9L);
+            }
+            return solicitud;
+        });
+    }
+
+    @Test
+    @DisplayName("Una solicitud por especialización queda indexada para todos los dentistas activos de esa especialización")
+    void testRegistrarPorEspecializacion() {
+        when(dentistaRepository.findIdsActivosPorEspecializacion("Ortodoncia")).thenReturn(List.of(1L, 5L));
+
+        listaEsperaService.registrar(solicitud(null, "Ortodoncia"));
+
+        assertEquals(1, listaEspera.pendientes());
+        assertTrue(listaEspera.tomar(5L, FECHA, Duration.ofMinutes(30)).isPresent());
+    }
+
+    @Test
+    @DisplayName("No debe registrar una solicitud si no hay dentistas de la especialización")
+    void testRegistrarEspecializacionSinDentistas() {
+        when(dentistaRepository.findIdsActivosPorEspecializacion("Ortodoncia")).thenReturn(List.of());
+
+        assertThrows(ResourceNotFoundException.class, () -> listaEsperaService.registrar(solicitud(null, "Ortodoncia")));
+        verify(solicitudEsperaRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Al cancelarse una cita debe bloquear el hueco para el paciente en espera y encolar la oferta")
+    void testOfrecerHueco() {
+        SolicitudEspera solicitud = registrada();
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+
+        listaEsperaService.ofrecerHueco(cancelacion(LocalTime.of(10, 0), LocalTime.of(10, 40)));
+
+        assertEquals(EstadoSolicitudEspera.OFRECIDA, solicitud.getEstado());
+        assertEquals(LocalTime.of(10, 0), solicitud.getHoraOfrecida());
+        BloqueosHorario.Bloqueo bloqueo = bloqueosHorario.obtener(solicitud.getBloqueoId()).orElseThrow();
+        assertEquals(2L, bloqueo.usuarioId());
+        assertEquals(LocalTime.of(10, 30), bloqueo.horaFin());
+        // El paciente tiene que leer el correo: la oferta dura más que el bloqueo de un formulario
+        assertTrue(solicitud.getOfertaVence().isAfter(LocalDateTime.now().plusMinutes(110)));
+        assertEquals(50L, solicitud.getCitaLiberadaId());
+        verify(notificacionService).encolarOfertaListaEspera(solicitud, 50L);
+        assertEquals(0, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Si otra reserva ya tomó el hueco la solicitud sigue esperando")
+    void testOfrecerHuecoYaOcupado() {
+        SolicitudEspera solicitud = registrada();
+        when(citaRepository.existsSolapamiento(1L, FECHA, LocalTime.of(10, 0), LocalTime.of(10, 30))).thenReturn(true);
+
+        listaEsperaService.ofrecerHueco(cancelacion(LocalTime.of(10, 0), LocalTime.of(10, 40)));
+
+        assertEquals(EstadoSolicitudEspera.ESPERANDO, solicitud.getEstado());
+        verify(notificacionService, never()).encolarOfertaListaEspera(any(), any());
+        assertEquals(1, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Un hueco más corto que el tratamiento o un cambio que no es cancelación no se ofrece")
+    void testHuecoNoAprovechable() {
+        registrada();
+
+        listaEsperaService.ofrecerHueco(cancelacion(LocalTime.of(10, 0), LocalTime.of(10, 20)));
+        listaEsperaService.ofrecerHueco(cancelacion(LocalTime.of(10, 0), LocalTime.of(10, 40)).toBuilder()
+                .estado(EstadoCita.PENDIENTE).build());
+
+        verifyNoInteractions(notificacionService);
+        verify(citaRepository, never()).existsSolapamiento(any(), any(), any(), any());
+        assertEquals(1, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Si la primera solicitud del índice ya no espera, el hueco pasa a la siguiente")
+    void testOfrecerHuecoSaltaSolicitudesQueYaNoEsperan() {
+        SolicitudEspera siguiente = registrada();
+        // Más antigua que la registrada, así que sale primero del índice, pero el paciente ya la retiró
+        listaEspera.agregar(new ListaEspera.Entrada(5L, 4L, Duration.ofMinutes(30), List.of(1L), FECHA, FECHA));
+        when(solicitudEsperaRepository.findById(5L)).thenReturn(Optional.of(
+                SolicitudEspera.builder().id(5L).estado(EstadoSolicitudEspera.CANCELADA).build()));
+
+        listaEsperaService.ofrecerHueco(cancelacion(LocalTime.of(10, 0), LocalTime.of(10, 40)));
+
+        assertEquals(EstadoSolicitudEspera.OFRECIDA, siguiente.getEstado());
+        verify(notificacionService).encolarOfertaListaEspera(siguiente, 50L);
+        assertEquals(0, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Una oferta que vence sin reserva pasa al siguiente de la lista y la solicitud vuelve a esperar")
+    void testVencerOfertaSinReserva() {
+        SolicitudEspera siguiente = registrada();
+        SolicitudEspera vencida = ofertaVencida();
+        when(solicitudEsperaRepository.findByEstadoAndOfertaVenceBefore(eq(EstadoSolicitudEspera.OFRECIDA), any()))
+                .thenReturn(List.of(vencida));
+        when(solicitudEsperaRepository.retirarOferta(eq(20L), any())).thenReturn(1);
+
+        listaEsperaService.vencerOfertas();
+
+        assertEquals(EstadoSolicitudEspera.OFRECIDA, siguiente.getEstado());
+        assertEquals(LocalTime.of(10, 0), siguiente.getHoraOfrecida());
+        verify(notificacionService).encolarOfertaListaEspera(siguiente, 50L);
+        // La solicitud vencida vuelve al índice después de la oferta, así que no recibe el mismo hueco
+        assertEquals(20L, listaEspera.tomar(1L, FECHA, Duration.ofMinutes(30)).orElseThrow().solicitudId());
+    }
+
+    @Test
+    @DisplayName("Si el paciente reservó el hueco la oferta queda aceptada y no se ofrece a nadie más")
+    void testVencerOfertaAceptada() {
+        SolicitudEspera vencida = ofertaVencida();
+        when(solicitudEsperaRepository.findByEstadoAndOfertaVenceBefore(eq(EstadoSolicitudEspera.OFRECIDA), any()))
+                .thenReturn(List.of(vencida));
+        when(citaRepository.existsReservaDelPaciente(4L, 1L, FECHA, LocalTime.of(10, 0))).thenReturn(true);
+
+        listaEsperaService.vencerOfertas();
+
+        verify(solicitudEsperaRepository).aceptarOferta(eq(20L), any());
+        verify(solicitudEsperaRepository, never()).retirarOferta(any(), any());
+        verifyNoInteractions(notificacionService);
+        assertEquals(0, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Si otra instancia ya cerró la oferta vencida no se hace nada más")
+    void testVencerOfertaYaCerrada() {
+        registrada();
+        when(solicitudEsperaRepository.findByEstadoAndOfertaVenceBefore(eq(EstadoSolicitudEspera.OFRECIDA), any()))
+                .thenReturn(List.of(ofertaVencida()));
+        when(solicitudEsperaRepository.retirarOferta(eq(20L), any())).thenReturn(0);
+
+        listaEsperaService.vencerOfertas();
+
+        verifyNoInteractions(notificacionService);
+        assertEquals(1, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("La sincronización indexa lo registrado en otra instancia y quita lo que allí se canceló")
+    void testSincronizarCambiosDeOtraInstancia() {
+        listaEspera.agregar(new ListaEspera.Entrada(5L, 4L, Duration.ofMinutes(30), List.of(1L), FECHA, FECHA));
+        when(dentistaRepository.findIdsActivosPorEspecializacion("Ortodoncia")).thenReturn(List.of(1L, 5L));
+        SolicitudEsperaRepository.SolicitudModificada nueva = modificada(7L, EstadoSolicitudEspera.ESPERANDO);
+        SolicitudEsperaRepository.SolicitudModificada cancelada = modificada(5L, EstadoSolicitudEspera.CANCELADA);
+        when(solicitudEsperaRepository.findModificadasDesde(any())).thenReturn(List.of(nueva, cancelada));
+
+        // Antes de la carga inicial no hay desde dónde leer
+        listaEsperaService.sincronizar();
+        verify(solicitudEsperaRepository, never()).findModificadasDesde(any());
+
+        listaEsperaService.cargar();
+        listaEsperaService.sincronizar();
+
+        assertEquals(1, listaEspera.pendientes());
+        assertEquals(7L, listaEspera.tomar(5L, FECHA, Duration.ofMinutes(30)).orElseThrow().solicitudId());
+    }
+
+    private SolicitudEsperaRepository.SolicitudModificada modificada(Long id, EstadoSolicitudEspera estado) {
+        SolicitudEsperaRepository.SolicitudModificada solicitud = mock(SolicitudEsperaRepository.SolicitudModificada.class);
+        when(solicitud.getId()).thenReturn(id);
+        when(solicitud.getUsuarioId()).thenReturn(6L);
+        when(solicitud.getDentistaId()).thenReturn(null);
+        when(solicitud.getEspecializacion()).thenReturn("Ortodoncia");
+        when(solicitud.getDuracion()).thenReturn(Duration.ofMinutes(30));
+        when(solicitud.getFechaDesde()).thenReturn(FECHA.minusDays(1));
+        when(solicitud.getFechaHasta()).thenReturn(FECHA.plusDays(1));
+        when(solicitud.getEstado()).thenReturn(estado);
+        return solicitud;
+    }
+
+    private SolicitudEspera ofertaVencida() {
+        Dentista dentista = Dentista.builder().id(1L).build();
+        return SolicitudEspera.builder()
+                .id(20L)
+                .usuario(Usuario.builder().id(4L).build())
+                .tratamiento(Tratamiento.builder().id(3L).duracion(Duration.ofMinutes(30)).build())
+                .dentista(dentista)
+                .fechaDesde(FECHA.minusDays(2))
+                .fechaHasta(FECHA.plusDays(2))
+                .estado(EstadoSolicitudEspera.OFRECIDA)
+                .dentistaOfrecido(dentista)
+                .fechaOfrecida(FECHA)
+                .horaOfrecida(LocalTime.of(10, 0))
+                .ofertaVence(LocalDateTime.now().minusMinutes(1))
+                .citaLiberadaId(50L)
+                .build();
+    }
+
+    private SolicitudEspera registrada() {
+        when(dentistaRepository.existsById(1L)).thenReturn(true);
+        when(dentistaRepository.getReferenceById(1L)).thenReturn(Dentista.builder().id(1L).build());
+        listaEsperaService.registrar(solicitud(1L, null));
+        SolicitudEspera solicitud = SolicitudEspera.builder().id(9L).estado(EstadoSolicitudEspera.ESPERANDO).build();
+        when(solicitudEsperaRepository.findById(9L)).thenReturn(Optional.of(solicitud));
+        return solicitud;
+    }
+
+    private ListaEsperaRequest solicitud(Long dentistaId, String especializacion) {
+        return ListaEsperaRequest.builder()
+                .usuarioId(2L)
+                .tratamientoId(3L)
+                .dentistaId(dentistaId)
+                .especializacion(especializacion)
+                .fechaDesde(FECHA.minusDays(2))
+                .fechaHasta(FECHA.plusDays(2))
+                .build();
+    }
+
+    private CitaModificadaEvent cancelacion(LocalTime hora, LocalTime horaFin) {
+        return CitaModificadaEvent.builder()
+                .citaId(50L)
+                .estado(EstadoCita.CANCELADA)
+                .usuarioId(7L)
+                .dentistaId(1L)
+                .fecha(FECHA)
+                .hora(hora)
+                .horaFin(horaFin)
+                .build();
+    }
+}
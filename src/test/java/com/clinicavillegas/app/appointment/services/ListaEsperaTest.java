@@ -0,0 +1,98 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.services.impl.ListaEspera;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListaEsperaTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 4, 2);
+
+    private ListaEspera listaEspera;
+
+    @BeforeEach
+    void setUp() {
+        listaEspera = new ListaEspera();
+    }
+
+    @Test
+    @DisplayName("Debe ofrecer el hueco al tratamiento más largo que quepa y, a igual duración, al más antiguo")
+    void testMejorSolicitud() {
+        agregar(1L, 40, List.of(1L), FECHA, FECHA);
+        agregar(2L, 20, List.of(1L), FECHA, FECHA);
+        agregar(3L, 30, List.of(1L), FECHA, FECHA);
+        agregar(4L, 30, List.of(1L), FECHA, FECHA);
+
+        assertEquals(3L, tomar(1L, FECHA, 30).orElseThrow().solicitudId());
+        assertEquals(4L, tomar(1L, FECHA, 30).orElseThrow().solicitudId());
+        assertEquals(2L, tomar(1L, FECHA, 30).orElseThrow().solicitudId());
+        assertTrue(tomar(1L, FECHA, 30).isEmpty());
+        assertEquals(1L, tomar(1L, FECHA, 45).orElseThrow().solicitudId());
+    }
+
+    @Test
+    @DisplayName("Una solicitud ofrecida sale de todos los días y dentistas en los que estaba")
+    void testTomarQuitaDeTodosLosDias() {
+        agregar(1L, 30, List.of(1L, 2L), FECHA, FECHA.plusDays(6));
+
+        assertTrue(tomar(2L, FECHA.plusDays(3), 30).isPresent());
+
+        assertTrue(tomar(1L, FECHA, 30).isEmpty());
+        assertTrue(tomar(2L, FECHA.plusDays(6), 30).isEmpty());
+        assertEquals(0, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("Solo encuentra solicitudes del mismo dentista dentro de su ventana de fechas")
+    void testFueraDeVentana() {
+        agregar(1L, 30, List.of(1L), FECHA, FECHA.plusDays(2));
+
+        assertTrue(tomar(2L, FECHA, 30).isEmpty());
+        assertTrue(tomar(1L, FECHA.plusDays(3), 30).isEmpty());
+        assertTrue(tomar(1L, FECHA.minusDays(1), 30).isEmpty());
+        assertTrue(tomar(1L, FECHA.plusDays(2), 30).isPresent());
+    }
+
+    @Test
+    @DisplayName("Una solicitud retirada deja de recibir huecos")
+    void testQuitar() {
+        agregar(1L, 30, List.of(1L), FECHA, FECHA.plusDays(1));
+        agregar(2L, 20, List.of(1L), FECHA, FECHA.plusDays(1));
+
+        listaEspera.quitar(1L);
+
+        assertEquals(2L, tomar(1L, FECHA, 30).orElseThrow().solicitudId());
+        assertEquals(0, listaEspera.pendientes());
+    }
+
+    @Test
+    @DisplayName("La depuración descarta las solicitudes cuya ventana ya pasó")
+    void testDepurar() {
+        LocalDate hoy = LocalDate.now();
+        agregar(1L, 30, List.of(1L), hoy.minusDays(5), hoy.minusDays(1));
+        agregar(2L, 30, List.of(1L), hoy.minusDays(1), hoy.plusDays(1));
+
+        listaEspera.depurar();
+
+        assertEquals(1, listaEspera.pendientes());
+        assertTrue(tomar(1L, hoy.minusDays(1), 30).isEmpty());
+        assertEquals(2L, tomar(1L, hoy, 30).orElseThrow().solicitudId());
+    }
+
+    private void agregar(Long solicitudId, int minutos, List<Long> dentistaIds, LocalDate desde, LocalDate hasta) {
+        listaEspera.agregar(new ListaEspera.Entrada(solicitudId, 100 + solicitudId, Duration.ofMinutes(minutos),
+                dentistaIds, desde, hasta));
+    }
+
+    private Optional<ListaEspera.Entrada> tomar(Long dentistaId, LocalDate fecha, int minutos) {
+        return listaEspera.tomar(dentistaId, fecha, Duration.ofMinutes(minutos));
+    }
+}
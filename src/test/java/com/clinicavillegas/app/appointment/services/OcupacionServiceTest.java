@@ -0,0 +1,250 @@
+package com.clinicavillegas.app.appointment.services;
+
+import com.clinicavillegas.app.appointment.dto.response.DisponibilidadMensualResponse;
+import com.clinicavillegas.app.appointment.dto.response.HuecoDisponibleResponse;
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.Dentista;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.Dia;
+import com.clinicavillegas.app.appointment.models.Horario;
+import com.clinicavillegas.app.appointment.models.Tratamiento;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.DentistaRepository;
+import com.clinicavillegas.app.appointment.repositories.HorarioRepository;
+import com.clinicavillegas.app.appointment.repositories.TratamientoRepository;
+import com.clinicavillegas.app.appointment.services.impl.DefaultOcupacionService;
+import com.clinicavillegas.app.common.exceptions.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OcupacionServiceTest {
+
+    // Un lunes lejano para que la búsqueda no dependa de la hora actual
+    private static final LocalDate LUNES = LocalDate.now().plusYears(1).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    private DefaultOcupacionService ocupacionService;
+
+    @Mock
+    private CitaRepository citaRepository;
+    @Mock
+    private HorarioRepository horarioRepository;
+    @Mock
+    private DentistaRepository dentistaRepository;
+    @Mock
+    private TratamientoRepository tratamientoRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ocupacionService = new DefaultOcupacionService(
+                citaRepository, horarioRepository, dentistaRepository, tratamientoRepository, 10, 100
+        );
+        when(tratamientoRepository.findById(1L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(1L).nombre("Limpieza").costo(BigDecimal.TEN).duracion(Duration.ofMinutes(30)).estado(true).build()
+        ));
+        when(dentistaRepository.findIdsActivos()).thenReturn(List.of(1L, 2L));
+        when(horarioRepository.findByDentistaIdIn(any())).thenReturn(List.of(
+                horario(1L, Dia.LUNES, LocalTime.of(9, 0), LocalTime.of(17, 0)),
+                horario(2L, Dia.LUNES, LocalTime.of(10, 0), LocalTime.of(18, 0))
+        ));
+    }
+
+    @Test
+    @DisplayName("Debe devolver el primer hueco libre entre todos los dentistas")
+    void testBuscarProximoHueco() {
+        List<Object[]> intervalos = new ArrayList<>();
+        intervalos.add(new Object[]{10L, 1L, LUNES, LocalTime.of(9, 0), LocalTime.of(9, 40)});
+        intervalos.add(new Object[]{11L, 1L, LUNES, LocalTime.of(10, 0), LocalTime.of(12, 0)});
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(intervalos);
+
+        Optional<HuecoDisponibleResponse> hueco = ocupacionService.buscarProximoHueco(1L, null, LUNES, LUNES);
+
+        // 09:40 - 10:00 no alcanza para 30 minutos, el dentista 2 empieza a las 10:00
+        assertTrue(hueco.isPresent());
+        assertEquals(2L, hueco.get().getDentistaId());
+        assertEquals(LocalTime.of(10, 0), hueco.get().getHora());
+        assertEquals(LocalTime.of(10, 30), hueco.get().getHoraFin());
+    }
+
+    @Test
+    @DisplayName("Debe saltar los días sin horario de atención")
+    void testBuscarProximoHuecoDiaSinHorario() {
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+
+        Optional<HuecoDisponibleResponse> hueco = ocupacionService.buscarProximoHueco(1L, 1L, LUNES.minusDays(2), LUNES);
+
+        assertTrue(hueco.isPresent());
+        assertEquals(LUNES, hueco.get().getFecha());
+        assertEquals(LocalTime.of(9, 0), hueco.get().getHora());
+    }
+
+    @Test
+    @DisplayName("Debe actualizar el mapa con los eventos de citas sin volver a consultar la base de datos")
+    void testActualizarOcupacionConEventos() {
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+        assertEquals(LocalTime.of(9, 0), ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES).orElseThrow().getHora());
+
+        ocupacionService.actualizarOcupacion(evento(20L, EstadoCita.PENDIENTE, LocalTime.of(9, 0), LocalTime.of(9, 30)));
+        ocupacionService.actualizarOcupacion(evento(21L, EstadoCita.PENDIENTE, LocalTime.of(9, 30), LocalTime.of(9, 50)));
+        assertEquals(LocalTime.of(9, 50), ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES).orElseThrow().getHora());
+
+        ocupacionService.actualizarOcupacion(evento(20L, EstadoCita.CANCELADA, LocalTime.of(9, 0), LocalTime.of(9, 30)));
+        assertEquals(LocalTime.of(9, 0), ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES).orElseThrow().getHora());
+
+        verify(citaRepository, times(1)).findIntervalosPendientes(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe liberar los bloques de la cita cancelada sin liberar los que comparte con otra")
+    void testLiberarBloqueCompartido() {
+        when(tratamientoRepository.findById(2L)).thenReturn(Optional.of(
+                Tratamiento.builder().id(2L).nombre("Curación").costo(BigDecimal.TEN).duracion(Duration.ofMinutes(35)).estado(true).build()
+        ));
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+        ocupacionService.buscarProximoHueco(2L, 1L, LUNES, LUNES);
+
+        // 09:00 - 09:32 y 09:32 - 10:00 comparten el bloque de 09:30
+        ocupacionService.actualizarOcupacion(evento(30L, EstadoCita.PENDIENTE, LocalTime.of(9, 0), LocalTime.of(9, 32)));
+        ocupacionService.actualizarOcupacion(evento(31L, EstadoCita.PENDIENTE, LocalTime.of(9, 32), LocalTime.of(10, 0)));
+        ocupacionService.actualizarOcupacion(evento(30L, EstadoCita.CANCELADA, LocalTime.of(9, 0), LocalTime.of(9, 32)));
+
+        // Si el bloque de 09:30 se hubiera liberado, 35 minutos cabrían a las 09:00
+        assertEquals(LocalTime.of(10, 0), ocupacionService.buscarProximoHueco(2L, 1L, LUNES, LUNES).orElseThrow().getHora());
+    }
+
+    @Test
+    @DisplayName("Debe volver a armar los mapas del dentista cuando cambia su horario")
+    void testInvalidarDentista() {
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(List.of());
+        ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES);
+
+        ocupacionService.invalidarDentista(1L);
+        ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES);
+
+        verify(citaRepository, times(2)).findIntervalosPendientes(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe devolver vacío si no hay huecos en el rango")
+    void testSinHuecos() {
+        List<Object[]> intervalos = new ArrayList<>();
+        intervalos.add(new Object[]{40L, 1L, LUNES, LocalTime.of(9, 0), LocalTime.of(17, 0)});
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(intervalos);
+
+        assertTrue(ocupacionService.buscarProximoHueco(1L, 1L, LUNES, LUNES).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe armar la matriz del mes con los huecos que caben por dentista y día")
+    void testObtenerDisponibilidadMensual() {
+        List<Object[]> intervalos = new ArrayList<>();
+        intervalos.add(new Object[]{10L, 1L, LUNES, LocalTime.of(9, 0), LocalTime.of(9, 40)});
+        intervalos.add(new Object[]{11L, 1L, LUNES, LocalTime.of(10, 0), LocalTime.of(12, 0)});
+        when(citaRepository.findIntervalosPendientes(any(), any(), any())).thenReturn(intervalos);
+        YearMonth mes = YearMonth.from(LUNES);
+
+        DisponibilidadMensualResponse disponibilidad = ocupacionService.obtenerDisponibilidadMensual(1L, null, mes);
+
+        assertEquals(List.of(1L, 2L), disponibilidad.getDentistas());
+        assertEquals(30, disponibilidad.getDuracionMinutos());
+        int dia = LUNES.getDayOfMonth() - 1;
+        // 09:40 - 10:00 no alcanza para 30 minutos; de 12:00 a 17:00 caben 10
+        assertEquals(10, disponibilidad.getHuecos()[0][dia]);
+        assertEquals(16, disponibilidad.getHuecos()[1][dia]);
+        for (int d = 0; d < mes.lengthOfMonth(); d++) {
+            boolean lunes = mes.atDay(d + 1).getDayOfWeek() == DayOfWeek.MONDAY;
+            assertEquals(lunes ? 16 : 0, disponibilidad.getHuecos()[1][d]);
+        }
+        // Los horarios y las citas de todo el mes salen de una consulta cada uno
+        verify(horarioRepository, times(1)).findByDentistaIdIn(any());
+        verify(citaRepository, times(1)).findIntervalosPendientes(any(), eq(mes.atDay(1)), eq(mes.atEndOfMonth()));
+    }
+
+    @Test
+    @DisplayName("El sello de la disponibilidad mensual debe cambiar cuando cambian las citas o los horarios")
+    void testSelloDisponibilidadMensual() {
+        YearMonth mes = YearMonth.from(LUNES);
+        LocalDateTime modificacion = LocalDateTime.of(2025, 1, 1, 8, 0);
+        CitaRepository.ResumenCambios tresCitas = resumenCitas(3L, modificacion);
+        CitaRepository.ResumenCambios dosCitas = resumenCitas(2L, modificacion);
+        HorarioRepository.ResumenCambios dosHorarios = resumenHorarios(2L, modificacion);
+        HorarioRepository.ResumenCambios unHorario = resumenHorarios(1L, modificacion);
+        when(citaRepository.resumirCambios(any(), any(), any())).thenReturn(tresCitas);
+        when(horarioRepository.resumirCambios(any())).thenReturn(dosHorarios);
+
+        String sello = ocupacionService.selloDisponibilidadMensual(1L, null, mes);
+        assertEquals(sello, ocupacionService.selloDisponibilidadMensual(1L, null, mes));
+        assertNotEquals(sello, ocupacionService.selloDisponibilidadMensual(1L, null, mes.plusMonths(1)));
+
+        // Una cita reprogramada fuera del mes solo se nota en el total de pendientes
+        when(citaRepository.resumirCambios(any(), any(), any())).thenReturn(dosCitas);
+        String sinCita = ocupacionService.selloDisponibilidadMensual(1L, null, mes);
+        assertNotEquals(sello, sinCita);
+
+        when(horarioRepository.resumirCambios(any())).thenReturn(unHorario);
+        assertNotEquals(sinCita, ocupacionService.selloDisponibilidadMensual(1L, null, mes));
+        verify(citaRepository, never()).findIntervalosPendientes(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe lanzar excepción si el tratamiento no existe")
+    void testTratamientoNoExiste() {
+        when(tratamientoRepository.findById(9L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> ocupacionService.buscarProximoHueco(9L, null, LUNES, LUNES));
+    }
+
+    private CitaRepository.ResumenCambios resumenCitas(Long pendientes, LocalDateTime ultimaModificacion) {
+        CitaRepository.ResumenCambios resumen = mock(CitaRepository.ResumenCambios.class);
+        when(resumen.getPendientes()).thenReturn(pendientes);
+        when(resumen.getUltimaModificacion()).thenReturn(ultimaModificacion);
+        return resumen;
+    }
+
+    private HorarioRepository.ResumenCambios resumenHorarios(Long total, LocalDateTime ultimaModificacion) {
+        HorarioRepository.ResumenCambios resumen = mock(HorarioRepository.ResumenCambios.class);
+        when(resumen.getTotal()).thenReturn(total);
+        when(resumen.getUltimaModificacion()).thenReturn(ultimaModificacion);
+        return resumen;
+    }
+
+    private Horario horario(Long dentistaId, Dia dia, LocalTime horaComienzo, LocalTime horaFin) {
+        return Horario.builder()
+                .dia(dia)
+                .horaComienzo(horaComienzo)
+                .horaFin(horaFin)
+                .dentista(Dentista.builder().id(dentistaId).build())
+                .build();
+    }
+
+    private CitaModificadaEvent evento(Long citaId, EstadoCita estado, LocalTime hora, LocalTime horaFin) {
+        return CitaModificadaEvent.builder()
+                .citaId(citaId)
+                .estado(estado)
+                .dentistaId(1L)
+                .fecha(LUNES)
+                .hora(hora)
+                .horaFin(horaFin)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.clinicavillegas.app.auth.repositories;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.auth.models.Session;
+import com.clinicavillegas.app.user.models.Rol;
+import com.clinicavillegas.app.user.models.Sexo;
+import com.clinicavillegas.app.user.models.TipoDocumento;
+import com.clinicavillegas.app.user.models.Usuario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class SessionRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    private final Instant ahora = Instant.parse("2030-01-01T12:00:00Z");
+
+    private Session activa;
+
+    @BeforeEach
+    void setUp() {
+        TipoDocumento tipoDocumento = entityManager.persist(
+                TipoDocumento.builder().nombre("DNI").acronimo("DNI").estado(true).build()
+        );
+        Usuario usuario = entityManager.persist(
+                Usuario.builder()
+                        .nombres("Luis")
+                        .apellidoPaterno("Ramos")
+                        .apellidoMaterno("Pérez")
+                        .rol(Rol.PACIENTE)
+                        .contrasena("jbyuy$vty%4f")
+                        .correo("lorem@gmail.com")
+                        .telefono("987654321")
+                        .numeroIdentidad("12345678")
+                        .tipoDocumento(tipoDocumento)
+                        .sexo(Sexo.MASCULINO)
+                        .fechaNacimiento(LocalDate.of(1990, 1, 1))
+                        .estado(true)
+                        .build()
+        );
+        for (int i = 1; i <= 5; i++) {
+            entityManager.persist(sesion(usuario, "vencida-" + i, ahora.minus(Duration.ofHours(i))));
+        }
+        activa = entityManager.persist(sesion(usuario, "activa", ahora.plus(Duration.ofDays(1))));
+        entityManager.flush();
+    }
+
+    @Test
+    void testEliminarVencidasPorLotes() {
+        assertThat(sessionRepository.eliminarVencidas(ahora, 3)).isEqualTo(3);
+        assertThat(sessionRepository.eliminarVencidas(ahora, 3)).isEqualTo(2);
+        assertThat(sessionRepository.eliminarVencidas(ahora, 3)).isZero();
+
+        assertThat(sessionRepository.findAll()).extracting(Session::getId).containsExactly(activa.getId());
+    }
+
+    @Test
+    void testEliminarVencidasEmpiezaPorLasMasAntiguas() {
+        sessionRepository.eliminarVencidas(ahora, 2);
+        entityManager.clear();
+
+        assertThat(sessionRepository.findByToken("vencida-5")).isEmpty();
+        assertThat(sessionRepository.findByToken("vencida-4")).isEmpty();
+        assertThat(sessionRepository.findByToken("vencida-3")).isPresent();
+    }
+
+    private Session sesion(Usuario usuario, String token, Instant expira) {
+        return Session.builder()
+                .token(token)
+                .expiryDate(expira)
+                .usuario(usuario)
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.clinicavillegas.app.auth.services;
+
+import com.clinicavillegas.app.auth.repositories.SessionRepository;
+import com.clinicavillegas.app.auth.services.impl.PurgaSesiones;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PurgaSesionesTest {
+
+    private static final int LOTE = 100;
+
+    private PurgaSesiones purga;
+    private MeterRegistry registry;
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection conexion;
+    @Mock
+    private PreparedStatement sentencia;
+    @Mock
+    private ResultSet resultado;
+    @Mock
+    private SessionRepository sessionRepository;
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        when(meterRegistry.getIfAvailable(any())).thenReturn(registry);
+        when(dataSource.getConnection()).thenReturn(conexion);
+        when(conexion.prepareStatement(anyString())).thenReturn(sentencia);
+        when(sentencia.executeQuery()).thenReturn(resultado);
+        when(resultado.next()).thenReturn(true);
+        when(resultado.getBoolean(1)).thenReturn(true);
+        purga = new PurgaSesiones(dataSource, sessionRepository, meterRegistry, LOTE, 0);
+    }
+
+    @Test
+    @DisplayName("Debe borrar por lotes hasta que uno salga incompleto y registrar el total de la ejecución")
+    void testPurgarPorLotes() throws SQLException {
+        when(sessionRepository.eliminarVencidas(any(Instant.class), eq(LOTE))).thenReturn(LOTE, LOTE, 37);
+
+        purga.purgarVencidas();
+
+        verify(sessionRepository, times(3)).eliminarVencidas(any(Instant.class), eq(LOTE));
+        verify(conexion).prepareStatement("SELECT pg_advisory_unlock(?)");
+        DistributionSummary purgadas = registry.get("sesiones.purgadas").summary();
+        assertEquals(1, purgadas.count());
+        assertEquals(2 * LOTE + 37, purgadas.totalAmount());
+    }
+
+    @Test
+    @DisplayName("Todos los lotes usan el mismo instante de corte")
+    void testMismoCorteEnTodosLosLotes() {
+        when(sessionRepository.eliminarVencidas(any(Instant.class), eq(LOTE))).thenReturn(LOTE, 0);
+
+        purga.purgarVencidas();
+
+        ArgumentCaptor<Instant> cortes = ArgumentCaptor.forClass(Instant.class);
+        verify(sessionRepository, times(2)).eliminarVencidas(cortes.capture(), eq(LOTE));
+        assertEquals(cortes.getAllValues().get(0), cortes.getAllValues().get(1));
+    }
+
+    @Test
+    @DisplayName("No debe borrar nada si otra instancia tiene el candado")
+    void testOtraInstanciaTieneElCandado() throws SQLException {
+        when(resultado.getBoolean(1)).thenReturn(false);
+
+        purga.purgarVencidas();
+
+        verify(sessionRepository, never()).eliminarVencidas(any(), anyInt());
+        verify(conexion, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(conexion).close();
+    }
+
+    @Test
+    @DisplayName("Debe soltar el candado aunque falle un lote")
+    void testSoltarCandadoSiFalla() throws SQLException {
+        when(sessionRepository.eliminarVencidas(any(Instant.class), anyInt())).thenThrow(new IllegalStateException("Sin conexión"));
+
+        // El error llega al planificador, que lo registra
+        assertThrows(IllegalStateException.class, () -> purga.purgarVencidas());
+
+        verify(conexion).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(conexion).close();
+    }
+
+    @Test
+    @DisplayName("La purga corre en su propio hilo y no se superpone con una que sigue en curso")
+    void testProgramarEnHiloPropio() throws InterruptedException, SQLException {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Thread[] hilo = new Thread[1];
+        when(sessionRepository.eliminarVencidas(any(Instant.class), eq(LOTE))).thenAnswer(invocacion -> {
+            hilo[0] = Thread.currentThread();
+            enCurso.countDown();
+            soltar.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+
+        purga.programar();
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+        // El planificador queda libre mientras la primera purga sigue y la segunda se descarta
+        purga.programar();
+        soltar.countDown();
+
+        verify(conexion, timeout(5000)).close();
+        assertNotEquals(Thread.currentThread(), hilo[0]);
+        verify(sessionRepository, times(1)).eliminarVencidas(any(Instant.class), eq(LOTE));
+        purga.detener();
+    }
+}
@@ -0,0 +1,124 @@
+package com.clinicavillegas.app.common;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Una base creada por hibernate.ddl-auto=update antes de las migraciones se marca como versión 1 sin ejecutar V1;
+ * las demás migraciones tienen que funcionar sobre ese esquema y sus datos.
+ * Se trabaja en un esquema aparte para no tocar el que usan las demás pruebas.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class MigracionesTest {
+
+    private static final String ESQUEMA = "base_previa";
+
+    @Autowired
+    private DataSourceProperties propiedades;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        String url = propiedades.getUrl() + (propiedades.getUrl().contains("?") ? "&" : "?")
+                + "currentSchema=" + ESQUEMA + ",public";
+        dataSource = new DriverManagerDataSource(url, propiedades.getUsername(), propiedades.getPassword());
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP SCHEMA IF EXISTS " + ESQUEMA + " CASCADE");
+        jdbc.execute("CREATE SCHEMA " + ESQUEMA);
+        // V1 es el esquema que dejaba ddl-auto=update
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__esquema_inicial.sql")).execute(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("DROP SCHEMA IF EXISTS " + ESQUEMA + " CASCADE");
+    }
+
+    @Test
+    void testMigrarBaseCreadaPorHibernate() {
+        sembrar("Cancelada");
+
+        MigrateResult resultado = flyway().migrate();
+
+        assertThat(resultado.success).isTrue();
+        assertThat(resultado.migrations).extracting(migracion -> migracion.version).doesNotContain("1").contains("2");
+
+        // hora_fin se completa con la duración del tratamiento y el estado pasa al ordinal de EstadoCita
+        List<LocalTime> horasFin = jdbc.queryForList("SELECT hora_fin FROM citas ORDER BY id", LocalTime.class);
+        assertThat(horasFin).containsExactly(LocalTime.of(10, 30), LocalTime.of(10, 45));
+        assertThat(jdbc.queryForList("SELECT estado FROM citas ORDER BY id", Integer.class)).containsExactly(0, 2);
+
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT count(*) FROM pg_constraint c JOIN pg_namespace n ON n.oid = c.connamespace " +
+                        "WHERE c.conname = 'excl_citas_solapamiento' AND n.nspname = ?", Integer.class, ESQUEMA));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM notificaciones", Integer.class));
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT count(*) FROM information_schema.columns " +
+                        "WHERE table_schema = ? AND table_name = 'notificaciones' AND column_name = 'clave'",
+                Integer.class, ESQUEMA));
+    }
+
+    @Test
+    void testCitasPendientesCruzadasImpidenLaMigracion() {
+        sembrar("Pendiente");
+
+        // Sin la restricción de exclusión no hay protección contra el doble agendamiento entre nodos
+        FlywayException error = assertThrows(FlywayException.class, () -> flyway().migrate());
+        assertThat(error.getMessage()).contains("excl_citas_solapamiento");
+    }
+
+    private Flyway flyway() {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(ESQUEMA)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
+    }
+
+    // Dos citas del mismo dentista que se cruzan; si la segunda está cancelada no cuenta para la restricción de exclusión
+    private void sembrar(String estadoSegunda) {
+        jdbc.update("INSERT INTO tipos_documento (id, nombre, acronimo, estado, fecha_creacion, fecha_modificacion) " +
+                "VALUES (1, 'DNI', 'DNI', true, now(), now())");
+        jdbc.update("INSERT INTO usuarios (id, nombres, apellido_paterno, apellido_materno, tipo_documento_id, " +
+                "numero_identidad, sexo, fecha_nacimiento, telefono, correo, contrasena, rol, estado, " +
+                "fecha_creacion, fecha_modificacion) VALUES (1, 'Luis', 'Ramos', 'Pérez', 1, '12345678', 'MASCULINO', " +
+                "'1990-01-01', '987654321', 'lorem@gmail.com', 'x', 'DENTISTA', true, now(), now())");
+        jdbc.update("INSERT INTO dentistas (id, usuario_id, n_colegiatura, especializacion, estado, fecha_creacion, " +
+                "fecha_modificacion) VALUES (1, 1, 'C123', 'General', true, now(), now())");
+        jdbc.update("INSERT INTO tratamientos (id, nombre, costo, duracion, estado, fecha_creacion, fecha_modificacion) " +
+                "VALUES (1, 'Limpieza', 100, 1800000000000, true, now(), now()), " +
+                "(2, 'Control', 50, 2700000000000, true, now(), now())");
+        jdbc.update("INSERT INTO citas (id, fecha, hora, estado, monto, nombres, apellido_paterno, apellido_materno, " +
+                "tipo_documento_id, numero_identidad, sexo, fecha_nacimiento, usuario_id, dentista_id, tratamiento_id, " +
+                "fecha_creacion, fecha_modificacion) VALUES " +
+                "(1, '2030-01-07', '10:00', 'Pendiente', 100, 'Ana', 'Soto', 'Vega', 1, '87654321', 'FEMENINO', " +
+                "'1995-05-05', 1, 1, 1, now(), now()), " +
+                "(2, '2030-01-07', '10:00', ?, 50, 'Ana', 'Soto', 'Vega', 1, '87654321', 'FEMENINO', " +
+                "'1995-05-05', 1, 1, 2, now(), now())", estadoSegunda);
+    }
+}
@@ -0,0 +1,183 @@
+package com.clinicavillegas.app.common.idempotencia;
+
+import com.clinicavillegas.app.common.idempotencia.repositories.RegistroIdempotenciaRepository;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class FiltroIdempotenciaTest {
+
+    private FiltroIdempotencia filtro;
+    private AtomicInteger ejecuciones;
+    private FilterChain crearCita;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        AlmacenIdempotencia almacen = new AlmacenIdempotencia(mock(RegistroIdempotenciaRepository.class),
+                mock(ObjectProvider.class), 24, 100, 60, false);
+        filtro = new FiltroIdempotencia(almacen, Duration.ofSeconds(5));
+        ejecuciones = new AtomicInteger();
+        crearCita = (request, response) -> {
+            int id = ejecuciones.incrementAndGet();
+            request.getInputStream().readAllBytes();
+            ((HttpServletResponse) response).setStatus(201);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"id\":" + id + "}");
+        };
+    }
+
+    @Test
+    @DisplayName("Debe reenviar la respuesta guardada a los reintentos con la misma clave")
+    void testReintentoRecibeLaMismaRespuesta() throws Exception {
+        MockHttpServletResponse primera = ejecutar(peticion("clave-1", "{\"hora\":\"09:00\"}"), crearCita);
+        MockHttpServletResponse reintento = ejecutar(peticion("clave-1", "{\"hora\":\"09:00\"}"), crearCita);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(201, reintento.getStatus());
+        assertEquals(primera.getContentAsString(), reintento.getContentAsString());
+        assertEquals("true", reintento.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+        assertNull(primera.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar una clave reutilizada con otro contenido")
+    void testClaveConOtroContenido() throws Exception {
+        ejecutar(peticion("clave-1", "{\"hora\":\"09:00\"}"), crearCita);
+        MockHttpServletResponse distinta = ejecutar(peticion("clave-1", "{\"hora\":\"10:00\"}"), crearCita);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(422, distinta.getStatus());
+    }
+
+    @Test
+    @DisplayName("Debe ejecutar de nuevo las peticiones sin clave o con claves distintas")
+    void testSinClaveOClaveDistinta() throws Exception {
+        MockHttpServletRequest sinClave = new MockHttpServletRequest("POST", "/api/citas");
+        sinClave.setContent("{}".getBytes(StandardCharsets.UTF_8));
+        ejecutar(sinClave, crearCita);
+        ejecutar(peticion("clave-1", "{}"), crearCita);
+        ejecutar(peticion("clave-2", "{}"), crearCita);
+
+        assertEquals(3, ejecuciones.get());
+    }
+
+    @Test
+    @DisplayName("No debe guardar las respuestas 5xx para que el cliente pueda reintentar")
+    void testErrorDelServidorNoSeGuarda() throws Exception {
+        FilterChain falla = (request, response) -> {
+            ejecuciones.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        };
+        ejecutar(peticion("clave-1", "{}"), falla);
+        MockHttpServletResponse reintento = ejecutar(peticion("clave-1", "{}"), crearCita);
+
+        assertEquals(2, ejecuciones.get());
+        assertEquals(201, reintento.getStatus());
+    }
+
+    @Test
+    @DisplayName("Debe unir los duplicados simultáneos a la primera ejecución")
+    void testDuplicadosSimultaneos() throws Exception {
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        FilterChain lenta = (request, response) -> {
+            dentro.countDown();
+            try {
+                soltar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            crearCita.doFilter(request, response);
+        };
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        try {
+            Future<MockHttpServletResponse> primera = hilos.submit(() -> ejecutar(peticion("clave-1", "{}"), lenta));
+            assertTrue(dentro.await(5, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> segunda = hilos.submit(() -> ejecutar(peticion("clave-1", "{}"), lenta));
+            Future<MockHttpServletResponse> tercera = hilos.submit(() -> ejecutar(peticion("clave-1", "{}"), lenta));
+            Thread.sleep(100);
+            soltar.countDown();
+
+            assertEquals(201, primera.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals("{\"id\":1}", segunda.get(5, TimeUnit.SECONDS).getContentAsString());
+            assertEquals("{\"id\":1}", tercera.get(5, TimeUnit.SECONDS).getContentAsString());
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("El cuerpo guardado también se puede leer sin bloqueo")
+    void testLecturaNoBloqueante() throws Exception {
+        ByteArrayOutputStream leido = new ByteArrayOutputStream();
+        AtomicInteger terminadas = new AtomicInteger();
+        FilterChain asincrona = (request, response) -> {
+            ServletInputStream entrada = request.getInputStream();
+            entrada.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] bloque = new byte[4];
+                    while (entrada.isReady() && !entrada.isFinished()) {
+                        int cantidad = entrada.read(bloque, 0, bloque.length);
+                        if (cantidad > 0) {
+                            leido.write(bloque, 0, cantidad);
+                        }
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    terminadas.incrementAndGet();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+            });
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        ejecutar(peticion("clave-1", "{\"hora\":\"09:00\"}"), asincrona);
+
+        assertEquals("{\"hora\":\"09:00\"}", leido.toString(StandardCharsets.UTF_8));
+        assertEquals(1, terminadas.get());
+    }
+
+    private MockHttpServletRequest peticion(String clave, String cuerpo) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/citas");
+        request.addHeader(FiltroIdempotencia.CABECERA, clave);
+        request.setContentType("application/json");
+        request.setContent(cuerpo.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletResponse ejecutar(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,61 @@
+package com.clinicavillegas.app.common.idempotencia.repositories;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.common.idempotencia.models.EstadoIdempotencia;
+import com.clinicavillegas.app.common.idempotencia.models.RegistroIdempotencia;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class RegistroIdempotenciaRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RegistroIdempotenciaRepository repository;
+
+    private final LocalDateTime ahora = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    @Test
+    void testReservarSoloUnaVezMientrasNoExpire() {
+        assertThat(repository.reservar("clave", "huella", ahora.plusMinutes(1), ahora)).isEqualTo(1);
+        assertThat(repository.reservar("clave", "huella", ahora.plusMinutes(1), ahora)).isZero();
+        assertThat(repository.reservar("clave", "huella", ahora.plusMinutes(3), ahora.plusMinutes(2))).isEqualTo(1);
+    }
+
+    @Test
+    void testCompletarGuardaLaRespuesta() {
+        repository.reservar("clave", "huella", ahora.plusMinutes(1), ahora);
+        repository.completar("clave", 201, "application/json", "{\"id\":1}".getBytes(StandardCharsets.UTF_8), ahora.plusHours(24));
+        entityManager.clear();
+
+        RegistroIdempotencia registro = repository.findById("clave").orElseThrow();
+        assertThat(registro.getEstado()).isEqualTo(EstadoIdempotencia.COMPLETADA);
+        assertThat(registro.getCodigoEstado()).isEqualTo(201);
+        assertThat(new String(registro.getCuerpo(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+        assertThat(repository.liberar("clave")).isZero();
+    }
+
+    @Test
+    void testEliminarVencidas() {
+        repository.reservar("vencida", "huella", ahora.minusMinutes(1), ahora.minusMinutes(2));
+        repository.reservar("vigente", "huella", ahora.plusMinutes(1), ahora);
+
+        assertThat(repository.eliminarVencidas(ahora)).isEqualTo(1);
+        assertThat(repository.existsById("vigente")).isTrue();
+    }
+}
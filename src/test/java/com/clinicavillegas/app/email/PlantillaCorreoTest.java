@@ -0,0 +1,64 @@
+package com.clinicavillegas.app.email;
+
+import com.clinicavillegas.app.email.PlantillaCorreo.Html;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlantillaCorreoTest {
+
+    @Test
+    @DisplayName("Con valores sin caracteres especiales el resultado es idéntico a String.format")
+    void testEquivalenteAStringFormat() throws IllegalAccessException {
+        for (Field campo : MailTemplates.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(campo.getModifiers()) || campo.getType() != String.class) {
+                continue;
+            }
+            String formato = (String) campo.get(null);
+            PlantillaCorreo plantilla = PlantillaCorreo.compilar(formato);
+            Object[] valores = IntStream.range(0, plantilla.ranuras()).mapToObj(i -> "Valor ñ " + i).toArray();
+
+            assertArrayEquals(String.format(formato, valores).getBytes(StandardCharsets.UTF_8),
+                    plantilla.renderizar(valores), campo.getName());
+        }
+    }
+
+    @Test
+    @DisplayName("Los valores se escapan para HTML y se codifican en UTF-8")
+    void testEscaparValores() {
+        PlantillaCorreo plantilla = PlantillaCorreo.compilar("<p title='%s'>%s al 100%%</p>");
+
+        byte[] resultado = plantilla.renderizar("O'Brien", "<script>alert(\"x\")</script> & Peña 😀");
+
+        assertEquals("<p title='O&#39;Brien'>&lt;script&gt;alert(&quot;x&quot;)&lt;/script&gt; &amp; Peña 😀 al 100%</p>",
+                new String(resultado, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("El HTML ya renderizado se inserta sin escapar")
+    void testInsertarHtml() {
+        PlantillaCorreo fila = PlantillaCorreo.compilar("<tr><td>%s</td></tr>");
+        PlantillaCorreo tabla = PlantillaCorreo.compilar("<table>%s</table>");
+
+        Html filas = Html.unir(List.of(fila.renderizarHtml("a<b"), fila.renderizarHtml("c")));
+
+        assertEquals("<table><tr><td>a&lt;b</td></tr><tr><td>c</td></tr></table>",
+                new String(tabla.renderizar(filas), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Rechaza especificadores distintos de %s y una cantidad de valores incorrecta")
+    void testErrores() {
+        assertThrows(IllegalArgumentException.class, () -> PlantillaCorreo.compilar("Total: %d"));
+
+        PlantillaCorreo plantilla = PlantillaCorreo.compilar("%s y %s");
+        assertThrows(IllegalArgumentException.class, () -> plantilla.renderizar("solo uno"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.clinicavillegas.app.email;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor SMTP mínimo para pruebas: acepta cualquier remitente y destinatario y descarta los mensajes.
+ * La demora al conectar simula el costo de TLS y AUTH de un servidor real.
+ */
+public class ServidorSmtpLocal implements AutoCloseable {
+
+    private final ServerSocket servidor;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> abiertas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger conexiones = new AtomicInteger();
+    private final AtomicInteger mensajes = new AtomicInteger();
+    private final long demoraConexionMs;
+
+    public ServidorSmtpLocal(long demoraConexionMs) {
+        this.demoraConexionMs = demoraConexionMs;
+        try {
+            servidor = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        hilos.submit(this::aceptar);
+    }
+
+    public int puerto() {
+        return servidor.getLocalPort();
+    }
+
+    public int conexiones() {
+        return conexiones.get();
+    }
+
+    public int mensajes() {
+        return mensajes.get();
+    }
+
+    // Corta las sesiones abiertas, como hace un servidor con las conexiones inactivas
+    public void cortarSesiones() {
+        for (Socket socket : abiertas) {
+            try {
+                socket.close();
+            } catch (IOException ignorada) {
+                // ya estaba cerrada
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        servidor.close();
+        cortarSesiones();
+        hilos.shutdownNow();
+    }
+
+    private void aceptar() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket socket = servidor.accept();
+                conexiones.incrementAndGet();
+                abiertas.add(socket);
+                hilos.submit(() -> atender(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void atender(Socket socket) {
+        try (socket;
+             BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            OutputStream salida = socket.getOutputStream();
+            Thread.sleep(demoraConexionMs);
+            responder(salida, "220 localhost ESMTP");
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                String comando = linea.length() >= 4 ? linea.substring(0, 4).toUpperCase() : linea.toUpperCase();
+                switch (comando) {
+                    case "EHLO", "HELO" -> responder(salida, "250 localhost");
+                    case "DATA" -> {
+                        responder(salida, "354 Fin con <CRLF>.<CRLF>");
+                        while ((linea = entrada.readLine()) != null && !linea.equals(".")) {
+                            // se descarta el contenido
+                        }
+                        mensajes.incrementAndGet();
+                        responder(salida, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        responder(salida, "221 Adiós");
+                        return;
+                    }
+                    default -> responder(salida, "250 OK");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // la conexión se cortó
+        } finally {
+            abiertas.remove(socket);
+        }
+    }
+
+    private void responder(OutputStream salida, String linea) throws IOException {
+        salida.write((linea + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        salida.flush();
+    }
+}
@@ -0,0 +1,112 @@
+package com.clinicavillegas.app.email.benchmarks;
+
+import com.clinicavillegas.app.email.ServidorSmtpLocal;
+import com.clinicavillegas.app.email.services.impl.JavaMailSenderConPool;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara mensajes por segundo contra un servidor SMTP local que tarda en cada conexión lo que costarían TLS y AUTH:
+ * JavaMailSenderImpl (una conexión por envío) frente al pool de sesiones, enviando uno a uno y en lotes.
+ * Se ejecuta con: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class EnvioSmtpBenchmarkTest {
+
+    private static final long DEMORA_CONEXION_MS = 20;
+    private static final int MENSAJES = 200;
+    private static final int LOTE = 50;
+
+    private ServidorSmtpLocal servidor;
+
+    @BeforeEach
+    void setUp() {
+        servidor = new ServidorSmtpLocal(DEMORA_CONEXION_MS);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        servidor.close();
+    }
+
+    @Test
+    void compararConexionPorEnvioConPool() throws MessagingException {
+        JavaMailSenderImpl porEnvio = new JavaMailSenderImpl();
+        configurar(porEnvio);
+        JavaMailSenderConPool conPool = new JavaMailSenderConPool(1, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        configurar(conPool);
+
+        // Calentamiento: carga de clases de Jakarta Mail y primera sesión del pool
+        enviarUnoAUno(porEnvio, 5);
+        enviarUnoAUno(conPool, 5);
+
+        double sinPool = medir("Una conexión por envío", () -> enviarUnoAUno(porEnvio, MENSAJES));
+        double unoAUno = medir("Pool, uno a uno", () -> enviarUnoAUno(conPool, MENSAJES));
+        double enLotes = medir("Pool, lotes de " + LOTE, () -> enviarEnLotes(conPool));
+        conPool.destroy();
+
+        assertEquals(10 + 3 * MENSAJES, servidor.mensajes());
+        assertTrue(unoAUno > sinPool * 2, "El pool debería enviar bastante más rápido que una conexión por envío");
+        assertTrue(enLotes > sinPool * 2);
+    }
+
+    private double medir(String nombre, Envio envio) throws MessagingException {
+        int conexionesAntes = servidor.conexiones();
+        long inicio = System.nanoTime();
+        envio.ejecutar();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        double porSegundo = MENSAJES / segundos;
+        System.out.printf("[SMTP] %-25s %6.1f mensajes/s (%d mensajes, %d conexiones, %.2f s)%n",
+                nombre, porSegundo, MENSAJES, servidor.conexiones() - conexionesAntes, segundos);
+        return porSegundo;
+    }
+
+    private void enviarUnoAUno(JavaMailSenderImpl sender, int cantidad) throws MessagingException {
+        for (int i = 0; i < cantidad; i++) {
+            sender.send(mensaje(sender, i));
+        }
+    }
+
+    private void enviarEnLotes(JavaMailSenderImpl sender) throws MessagingException {
+        for (int inicio = 0; inicio < MENSAJES; inicio += LOTE) {
+            List<MimeMessage> lote = new ArrayList<>(LOTE);
+            for (int i = inicio; i < Math.min(inicio + LOTE, MENSAJES); i++) {
+                lote.add(mensaje(sender, i));
+            }
+            sender.send(lote.toArray(MimeMessage[]::new));
+        }
+    }
+
+    private void configurar(JavaMailSenderImpl sender) {
+        sender.setHost("127.0.0.1");
+        sender.setPort(servidor.puerto());
+    }
+
+    private MimeMessage mensaje(JavaMailSenderImpl sender, int numero) throws MessagingException {
+        MimeMessage mensaje = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mensaje, true, "UTF-8");
+        helper.setFrom("clinica@example.com");
+        helper.setTo("paciente" + numero + "@example.com");
+        helper.setSubject("Recordatorio de cita");
+        helper.setText("<p>Su cita es mañana a las 10:00</p>", true);
+        return mensaje;
+    }
+
+    @FunctionalInterface
+    private interface Envio {
+        void ejecutar() throws MessagingException;
+    }
+}
@@ -0,0 +1,77 @@
+package com.clinicavillegas.app.email.benchmarks;
+
+import com.clinicavillegas.app.email.MailTemplates;
+import com.clinicavillegas.app.email.PlantillaCorreo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara el cuerpo del recordatorio armado con String.format (y luego codificado a UTF-8, que es lo que hacía
+ * JavaMail con el texto) frente a la plantilla compilada: tiempo y bytes asignados por correo.
+ * Varias rondas de calentamiento antes de medir para que el JIT compile ambos caminos.
+ * Se ejecuta con: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class PlantillasBenchmarkTest {
+
+    private static final int RONDAS_CALENTAMIENTO = 5;
+    private static final int RONDAS_MEDICION = 5;
+    private static final int OPERACIONES_POR_RONDA = 50_000;
+
+    private static final PlantillaCorreo USER_REMINDER = PlantillaCorreo.compilar(MailTemplates.USER_REMINDER);
+
+    private static final Object[] VALORES = {
+            "Juan Carlos", "Pérez", "Gómez", LocalDate.of(2025, 6, 12).toString(), LocalTime.of(10, 30).toString(),
+            "Limpieza dental", "150.00", "DNI", "12345678", "María", "López", "Rodríguez"
+    };
+
+    // Evita que el JIT descarte el trabajo
+    private long sumidero;
+
+    @Test
+    void compararStringFormatConPlantillaCompilada() {
+        Supplier<byte[]> conFormat = () -> String.format(MailTemplates.USER_REMINDER, VALORES).getBytes(StandardCharsets.UTF_8);
+        Supplier<byte[]> compilada = () -> USER_REMINDER.renderizar(VALORES);
+
+        for (int i = 0; i < RONDAS_CALENTAMIENTO; i++) {
+            ejecutar(conFormat);
+            ejecutar(compilada);
+        }
+        double nsFormat = medir("String.format + UTF-8", conFormat);
+        double nsCompilada = medir("Plantilla compilada", compilada);
+
+        assertTrue(sumidero > 0);
+        assertTrue(nsCompilada < nsFormat, "La plantilla compilada debería renderizar más rápido que String.format");
+    }
+
+    private double medir(String nombre, Supplier<byte[]> render) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long mejorNs = Long.MAX_VALUE;
+        long bytesAsignados = 0;
+        for (int i = 0; i < RONDAS_MEDICION; i++) {
+            long asignadosAntes = hilos.getCurrentThreadAllocatedBytes();
+            long inicio = System.nanoTime();
+            ejecutar(render);
+            mejorNs = Math.min(mejorNs, System.nanoTime() - inicio);
+            bytesAsignados = hilos.getCurrentThreadAllocatedBytes() - asignadosAntes;
+        }
+        double nsPorOperacion = (double) mejorNs / OPERACIONES_POR_RONDA;
+        System.out.printf("[Plantillas] %-22s %8.0f ns/correo %8d bytes asignados/correo%n",
+                nombre, nsPorOperacion, bytesAsignados / OPERACIONES_POR_RONDA);
+        return nsPorOperacion;
+    }
+
+    private void ejecutar(Supplier<byte[]> render) {
+        for (int i = 0; i < OPERACIONES_POR_RONDA; i++) {
+            sumidero += render.get().length;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.clinicavillegas.app.email.repositories;
+
+import com.clinicavillegas.app.JpaTestConfig;
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import com.clinicavillegas.app.email.models.TipoNotificacion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaTestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class NotificacionRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private NotificacionRepository notificacionRepository;
+
+    private final LocalDateTime ahora = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    private Notificacion pendiente;
+    private Notificacion reservaVencida;
+
+    @BeforeEach
+    void setUp() {
+        pendiente = entityManager.persist(notificacion(EstadoNotificacion.PENDIENTE, ahora.minusMinutes(1)));
+        reservaVencida = entityManager.persist(notificacion(EstadoNotificacion.EN_PROCESO, ahora.minusMinutes(10)));
+        entityManager.persist(notificacion(EstadoNotificacion.PENDIENTE, ahora.plusMinutes(5)));
+        entityManager.persist(notificacion(EstadoNotificacion.EN_PROCESO, ahora.plusMinutes(5)));
+        entityManager.persist(notificacion(EstadoNotificacion.ENVIADA, ahora.minusMinutes(30)));
+        entityManager.persist(notificacion(EstadoNotificacion.FALLIDA, ahora.minusMinutes(30)));
+        entityManager.flush();
+    }
+
+    @Test
+    void testReclamarLoteSoloTomaLasVencidas() {
+        List<Notificacion> reclamadas = notificacionRepository.reclamarLote(ahora, 10);
+
+        assertThat(reclamadas).extracting(Notificacion::getId)
+                .containsExactly(reservaVencida.getId(), pendiente.getId());
+    }
+
+    @Test
+    void testReclamarLoteRespetaElLimite() {
+        assertThat(notificacionRepository.reclamarLote(ahora, 1)).hasSize(1);
+    }
+
+    @Test
+    void testGuardaLasCitasDeUnaNotificacionMasiva() {
+        Notificacion masiva = notificacion(EstadoNotificacion.PENDIENTE, ahora);
+        masiva.setTipo(TipoNotificacion.CANCELACION_MASIVA);
+        masiva.setCitasIds(List.of(3L, 1L, 2L));
+        Long id = entityManager.persistAndFlush(masiva).getId();
+        entityManager.clear();
+
+        assertThat(notificacionRepository.findById(id)).get()
+                .extracting(Notificacion::getCitasIds)
+                .isEqualTo(List.of(3L, 1L, 2L));
+    }
+
+    @Test
+    void testEncolarUnicaIgnoraLaClaveRepetida() {
+        String clave = "RECORDATORIO:5:1440:2030-01-02T10:00";
+
+        assertThat(notificacionRepository.encolarUnica(TipoNotificacion.RECORDATORIO_CITA.name(), 5L, null, null, clave, ahora)).isEqualTo(1);
+        assertThat(notificacionRepository.encolarUnica(TipoNotificacion.RECORDATORIO_CITA.name(), 5L, null, null, clave, ahora)).isZero();
+        assertThat(notificacionRepository.encolarUnica(TipoNotificacion.RECORDATORIO_CITA.name(), 5L, null, null,
+                "RECORDATORIO:5:120:2030-01-02T10:00", ahora)).isEqualTo(1);
+        assertThat(notificacionRepository.reclamarLote(ahora, 10)).hasSize(4);
+    }
+
+    private Notificacion notificacion(EstadoNotificacion estado, LocalDateTime proximoIntento) {
+        return Notificacion.builder()
+                .tipo(TipoNotificacion.CONFIRMACION_RESERVA)
+                .citaId(1L)
+                .estado(estado)
+                .intentos(0)
+                .proximoIntento(proximoIntento)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.email.services.impl.AgendaDentistas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class AgendaDentistasTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 5, 14);
+
+    @Mock
+    private CitaRepository citaRepository;
+    @Mock
+    private NotificacionService notificacionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @DisplayName("Debe encolar una agenda por dentista con citas, aunque falle la de otro")
+    void testEncolarUnaPorDentista() {
+        when(citaRepository.findAgendasDelDia(FECHA)).thenReturn(List.of(agenda(1L, 10L), agenda(2L, 20L), agenda(3L, 30L)));
+        when(notificacionService.encolarAgendaDentista(1L, FECHA, 10L)).thenThrow(new DataAccessResourceFailureException("Sin conexión"));
+        when(notificacionService.encolarAgendaDentista(2L, FECHA, 20L)).thenReturn(true);
+
+        new AgendaDentistas(citaRepository, notificacionService, true).encolar(FECHA);
+
+        verify(notificacionService).encolarAgendaDentista(2L, FECHA, 20L);
+        verify(notificacionService).encolarAgendaDentista(3L, FECHA, 30L);
+    }
+
+    @Test
+    @DisplayName("Sin la agenda diaria no consulta ni encola nada")
+    void testInactiva() {
+        new AgendaDentistas(citaRepository, notificacionService, false).encolar(FECHA);
+
+        verifyNoInteractions(citaRepository, notificacionService);
+    }
+
+    private CitaRepository.AgendaDelDia agenda(Long dentistaId, Long primeraCitaId) {
+        return new CitaRepository.AgendaDelDia() {
+            public Long getDentistaId() {
+                return dentistaId;
+            }
+
+            public Long getPrimeraCitaId() {
+                return primeraCitaId;
+            }
+
+            public Long getCitas() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -6,6 +6,7 @@ import com.clinicavillegas.app.email.services.impl.DefaultEmailService;
 import com.clinicavillegas.app.user.models.TipoDocumento;
 import com.clinicavillegas.app.user.models.Usuario;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,13 +15,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.List;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -159,21 +163,60 @@ public class EmailServiceTest {
     }
 
     @Test
-    @DisplayName("Debe manejar error al enviar recordatorio")
-    void testEnviarRecordatorioConError() throws Exception {
+    @DisplayName("Debe propagar el error al enviar recordatorio para que el relay lo reintente")
+    void testEnviarRecordatorioConError() {
         // Arrange
         when(javaMailSender.createMimeMessage()).thenReturn(mimeMessage);
-
-        // Cambiar a RuntimeException ya que JavaMailSender.send() no declara MessagingException
-        doThrow(new RuntimeException("Error de envío simulado"))
+        doThrow(new MailSendException("Error de envío simulado"))
                 .when(javaMailSender).send(any(MimeMessage.class));
 
-        // Act
+        // Act / Assert
+        assertThrows(MailSendException.class, () -> emailService.enviarRecordatorio(cita));
+    }
+
+    @Test
+    @DisplayName("Con la agenda diaria activa el recordatorio solo va al paciente")
+    void testEnviarRecordatorioConAgendaDentistas() {
+        ReflectionTestUtils.setField(emailService, "agendaDentistas", true);
+        when(javaMailSender.createMimeMessage()).thenReturn(mimeMessage);
+
         emailService.enviarRecordatorio(cita);
 
-        // Assert
-        verify(javaMailSender, atLeastOnce()).send(any(MimeMessage.class));
-        // No debería lanzar excepción, solo registrar el error internamente
+        verify(javaMailSender, times(1)).send(any(MimeMessage.class));
+    }
+
+    @Test
+    @DisplayName("Debe enviar un solo correo con la agenda del dentista")
+    void testEnviarAgendaDentista() {
+        when(javaMailSender.createMimeMessage()).thenReturn(mimeMessage);
+
+        emailService.enviarAgendaDentista(List.of(cita, cita));
+
+        verify(javaMailSender, times(1)).send(any(MimeMessage.class));
+    }
+
+    @Test
+    @DisplayName("Los datos del paciente se escapan en el cuerpo HTML del correo")
+    void testCancelacionEscapaDatosDelPaciente() throws Exception {
+        MimeMessage mensajeReal = new MimeMessage((Session) null);
+        when(javaMailSender.createMimeMessage()).thenReturn(mensajeReal);
+        cita.setNombres("Ana <b>");
+        cita.setApellidoPaterno("O'Neil");
+        cita.setApellidoMaterno("Peña");
+        cita.setObservaciones("<script>alert(1)</script>");
+
+        emailService.enviarCancelacionReserva(cita);
+
+        verify(javaMailSender).send(mensajeReal);
+        // Las cabeceras se completan al enviar, como hace Transport.send
+        mensajeReal.saveChanges();
+        String cuerpo = (String) mensajeReal.getContent();
+        assertTrue(mensajeReal.isMimeType("text/html"));
+        assertTrue(cuerpo.contains("Ana &lt;b&gt;"));
+        assertTrue(cuerpo.contains("O&#39;Neil"));
+        assertTrue(cuerpo.contains("Peña"));
+        assertTrue(cuerpo.contains("&lt;script&gt;alert(1)&lt;/script&gt;"));
+        assertFalse(cuerpo.contains("<script>"));
     }
 
     @Test
@@ -0,0 +1,119 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.email.ServidorSmtpLocal;
+import com.clinicavillegas.app.email.services.impl.JavaMailSenderConPool;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaMailSenderConPoolTest {
+
+    private ServidorSmtpLocal servidor;
+    private JavaMailSenderConPool sender;
+
+    @BeforeEach
+    void setUp() {
+        servidor = new ServidorSmtpLocal(0);
+        sender = crear(2, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        sender.destroy();
+        servidor.close();
+    }
+
+    @Test
+    @DisplayName("Envíos sucesivos y un lote completo usan la misma sesión")
+    void testReutilizarSesion() throws MessagingException {
+        for (int i = 0; i < 5; i++) {
+            sender.send(mensaje(sender, i));
+        }
+        sender.send(mensaje(sender, 5), mensaje(sender, 6), mensaje(sender, 7));
+
+        assertEquals(8, servidor.mensajes());
+        assertEquals(1, servidor.conexiones());
+        assertEquals(1, sender.sesionesLibres());
+    }
+
+    @Test
+    @DisplayName("Los envíos concurrentes nunca abren más sesiones que el máximo")
+    void testMaximoDeSesiones() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> envios = new ArrayList<>();
+        for (int hilo = 0; hilo < 4; hilo++) {
+            envios.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10; i++) {
+                    try {
+                        sender.send(mensaje(sender, i));
+                    } catch (MessagingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }, hilos));
+        }
+        CompletableFuture.allOf(envios.toArray(CompletableFuture[]::new)).join();
+        hilos.shutdown();
+
+        assertEquals(40, servidor.mensajes());
+        assertTrue(servidor.conexiones() <= 2, () -> "Conexiones abiertas: " + servidor.conexiones());
+    }
+
+    @Test
+    @DisplayName("Una sesión que el servidor cortó se detecta al tomarla y se abre otra")
+    void testSesionCortadaPorElServidor() throws Exception {
+        sender.send(mensaje(sender, 0));
+        servidor.cortarSesiones();
+        // Pasado el segundo sin uso la sesión se comprueba con NOOP antes de reutilizarla
+        Thread.sleep(1_100);
+
+        sender.send(mensaje(sender, 1));
+
+        assertEquals(2, servidor.mensajes());
+        assertEquals(2, servidor.conexiones());
+    }
+
+    @Test
+    @DisplayName("Las sesiones libres más del tiempo de inactividad se cierran")
+    void testCerrarInactivas() throws Exception {
+        JavaMailSenderConPool conInactividadCorta = crear(2, Duration.ofMillis(50));
+        conInactividadCorta.send(mensaje(conInactividadCorta, 0));
+        Thread.sleep(100);
+
+        conInactividadCorta.send(mensaje(conInactividadCorta, 1));
+
+        assertEquals(2, conInactividadCorta.conexionesAbiertas());
+        assertEquals(1, conInactividadCorta.sesionesLibres());
+        conInactividadCorta.destroy();
+    }
+
+    private JavaMailSenderConPool crear(int sesiones, Duration inactividad) {
+        JavaMailSenderConPool nuevo = new JavaMailSenderConPool(sesiones, inactividad, Duration.ofSeconds(5));
+        nuevo.setHost("127.0.0.1");
+        nuevo.setPort(servidor.puerto());
+        return nuevo;
+    }
+
+    static MimeMessage mensaje(JavaMailSenderConPool sender, int numero) throws MessagingException {
+        MimeMessage mensaje = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mensaje, true, "UTF-8");
+        helper.setFrom("clinica@example.com");
+        helper.setTo("paciente" + numero + "@example.com");
+        helper.setSubject("Recordatorio de cita");
+        helper.setText("<p>Su cita es mañana</p>", true);
+        return mensaje;
+    }
+}
@@ -0,0 +1,75 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import com.clinicavillegas.app.email.models.TipoNotificacion;
+import com.clinicavillegas.app.email.repositories.NotificacionRepository;
+import com.clinicavillegas.app.email.services.impl.DefaultNotificacionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+class NotificacionServiceTest {
+
+    private DefaultNotificacionService notificacionService;
+
+    @Mock
+    private NotificacionRepository notificacionRepository;
+
+    private Cita cita;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        notificacionService = new DefaultNotificacionService(notificacionRepository);
+        cita = Cita.builder().id(7L).build();
+    }
+
+    @Test
+    @DisplayName("Debe encolar la confirmación como pendiente")
+    void testEncolarConfirmacionReserva() {
+        notificacionService.encolarConfirmacionReserva(cita);
+
+        Notificacion notificacion = capturarGuardada();
+        assertEquals(TipoNotificacion.CONFIRMACION_RESERVA, notificacion.getTipo());
+        assertEquals(7L, notificacion.getCitaId());
+        assertEquals(EstadoNotificacion.PENDIENTE, notificacion.getEstado());
+        assertEquals(0, notificacion.getIntentos());
+        assertNotNull(notificacion.getProximoIntento());
+    }
+
+    @Test
+    @DisplayName("Debe guardar la fecha y hora anteriores de una reprogramación")
+    void testEncolarReprogramacionCita() {
+        notificacionService.encolarReprogramacionCita(cita, LocalDate.of(2025, 5, 14), LocalTime.of(9, 0));
+
+        Notificacion notificacion = capturarGuardada();
+        assertEquals(TipoNotificacion.REPROGRAMACION_CITA, notificacion.getTipo());
+        assertEquals(LocalDate.of(2025, 5, 14), notificacion.getFechaAnterior());
+        assertEquals(LocalTime.of(9, 0), notificacion.getHoraAnterior());
+    }
+
+    @Test
+    @DisplayName("Debe encolar la cancelación")
+    void testEncolarCancelacionReserva() {
+        notificacionService.encolarCancelacionReserva(cita);
+
+        assertEquals(TipoNotificacion.CANCELACION_RESERVA, capturarGuardada().getTipo());
+    }
+
+    private Notificacion capturarGuardada() {
+        ArgumentCaptor<Notificacion> captor = ArgumentCaptor.forClass(Notificacion.class);
+        verify(notificacionRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
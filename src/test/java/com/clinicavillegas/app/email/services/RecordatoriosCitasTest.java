@@ -0,0 +1,192 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.appointment.events.CitaModificadaEvent;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.email.services.impl.RecordatoriosCitas;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RecordatoriosCitasTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2030, 5, 14, 8, 0);
+    private static final Duration DIA = Duration.ofHours(24);
+    private static final Duration DOS_HORAS = Duration.ofHours(2);
+
+    private RecordatoriosCitas recordatorios;
+    private RelojManual reloj;
+
+    @Mock
+    private CitaRepository citaRepository;
+    @Mock
+    private NotificacionService notificacionService;
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(meterRegistry.getIfAvailable(any())).thenReturn(new SimpleMeterRegistry());
+        when(notificacionService.encolarRecordatorio(any(), any(), any())).thenReturn(true);
+        reloj = new RelojManual(AHORA.toInstant(ZoneOffset.UTC));
+        recordatorios = new RecordatoriosCitas(citaRepository, notificacionService, meterRegistry,
+                List.of(DOS_HORAS, DIA), 3, 10, reloj);
+    }
+
+    @Test
+    @DisplayName("Debe encolar cada recordatorio a su anticipación del inicio de la cita")
+    void testEncolarALaAnticipacion() {
+        LocalDateTime inicio = AHORA.plusDays(2).withHour(10);
+        recordatorios.actualizar(pendiente(1L, inicio));
+
+        avanzar(inicio.minus(DIA).minusSeconds(1));
+        verifyNoInteractions(notificacionService);
+        avanzar(inicio.minus(DIA));
+        verify(notificacionService).encolarRecordatorio(1L, DIA, inicio);
+        avanzar(inicio.minus(DOS_HORAS));
+        verify(notificacionService).encolarRecordatorio(1L, DOS_HORAS, inicio);
+        assertEquals(0, recordatorios.programados());
+    }
+
+    @Test
+    @DisplayName("Al reprogramar o cancelar una cita se cancelan sus recordatorios anteriores")
+    void testReprogramarYCancelar() {
+        LocalDateTime inicio = AHORA.plusDays(2).withHour(10);
+        LocalDateTime nuevoInicio = inicio.plusHours(5);
+        recordatorios.actualizar(pendiente(1L, inicio));
+        recordatorios.actualizar(pendiente(2L, inicio));
+
+        recordatorios.actualizar(pendiente(1L, nuevoInicio));
+        recordatorios.actualizar(pendiente(2L, inicio).toBuilder().estado(EstadoCita.CANCELADA).build());
+        avanzar(nuevoInicio);
+
+        verify(notificacionService).encolarRecordatorio(1L, DIA, nuevoInicio);
+        verify(notificacionService).encolarRecordatorio(1L, DOS_HORAS, nuevoInicio);
+        verifyNoMoreInteractions(notificacionService);
+    }
+
+    @Test
+    @DisplayName("Al arrancar programa las citas del horizonte y omite los recordatorios que ya pasaron")
+    void testCargar() {
+        when(citaRepository.findProgramablesEntre(AHORA.toLocalDate(), AHORA.toLocalDate().plusDays(3))).thenReturn(List.of(
+                programable(1L, AHORA.plusHours(3)),
+                programable(2L, AHORA.plusHours(2).minusMinutes(5)),
+                programable(3L, AHORA.plusDays(1).plusHours(1))));
+
+        recordatorios.cargar();
+        avanzar(AHORA.plusHours(2));
+
+        // La cita 1 ya no alcanza su recordatorio de 24 horas; el de 2 horas de la cita 2 se atrasó 5 minutos, dentro de la tolerancia
+        verify(notificacionService).encolarRecordatorio(1L, DOS_HORAS, AHORA.plusHours(3));
+        verify(notificacionService).encolarRecordatorio(2L, DOS_HORAS, AHORA.plusHours(2).minusMinutes(5));
+        verify(notificacionService).encolarRecordatorio(3L, DIA, AHORA.plusDays(1).plusHours(1));
+        verifyNoMoreInteractions(notificacionService);
+        assertEquals(1, recordatorios.programados());
+    }
+
+    @Test
+    @DisplayName("Una cita fuera del horizonte no se programa hasta que el horizonte la alcanza")
+    void testFueraDelHorizonte() {
+        LocalDateTime inicio = AHORA.plusDays(5);
+        recordatorios.actualizar(pendiente(1L, inicio));
+        assertEquals(0, recordatorios.programados());
+
+        reloj.fijar(AHORA.plusDays(2).toLocalDate().atStartOfDay());
+        when(citaRepository.findProgramablesEntre(inicio.toLocalDate(), inicio.toLocalDate())).thenReturn(List.of(programable(1L, inicio)));
+        recordatorios.ampliarHorizonte();
+
+        assertEquals(2, recordatorios.programados());
+    }
+
+    @Test
+    @DisplayName("Si no se puede encolar, el recordatorio se reintenta un minuto después")
+    void testReintentar() {
+        LocalDateTime inicio = AHORA.plusHours(3);
+        recordatorios.actualizar(pendiente(1L, inicio));
+        when(notificacionService.encolarRecordatorio(1L, DOS_HORAS, inicio))
+                .thenThrow(new DataAccessResourceFailureException("Sin conexión"))
+                .thenReturn(true);
+
+        avanzar(inicio.minus(DOS_HORAS));
+        assertEquals(1, recordatorios.programados());
+        avanzar(inicio.minus(DOS_HORAS).plusMinutes(1));
+
+        verify(notificacionService, times(2)).encolarRecordatorio(1L, DOS_HORAS, inicio);
+        assertEquals(0, recordatorios.programados());
+    }
+
+    private void avanzar(LocalDateTime hasta) {
+        reloj.fijar(hasta);
+        recordatorios.avanzar();
+    }
+
+    private CitaModificadaEvent pendiente(Long citaId, LocalDateTime inicio) {
+        return CitaModificadaEvent.builder()
+                .citaId(citaId)
+                .estado(EstadoCita.PENDIENTE)
+                .fecha(inicio.toLocalDate())
+                .hora(inicio.toLocalTime())
+                .build();
+    }
+
+    private CitaRepository.CitaProgramable programable(Long id, LocalDateTime inicio) {
+        return new CitaRepository.CitaProgramable() {
+            public Long getId() {
+                return id;
+            }
+
+            public LocalDate getFecha() {
+                return inicio.toLocalDate();
+            }
+
+            public LocalTime getHora() {
+                return inicio.toLocalTime();
+            }
+        };
+    }
+
+    private static class RelojManual extends Clock {
+        private Instant ahora;
+
+        RelojManual(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void fijar(LocalDateTime momento) {
+            ahora = momento.toInstant(ZoneOffset.UTC);
+        }
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zona) {
+            return this;
+        }
+
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
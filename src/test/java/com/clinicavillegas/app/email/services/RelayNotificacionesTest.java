@@ -0,0 +1,279 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.appointment.models.Cita;
+import com.clinicavillegas.app.appointment.models.EstadoCita;
+import com.clinicavillegas.app.appointment.models.SolicitudEspera;
+import com.clinicavillegas.app.appointment.repositories.CitaRepository;
+import com.clinicavillegas.app.appointment.repositories.SolicitudEsperaRepository;
+import com.clinicavillegas.app.email.models.EstadoNotificacion;
+import com.clinicavillegas.app.email.models.Notificacion;
+import com.clinicavillegas.app.email.models.TipoNotificacion;
+import com.clinicavillegas.app.email.repositories.NotificacionRepository;
+import com.clinicavillegas.app.email.services.impl.RelayNotificaciones;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class RelayNotificacionesTest {
+
+    private static final int MAX_INTENTOS = 3;
+
+    private RelayNotificaciones relay;
+
+    @Mock
+    private NotificacionRepository notificacionRepository;
+    @Mock
+    private CitaRepository citaRepository;
+    @Mock
+    private SolicitudEsperaRepository solicitudEsperaRepository;
+    @Mock
+    private EmailService emailService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private SimpleMeterRegistry registry;
+    private Cita cita;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        when(meterRegistry.getIfAvailable(any())).thenReturn(registry);
+        relay = relay(1000);
+        cita = Cita.builder().id(7L).build();
+        when(citaRepository.findParaNotificacionById(7L)).thenReturn(Optional.of(cita));
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.detener();
+    }
+
+    private RelayNotificaciones relay(int enviosPorSegundo) {
+        return new RelayNotificaciones(notificacionRepository, citaRepository, solicitudEsperaRepository, emailService, transactionManager,
+                meterRegistry, 2, 10, MAX_INTENTOS, 30, 60, 5, 5, enviosPorSegundo);
+    }
+
+    @Test
+    @DisplayName("Debe marcar la notificación como enviada cuando el correo sale bien")
+    void testProcesarExitoso() {
+        Notificacion notificacion = notificacion(TipoNotificacion.CONFIRMACION_RESERVA, 0);
+
+        relay.procesar(notificacion);
+
+        verify(emailService).enviarConfirmacionReserva(cita);
+        verify(notificacionRepository).save(notificacion);
+        assertEquals(EstadoNotificacion.ENVIADA, notificacion.getEstado());
+        assertEquals(1, notificacion.getIntentos());
+    }
+
+    @Test
+    @DisplayName("Debe pasar la fecha y hora anteriores al correo de reprogramación")
+    void testProcesarReprogramacion() {
+        Notificacion notificacion = notificacion(TipoNotificacion.REPROGRAMACION_CITA, 0);
+        notificacion.setFechaAnterior(LocalDate.of(2025, 5, 14));
+        notificacion.setHoraAnterior(LocalTime.of(9, 0));
+
+        relay.procesar(notificacion);
+
+        verify(emailService).enviarReprogramacionCita(cita, LocalDate.of(2025, 5, 14), LocalTime.of(9, 0));
+    }
+
+    @Test
+    @DisplayName("Debe enviar en un solo correo todas las citas de una cancelación masiva")
+    void testProcesarCancelacionMasiva() {
+        Cita otra = Cita.builder().id(8L).build();
+        Notificacion notificacion = notificacion(TipoNotificacion.CANCELACION_MASIVA, 0);
+        notificacion.setCitasIds(List.of(7L, 8L));
+        when(citaRepository.findParaNotificacionByIdInOrderByFechaAscHoraAsc(List.of(7L, 8L))).thenReturn(List.of(cita, otra));
+
+        relay.procesar(notificacion);
+
+        verify(emailService).enviarCancelacionMasiva(List.of(cita, otra));
+        assertEquals(EstadoNotificacion.ENVIADA, notificacion.getEstado());
+    }
+
+    @Test
+    @DisplayName("Debe enviar la oferta de la lista de espera al paciente de la solicitud, no al de la cita cancelada")
+    void testProcesarOfertaListaEspera() {
+        SolicitudEspera solicitud = SolicitudEspera.builder().id(4L).build();
+        Notificacion notificacion = notificacion(TipoNotificacion.OFERTA_LISTA_ESPERA, 0);
+        notificacion.setSolicitudEsperaId(4L);
+        when(solicitudEsperaRepository.findParaNotificacionById(4L)).thenReturn(Optional.of(solicitud));
+
+        relay.procesar(notificacion);
+
+        verify(emailService).enviarOfertaListaEspera(solicitud);
+        verify(citaRepository, never()).findParaNotificacionById(any());
+        assertEquals(EstadoNotificacion.ENVIADA, notificacion.getEstado());
+    }
+
+    @Test
+    @DisplayName("Un recordatorio de una cita que ya no está pendiente se da por despachado sin enviar correo")
+    void testProcesarRecordatorio() {
+        cita.setEstado(EstadoCita.PENDIENTE);
+        relay.procesar(notificacion(TipoNotificacion.RECORDATORIO_CITA, 0));
+        cita.setEstado(EstadoCita.CANCELADA);
+        Notificacion deCitaCancelada = notificacion(TipoNotificacion.RECORDATORIO_CITA, 0);
+
+        relay.procesar(deCitaCancelada);
+
+        verify(emailService, times(1)).enviarRecordatorio(cita);
+        assertEquals(EstadoNotificacion.ENVIADA, deCitaCancelada.getEstado());
+    }
+
+    @Test
+    @DisplayName("La agenda del dentista se arma con sus citas pendientes al momento de enviar")
+    void testProcesarAgendaDentista() {
+        LocalDate fecha = LocalDate.of(2030, 1, 10);
+        Cita otra = Cita.builder().id(8L).build();
+        Notificacion agenda = notificacion(TipoNotificacion.AGENDA_DENTISTA, 0);
+        agenda.setDentistaId(3L);
+        agenda.setFechaAgenda(fecha);
+        Notificacion sinCitas = notificacion(TipoNotificacion.AGENDA_DENTISTA, 0);
+        sinCitas.setDentistaId(4L);
+        sinCitas.setFechaAgenda(fecha);
+        when(citaRepository.findAgendaDelDentista(3L, fecha)).thenReturn(List.of(cita, otra));
+        when(citaRepository.findAgendaDelDentista(4L, fecha)).thenReturn(List.of());
+
+        relay.procesar(agenda);
+        relay.procesar(sinCitas);
+
+        verify(emailService, times(1)).enviarAgendaDentista(any());
+        verify(emailService).enviarAgendaDentista(List.of(cita, otra));
+        assertEquals(EstadoNotificacion.ENVIADA, sinCitas.getEstado());
+    }
+
+    @Test
+    @DisplayName("Debe reprogramar el envío con espera exponencial cuando falla el servidor de correo")
+    void testProcesarConFalloReintenta() {
+        doThrow(new MailSendException("Servidor no disponible")).when(emailService).enviarCancelacionReserva(cita);
+        Notificacion notificacion = notificacion(TipoNotificacion.CANCELACION_RESERVA, 1);
+
+        LocalDateTime antes = LocalDateTime.now();
+        relay.procesar(notificacion);
+
+        // Segundo intento: 30 s x 2, más hasta un 20 % de variación
+        assertEquals(EstadoNotificacion.PENDIENTE, notificacion.getEstado());
+        assertEquals(2, notificacion.getIntentos());
+        assertEquals("Servidor no disponible", notificacion.getUltimoError());
+        assertFalse(notificacion.getProximoIntento().isBefore(antes.plusSeconds(60)));
+        assertTrue(notificacion.getProximoIntento().isBefore(antes.plusSeconds(73)));
+    }
+
+    @Test
+    @DisplayName("Debe dejar la notificación como fallida al agotar los intentos")
+    void testProcesarAgotaIntentos() {
+        doThrow(new MailSendException("Servidor no disponible")).when(emailService).enviarConfirmacionReserva(cita);
+        Notificacion notificacion = notificacion(TipoNotificacion.CONFIRMACION_RESERVA, MAX_INTENTOS - 1);
+
+        relay.procesar(notificacion);
+
+        assertEquals(EstadoNotificacion.FALLIDA, notificacion.getEstado());
+        assertEquals(MAX_INTENTOS, notificacion.getIntentos());
+    }
+
+    @Test
+    @DisplayName("No debe reintentar si la cita ya no existe")
+    void testProcesarCitaInexistente() {
+        Notificacion notificacion = notificacion(TipoNotificacion.CONFIRMACION_RESERVA, 0);
+        notificacion.setCitaId(99L);
+
+        relay.procesar(notificacion);
+
+        assertEquals(EstadoNotificacion.FALLIDA, notificacion.getEstado());
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    @DisplayName("Debe reclamar un lote, marcarlo en proceso y despacharlo en el pool")
+    void testDespachar() {
+        Notificacion notificacion = notificacion(TipoNotificacion.CONFIRMACION_RESERVA, 0);
+        when(notificacionRepository.reclamarLote(any(LocalDateTime.class), anyInt())).thenReturn(List.of(notificacion));
+
+        relay.despachar();
+
+        verify(notificacionRepository).reclamarLote(any(LocalDateTime.class), eq(10));
+        verify(emailService, timeout(2000)).enviarConfirmacionReserva(cita);
+        verify(notificacionRepository, timeout(2000)).save(notificacion);
+    }
+
+    @Test
+    @DisplayName("No debe reclamar nada después de detenerse")
+    void testDespacharDetenido() {
+        relay.detener();
+
+        relay.despachar();
+
+        verifyNoInteractions(notificacionRepository);
+    }
+
+    @Test
+    @DisplayName("Debe medir por tipo los envíos, los fallos y la demora desde que se encoló")
+    void testMetricas() {
+        Notificacion enviada = notificacion(TipoNotificacion.CONFIRMACION_RESERVA, 0);
+        ReflectionTestUtils.setField(enviada, "fechaCreacion", LocalDateTime.now().minusMinutes(3));
+        doThrow(new MailSendException("Servidor no disponible")).when(emailService).enviarCancelacionReserva(cita);
+
+        relay.procesar(enviada);
+        relay.procesar(notificacion(TipoNotificacion.CANCELACION_RESERVA, 0));
+
+        assertEquals(1, registry.get("notificaciones.enviadas").tag("tipo", "CONFIRMACION_RESERVA").counter().count());
+        assertEquals(1, registry.get("notificaciones.fallidas").tag("tipo", "CANCELACION_RESERVA").counter().count());
+        assertTrue(registry.get("notificaciones.demora").tag("tipo", "CONFIRMACION_RESERVA").timer()
+                .totalTime(TimeUnit.MINUTES) >= 3);
+        assertEquals(2, registry.get("notificaciones.envio").timers().stream().mapToLong(Timer::count).sum());
+    }
+
+    @Test
+    @DisplayName("Debe espaciar los envíos según el ritmo máximo configurado")
+    void testRitmoDeEnvios() {
+        relay.detener();
+        relay = relay(20);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            relay.procesar(notificacion(TipoNotificacion.CONFIRMACION_RESERVA, 0));
+        }
+
+        // El primero sale de inmediato y los otros cuatro cada 50 ms
+        assertTrue(Duration.ofNanos(System.nanoTime() - inicio).toMillis() >= 190);
+        verify(emailService, times(5)).enviarConfirmacionReserva(cita);
+    }
+
+    private Notificacion notificacion(TipoNotificacion tipo, int intentos) {
+        return Notificacion.builder()
+                .id(1L)
+                .tipo(tipo)
+                .citaId(7L)
+                .estado(EstadoNotificacion.EN_PROCESO)
+                .intentos(intentos)
+                .proximoIntento(LocalDateTime.now())
+                .build();
+    }
+}
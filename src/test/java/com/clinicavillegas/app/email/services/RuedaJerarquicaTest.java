@@ -0,0 +1,96 @@
+package com.clinicavillegas.app.email.services;
+
+import com.clinicavillegas.app.email.services.impl.RuedaJerarquica;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuedaJerarquicaTest {
+
+    private RuedaJerarquica<String> rueda;
+
+    @BeforeEach
+    void setUp() {
+        rueda = new RuedaJerarquica<>(3);
+    }
+
+    @Test
+    @DisplayName("Cada temporizador vence exactamente en su tick, aunque tenga que bajar de nivel")
+    void testVenceEnSuTick() {
+        long[] ticks = {1, 63, 64, 65, 4095, 4096, 4097, 100_000};
+        for (long tick : ticks) {
+            rueda.programar(tick, "t" + tick);
+        }
+
+        Map<String, Long> vencidos = avanzarHasta(100_000);
+
+        for (long tick : ticks) {
+            assertEquals(tick, vencidos.get("t" + tick), "t" + tick);
+        }
+        assertEquals(0, rueda.programados());
+    }
+
+    @Test
+    @DisplayName("Coincide con el tick esperado para temporizadores programados a mitad de vuelta")
+    void testProgramadosAMitadDeVuelta() {
+        Random aleatorio = new Random(42);
+        avanzarHasta(1_000);
+        Map<String, Long> esperados = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            long tick = rueda.tick() + 1 + aleatorio.nextInt(200_000);
+            rueda.programar(tick, "t" + i);
+            esperados.put("t" + i, tick);
+        }
+
+        Map<String, Long> vencidos = avanzarHasta(rueda.tick() + 200_001);
+
+        assertEquals(esperados, vencidos);
+    }
+
+    @Test
+    @DisplayName("Un temporizador cancelado no vence")
+    void testCancelar() {
+        RuedaJerarquica.Temporizador<String> cancelado = rueda.programar(5_000, "cancelado");
+        rueda.programar(5_000, "vigente");
+
+        assertTrue(rueda.cancelar(cancelado));
+        assertFalse(rueda.cancelar(cancelado));
+        Map<String, Long> vencidos = avanzarHasta(5_000);
+
+        assertEquals(Map.of("vigente", 5_000L), vencidos);
+    }
+
+    @Test
+    @DisplayName("Un tick pasado vence en el siguiente avance y uno fuera de alcance se rechaza")
+    void testLimites() {
+        avanzarHasta(10);
+        rueda.programar(3, "atrasado");
+
+        List<RuedaJerarquica.Temporizador<String>> vencidos = rueda.avanzar();
+
+        assertEquals(List.of("atrasado"), vencidos.stream().map(RuedaJerarquica.Temporizador::valor).toList());
+        assertThrows(IllegalArgumentException.class, () -> rueda.programar(rueda.tick() + rueda.alcance(), "lejano"));
+    }
+
+    private Map<String, Long> avanzarHasta(long tick) {
+        Map<String, Long> vencidos = new HashMap<>();
+        List<String> repetidos = new ArrayList<>();
+        while (rueda.tick() < tick) {
+            for (RuedaJerarquica.Temporizador<String> temporizador : rueda.avanzar()) {
+                if (vencidos.put(temporizador.valor(), rueda.tick()) != null) {
+                    repetidos.add(temporizador.valor());
+                }
+            }
+        }
+        assertTrue(repetidos.isEmpty(), () -> "Vencieron más de una vez: " + repetidos);
+        return vencidos;
+    }
+}